@@ -0,0 +1,123 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.function.BiFunction;
+
+import model.IndexedNet;
+
+/**
+ * Schnittstelle für Analysen, die ein AnalysisScheduler im Hintergrund ausführt.<br>
+ * Eine Analyse erhält eine unveränderliche Momentaufnahme des Netzes und liefert ein typisiertes Ergebnis. Sie
+ * sollte in längeren Schleifen regelmäßig Cancellation.check() aufrufen, damit sie abgebrochen werden kann, wenn
+ * sich das Netz ändert. Zwei Aufträge mit demselben Netz (gleicher Strukturhash) und demselben Namen gelten als
+ * gleich und werden nur einmal ausgeführt; Analysen mit Parametern müssen diese daher im Namen kodieren.<br>
+ * Analysen auf dem Erreichbarkeitsgraphen holen ihn aus dem IncrementalReachability-Speicher des Netzes, den der
+ * Scheduler mitgibt, damit nach kleinen Änderungen der vorige Graph weiterverwendet wird.<br>
+ * Weitere Analysen lassen sich ohne Änderung des Editors über den ServiceLoader einbinden (Eintrag in
+ * META-INF/services/analysis.Analysis, Klasse mit öffentlichem Konstruktor ohne Parameter).
+ * @param <R>
+ * 		Typ des Ergebnisses.
+ */
+public interface Analysis<R> {
+
+	/**
+	 * @return
+	 * 		Eindeutiger Name der Analyse einschließlich ihrer Parameter.
+	 */
+	String getName();
+	/**
+	 * Führt die Analyse aus.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param cancellation
+	 * 		Wird gesetzt, wenn das Ergebnis nicht mehr benötigt wird.
+	 * @return
+	 * 		Das Ergebnis.
+	 * @throws java.util.concurrent.CancellationException
+	 * 		wenn die Analyse abgebrochen wurde.
+	 */
+	R analyse(IndexedNet net, Cancellation cancellation);
+	/**
+	 * Führt die Analyse mit dem Speicher für den Erreichbarkeitsgraphen des Netzes aus, zu dem die Momentaufnahme
+	 * gehört. Die Vorgabe ignoriert den Speicher; Analysen auf dem Erreichbarkeitsgraphen überschreiben sie.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param reachability
+	 * 		Speicher des Netzes für seinen zuletzt berechneten Erreichbarkeitsgraphen.
+	 * @param cancellation
+	 * 		Wird gesetzt, wenn das Ergebnis nicht mehr benötigt wird.
+	 * @return
+	 * 		Das Ergebnis.
+	 * @throws java.util.concurrent.CancellationException
+	 * 		wenn die Analyse abgebrochen wurde.
+	 */
+	default R analyse(IndexedNet net, IncrementalReachability reachability, Cancellation cancellation) {
+		return analyse(net, cancellation);
+	}
+
+	/**
+	 * Erzeugt eine Analyse aus einem Namen und einer Funktion.
+	 * @param name
+	 * 		Eindeutiger Name der Analyse einschließlich ihrer Parameter.
+	 * @param body
+	 * 		Die Berechnung.
+	 */
+	static <R> Analysis<R> of(String name, BiFunction<IndexedNet, Cancellation, R> body) {
+		return new Analysis<R>() {
+			@Override
+			public String getName() {
+				return name;
+			}
+			@Override
+			public R analyse(IndexedNet net, Cancellation cancellation) {
+				return body.apply(net, cancellation);
+			}
+		};
+	}
+	/**
+	 * Erzeugt eine Analyse auf dem Erreichbarkeitsgraphen aus einem Namen und einer Funktion. Ohne Speicher des
+	 * Netzes erhält die Funktion einen leeren, der Graph wird dann vollständig berechnet.
+	 * @param name
+	 * 		Eindeutiger Name der Analyse einschließlich ihrer Parameter.
+	 * @param body
+	 * 		Die Berechnung.
+	 */
+	static <R> Analysis<R> of(String name, GraphFunction<R> body) {
+		return new Analysis<R>() {
+			@Override
+			public String getName() {
+				return name;
+			}
+			@Override
+			public R analyse(IndexedNet net, Cancellation cancellation) {
+				return body.apply(net, new IncrementalReachability(), cancellation);
+			}
+			@Override
+			public R analyse(IndexedNet net, IncrementalReachability reachability, Cancellation cancellation) {
+				return body.apply(net, reachability, cancellation);
+			}
+		};
+	}
+	/**
+	 * @return
+	 * 		Die mitgelieferten Analysen aus StandardAnalyses gefolgt von allen über den ServiceLoader gefundenen.
+	 */
+	@SuppressWarnings("rawtypes")
+	static List<Analysis<?>> available() {
+		List<Analysis<?>> all = new ArrayList<Analysis<?>>(StandardAnalyses.all());
+		for (Analysis provided : ServiceLoader.load(Analysis.class))
+			all.add(provided);
+		return all;
+	}
+
+	/**
+	 * Berechnung einer Analyse, die den Speicher für den Erreichbarkeitsgraphen des Netzes verwendet.
+	 */
+	@FunctionalInterface
+	interface GraphFunction<R> {
+		R apply(IndexedNet net, IncrementalReachability reachability, Cancellation cancellation);
+	}
+
+}
@@ -0,0 +1,208 @@
+package analysis;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import model.IndexedNet;
+
+/**
+ * Diese Klasse implementiert einen inhaltsadressierten Zwischenspeicher für Analyseergebnisse.<br>
+ * Ergebnisse (Urteile, Invarianten, Zustandsraumstatistiken, ...) werden unter dem Strukturhash des Netzes
+ * und dem Namen der Analyse abgelegt; ein unverändertes Netz, z.B. ein erneut geöffneter Tab, findet seine
+ * Ergebnisse daher sofort wieder. Im Speicher wird nach LRU verdrängt; optional werden die Einträge
+ * zusätzlich als serialisierte Dateien in einem lokalen Verzeichnis abgelegt.
+ */
+public class AnalysisCache {
+
+	//**** FIELDS ****
+	/**
+	 * Anzahl der Einträge die der gemeinsame Zwischenspeicher im Speicher hält.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	/**
+	 * Der gemeinsame Zwischenspeicher der Anwendung (nur im Speicher).
+	 */
+	private static final AnalysisCache shared = new AnalysisCache(DEFAULT_CAPACITY, null);
+
+	/**
+	 * Die Einträge in Zugriffsreihenfolge, Schlüssel ist "hash/analyse".
+	 */
+	private final LinkedHashMap<String, Serializable> entries;
+	/**
+	 * Verzeichnis für die Ablage auf der Platte, null wenn nur im Speicher gearbeitet wird.
+	 */
+	private final File directory;
+	/**
+	 * Anzahl der Treffer, für Statistik.
+	 */
+	private long hits = 0;
+	/**
+	 * Anzahl der Fehlschläge, für Statistik.
+	 */
+	private long misses = 0;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Erzeugt einen Zwischenspeicher.
+	 * @param capacity
+	 * 		Maximale Anzahl der Einträge im Speicher.
+	 * @param directory
+	 * 		Verzeichnis für die Ablage auf der Platte oder null.
+	 */
+	public AnalysisCache(final int capacity, File directory) {
+		this.directory = directory;
+		this.entries = new LinkedHashMap<String, Serializable>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Serializable> eldest) {
+				return size() > capacity;
+			}
+		};
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+			System.err.println("analysis cache directory could not be created: " + directory);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Sucht ein Ergebnis, zuerst im Speicher, dann ggf. auf der Platte.
+	 * @param hash
+	 * 		Strukturhash des Netzes.
+	 * @param analysis
+	 * 		Name der Analyse.
+	 * @return
+	 * 		Das Ergebnis oder null, wenn keines vorliegt.
+	 */
+	public synchronized Serializable get(String hash, String analysis) {
+		String key = hash + "/" + analysis;
+		Serializable value = entries.get(key);
+		if (value == null && directory != null) {
+			value = load(key);
+			if (value != null)
+				entries.put(key, value);
+		}
+		if (value == null)
+			misses++;
+		else
+			hits++;
+		return value;
+	}
+	/**
+	 * Legt ein Ergebnis ab, im Speicher und ggf. auf der Platte.
+	 * @param hash
+	 * 		Strukturhash des Netzes.
+	 * @param analysis
+	 * 		Name der Analyse.
+	 * @param value
+	 * 		Das Ergebnis.
+	 */
+	public synchronized void put(String hash, String analysis, Serializable value) {
+		String key = hash + "/" + analysis;
+		entries.put(key, value);
+		if (directory != null)
+			store(key, value);
+	}
+	/**
+	 * Gibt das abgelegte Ergebnis einer Analyse zurück oder berechnet es und legt es ab.<br>
+	 * Die Berechnung läuft außerhalb der Sperre, sodass andere Threads währenddessen zugreifen können.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param analysis
+	 * 		Name der Analyse.
+	 * @param computation
+	 * 		Berechnet das Ergebnis, wenn keines vorliegt.
+	 * @return
+	 * 		Das (ggf. zwischengespeicherte) Ergebnis.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> T getOrCompute(IndexedNet net, String analysis, Supplier<T> computation) {
+		String hash = StructuralHash.of(net);
+		Serializable known = get(hash, analysis);
+		if (known != null)
+			return (T) known;
+		T value = computation.get();
+		put(hash, analysis, value);
+		return value;
+	}
+	/**
+	 * Entfernt alle Einträge aus dem Speicher (die Platte bleibt unberührt).
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	//**** DISK STORE ****
+	/**
+	 * Bildet einen Schlüssel auf eine Datei im Ablageverzeichnis ab.
+	 */
+	private File fileFor(String key) {
+		int slash = key.indexOf('/');
+		String analysis = key.substring(slash + 1).replaceAll("[^A-Za-z0-9_.-]", "_");
+		return new File(new File(directory, key.substring(0, slash)), analysis + ".ser");
+	}
+	private Serializable load(String key) {
+		File f = fileFor(key);
+		if (!f.isFile())
+			return null;
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(f))) {
+			return (Serializable) in.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			System.err.println("analysis cache entry could not be read: " + f + " (" + e.getMessage() + ")");
+			return null;
+		}
+	}
+	private void store(String key, Serializable value) {
+		File f = fileFor(key);
+		f.getParentFile().mkdirs();
+		File tmp = new File(f.getPath() + ".tmp");
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tmp))) {
+			out.writeObject(value);
+		} catch (IOException e) {
+			System.err.println("analysis cache entry could not be written: " + f + " (" + e.getMessage() + ")");
+			tmp.delete();
+			return;
+		}
+		if (!tmp.renameTo(f)) {
+			f.delete();
+			tmp.renameTo(f);
+		}
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Der gemeinsame Zwischenspeicher der Anwendung.
+	 */
+	public static AnalysisCache getShared() {
+		return shared;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Einträge im Speicher.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Treffer seit dem Erzeugen.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Fehlschläge seit dem Erzeugen.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
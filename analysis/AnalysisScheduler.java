@@ -0,0 +1,354 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import model.IndexedNet;
+
+/**
+ * Führt Analysen auf einem Pool mit fester Anzahl von Hintergrund-Threads aus.
+ * <ul>
+ * <li>Priorität: Aufträge werden in einer Prioritätswarteschlange gehalten, interaktive vor solchen im
+ * Hintergrund, bei gleicher Priorität in Reihenfolge des Eingangs.</li>
+ * <li>Zusammenfassen: Ein Auftrag für dasselbe Netz (gleicher Strukturhash) und dieselbe Analyse wie ein noch
+ * wartender oder laufender wird nicht erneut ausgeführt, sondern erhält dessen Ergebnis. Ein interaktiver Auftrag
+ * hebt dabei einen wartenden Hintergrundauftrag an.</li>
+ * <li>Abbruch: Jeder Auftrag gehört einem Besitzer (z.B. dem PetriNet aus dem die Momentaufnahme stammt).
+ * cancel(Besitzer) verwirft dessen Aufträge, etwa wenn das Netz bearbeitet wird; eine Ausführung ohne verbleibende
+ * Abnehmer wird über ihren Cancellation-Merker und eine Unterbrechung des Threads kooperativ abgebrochen.</li>
+ * <li>Speicher: Wird der IncrementalReachability-Speicher des Netzes mitgegeben, verwenden Analysen auf dem
+ * Erreichbarkeitsgraphen den zuletzt für dieses Netz berechneten Graphen weiter.</li>
+ * <li>Ergebnisse und Fehler werden über einen Executor zugestellt, in der Oberfläche Platform::runLater, also im
+ * FX-Thread. Abgebrochene Aufträge erhalten keine Nachricht.</li>
+ * </ul>
+ */
+public class AnalysisScheduler {
+
+	/**
+	 * Dringlichkeit eines Auftrags.
+	 */
+	public enum Priority {
+		/**
+		 * Vom Benutzer angestoßen, er wartet auf das Ergebnis.
+		 */
+		INTERACTIVE,
+		/**
+		 * Vorausberechnung im Hintergrund.
+		 */
+		BATCH
+	}
+
+	//**** FIELDS ****
+	/**
+	 * Der Thread-Pool; seine Warteschlange ordnet die Ausführungen nach Priorität.
+	 */
+	private final ThreadPoolExecutor pool;
+	/**
+	 * Stellt Ergebnisse und Fehler zu.
+	 */
+	private final Executor callbacks;
+	/**
+	 * Wartende und laufende Ausführungen nach Strukturhash und Name der Analyse.
+	 */
+	private final Map<String, Execution<?>> inFlight = new HashMap<String, Execution<?>>();
+	/**
+	 * Eingangsnummer für die Reihenfolge bei gleicher Priorität.
+	 */
+	private long sequence = 0;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt einen Scheduler mit einem Thread weniger als Prozessoren, mindestens einem.
+	 * @param callbacks
+	 * 		Stellt Ergebnisse und Fehler zu.
+	 */
+	public AnalysisScheduler(Executor callbacks) {
+		this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), callbacks);
+	}
+	/**
+	 * @param threads
+	 * 		Anzahl der Hintergrund-Threads.
+	 * @param callbacks
+	 * 		Stellt Ergebnisse und Fehler zu.
+	 */
+	public AnalysisScheduler(int threads, Executor callbacks) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		this.callbacks = callbacks;
+		AtomicInteger count = new AtomicInteger();
+		this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), r -> {
+					Thread worker = new Thread(r, "analysis-" + count.incrementAndGet());
+					worker.setDaemon(true);
+					return worker;
+				});
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Gibt einen Auftrag ab.
+	 * @param owner
+	 * 		Besitzer des Auftrags, für cancel(Object).
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param analysis
+	 * 		Die auszuführende Analyse.
+	 * @param priority
+	 * 		Dringlichkeit des Auftrags.
+	 * @param onResult
+	 * 		Erhält das Ergebnis.
+	 * @param onError
+	 * 		Erhält die Ausnahme, wenn die Analyse fehlschlägt.
+	 * @return
+	 * 		Der Auftrag, über den er einzeln zurückgezogen werden kann.
+	 */
+	public <R> Request submit(Object owner, IndexedNet net, Analysis<R> analysis, Priority priority,
+			Consumer<? super R> onResult, Consumer<? super RuntimeException> onError) {
+		return submit(owner, net, null, analysis, priority, onResult, onError);
+	}
+	/**
+	 * Gibt einen Auftrag mit dem Speicher für den Erreichbarkeitsgraphen des Netzes ab. Wird er mit einer
+	 * wartenden oder laufenden Ausführung zusammengefasst, verwendet diese ihren eigenen Speicher.
+	 * @param owner
+	 * 		Besitzer des Auftrags, für cancel(Object).
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param reachability
+	 * 		Speicher des Netzes, null wenn der Graph ggf. vollständig berechnet werden soll.
+	 * @param analysis
+	 * 		Die auszuführende Analyse.
+	 * @param priority
+	 * 		Dringlichkeit des Auftrags.
+	 * @param onResult
+	 * 		Erhält das Ergebnis.
+	 * @param onError
+	 * 		Erhält die Ausnahme, wenn die Analyse fehlschlägt.
+	 * @return
+	 * 		Der Auftrag, über den er einzeln zurückgezogen werden kann.
+	 */
+	public <R> Request submit(Object owner, IndexedNet net, IncrementalReachability reachability,
+			Analysis<R> analysis, Priority priority, Consumer<? super R> onResult,
+			Consumer<? super RuntimeException> onError) {
+		String key = StructuralHash.of(net) + "/" + analysis.getName();
+		synchronized (this) {
+			if (pool.isShutdown())
+				throw new IllegalStateException("scheduler has been shut down");
+			@SuppressWarnings("unchecked")
+			Execution<R> execution = (Execution<R>) inFlight.get(key);
+			if (execution == null) {
+				execution = new Execution<R>(key, net, reachability, analysis, priority, sequence++);
+				inFlight.put(key, execution);
+				pool.execute(execution);
+			} else if (!execution.started && priority.compareTo(execution.priority) < 0 && pool.remove(execution)) {
+				execution.priority = priority;
+				pool.execute(execution);
+			}
+			Request request = new Request(owner, execution);
+			execution.subscribers.add(new Subscriber<R>(request, onResult, onError));
+			return request;
+		}
+	}
+	/**
+	 * Zieht alle Aufträge eines Besitzers zurück; Ausführungen ohne verbleibende Abnehmer werden abgebrochen.
+	 * @param owner
+	 * 		Der Besitzer.
+	 */
+	public synchronized void cancel(Object owner) {
+		for (Execution<?> execution : new ArrayList<Execution<?>>(inFlight.values())) {
+			execution.subscribers.removeIf(s -> s.request.withdraw(owner));
+			if (execution.subscribers.isEmpty())
+				abort(execution);
+		}
+	}
+	/**
+	 * Bricht alle Ausführungen ab und beendet die Threads.
+	 */
+	public synchronized void shutdown() {
+		for (Execution<?> execution : new ArrayList<Execution<?>>(inFlight.values()))
+			abort(execution);
+		pool.shutdownNow();
+	}
+	/**
+	 * Bricht eine Ausführung ab: eine wartende wird aus der Warteschlange genommen, eine laufende unterbrochen.
+	 */
+	private void abort(Execution<?> execution) {
+		execution.cancellation.cancel();
+		inFlight.remove(execution.key, execution);
+		if (execution.runner != null)
+			execution.runner.interrupt();
+		else
+			pool.remove(execution);
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der wartenden und laufenden Ausführungen.
+	 */
+	public synchronized int pending() {
+		return inFlight.size();
+	}
+
+	//**** EXECUTION ****
+	/**
+	 * Eine Ausführung einer Analyse auf einer Momentaufnahme, mit allen Abnehmern ihres Ergebnisses.
+	 */
+	private final class Execution<R> implements Runnable, Comparable<Execution<?>> {
+		private final String key;
+		private final IndexedNet net;
+		private final IncrementalReachability reachability;
+		private final Analysis<R> analysis;
+		private final long order;
+		private final Cancellation cancellation = new Cancellation();
+		private final List<Subscriber<R>> subscribers = new ArrayList<Subscriber<R>>();
+		/**
+		 * Wird nur unter der Sperre des Schedulers und nur vor dem Start geändert.
+		 */
+		private Priority priority;
+		private boolean started = false;
+		private Thread runner;
+
+		Execution(String key, IndexedNet net, IncrementalReachability reachability, Analysis<R> analysis,
+				Priority priority, long order) {
+			this.key = key;
+			this.net = net;
+			this.reachability = reachability;
+			this.analysis = analysis;
+			this.priority = priority;
+			this.order = order;
+		}
+
+		@Override
+		public void run() {
+			synchronized (AnalysisScheduler.this) {
+				if (cancellation.isCancelled())
+					return;
+				started = true;
+				runner = Thread.currentThread();
+			}
+			R result = null;
+			RuntimeException error = null;
+			Error fatal = null;
+			List<Subscriber<R>> receivers = null;
+			try {
+				result = reachability != null ? analysis.analyse(net, reachability, cancellation)
+						: analysis.analyse(net, cancellation);
+			} catch (CancellationException e) {
+				cancellation.cancel();
+			} catch (RuntimeException e) {
+				error = e;
+			} catch (Error e) {
+				// z.B. OutOfMemoryError auf einem großen Zustandsraum: melden und an den Pool weitergeben
+				fatal = e;
+				error = new IllegalStateException("analysis failed: " + e, e);
+			} finally {
+				// auch bei einem Error, sonst erhielten spätere gleiche Aufträge nie eine Nachricht
+				synchronized (AnalysisScheduler.this) {
+					runner = null;
+					// eine Unterbrechung darf nicht in die nächste Ausführung auf diesem Thread hineinwirken
+					Thread.interrupted();
+					inFlight.remove(key, this);
+					if (!cancellation.isCancelled())
+						receivers = new ArrayList<Subscriber<R>>(subscribers);
+					subscribers.clear();
+				}
+			}
+			if (receivers != null) {
+				R value = result;
+				RuntimeException failure = error;
+				for (Subscriber<R> s : receivers)
+					callbacks.execute(() -> s.deliver(value, failure));
+			}
+			if (fatal != null)
+				throw fatal;
+		}
+		@Override
+		public int compareTo(Execution<?> other) {
+			int c = priority.compareTo(other.priority);
+			return c != 0 ? c : Long.compare(order, other.order);
+		}
+	}
+
+	/**
+	 * Ein Abnehmer eines Ergebnisses.
+	 */
+	private static final class Subscriber<R> {
+		private final Request request;
+		private final Consumer<? super R> onResult;
+		private final Consumer<? super RuntimeException> onError;
+
+		Subscriber(Request request, Consumer<? super R> onResult, Consumer<? super RuntimeException> onError) {
+			this.request = request;
+			this.onResult = onResult;
+			this.onError = onError;
+		}
+
+		void deliver(R result, RuntimeException error) {
+			if (request.withdrawn)
+				return;
+			if (error == null)
+				onResult.accept(result);
+			else
+				onError.accept(error);
+		}
+	}
+
+	/**
+	 * Ein abgegebener Auftrag.
+	 */
+	public final class Request {
+		private final Object owner;
+		private final Execution<?> execution;
+		/**
+		 * flag zeigt an ob der Auftrag zurückgezogen wurde; wird im Thread der Zustellung gelesen.
+		 */
+		private volatile boolean withdrawn = false;
+
+		Request(Object owner, Execution<?> execution) {
+			this.owner = owner;
+			this.execution = execution;
+		}
+
+		/**
+		 * Zieht den Auftrag zurück; er erhält danach keine Nachricht mehr, auch wenn sein Ergebnis schon
+		 * zugestellt werden sollte. Hat die Ausführung keine weiteren Abnehmer, wird sie abgebrochen.
+		 */
+		public void cancel() {
+			synchronized (AnalysisScheduler.this) {
+				withdrawn = true;
+				execution.subscribers.removeIf(s -> s.request == this);
+				if (execution.subscribers.isEmpty() && inFlight.get(execution.key) == execution)
+					abort(execution);
+			}
+		}
+		/**
+		 * Zieht den Auftrag zurück, wenn er einem Besitzer gehört.
+		 * @return
+		 * 		<b>true</b>: wenn der Auftrag zurückgezogen wurde
+		 */
+		private boolean withdraw(Object owner) {
+			if (this.owner != owner)
+				return false;
+			withdrawn = true;
+			return true;
+		}
+		/**
+		 * @return
+		 * 		Die Momentaufnahme, auf der die Analyse ausgeführt wird.
+		 */
+		public IndexedNet getNet() {
+			return execution.net;
+		}
+	}
+
+}
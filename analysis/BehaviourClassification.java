@@ -0,0 +1,370 @@
+package analysis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.IndexedNet;
+
+/**
+ * Verhaltensklassifikation eines Netzes: Lebendigkeit jeder Transition, Schranke jeder Stelle sowie ob das Netz
+ * sicher und reversibel ist und eine Heimatmarkierung besitzt.<br>
+ * Alle Eigenschaften werden in einem Durchlauf aus den starken Zusammenhangskomponenten eines einzigen
+ * Erreichbarkeitsgraphen bestimmt: Jede erreichbare Markierung erreicht eine Bodenkomponente (eine Komponente
+ * ohne ausgehende Kanten), daher ist eine Transition genau dann lebendig, wenn sie in jeder Bodenkomponente
+ * schaltet, eine Heimatmarkierung existiert genau dann, wenn es nur eine Bodenkomponente gibt, und das Netz ist
+ * reversibel, wenn der ganze Graph eine einzige Komponente ist.<br>
+ * Workflownetze werden kurzgeschlossen untersucht (RESET-Kante von der End- zur Anfangsmarkierung), sonst wäre die
+ * Endmarkierung immer eine Verklemmung und keine Transition lebendig. Da der Editor Netze 1-sicher spielt (eine
+ * Transition mit markiertem Nachbereich ist blockiert), ist jede erreichte Markenanzahl 0 oder 1; ob das Netz auch
+ * ohne diese Kontaktregel sicher ist, zeigen die blockierten Transitionen: ist in einem erreichbaren Zustand der
+ * Vorbereich einer Transition markiert und nur eine Stelle ihres Nachbereichs im Weg, ist das Netz nicht sicher.<br>
+ * Das Ergebnis ist klein und serialisierbar und kann im AnalysisCache abgelegt werden.
+ */
+public class BehaviourClassification implements Serializable {
+
+	private static final long serialVersionUID = 2L;
+
+	/**
+	 * Lebendigkeitsstufe einer Transition.
+	 */
+	public enum Liveness {
+		/**
+		 * Schaltet in keiner erreichbaren Markierung.
+		 */
+		DEAD,
+		/**
+		 * Schaltet in mindestens einer erreichbaren Markierung (L1-lebendig), aber nicht aus jeder heraus.
+		 */
+		L1,
+		/**
+		 * Kann aus jeder erreichbaren Markierung heraus wieder schalten (L4-lebendig).
+		 */
+		LIVE
+	}
+
+	//**** FIELDS ****
+	/**
+	 * IDs der Transitionen und Stellen in der Reihenfolge der Momentaufnahme.
+	 */
+	private final String[] transitionIds;
+	private final String[] placeIds;
+	/**
+	 * Lebendigkeitsstufe je Transition.
+	 */
+	private final Liveness[] liveness;
+	/**
+	 * Schranke je Stelle.
+	 */
+	private final int[] bounds;
+	/**
+	 * flag zeigt an ob die Anfangsmarkierung von jeder erreichbaren Markierung aus erreichbar ist.
+	 */
+	private final boolean reversible;
+	/**
+	 * Die markierten Stellen einer Heimatmarkierung, null wenn es keine gibt.
+	 */
+	private final ArrayList<String> homeMarking;
+	/**
+	 * flag zeigt an ob das Netz kurzgeschlossen untersucht wurde.
+	 */
+	private final boolean shortCircuited;
+	/**
+	 * Anzahl der Zustände und der Bodenkomponenten.
+	 */
+	private final int states;
+	private final int bottomComponents;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Klassifiziert ein Netz; Workflownetze werden dafür kurzgeschlossen.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Standard-Obergrenze überschreitet.
+	 */
+	public static BehaviourClassification of(IndexedNet net) {
+		boolean workflow = net.getStart() >= 0 && net.getEnd() >= 0;
+		return new BehaviourClassification(
+				ReachabilityGraph.explore(net, ReachabilityGraph.DEFAULT_STATE_LIMIT, workflow));
+	}
+	/**
+	 * Liefert die Klassifikation eines Netzes, bei unverändertem Netz aus dem gemeinsamen AnalysisCache.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Standard-Obergrenze überschreitet.
+	 */
+	public static BehaviourClassification cached(IndexedNet net) {
+		return AnalysisCache.getShared().getOrCompute(net, "behaviour", () -> of(net));
+	}
+	/**
+	 * Klassifiziert ein Netz anhand eines bereits berechneten Erreichbarkeitsgraphen.
+	 * @param graph
+	 * 		Der Graph, RESET-Kanten zählen für Reversibilität und Heimatmarkierung, nicht für die Lebendigkeit.
+	 */
+	public BehaviourClassification(ReachabilityGraph graph) {
+		IndexedNet net = graph.getNet();
+		int n = graph.stateCount();
+		int[] start = graph.edgeStart();
+		int[] target = graph.edgeTarget();
+		int[] label = graph.edgeLabel();
+		int[] comp = graph.components();
+		int count = graph.componentCount();
+
+		// Bodenkomponenten: keine Kante verlässt die Komponente
+		boolean[] bottom = new boolean[count];
+		Arrays.fill(bottom, true);
+		boolean[] fires = new boolean[net.transitionCount()];
+		for (int s = 0; s < n; s++) {
+			for (int e = start[s]; e < start[s + 1]; e++) {
+				if (comp[target[e]] != comp[s])
+					bottom[comp[s]] = false;
+				if (label[e] != ReachabilityGraph.RESET)
+					fires[label[e]] = true;
+			}
+		}
+		int[] bottomIndex = new int[count];
+		int bottoms = 0;
+		for (int c = 0; c < count; c++)
+			bottomIndex[c] = bottom[c] ? bottoms++ : -1;
+
+		// je Transition: in wie vielen Bodenkomponenten schaltet sie
+		int words = (bottoms + 63) >>> 6;
+		long[] seen = new long[net.transitionCount() * words];
+		int[] bottomsFired = new int[net.transitionCount()];
+		int home = -1;
+		for (int s = 0; s < n; s++) {
+			int b = bottomIndex[comp[s]];
+			if (b < 0)
+				continue;
+			if (home < 0)
+				home = s;
+			for (int e = start[s]; e < start[s + 1]; e++) {
+				int t = label[e];
+				if (t == ReachabilityGraph.RESET)
+					continue;
+				int w = t * words + (b >>> 6);
+				long bit = 1L << b;
+				if ((seen[w] & bit) == 0) {
+					seen[w] |= bit;
+					bottomsFired[t]++;
+				}
+			}
+		}
+
+		this.transitionIds = new String[net.transitionCount()];
+		this.liveness = new Liveness[net.transitionCount()];
+		for (int t = 0; t < transitionIds.length; t++) {
+			transitionIds[t] = net.transitionId(t);
+			liveness[t] = !fires[t] ? Liveness.DEAD : bottomsFired[t] == bottoms ? Liveness.LIVE : Liveness.L1;
+		}
+		// Markierungen sind Bitmengen: die Vereinigung aller Zustände liefert die Stellen mit Schranke 1.
+		// Der Editor blockiert Transitionen bei Kontakt; ist ihr Vorbereich markiert, aber eine Stelle ihres
+		// Nachbereichs schon markiert, erhielte diese Stelle unter der üblichen Semantik eine zweite Marke.
+		long[] marking = new long[net.words()];
+		long[] union = new long[net.words()];
+		long[] contact = new long[net.words()];
+		for (int s = 0; s < n; s++) {
+			graph.copyMarking(s, marking, 0);
+			for (int w = 0; w < union.length; w++)
+				union[w] |= marking[w];
+			for (int t = 0; t < net.transitionCount(); t++) {
+				if (!preMarked(net, marking, t))
+					continue;
+				for (int p : net.produce(t))
+					if (IndexedNet.isMarked(marking, 0, p))
+						contact[p >>> 6] |= 1L << p;
+			}
+		}
+		this.placeIds = new String[net.placeCount()];
+		this.bounds = new int[net.placeCount()];
+		for (int p = 0; p < placeIds.length; p++) {
+			placeIds[p] = net.placeId(p);
+			bounds[p] = IndexedNet.isMarked(contact, 0, p) ? 2 : IndexedNet.isMarked(union, 0, p) ? 1 : 0;
+		}
+		this.reversible = count == 1;
+		this.homeMarking = bottoms == 1 ? new ArrayList<String>(graph.markedPlaces(home)) : null;
+		this.shortCircuited = graph.isShortCircuited();
+		this.states = n;
+		this.bottomComponents = bottoms;
+	}
+
+	private static boolean preMarked(IndexedNet net, long[] marking, int t) {
+		int[] pre = net.pre(t);
+		if (pre.length == 0)
+			return false;
+		for (int p : pre)
+			if (!IndexedNet.isMarked(marking, 0, p))
+				return false;
+		return true;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der Transitionen.
+	 */
+	public int transitionCount() {
+		return transitionIds.length;
+	}
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		ID der Transition.
+	 */
+	public String transitionId(int t) {
+		return transitionIds[t];
+	}
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		Lebendigkeitsstufe der Transition.
+	 */
+	public Liveness liveness(int t) {
+		return liveness[t];
+	}
+	/**
+	 * @param level
+	 * 		Eine Lebendigkeitsstufe.
+	 * @return
+	 * 		IDs aller Transitionen mit genau dieser Stufe.
+	 */
+	public List<String> transitions(Liveness level) {
+		ArrayList<String> ids = new ArrayList<String>();
+		for (int t = 0; t < liveness.length; t++)
+			if (liveness[t] == level)
+				ids.add(transitionIds[t]);
+		return ids;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Stellen.
+	 */
+	public int placeCount() {
+		return placeIds.length;
+	}
+	/**
+	 * @param p
+	 * 		Nummer der Stelle.
+	 * @return
+	 * 		ID der Stelle.
+	 */
+	public String placeId(int p) {
+		return placeIds[p];
+	}
+	/**
+	 * @param p
+	 * 		Nummer der Stelle.
+	 * @return
+	 * 		Höchste Markenanzahl der Stelle über alle erreichbaren Markierungen; 2 bedeutet, dass die Stelle unter
+	 * 		der üblichen Semantik ohne Kontaktregel eine zweite Marke erhalten würde (Schranke mindestens 2).
+	 */
+	public int bound(int p) {
+		return bounds[p];
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn in keiner erreichbaren Markierung eine Transition nur wegen Kontakt blockiert ist,
+	 * 		d.h. das Netz auch ohne Kontaktregel keine Stelle mit mehr als einer Marke erreicht
+	 */
+	public boolean isSafe() {
+		for (int b : bounds)
+			if (b > 1)
+				return false;
+		return true;
+	}
+	/**
+	 * @return
+	 * 		IDs der Stellen, die unter der üblichen Semantik mehr als eine Marke erhalten würden.
+	 */
+	public List<String> unsafePlaces() {
+		ArrayList<String> ids = new ArrayList<String>();
+		for (int p = 0; p < bounds.length; p++)
+			if (bounds[p] > 1)
+				ids.add(placeIds[p]);
+		return ids;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn alle Transitionen lebendig sind
+	 */
+	public boolean isLive() {
+		for (Liveness l : liveness)
+			if (l != Liveness.LIVE)
+				return false;
+		return true;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Anfangsmarkierung von jeder erreichbaren Markierung aus erreichbar ist
+	 */
+	public boolean isReversible() {
+		return reversible;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn es eine Markierung gibt, die von jeder erreichbaren Markierung aus erreichbar ist
+	 */
+	public boolean hasHomeMarking() {
+		return homeMarking != null;
+	}
+	/**
+	 * @return
+	 * 		IDs der markierten Stellen einer Heimatmarkierung, null wenn es keine gibt.
+	 */
+	public List<String> getHomeMarking() {
+		return homeMarking;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn das Netz kurzgeschlossen untersucht wurde
+	 */
+	public boolean isShortCircuited() {
+		return shortCircuited;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der erreichbaren Markierungen.
+	 */
+	public int getStates() {
+		return states;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Bodenkomponenten des Erreichbarkeitsgraphen.
+	 */
+	public int getBottomComponents() {
+		return bottomComponents;
+	}
+	/**
+	 * @return
+	 * 		Mehrzeiliger Bericht mit allen Eigenschaften.
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(states).append(" states").append(shortCircuited ? " (short-circuited)" : "")
+				.append(", ").append(bottomComponents).append(" bottom SCCs\n");
+		sb.append("safe: ").append(isSafe() ? "yes" : "no")
+				.append(", reversible: ").append(reversible ? "yes" : "no")
+				.append(", home marking: ").append(homeMarking != null ? homeMarking.toString() : "none")
+				.append('\n');
+		for (Liveness level : Liveness.values())
+			sb.append(level.name().toLowerCase()).append(": ").append(transitions(level)).append('\n');
+		sb.append("bounds:");
+		for (int p = 0; p < placeIds.length; p++)
+			sb.append(' ').append(placeIds[p]).append('=').append(bounds[p]);
+		return sb.toString();
+	}
+	@Override
+	public String toString() {
+		return transitions(Liveness.DEAD).size() + " dead, " + transitions(Liveness.L1).size() + " L1-live, "
+				+ transitions(Liveness.LIVE).size() + " live transitions, " + (isSafe() ? "safe" : "unsafe") + ", "
+				+ (reversible ? "reversible" : "not reversible") + ", "
+				+ (homeMarking != null ? "home marking" : "no home marking");
+	}
+
+}
@@ -0,0 +1,356 @@
+package analysis;
+
+import java.util.Arrays;
+
+import model.IndexedNet;
+
+/**
+ * Diese Klasse implementiert das Verhaltensprofil eines Netzes: für jedes Paar von Transitionen (a, b)
+ * eine der Relationen strikte Ordnung, umgekehrte strikte Ordnung, Exklusivität oder Verschränkung.<br>
+ * Grundlage ist die schwache Ordnung a &gt; b ("es gibt einen Lauf in dem a vor b schaltet"), die als
+ * Bitmatrix mit einer Zeile aus long-Wörtern pro Transition abgelegt wird; jede Anfrage kostet daher O(1).<br>
+ * Für free-choice Workflownetze wird das Profil strukturell in polynomieller Zeit berechnet
+ * (Nebenläufigkeitsrelation nach Kovalyov/Esparza und Pfadrelation im Netzgraphen, Weidlich et al.);
+ * dieses Verfahren setzt wie das zugrundeliegende Theorem ein korrektes (sound) Netz voraus. Die Korrektheit wird
+ * daher vorher ebenfalls strukturell über den Rangsatz entschieden ({@link FreeChoiceSoundness}), ohne den
+ * Zustandsraum aufzubauen.
+ * Für alle anderen Netze wird das Profil in einem Durchlauf über den Erreichbarkeitsgraphen berechnet.
+ */
+public class BehaviouralProfile {
+
+	/**
+	 * Die Relationen des Verhaltensprofils.
+	 */
+	public enum Relation { STRICT_ORDER, REVERSE_STRICT_ORDER, EXCLUSIVE, INTERLEAVING }
+
+	//**** FIELDS ****
+	/**
+	 * Das Netz zu dem das Profil gehört.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Anzahl der long-Wörter pro Zeile.
+	 */
+	private final int rowWords;
+	/**
+	 * Die schwache Ordnung, Zeile a beginnt bei a * rowWords, Bit b gesetzt gdw. a &gt; b.
+	 */
+	private final long[] order;
+	/**
+	 * flag zeigt an ob das Profil strukturell (free-choice) berechnet wurde.
+	 */
+	private final boolean structural;
+
+	//**** CONSTRUCTOR ****
+	private BehaviouralProfile(IndexedNet net, int rowWords, long[] order, boolean structural) {
+		this.net = net;
+		this.rowWords = rowWords;
+		this.order = order;
+		this.structural = structural;
+	}
+
+	//**** COMPUTATION ****
+	/**
+	 * Berechnet das Verhaltensprofil, strukturell wenn das Netz ein korrektes free-choice Workflownetz
+	 * ist, sonst über den Erreichbarkeitsgraphen.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Standard-Obergrenze überschreitet.
+	 */
+	public static BehaviouralProfile compute(IndexedNet net) {
+		if (FreeChoiceSoundness.isSound(net))
+			return structural(net);
+		return compute(ReachabilityGraph.explore(net));
+	}
+	/**
+	 * Berechnet das Verhaltensprofil in einem Durchlauf über einen Erreichbarkeitsgraphen.<br>
+	 * Für jede Komponente des Graphen wird in umgekehrt topologischer Reihenfolge die Menge der von ihr aus
+	 * noch schaltbaren Transitionen als Bitvektor bestimmt; jede Kante (s, a, s') trägt dann die Menge von s'
+	 * in die Zeile von a ein.
+	 * @param graph
+	 * 		Erreichbarkeitsgraph ohne Kurzschluss (RESET-Kanten werden ignoriert).
+	 */
+	public static BehaviouralProfile compute(ReachabilityGraph graph) {
+		IndexedNet net = graph.getNet();
+		int n = net.transitionCount();
+		int w = Math.max(1, (n + 63) >>> 6);
+		int[] comp = graph.components();
+		int comps = graph.componentCount();
+		int[] start = graph.edgeStart();
+		int[] target = graph.edgeTarget();
+		int[] label = graph.edgeLabel();
+
+		// Zustände nach Komponente gruppieren
+		int[] compStart = new int[comps + 1];
+		for (int c : comp)
+			compStart[c + 1]++;
+		for (int c = 0; c < comps; c++)
+			compStart[c + 1] += compStart[c];
+		int[] members = new int[comp.length];
+		int[] fill = Arrays.copyOf(compStart, comps);
+		for (int s = 0; s < comp.length; s++)
+			members[fill[comp[s]]++] = s;
+
+		// Nachfolgerkomponenten haben kleinere Nummern, daher aufsteigend rechnen
+		long[] firable = new long[comps * w];
+		for (int c = 0; c < comps; c++) {
+			int base = c * w;
+			for (int i = compStart[c]; i < compStart[c + 1]; i++) {
+				int s = members[i];
+				for (int e = start[s]; e < start[s + 1]; e++) {
+					if (label[e] < 0)
+						continue;
+					firable[base + (label[e] >>> 6)] |= 1L << label[e];
+					int d = comp[target[e]];
+					if (d != c)
+						orRow(firable, base, firable, d * w, w);
+				}
+			}
+		}
+
+		long[] order = new long[n * w];
+		for (int s = 0; s < comp.length; s++) {
+			for (int e = start[s]; e < start[s + 1]; e++) {
+				if (label[e] >= 0)
+					orRow(order, label[e] * w, firable, comp[target[e]] * w, w);
+			}
+		}
+		return new BehaviouralProfile(net, w, order, false);
+	}
+	/**
+	 * Strukturelle Berechnung für free-choice Workflownetze:
+	 * a &gt; b gdw. a und b nebenläufig sind oder es einen nichtleeren Pfad von a nach b im Netzgraphen gibt.
+	 */
+	private static BehaviouralProfile structural(IndexedNet net) {
+		int n = net.transitionCount();
+		int w = Math.max(1, (n + 63) >>> 6);
+		long[] order = new long[n * w];
+
+		// Nebenläufigkeit: t || u gdw. alle Stellen aus pre(t) und pre(u) paarweise verschieden und nebenläufig
+		int pw = Math.max(1, (net.placeCount() + 63) >>> 6);
+		long[] conc = placeConcurrency(net, pw);
+		long[] enabledWith = new long[pw];
+		for (int t = 0; t < n; t++) {
+			if (net.pre(t).length == 0)
+				continue;
+			Arrays.fill(enabledWith, -1L);
+			for (int p : net.pre(t)) {
+				for (int i = 0; i < pw; i++)
+					enabledWith[i] &= conc[p * pw + i];
+			}
+			for (int u = 0; u < n; u++) {
+				if (u == t || net.pre(u).length == 0)
+					continue;
+				boolean concurrent = true;
+				for (int q : net.pre(u)) {
+					if ((enabledWith[q >>> 6] & (1L << q)) == 0) {
+						concurrent = false;
+						break;
+					}
+				}
+				if (concurrent)
+					order[t * w + (u >>> 6)] |= 1L << u;
+			}
+		}
+
+		// Pfadrelation über die Komponenten des Netzgraphen (Stellen 0..P-1, Transitionen P..P+T-1)
+		int places = net.placeCount();
+		int nodes = places + n;
+		int[] start = new int[nodes + 1];
+		for (int p = 0; p < places; p++)
+			start[p + 1] = net.consumers(p).length;
+		for (int t = 0; t < n; t++)
+			start[places + t + 1] = net.post(t).length;
+		for (int v = 0; v < nodes; v++)
+			start[v + 1] += start[v];
+		int[] target = new int[start[nodes]];
+		for (int p = 0; p < places; p++) {
+			int[] out = net.consumers(p);
+			for (int i = 0; i < out.length; i++)
+				target[start[p] + i] = places + out[i];
+		}
+		for (int t = 0; t < n; t++) {
+			int[] out = net.post(t);
+			System.arraycopy(out, 0, target, start[places + t], out.length);
+		}
+		int[] comp = new int[nodes];
+		int comps = GraphAlgorithms.tarjan(nodes, start, target, null, comp);
+		int[] size = new int[comps];
+		for (int c : comp)
+			size[c]++;
+
+		// closure[c] = Transitionen in c und in allen von c aus erreichbaren Komponenten
+		// after[c]   = Transitionen die von einem Knoten in c aus über einen nichtleeren Pfad erreichbar sind
+		long[] closure = new long[comps * w];
+		long[] after = new long[comps * w];
+		int[] byComp = new int[nodes];
+		int[] compStart = new int[comps + 1];
+		for (int c : comp)
+			compStart[c + 1]++;
+		for (int c = 0; c < comps; c++)
+			compStart[c + 1] += compStart[c];
+		int[] fill = Arrays.copyOf(compStart, comps);
+		for (int v = 0; v < nodes; v++)
+			byComp[fill[comp[v]]++] = v;
+		for (int c = 0; c < comps; c++) {
+			for (int i = compStart[c]; i < compStart[c + 1]; i++) {
+				int v = byComp[i];
+				if (v >= places)
+					closure[c * w + ((v - places) >>> 6)] |= 1L << (v - places);
+				for (int e = start[v]; e < start[v + 1]; e++) {
+					int d = comp[target[e]];
+					if (d != c)
+						orRow(after, c * w, closure, d * w, w);
+				}
+			}
+			if (size[c] > 1)
+				orRow(after, c * w, closure, c * w, w);
+			orRow(closure, c * w, after, c * w, w);
+		}
+		for (int t = 0; t < n; t++)
+			orRow(order, t * w, after, comp[places + t] * w, w);
+
+		return new BehaviouralProfile(net, w, order, true);
+	}
+	/**
+	 * Berechnet die Nebenläufigkeitsrelation der Stellen im kurzgeschlossenen Netz als Bitmatrix
+	 * (Kovalyov/Esparza): ausgehend von den gemeinsam erzeugten Stellen jeder Transition wird
+	 * x || s und s in pre(t) mit {x} x pre(t) in der Relation zu x || t• fortgesetzt.
+	 */
+	private static long[] placeConcurrency(IndexedNet net, int pw) {
+		int places = net.placeCount();
+		long[] conc = new long[places * pw];
+		int[] queueX = new int[16];
+		int[] queueS = new int[16];
+		int head = 0, tail = 0;
+		for (int t = 0; t < net.transitionCount(); t++) {
+			int[] out = net.post(t);
+			for (int a : out) {
+				for (int b : out) {
+					if (a != b && !isSet(conc, a * pw, b)) {
+						conc[a * pw + (b >>> 6)] |= 1L << b;
+						if (tail == queueX.length) {
+							queueX = Arrays.copyOf(queueX, tail * 2);
+							queueS = Arrays.copyOf(queueS, tail * 2);
+						}
+						queueX[tail] = a;
+						queueS[tail++] = b;
+					}
+				}
+			}
+		}
+		while (head < tail) {
+			int x = queueX[head];
+			int s = queueS[head++];
+			int[] consumers = net.consumers(s);
+			int[] targets;
+			for (int k = 0; k <= consumers.length; k++) {
+				// k == consumers.length steht für die Kurzschlusstransition end -> start
+				if (k == consumers.length) {
+					if (s != net.getEnd())
+						break;
+					targets = new int[] { net.getStart() };
+				}
+				else {
+					int t = consumers[k];
+					boolean all = true;
+					for (int p : net.pre(t)) {
+						if (p == x || !isSet(conc, x * pw, p)) {
+							all = false;
+							break;
+						}
+					}
+					if (!all)
+						continue;
+					targets = net.post(t);
+				}
+				for (int q : targets) {
+					if (q == x || isSet(conc, x * pw, q))
+						continue;
+					conc[x * pw + (q >>> 6)] |= 1L << q;
+					conc[q * pw + (x >>> 6)] |= 1L << x;
+					if (tail + 2 > queueX.length) {
+						queueX = Arrays.copyOf(queueX, queueX.length * 2);
+						queueS = Arrays.copyOf(queueS, queueS.length * 2);
+					}
+					queueX[tail] = x;
+					queueS[tail++] = q;
+					queueX[tail] = q;
+					queueS[tail++] = x;
+				}
+			}
+		}
+		return conc;
+	}
+	private static boolean isSet(long[] rows, int base, int bit) {
+		return (rows[base + (bit >>> 6)] & (1L << bit)) != 0;
+	}
+	private static void orRow(long[] dst, int dstBase, long[] src, int srcBase, int w) {
+		for (int i = 0; i < w; i++)
+			dst[dstBase + i] |= src[srcBase + i];
+	}
+
+	//**** QUERIES ****
+	/**
+	 * Gibt an ob a in der schwachen Ordnung vor b steht, d.h. es einen Lauf gibt in dem a vor b schaltet.
+	 * @param a
+	 * 		Nummer der ersten Transition.
+	 * @param b
+	 * 		Nummer der zweiten Transition.
+	 */
+	public boolean weakOrder(int a, int b) {
+		return (order[a * rowWords + (b >>> 6)] & (1L << b)) != 0;
+	}
+	/**
+	 * Gibt die Relation zwischen zwei Transitionen zurück.
+	 * @param a
+	 * 		Nummer der ersten Transition.
+	 * @param b
+	 * 		Nummer der zweiten Transition.
+	 */
+	public Relation relation(int a, int b) {
+		boolean ab = weakOrder(a, b);
+		boolean ba = weakOrder(b, a);
+		if (ab && ba)
+			return Relation.INTERLEAVING;
+		if (ab)
+			return Relation.STRICT_ORDER;
+		if (ba)
+			return Relation.REVERSE_STRICT_ORDER;
+		return Relation.EXCLUSIVE;
+	}
+	/**
+	 * Gibt die Relation zwischen zwei Transitionen zurück.
+	 * @param idA
+	 * 		ID der ersten Transition.
+	 * @param idB
+	 * 		ID der zweiten Transition.
+	 * @throws IllegalArgumentException
+	 * 		wenn eine der IDs keine Transition bezeichnet.
+	 */
+	public Relation relation(String idA, String idB) {
+		int a = net.transitionIndex(idA);
+		int b = net.transitionIndex(idB);
+		if (a < 0 || b < 0)
+			throw new IllegalArgumentException("unknown transition");
+		return relation(a, b);
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Das Netz zu dem das Profil gehört.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn das Profil strukturell (free-choice) berechnet wurde
+	 */
+	public boolean isStructural() {
+		return structural;
+	}
+
+}
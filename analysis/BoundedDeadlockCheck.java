@@ -0,0 +1,303 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Diese Klasse sucht Verklemmungen mit beschränkter Modellprüfung (bounded model checking).<br>
+ * Die Schaltregel des sicheren Netzes wird für k Schritte in KNF abgewickelt und vom SatSolver gelöst.
+ * In einem Schritt schaltet eine Menge von Transitionen mit paarweise disjunkten Vor- und Nachbereichen
+ * (jede Reihenfolge führt zur selben Markierung); lange Folgen nebenläufiger Transitionen brauchen so nur
+ * wenige Schritte. Die leere Menge ist erlaubt, daher ist eine nach j &lt;= k Schritten erreichbare
+ * Verklemmung auch nach genau k Schritten erreichbar und es genügt das Ziel im letzten Rahmen zu prüfen. Das Ziel wird über ein Aktivierungsliteral je Schranke als
+ * Annahme übergeben; beim Erhöhen der Schranke werden nur die Klauseln des neuen Rahmens ergänzt und alle
+ * gelernten Klauseln bleiben gültig.<br>
+ * Als Verklemmung gilt wie im Editor eine Markierung ohne aktivierte Transition, in der die Endstelle
+ * (falls vorhanden) nicht markiert ist.
+ */
+public class BoundedDeadlockCheck {
+
+	/**
+	 * Ergebnis einer Suche.
+	 */
+	public static class Result {
+		private final boolean found;
+		private final int bound;
+		private final List<String> firingSequence;
+		private final List<String> deadlockMarking;
+
+		Result(boolean found, int bound, List<String> firingSequence, List<String> deadlockMarking) {
+			this.found = found;
+			this.bound = bound;
+			this.firingSequence = firingSequence;
+			this.deadlockMarking = deadlockMarking;
+		}
+		/**
+		 * @return
+		 * 		<b>true</b>: wenn eine Verklemmung innerhalb der Schranke gefunden wurde
+		 */
+		public boolean isDeadlockFound() {
+			return found;
+		}
+		/**
+		 * @return
+		 * 		Die Schranke, bei der die Verklemmung gefunden wurde bzw. die größte geprüfte Schranke.
+		 */
+		public int getBound() {
+			return bound;
+		}
+		/**
+		 * @return
+		 * 		IDs der Transitionen in Schaltreihenfolge, leer wenn keine Verklemmung gefunden wurde.
+		 */
+		public List<String> getFiringSequence() {
+			return firingSequence;
+		}
+		/**
+		 * @return
+		 * 		IDs der markierten Stellen in der Verklemmung, leer wenn keine gefunden wurde.
+		 */
+		public List<String> getDeadlockMarking() {
+			return deadlockMarking;
+		}
+		@Override
+		public String toString() {
+			if (!found)
+				return "no deadlock within " + bound + " steps";
+			return "deadlock after " + firingSequence + " in " + deadlockMarking;
+		}
+	}
+
+	//**** FIELDS ****
+	/**
+	 * Die untersuchte Momentaufnahme.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Der inkrementell verwendete Solver.
+	 */
+	private final SatSolver solver = new SatSolver();
+	/**
+	 * Markierungsvariablen je Rahmen.
+	 */
+	private final List<int[]> marked = new ArrayList<int[]>();
+	/**
+	 * Schaltvariablen je Schritt (Schritt k führt von Rahmen k nach k+1).
+	 */
+	private final List<int[]> fired = new ArrayList<int[]>();
+	/**
+	 * Aktivierungsliteral des Ziels der aktuellen Schranke.
+	 */
+	private int activation = 0;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Legt Rahmen 0 mit der Anfangsmarkierung an.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 */
+	public BoundedDeadlockCheck(IndexedNet net) {
+		this.net = net;
+		int[] m0 = newFrame();
+		long[] initial = net.initialMarking();
+		for (int p = 0; p < net.placeCount(); p++)
+			solver.addClause(IndexedNet.isMarked(initial, 0, p) ? m0[p] : -m0[p]);
+		addGoal();
+	}
+	/**
+	 * @param net
+	 * 		Das Netz.
+	 * @param maxBound
+	 * 		Größte Anzahl von Schritten.
+	 * @return
+	 * 		Ergebnis der Suche.
+	 */
+	public static Result check(PetriNet net, int maxBound) {
+		return new BoundedDeadlockCheck(new IndexedNet(net)).check(maxBound);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Erhöht die Schranke schrittweise bis eine Verklemmung gefunden ist oder maxBound erreicht ist.
+	 * Wiederholte Aufrufe setzen bei der zuletzt geprüften Schranke fort.
+	 * @param maxBound
+	 * 		Größte Anzahl von Schritten.
+	 * @return
+	 * 		Ergebnis der Suche.
+	 */
+	public Result check(int maxBound) {
+		while (true) {
+			int k = bound();
+			if (solver.solve(activation))
+				return decode(k);
+			if (k >= maxBound)
+				return new Result(false, k, Collections.<String>emptyList(), Collections.<String>emptyList());
+			// das Ziel dieser Schranke ist widerlegt, die zugehörigen Klauseln werden dauerhaft erfüllt
+			solver.addClause(-activation);
+			addStep();
+			addGoal();
+		}
+	}
+	/**
+	 * @return
+	 * 		Die aktuelle Schranke (Anzahl der Schritte).
+	 */
+	public int bound() {
+		return fired.size();
+	}
+
+	//**** ENCODING ****
+	private int[] newFrame() {
+		int[] m = new int[net.placeCount()];
+		for (int p = 0; p < m.length; p++)
+			m[p] = solver.newVariable();
+		marked.add(m);
+		return m;
+	}
+	/**
+	 * Wickelt einen weiteren Schritt ab: Aktivierung, Wirkung, Rahmenaxiome und Unabhängigkeit.
+	 */
+	private void addStep() {
+		int[] m = marked.get(marked.size() - 1);
+		int[] next = newFrame();
+		int[] f = new int[net.transitionCount()];
+		for (int t = 0; t < f.length; t++) {
+			f[t] = solver.newVariable();
+			if (net.pre(t).length == 0) {
+				// im Editor nie aktiviert
+				solver.addClause(-f[t]);
+				continue;
+			}
+			for (int p : net.pre(t))
+				solver.addClause(-f[t], m[p]);
+			for (int q : net.produce(t))
+				solver.addClause(-f[t], -m[q]);
+			for (int p : net.consume(t))
+				solver.addClause(-f[t], -next[p]);
+			for (int q : net.produce(t))
+				solver.addClause(-f[t], next[q]);
+		}
+		fired.add(f);
+		for (int p = 0; p < net.placeCount(); p++) {
+			// p wird nur markiert, wenn eine Transition p erzeugt
+			int[] producers = net.producers(p);
+			List<Integer> up = new ArrayList<Integer>();
+			up.add(m[p]);
+			up.add(-next[p]);
+			for (int t : producers)
+				if (contains(net.produce(t), p))
+					up.add(f[t]);
+			solver.addClause(toArray(up));
+			// p wird nur geleert, wenn eine Transition p verbraucht
+			List<Integer> down = new ArrayList<Integer>();
+			down.add(-m[p]);
+			down.add(next[p]);
+			for (int t : net.consumers(p))
+				if (contains(net.consume(t), p))
+					down.add(f[t]);
+			solver.addClause(toArray(down));
+		}
+		// Schrittsemantik: Transitionen mit disjunkten Umgebungen dürfen gemeinsam schalten
+		for (int p = 0; p < net.placeCount(); p++)
+			atMostOne(touching(f, p));
+	}
+	/**
+	 * @return
+	 * 		Die Schaltvariablen aller Transitionen, in deren Vor- oder Nachbereich p liegt.
+	 */
+	private int[] touching(int[] f, int p) {
+		int[] producers = net.producers(p);
+		int[] consumers = net.consumers(p);
+		int[] out = new int[producers.length + consumers.length];
+		int n = 0;
+		for (int t : consumers)
+			out[n++] = f[t];
+		for (int t : producers)
+			if (!contains(consumers, t))
+				out[n++] = f[t];
+		return Arrays.copyOf(out, n);
+	}
+	/**
+	 * Höchstens eines der Literale, sequentieller Zähler nach Sinz.
+	 */
+	private void atMostOne(int[] x) {
+		int n = x.length;
+		if (n < 2)
+			return;
+		int[] s = new int[n - 1];
+		for (int i = 0; i < n - 1; i++)
+			s[i] = solver.newVariable();
+		solver.addClause(-x[0], s[0]);
+		for (int i = 1; i < n - 1; i++) {
+			solver.addClause(-x[i], s[i]);
+			solver.addClause(-s[i - 1], s[i]);
+			solver.addClause(-x[i], -s[i - 1]);
+		}
+		solver.addClause(-x[n - 1], -s[n - 2]);
+	}
+	/**
+	 * Ziel im letzten Rahmen, bedingt durch ein neues Aktivierungsliteral: keine Transition ist
+	 * aktiviert und die Endstelle ist nicht markiert.
+	 */
+	private void addGoal() {
+		int[] m = marked.get(marked.size() - 1);
+		activation = solver.newVariable();
+		for (int t = 0; t < net.transitionCount(); t++) {
+			if (net.pre(t).length == 0)
+				continue;
+			List<Integer> disabled = new ArrayList<Integer>();
+			disabled.add(-activation);
+			for (int p : net.pre(t))
+				disabled.add(-m[p]);
+			for (int q : net.produce(t))
+				disabled.add(m[q]);
+			solver.addClause(toArray(disabled));
+		}
+		if (net.getEnd() >= 0)
+			solver.addClause(-activation, -m[net.getEnd()]);
+	}
+	/**
+	 * Liest die Schaltfolge und die verklemmte Markierung aus der Belegung; die Transitionen eines Schritts
+	 * werden in Indexreihenfolge aufgereiht, Schritte ohne Schalten entfallen.
+	 */
+	private Result decode(int k) {
+		List<String> sequence = new ArrayList<String>();
+		for (int[] f : fired)
+			for (int t = 0; t < f.length; t++)
+				if (solver.value(f[t]))
+					sequence.add(net.transitionId(t));
+		List<String> places = new ArrayList<String>();
+		int[] m = marked.get(k);
+		for (int p = 0; p < m.length; p++)
+			if (solver.value(m[p]))
+				places.add(net.placeId(p));
+		return new Result(true, k, sequence, places);
+	}
+	private static boolean contains(int[] set, int x) {
+		for (int y : set)
+			if (y == x)
+				return true;
+		return false;
+	}
+	private static int[] toArray(List<Integer> in) {
+		int[] out = new int[in.size()];
+		for (int i = 0; i < out.length; i++)
+			out[i] = in.get(i);
+		return out;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Der verwendete Solver, z.B. für Statistiken.
+	 */
+	public SatSolver getSolver() {
+		return solver;
+	}
+
+}
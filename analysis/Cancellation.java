@@ -0,0 +1,44 @@
+package analysis;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Merker für den kooperativen Abbruch einer Analyse.<br>
+ * Der AnalysisScheduler setzt ihn und unterbricht zusätzlich den ausführenden Thread, sodass auch Verfahren ohne
+ * Zugriff auf den Merker (etwa ReachabilityGraph.explore) an ihren Prüfpunkten abbrechen.
+ */
+public final class Cancellation {
+
+	//**** FIELDS ****
+	/**
+	 * flag zeigt an ob abgebrochen wurde.
+	 */
+	private volatile boolean cancelled = false;
+
+	//**** METHODS ****
+	/**
+	 * Bricht ab; die Analyse bemerkt das beim nächsten Aufruf von check().
+	 */
+	void cancel() {
+		cancelled = true;
+	}
+	/**
+	 * Prüfpunkt für längere Analysen.
+	 * @throws CancellationException
+	 * 		wenn abgebrochen wurde oder der ausführende Thread unterbrochen ist.
+	 */
+	public void check() {
+		if (cancelled || Thread.currentThread().isInterrupted())
+			throw new CancellationException("analysis cancelled");
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn abgebrochen wurde
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+}
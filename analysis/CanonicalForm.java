@@ -0,0 +1,466 @@
+package analysis;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Diese Klasse berechnet eine kanonische Form eines Netzes, die von IDs, Namen und Layout unabhängig ist.<br>
+ * Zwei Netze sind genau dann isomorph (unter Erhalt der Anfangsmarkierung), wenn ihre kanonischen Formen
+ * gleich sind; die Duplikatsuche in einer Modellbibliothek wird damit zu einem Vergleich von Hashwerten.<br>
+ * Verfahren: Farbverfeinerung auf dem bipartiten Graphen aus Stellen und Transitionen (Anfangsfarben: Art
+ * und Markierung), danach Individualisierung und Verfeinerung mit Suche über die Blätter; gefundene
+ * Automorphismen schneiden Geschwister derselben Bahn ab. Übersteigt die Suche die Blattgrenze, ist die Form
+ * nicht mehr garantiert kanonisch (isExact() ist dann false): gleiche Formen bedeuten dann weiterhin
+ * Isomorphie, isomorphe Netze können aber verschiedene Formen erhalten.
+ */
+public final class CanonicalForm {
+
+	//**** FIELDS ****
+	/**
+	 * Standardgrenze für die Anzahl der besuchten Blätter der Suche.
+	 */
+	public static final int DEFAULT_LEAF_LIMIT = 10_000;
+	/**
+	 * Höchstzahl der gespeicherten Automorphismen für das Abschneiden.
+	 */
+	private static final int MAX_AUTOMORPHISMS = 64;
+
+	/**
+	 * Die kanonische Bytefolge.
+	 */
+	private final byte[] bytes;
+	/**
+	 * SHA-256 der Bytefolge als Hex-String.
+	 */
+	private final String hash;
+	/**
+	 * kanonische Position -&gt; Stellenindex im IndexedNet.
+	 */
+	private final int[] placeOrder;
+	/**
+	 * kanonische Position -&gt; Transitionsindex im IndexedNet.
+	 */
+	private final int[] transitionOrder;
+	/**
+	 * flag zeigt an ob die Suche vollständig war.
+	 */
+	private final boolean exact;
+
+	//**** CONSTRUCTOR ****
+	private CanonicalForm(byte[] bytes, int[] placeOrder, int[] transitionOrder, boolean exact) {
+		this.bytes = bytes;
+		this.placeOrder = placeOrder;
+		this.transitionOrder = transitionOrder;
+		this.exact = exact;
+		try {
+			this.hash = StructuralHash.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param net
+	 * 		Das Netz.
+	 * @return
+	 * 		Die kanonische Form des Netzes.
+	 */
+	public static CanonicalForm of(PetriNet net) {
+		return of(new IndexedNet(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @return
+	 * 		Die kanonische Form des Netzes.
+	 */
+	public static CanonicalForm of(IndexedNet net) {
+		return of(net, DEFAULT_LEAF_LIMIT);
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param leafLimit
+	 * 		Höchstzahl der besuchten Blätter der Suche.
+	 * @return
+	 * 		Die kanonische Form des Netzes.
+	 */
+	public static CanonicalForm of(IndexedNet net, int leafLimit) {
+		Search s = new Search(net, leafLimit);
+		s.run();
+		int places = net.placeCount();
+		int[] placeOrder = new int[places];
+		int[] transitionOrder = new int[net.transitionCount()];
+		for (int v = 0; v < s.n; v++) {
+			int pos = s.bestLabel[v];
+			if (v < places)
+				placeOrder[pos] = v;
+			else
+				transitionOrder[pos - places] = v - places;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(s.best.length * 4);
+		for (int x : s.best)
+			buf.putInt(x);
+		return new CanonicalForm(buf.array(), placeOrder, transitionOrder, !s.truncated);
+	}
+
+	//**** SEARCH ****
+	/**
+	 * Individualisierung und Verfeinerung über dem Knotengraphen: Knoten 0..P-1 sind Stellen,
+	 * P..P+T-1 Transitionen. Farben sind Ränge 0..k-1 einer geordneten Partition.
+	 */
+	private static class Search {
+		private final IndexedNet net;
+		private final int n;
+		private final int places;
+		private final int[][] out;
+		private final int[][] in;
+		private final int leafLimit;
+		private int leaves = 0;
+		private boolean truncated = false;
+		/** Bestes Zertifikat und zugehörige Nummerierung Knoten -&gt; Position. */
+		private int[] best;
+		private int[] bestLabel;
+		private int[] bestPath;
+		/**
+		 * Rücksprungtiefe nach einem Automorphismus: der Teilbaum unterhalb des gemeinsamen Präfixes
+		 * mit dem besten Pfad ist ein Bild eines bereits vollständig durchsuchten Teilbaums.
+		 */
+		private int jump = Integer.MAX_VALUE;
+		/** Gefundene Automorphismen als Permutationen der Knoten. */
+		private final List<int[]> automorphisms = new ArrayList<int[]>();
+
+		Search(IndexedNet net, int leafLimit) {
+			this.net = net;
+			this.places = net.placeCount();
+			this.n = places + net.transitionCount();
+			this.leafLimit = leafLimit;
+			this.out = new int[n][];
+			this.in = new int[n][];
+			for (int p = 0; p < places; p++) {
+				out[p] = shift(net.consumers(p), places);
+				in[p] = shift(net.producers(p), places);
+			}
+			for (int t = 0; t < net.transitionCount(); t++) {
+				out[places + t] = net.post(t);
+				in[places + t] = net.pre(t);
+			}
+		}
+		private static int[] shift(int[] a, int by) {
+			int[] r = new int[a.length];
+			for (int i = 0; i < a.length; i++)
+				r[i] = a[i] + by;
+			return r;
+		}
+
+		void run() {
+			long[] m = net.initialMarking();
+			int[] colour = new int[n];
+			for (int v = 0; v < n; v++)
+				colour[v] = v < places ? (IndexedNet.isMarked(m, 0, v) ? 1 : 0) : 2;
+			int[] start = rank(colour, null);
+			refine(start);
+			search(start, new int[0]);
+		}
+
+		/**
+		 * Verfeinert die Farben bis zur Stabilität (äquitable Partition).
+		 */
+		private void refine(int[] colour) {
+			int cells = count(colour);
+			while (cells < n) {
+				final int[][] sig = new int[n][];
+				for (int v = 0; v < n; v++) {
+					int[] s = new int[2 + out[v].length + in[v].length];
+					s[0] = colour[v];
+					s[1] = out[v].length;
+					for (int i = 0; i < out[v].length; i++)
+						s[2 + i] = colour[out[v][i]];
+					for (int i = 0; i < in[v].length; i++)
+						s[2 + out[v].length + i] = colour[in[v][i]];
+					Arrays.sort(s, 2, 2 + out[v].length);
+					Arrays.sort(s, 2 + out[v].length, s.length);
+					sig[v] = s;
+				}
+				int[] next = rank(null, sig);
+				int c = count(next);
+				System.arraycopy(next, 0, colour, 0, n);
+				if (c == cells)
+					break;
+				cells = c;
+			}
+		}
+
+		/**
+		 * Ordnet die Knoten nach Farbe bzw. Signatur und vergibt dichte Ränge.
+		 */
+		private int[] rank(int[] colour, int[][] sig) {
+			Integer[] order = new Integer[n];
+			for (int v = 0; v < n; v++)
+				order[v] = v;
+			Comparator<Integer> cmp = sig != null
+					? (a, b) -> compare(sig[a], sig[b])
+					: (a, b) -> Integer.compare(colour[a], colour[b]);
+			Arrays.sort(order, cmp);
+			int[] r = new int[n];
+			int k = 0;
+			for (int i = 0; i < n; i++) {
+				if (i > 0 && cmp.compare(order[i - 1], order[i]) != 0)
+					k++;
+				r[order[i]] = k;
+			}
+			return r;
+		}
+		private int count(int[] colour) {
+			int max = -1;
+			for (int c : colour)
+				max = Math.max(max, c);
+			return max + 1;
+		}
+
+		/**
+		 * Tiefensuche über die Individualisierungen. prefix sind die bisher individualisierten Knoten.
+		 */
+		private void search(int[] colour, int[] prefix) {
+			if (truncated)
+				return;
+			int cells = count(colour);
+			if (cells == n) {
+				leaf(colour, prefix);
+				return;
+			}
+			// kleinste Zelle mit mehr als einem Knoten, bei Gleichstand die mit der kleinsten Farbe
+			int[] size = new int[cells];
+			for (int c : colour)
+				size[c]++;
+			int target = -1;
+			for (int c = 0; c < cells; c++)
+				if (size[c] > 1 && (target < 0 || size[c] < size[target]))
+					target = c;
+			int[] parent = new int[n];
+			Arrays.fill(parent, -1);
+			List<Integer> done = new ArrayList<Integer>();
+			for (int v = 0; v < n; v++) {
+				if (colour[v] != target)
+					continue;
+				int orbit = orbitOf(v, prefix, parent);
+				boolean skip = false;
+				for (int w : done)
+					if (orbitOf(w, prefix, parent) == orbit)
+						skip = true;
+				if (skip)
+					continue;
+				done.add(v);
+				int[] child = new int[n];
+				for (int u = 0; u < n; u++)
+					child[u] = colour[u] > target || (colour[u] == target && u != v) ? colour[u] + 1 : colour[u];
+				refine(child);
+				int[] next = Arrays.copyOf(prefix, prefix.length + 1);
+				next[prefix.length] = v;
+				search(child, next);
+				if (truncated || jump < prefix.length)
+					return;
+				jump = Integer.MAX_VALUE;
+				parent[0] = -1;
+			}
+		}
+
+		/**
+		 * Bahn von v unter den gespeicherten Automorphismen, die den Präfix punktweise festhalten
+		 * (Union-Find, die Vereinigungen werden bei Bedarf nachgeholt).
+		 */
+		private int orbitOf(int v, int[] prefix, int[] parent) {
+			if (parent[0] == -1) {
+				for (int u = 0; u < n; u++)
+					parent[u] = u;
+				for (int[] g : automorphisms) {
+					boolean fixes = true;
+					for (int x : prefix)
+						fixes &= g[x] == x;
+					if (fixes)
+						for (int u = 0; u < n; u++)
+							union(parent, u, g[u]);
+				}
+			}
+			return find(parent, v);
+		}
+		private static int find(int[] parent, int v) {
+			while (parent[v] != v) {
+				parent[v] = parent[parent[v]];
+				v = parent[v];
+			}
+			return v;
+		}
+		private static void union(int[] parent, int a, int b) {
+			a = find(parent, a);
+			b = find(parent, b);
+			if (a != b)
+				parent[Math.max(a, b)] = Math.min(a, b);
+		}
+
+		/**
+		 * Diskrete Partition erreicht: Zertifikat bilden und mit dem bisher besten vergleichen.
+		 */
+		private void leaf(int[] label, int[] path) {
+			int[] cert = certificate(label);
+			if (best == null || compare(cert, best) < 0) {
+				best = cert;
+				bestLabel = label;
+				bestPath = path;
+			}
+			else if (compare(cert, best) == 0) {
+				int d = 0;
+				while (d < path.length && d < bestPath.length && path[d] == bestPath[d])
+					d++;
+				jump = d;
+				if (automorphisms.size() < MAX_AUTOMORPHISMS) {
+					// label^-1 . bestLabel ist ein Automorphismus
+					int[] inverse = new int[n];
+					for (int v = 0; v < n; v++)
+						inverse[label[v]] = v;
+					int[] g = new int[n];
+					for (int v = 0; v < n; v++)
+						g[v] = inverse[bestLabel[v]];
+					automorphisms.add(g);
+				}
+			}
+			if (++leaves >= leafLimit)
+				truncated = true;
+		}
+
+		/**
+		 * Zertifikat: Anzahlen, Markierung in kanonischer Reihenfolge und für jede Transition
+		 * in kanonischer Reihenfolge die sortierten Vor- und Nachbereiche.
+		 */
+		private int[] certificate(int[] label) {
+			int transitions = n - places;
+			int[] byPos = new int[n];
+			for (int v = 0; v < n; v++)
+				byPos[label[v]] = v;
+			long[] m = net.initialMarking();
+			int len = 2 + places + 2 * transitions;
+			for (int t = 0; t < transitions; t++)
+				len += net.pre(t).length + net.post(t).length;
+			int[] c = new int[len];
+			int k = 0;
+			c[k++] = places;
+			c[k++] = transitions;
+			for (int pos = 0; pos < places; pos++)
+				c[k++] = IndexedNet.isMarked(m, 0, byPos[pos]) ? 1 : 0;
+			for (int pos = places; pos < n; pos++) {
+				int t = byPos[pos] - places;
+				k = appendSorted(c, k, net.pre(t), label);
+				k = appendSorted(c, k, net.post(t), label);
+			}
+			return c;
+		}
+		private static int appendSorted(int[] c, int k, int[] set, int[] label) {
+			c[k++] = set.length;
+			int from = k;
+			for (int p : set)
+				c[k++] = label[p];
+			Arrays.sort(c, from, k);
+			return k;
+		}
+		private static int compare(int[] a, int[] b) {
+			int len = Math.min(a.length, b.length);
+			for (int i = 0; i < len; i++)
+				if (a[i] != b[i])
+					return Integer.compare(a[i], b[i]);
+			return Integer.compare(a.length, b.length);
+		}
+	}
+
+	//**** METHODS ****
+	/**
+	 * @param other
+	 * 		Eine weitere kanonische Form.
+	 * @return
+	 * 		<b>true</b>: wenn beide Netze isomorph sind
+	 */
+	public boolean isIsomorphic(CanonicalForm other) {
+		return Arrays.equals(bytes, other.bytes);
+	}
+	/**
+	 * Lädt alle Dateien (parallel) und gruppiert sie nach dem Hash ihrer kanonischen Form.
+	 * Dateien, die nicht gelesen werden können, werden ausgegeben und übersprungen.
+	 * @param files
+	 * 		PNML-Dateien der Modellbibliothek.
+	 * @return
+	 * 		Hash -&gt; Dateien, nur Gruppen mit mindestens zwei Dateien, in der Reihenfolge der Eingabe.
+	 */
+	public static Map<String, List<File>> findDuplicates(List<File> files) {
+		Map<File, String> hashes = new ConcurrentHashMap<File, String>();
+		files.parallelStream().forEach(f -> {
+			PetriNet net = new PetriNet();
+			try {
+				net.loadNet(f);
+				hashes.put(f, of(net).getHash());
+			} catch (Exception e) {
+				System.out.println("could not read " + f + ": " + e.getMessage());
+			}
+		});
+		Map<String, List<File>> groups = new LinkedHashMap<String, List<File>>();
+		for (File f : files) {
+			String h = hashes.get(f);
+			if (h != null)
+				groups.computeIfAbsent(h, k -> new ArrayList<File>()).add(f);
+		}
+		groups.values().removeIf(l -> l.size() < 2);
+		return groups;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Die kanonische Bytefolge (Kopie).
+	 */
+	public byte[] getBytes() {
+		return bytes.clone();
+	}
+	/**
+	 * @return
+	 * 		SHA-256 der kanonischen Bytefolge als Hex-String.
+	 */
+	public String getHash() {
+		return hash;
+	}
+	/**
+	 * @return
+	 * 		kanonische Position -&gt; Stellenindex im IndexedNet.
+	 */
+	public int[] getPlaceOrder() {
+		return placeOrder.clone();
+	}
+	/**
+	 * @return
+	 * 		kanonische Position -&gt; Transitionsindex im IndexedNet.
+	 */
+	public int[] getTransitionOrder() {
+		return transitionOrder.clone();
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Suche innerhalb der Blattgrenze vollständig war
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+	@Override
+	public String toString() {
+		return hash;
+	}
+
+}
@@ -0,0 +1,558 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.Delay;
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Kritischer Pfad und Engpässe eines Workflownetzes mit Dauern je Transition.<br>
+ * Untersucht wird die Struktur, nicht der Zustandsraum: Stellen und Transitionen bilden einen bipartiten Graphen
+ * (Knoten 0..P-1 die Stellen, P..P+T-1 die Transitionen, Kanten die Bögen).
+ * <ul>
+ * <li>Der kritische Pfad ist der längste Weg von der Anfangs- zur Endstelle über den azyklischen Teil des Netzes:
+ * eine Tiefensuche ab der Anfangsstelle entfernt die Rückwärtskanten, die Schleifen schließen, auf dem Rest wird
+ * der längste Weg in topologischer Reihenfolge bestimmt. Eine Schleife geht darin mit ihrem längsten Weg vom
+ * Eintritt zum Austritt ein, also ohne Wiederholung; der Pfad ist eine zusammenhängende Folge von Bögen.</li>
+ * <li>Schleifen werden getrennt davon über die starken Zusammenhangskomponenten (Tarjan) berichtet. Ist eine
+ * Komponente in sich ein markierter Graph, liefert Karps Algorithmus ihr maximales Zyklusmittel, d.h. die größte
+ * mittlere Dauer je Transition über alle Zyklen der Komponente. Die Kante t → p trägt die Dauer von t, die Kante
+ * p → t trägt 0; da jeder Zyklus abwechselnd Stellen und Transitionen besucht, ist das Mittel je Transition das
+ * Doppelte des Mittels je Kante. Ein kritischer Zyklus wird danach aus den Kanten gewonnen, die bei um das Mittel
+ * verminderten Gewichten auf einem längsten Weg liegen. Schleifen mit Alternativen haben kein solches Mittel und
+ * werden übergangen.</li>
+ * </ul>
+ * Bei Alternativen ist der kritische Pfad die ungünstigste Wahl, bei Schleifen eine untere Abschätzung für einen
+ * Durchlauf ohne Wiederholung; jede weitere Wiederholung kostet die Dauer des Zyklus.
+ * Aufbau, Tiefensuche, Zusammenhangskomponenten und längster Weg sind linear in der Netzgröße; Karp kostet O(n·m) je
+ * zyklischer Komponente mit n Knoten und m Kanten, bei nur O(n) Speicher, da die Tabelle in zwei Durchläufen
+ * zeilenweise neu berechnet statt ganz gespeichert wird.
+ */
+public class CriticalPath {
+
+	//**** FIELDS ****
+	/**
+	 * Die Momentaufnahme des Netzes.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Dauer je Transition.
+	 */
+	private final double[] duration;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Untersucht ein Netz mit den Erwartungswerten der Verzögerungen seiner Transitionen als Dauern; Transitionen
+	 * ohne Verzögerung dauern 0. Hat keine Transition eine Verzögerung, dauert jede 1, der kritische Pfad ist dann der
+	 * mit den meisten Schaltvorgängen.
+	 * @param net
+	 * 		Das Workflownetz.
+	 */
+	public CriticalPath(PetriNet net) {
+		this(new IndexedNet(net), durationsOf(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme eines Workflownetzes.
+	 * @param duration
+	 * 		Dauer je Transitionsnummer (endlich und nicht negativ).
+	 */
+	public CriticalPath(IndexedNet net, double[] duration) {
+		if (net.getStart() < 0 || net.getEnd() < 0)
+			throw new IllegalArgumentException("net has no unique start and end place");
+		if (duration.length != net.transitionCount())
+			throw new IllegalArgumentException("expected " + net.transitionCount() + " durations, got " + duration.length);
+		for (double d : duration)
+			if (!(d >= 0) || d == Double.POSITIVE_INFINITY)
+				throw new IllegalArgumentException("duration must be finite and non-negative: " + d);
+		this.net = net;
+		this.duration = duration.clone();
+	}
+	/**
+	 * Liest die Dauern eines Netzes wie der Konstruktor CriticalPath(PetriNet), etwa um die Analyse im
+	 * Hintergrund auf einer Momentaufnahme auszuführen.
+	 * @param net
+	 * 		Das Workflownetz.
+	 * @return
+	 * 		Dauer je Transitionsnummer der Momentaufnahme des Netzes.
+	 */
+	public static double[] durationsOf(PetriNet net) {
+		IndexedNet indexed = new IndexedNet(net);
+		double[] duration = new double[indexed.transitionCount()];
+		boolean timed = false;
+		for (int t = 0; t < duration.length; t++) {
+			Delay d = net.getTransitions().get(indexed.transitionId(t)).getDelay();
+			if (d != null) {
+				duration[t] = d.mean();
+				timed = true;
+			}
+		}
+		if (!timed)
+			Arrays.fill(duration, 1);
+		return duration;
+	}
+
+	//**** METHODS ****
+	/**
+	 * Bestimmt den kritischen Pfad, die kritischen Zyklen der Schleifen und die Engpässe.
+	 * @return
+	 * 		Das Ergebnis, ohne Pfad wenn die Endstelle von der Anfangsstelle aus nicht erreichbar ist.
+	 */
+	public Result analyse() {
+		return analyse(new Cancellation());
+	}
+	/**
+	 * Bestimmt den kritischen Pfad wie analyse(), mit Prüfpunkten für einen Abbruch in jeder Zeile von Karps
+	 * Tabelle und jeder Runde der Rekonstruktion.
+	 * @param cancellation
+	 * 		Merker für den Abbruch.
+	 * @return
+	 * 		Das Ergebnis, ohne Pfad wenn die Endstelle von der Anfangsstelle aus nicht erreichbar ist.
+	 * @throws java.util.concurrent.CancellationException
+	 * 		wenn abgebrochen wurde.
+	 */
+	public Result analyse(Cancellation cancellation) {
+		long begin = System.nanoTime();
+		int places = net.placeCount();
+		int n = places + net.transitionCount();
+
+		// bipartiter Graph in CSR-Darstellung
+		int[] start = new int[n + 1];
+		for (int p = 0; p < places; p++)
+			start[p + 1] = start[p] + net.consumers(p).length;
+		for (int t = 0; t < net.transitionCount(); t++)
+			start[places + t + 1] = start[places + t] + net.post(t).length;
+		int[] target = new int[start[n]];
+		for (int p = 0; p < places; p++) {
+			int[] consumers = net.consumers(p);
+			for (int i = 0; i < consumers.length; i++)
+				target[start[p] + i] = places + consumers[i];
+		}
+		for (int t = 0; t < net.transitionCount(); t++) {
+			int[] post = net.post(t);
+			System.arraycopy(post, 0, target, start[places + t], post.length);
+		}
+		double[] weight = new double[n];
+		System.arraycopy(duration, 0, weight, places, duration.length);
+
+		// Komponenten, ihre Knoten nach Komponente sortiert
+		int[] comp = new int[n];
+		int components = GraphAlgorithms.tarjan(n, start, target, null, comp);
+		int[] compStart = new int[components + 1];
+		for (int v = 0; v < n; v++)
+			compStart[comp[v] + 1]++;
+		for (int c = 0; c < components; c++)
+			compStart[c + 1] += compStart[c];
+		int[] members = new int[n];
+		int[] fill = Arrays.copyOf(compStart, components);
+		for (int v = 0; v < n; v++)
+			members[fill[comp[v]]++] = v;
+
+		// kritischer Zyklus jeder Komponente, die in sich ein markierter Graph ist
+		List<Cycle> cycles = new ArrayList<Cycle>();
+		int[] local = new int[n];
+		for (int c = 0; c < components; c++) {
+			int size = compStart[c + 1] - compStart[c];
+			if (size == 1 || !isMarkedGraph(c, members, compStart, comp, places))
+				continue;
+			for (int i = 0; i < size; i++)
+				local[members[compStart[c] + i]] = i;
+			cycles.add(criticalCycle(c, members, compStart, comp, local, start, target, weight, places, cancellation));
+		}
+		Collections.sort(cycles, (a, b) -> Double.compare(b.mean, a.mean));
+
+		// Tiefensuche ab der Anfangsstelle; Kanten zu Knoten auf dem Stapel schließen Schleifen, alle übrigen
+		// Kanten u → v erfüllen post[v] < post[u] und bilden einen azyklischen Graphen
+		int from = net.getStart(), to = net.getEnd();
+		int[] post = new int[n];
+		Arrays.fill(post, -1);
+		int[] order = new int[n];
+		int visited = 0;
+		int[] stack = new int[n];
+		int[] edgePos = new int[n];
+		boolean[] seen = new boolean[n];
+		int sp = 0;
+		stack[sp++] = from;
+		seen[from] = true;
+		edgePos[from] = start[from];
+		while (sp > 0) {
+			int u = stack[sp - 1];
+			if (edgePos[u] == start[u + 1]) {
+				post[u] = visited;
+				order[visited++] = u;
+				sp--;
+				continue;
+			}
+			int v = target[edgePos[u]++];
+			if (!seen[v]) {
+				seen[v] = true;
+				edgePos[v] = start[v];
+				stack[sp++] = v;
+			}
+		}
+		if (post[to] < 0)
+			return new Result(null, Double.POSITIVE_INFINITY, cycles, begin);
+
+		// längster Weg in umgekehrter Postordnung, d.h. topologisch
+		double[] dist = new double[n];
+		int[] via = new int[n];
+		Arrays.fill(dist, Double.NEGATIVE_INFINITY);
+		dist[from] = 0;
+		for (int k = visited - 1; k >= 0; k--) {
+			int u = order[k];
+			if (dist[u] == Double.NEGATIVE_INFINITY)
+				continue;
+			for (int e = start[u]; e < start[u + 1]; e++) {
+				int v = target[e];
+				if (post[v] < post[u] && dist[u] + weight[v] > dist[v]) {
+					dist[v] = dist[u] + weight[v];
+					via[v] = u;
+				}
+			}
+		}
+
+		// Pfad vom Ende rückwärts
+		ArrayList<Integer> reversed = new ArrayList<Integer>();
+		for (int v = to; v != from; v = via[v])
+			if (v >= places)
+				reversed.add(v - places);
+		int[] path = new int[reversed.size()];
+		for (int i = 0; i < path.length; i++)
+			path[i] = reversed.get(path.length - 1 - i);
+		return new Result(path, dist[to], cycles, begin);
+	}
+
+	/**
+	 * Prüft ob eine Komponente in sich ein markierter Graph ist: jede ihrer Stellen hat in der Komponente genau
+	 * einen Vorgänger und einen Nachfolger. Nur dann ist das maximale Zyklusmittel die Zykluszeit der Schleife;
+	 * mit Alternativen in der Schleife wird nicht jeder Zyklus bei jedem Durchlauf geschaltet.
+	 */
+	private boolean isMarkedGraph(int c, int[] members, int[] compStart, int[] comp, int places) {
+		for (int i = compStart[c]; i < compStart[c + 1]; i++) {
+			int p = members[i];
+			if (p >= places)
+				continue;
+			int in = 0, out = 0;
+			for (int t : net.producers(p))
+				if (comp[places + t] == c)
+					in++;
+			for (int t : net.consumers(p))
+				if (comp[places + t] == c)
+					out++;
+			if (in != 1 || out != 1)
+				return false;
+		}
+		return true;
+	}
+	/**
+	 * Karps Algorithmus auf einer zyklischen Komponente, danach Rekonstruktion eines kritischen Zyklus.<br>
+	 * D_k(v) ist das größte Gewicht eines Wegs aus genau k Kanten vom ersten Knoten der Komponente nach v; das
+	 * maximale Mittel je Kante ist max über v von min über k &lt; N von (D_N(v) - D_k(v)) / (N - k). Der erste
+	 * Durchlauf berechnet nur D_N, der zweite die Zeilen D_0 bis D_N-1 erneut und bildet dabei die Minima.
+	 */
+	private Cycle criticalCycle(int c, int[] members, int[] compStart, int[] comp, int[] local,
+			int[] start, int[] target, double[] weight, int places, Cancellation cancellation) {
+		int base = compStart[c];
+		int size = compStart[c + 1] - base;
+		double[] last = walks(c, size, size, members, base, comp, local, start, target, weight, null, null,
+				cancellation);
+		double[] ratio = new double[size];
+		Arrays.fill(ratio, Double.POSITIVE_INFINITY);
+		walks(c, size, size - 1, members, base, comp, local, start, target, weight, last, ratio, cancellation);
+		double lambda = Double.NEGATIVE_INFINITY;
+		for (int v = 0; v < size; v++)
+			if (last[v] != Double.NEGATIVE_INFINITY && ratio[v] > lambda)
+				lambda = ratio[v];
+
+		// längste Wege bei Gewichten w - lambda; es gibt keinen positiven Zyklus, also genügen size - 1 Runden
+		double[] potential = new double[size];
+		Arrays.fill(potential, Double.NEGATIVE_INFINITY);
+		potential[0] = 0;
+		double scale = 0;
+		for (int round = 1; round < size; round++) {
+			cancellation.check();
+			boolean changed = false;
+			for (int i = 0; i < size; i++) {
+				int u = members[base + i];
+				if (potential[i] == Double.NEGATIVE_INFINITY)
+					continue;
+				double value = potential[i] + weight[u] - lambda;
+				for (int e = start[u]; e < start[u + 1]; e++) {
+					int v = target[e];
+					if (comp[v] == c && value > potential[local[v]] + 1e-12 * (1 + Math.abs(value))) {
+						potential[local[v]] = value;
+						changed = true;
+					}
+				}
+			}
+			if (!changed)
+				break;
+		}
+		for (int i = 0; i < size; i++)
+			scale = Math.max(scale, Math.abs(potential[i]) + weight[members[base + i]]);
+		double eps = 1e-9 * (1 + scale + Math.abs(lambda) * size);
+
+		// ein Zyklus aus straffen Kanten hat genau das Mittel lambda; iterative Tiefensuche
+		byte[] color = new byte[size];
+		int[] stack = new int[size];
+		int[] edgePos = new int[size];
+		for (int root = 0; root < size; root++) {
+			if (color[root] != 0)
+				continue;
+			int sp = 0;
+			stack[sp++] = root;
+			color[root] = 1;
+			edgePos[root] = start[members[base + root]];
+			while (sp > 0) {
+				int i = stack[sp - 1];
+				int u = members[base + i];
+				if (edgePos[i] == start[u + 1]) {
+					color[i] = 2;
+					sp--;
+					continue;
+				}
+				int v = target[edgePos[i]++];
+				if (comp[v] != c)
+					continue;
+				int j = local[v];
+				if (potential[i] + weight[u] - lambda < potential[j] - eps)
+					continue;
+				if (color[j] == 1) {
+					int first = sp - 1;
+					while (stack[first] != j)
+						first--;
+					return cycle(stack, first, sp, members, base, places, 2 * lambda);
+				}
+				if (color[j] == 0) {
+					color[j] = 1;
+					edgePos[j] = start[v];
+					stack[sp++] = j;
+				}
+			}
+		}
+		throw new IllegalStateException("no critical cycle found in component " + c);
+	}
+	/**
+	 * Berechnet die Zeilen D_0 bis D_rows der Karp-Tabelle, wobei nur die jeweils letzte Zeile gehalten wird.
+	 * @param last
+	 * 		Die Zeile D_N für den zweiten Durchlauf, null im ersten.
+	 * @param ratio
+	 * 		Ausgabe im zweiten Durchlauf: min über k von (D_N(v) - D_k(v)) / (N - k).
+	 * @return
+	 * 		Die Zeile D_rows.
+	 */
+	private static double[] walks(int c, int size, int rows, int[] members, int base, int[] comp, int[] local,
+			int[] start, int[] target, double[] weight, double[] last, double[] ratio, Cancellation cancellation) {
+		double[] row = new double[size], next = new double[size];
+		Arrays.fill(row, Double.NEGATIVE_INFINITY);
+		row[0] = 0;
+		for (int k = 0; ; k++) {
+			if (ratio != null)
+				for (int v = 0; v < size; v++)
+					if (row[v] != Double.NEGATIVE_INFINITY && last[v] != Double.NEGATIVE_INFINITY)
+						ratio[v] = Math.min(ratio[v], (last[v] - row[v]) / (size - k));
+			if (k == rows)
+				return row;
+			cancellation.check();
+			Arrays.fill(next, Double.NEGATIVE_INFINITY);
+			for (int i = 0; i < size; i++) {
+				if (row[i] == Double.NEGATIVE_INFINITY)
+					continue;
+				int u = members[base + i];
+				double value = row[i] + weight[u];
+				for (int e = start[u]; e < start[u + 1]; e++) {
+					int v = target[e];
+					if (comp[v] == c && value > next[local[v]])
+						next[local[v]] = value;
+				}
+			}
+			double[] swap = row;
+			row = next;
+			next = swap;
+		}
+	}
+	private Cycle cycle(int[] stack, int first, int sp, int[] members, int base, int places, double mean) {
+		int[] transitions = new int[(sp - first + 1) / 2];
+		int count = 0;
+		for (int i = first; i < sp; i++) {
+			int v = members[base + stack[i]];
+			if (v >= places)
+				transitions[count++] = v - places;
+		}
+		return new Cycle(Arrays.copyOf(transitions, count), mean);
+	}
+
+	private List<String> labels(int[] transitions) {
+		ArrayList<String> labels = new ArrayList<String>();
+		for (int t : transitions)
+			labels.add(net.transitionLabel(t));
+		return labels;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		Dauer der Transition.
+	 */
+	public double getDuration(int t) {
+		return duration[t];
+	}
+	/**
+	 * @return
+	 * 		Die Momentaufnahme des Netzes.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+
+	//**** RESULT ****
+	/**
+	 * Kritischer Zyklus einer Schleife: seine Transitionen in Schaltreihenfolge und die mittlere Dauer je Transition.
+	 */
+	public class Cycle {
+		private final int[] transitions;
+		private final double mean;
+
+		Cycle(int[] transitions, double mean) {
+			this.transitions = transitions;
+			this.mean = mean;
+		}
+
+		/**
+		 * @return
+		 * 		Die Transitionsnummern des Zyklus; nicht verändern.
+		 */
+		public int[] getTransitions() {
+			return transitions;
+		}
+		/**
+		 * @return
+		 * 		Die Bezeichnungen (Name, sonst ID) der Transitionen des Zyklus.
+		 */
+		public List<String> transitionLabels() {
+			return labels(transitions);
+		}
+		/**
+		 * @return
+		 * 		Das maximale Zyklusmittel der Schleife, d.h. die mittlere Dauer je Transition des Zyklus.
+		 */
+		public double getMean() {
+			return mean;
+		}
+		/**
+		 * @return
+		 * 		Dauer eines Durchlaufs des Zyklus.
+		 */
+		public double getDuration() {
+			double sum = 0;
+			for (int t : transitions)
+				sum += duration[t];
+			return sum;
+		}
+		@Override
+		public String toString() {
+			return String.format("cycle mean %s: %s", mean, transitionLabels());
+		}
+	}
+
+	/**
+	 * Ergebnis einer Analyse: der kritische Pfad (falls die Endstelle erreichbar ist), seine Dauer, die kritischen
+	 * Zyklen der Schleifen und die nach ihrem Anteil an der Dauer geordneten Engpässe.
+	 */
+	public class Result {
+		private final int[] path;
+		private final double length;
+		private final List<Cycle> cycles;
+		private final int[] bottlenecks;
+		private final double millis;
+
+		Result(int[] path, double length, List<Cycle> cycles, long begin) {
+			this.path = path;
+			this.length = length;
+			this.cycles = Collections.unmodifiableList(cycles);
+			this.bottlenecks = path == null ? new int[0] : Arrays.stream(path).boxed()
+					.sorted((a, b) -> Double.compare(duration[b], duration[a]))
+					.mapToInt(Integer::intValue).toArray();
+			this.millis = (System.nanoTime() - begin) / 1e6;
+		}
+
+		/**
+		 * @return
+		 * 		<b>true</b>: wenn die Endstelle von der Anfangsstelle aus erreichbar ist
+		 */
+		public boolean isFound() {
+			return path != null;
+		}
+		/**
+		 * @return
+		 * 		Die Transitionsnummern des kritischen Pfads in Schaltreihenfolge, null wenn die Endstelle nicht
+		 * 		erreichbar ist; nicht verändern.
+		 */
+		public int[] getPath() {
+			return path;
+		}
+		/**
+		 * @return
+		 * 		Die Bezeichnungen (Name, sonst ID) der Transitionen des kritischen Pfads.
+		 */
+		public List<String> transitionLabels() {
+			return path == null ? new ArrayList<String>() : labels(path);
+		}
+		/**
+		 * @return
+		 * 		Die Dauer des kritischen Pfads, unendlich wenn die Endstelle nicht erreichbar ist.
+		 */
+		public double getDuration() {
+			return length;
+		}
+		/**
+		 * @return
+		 * 		Die kritischen Zyklen der Schleifen, die in sich markierte Graphen sind, absteigend nach Zyklusmittel.
+		 */
+		public List<Cycle> getCycles() {
+			return cycles;
+		}
+		/**
+		 * @return
+		 * 		Die Transitionen des kritischen Pfads absteigend nach Dauer, die größten Engpässe zuerst;
+		 * 		nicht verändern.
+		 */
+		public int[] getBottlenecks() {
+			return bottlenecks;
+		}
+		/**
+		 * @param t
+		 * 		Nummer der Transition.
+		 * @return
+		 * 		Anteil der Transition an der Dauer des kritischen Pfads, 0 wenn sie nicht darauf liegt.
+		 */
+		public double share(int t) {
+			if (path == null || length == 0)
+				return 0;
+			for (int u : path)
+				if (u == t)
+					return duration[t] / length;
+			return 0;
+		}
+		/**
+		 * @return
+		 * 		Laufzeit der Analyse in Millisekunden.
+		 */
+		public double getMillis() {
+			return millis;
+		}
+		@Override
+		public String toString() {
+			if (path == null)
+				return String.format("end place not reachable, %d cycles, %.1f ms", cycles.size(), millis);
+			return String.format("duration %s: %s, %d cycles, %.1f ms", length, transitionLabels(), cycles.size(), millis);
+		}
+	}
+
+}
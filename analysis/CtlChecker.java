@@ -0,0 +1,449 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Diese Klasse implementiert einen CTL-Modelchecker über dem Erreichbarkeitsgraphen eines Netzes.<br>
+ * Der Graph wird einmal berechnet; jede Teilformel wird bottom-up als BitSet über den Zuständen ausgewertet
+ * und zwischengespeichert, sodass weitere Formeln bereits berechnete Teilformeln wiederverwenden.
+ * EX und EU laufen in O(|S| + |E|) über die Vorgängerlisten, EG über die starken Zusammenhangskomponenten
+ * des auf die Teilformel eingeschränkten Graphen, also ebenfalls linear.<br>
+ * Zustände ohne aktivierte Transition werden wie üblich so behandelt, als hätten sie eine Schleife auf sich selbst,
+ * damit jeder Pfad unendlich fortgesetzt werden kann.
+ */
+public class CtlChecker {
+
+	//**** FIELDS ****
+	/**
+	 * Der Erreichbarkeitsgraph über dem geprüft wird.
+	 */
+	private final ReachabilityGraph graph;
+	/**
+	 * Bereits berechnete Erfüllungsmengen von Teilformeln.
+	 */
+	private final Map<CtlFormula, BitSet> sat = new HashMap<CtlFormula, BitSet>();
+	/**
+	 * Für EG-Formeln die Zustände auf nichttrivialen Komponenten, aus denen Schleifen für Zeugenpfade gebildet werden.
+	 */
+	private final Map<CtlFormula, BitSet> egCycles = new HashMap<CtlFormula, BitSet>();
+	/**
+	 * Für EG-Formeln die Komponentennummern im eingeschränkten Graphen.
+	 */
+	private final Map<CtlFormula, int[]> egComponents = new HashMap<CtlFormula, int[]>();
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt einen Checker über einem bereits berechneten Erreichbarkeitsgraphen.
+	 * @param graph
+	 * 		Der Erreichbarkeitsgraph.
+	 */
+	public CtlChecker(ReachabilityGraph graph) {
+		this.graph = graph;
+	}
+	/**
+	 * Berechnet den Erreichbarkeitsgraphen eines Netzes und erzeugt einen Checker darüber.
+	 * @param net
+	 * 		Das zu prüfende Netz.
+	 */
+	public static CtlChecker forNet(PetriNet net) {
+		return new CtlChecker(ReachabilityGraph.explore(new IndexedNet(net)));
+	}
+
+	//**** CHECKING ****
+	/**
+	 * Liest eine Formel und prüft sie in der Anfangsmarkierung.
+	 * @param formula
+	 * 		Die Formel als Text, siehe CtlFormula.parse(String).
+	 */
+	public Result check(String formula) {
+		return check(CtlFormula.parse(formula));
+	}
+	/**
+	 * Prüft eine Formel in der Anfangsmarkierung.<br>
+	 * Gilt sie nicht, enthält das Ergebnis einen Gegenbeispielpfad, gilt sie, ggf. einen Zeugenpfad.
+	 * @param f
+	 * 		Die zu prüfende Formel.
+	 * @return
+	 * 		Das Ergebnis mit Pfad.
+	 */
+	public Result check(CtlFormula f) {
+		boolean holds = satisfying(f).get(0);
+		Path path = new Path();
+		if (holds)
+			witness(f, 0, path);
+		else
+			explain(f, 0, path);
+		return new Result(f, holds, path);
+	}
+	/**
+	 * Gibt die Menge der Zustände zurück in denen eine Formel gilt.
+	 * @param f
+	 * 		Die auszuwertende Formel.
+	 * @return
+	 * 		BitSet über den Zustandsnummern; nicht verändern.
+	 * @throws IllegalArgumentException
+	 * 		wenn ein Atom keine Stelle des Netzes bezeichnet.
+	 */
+	public BitSet satisfying(CtlFormula f) {
+		BitSet known = sat.get(f);
+		if (known != null)
+			return known;
+		int n = graph.stateCount();
+		BitSet result;
+		switch (f.getKind()) {
+		case TRUE:
+			result = new BitSet(n);
+			result.set(0, n);
+			break;
+		case ATOM: {
+			int p = graph.getNet().findPlace(f.getPlace());
+			if (p < 0)
+				throw new IllegalArgumentException("unknown place '" + f.getPlace() + "'");
+			result = new BitSet(n);
+			for (int s = 0; s < n; s++) {
+				if (graph.isMarked(s, p))
+					result.set(s);
+			}
+			break;
+		}
+		case DEADLOCK:
+			result = new BitSet(n);
+			for (int s = 0; s < n; s++) {
+				if (graph.isDeadlock(s))
+					result.set(s);
+			}
+			break;
+		case NOT:
+			result = (BitSet) satisfying(f.getLeft()).clone();
+			result.flip(0, n);
+			break;
+		case AND:
+			result = (BitSet) satisfying(f.getLeft()).clone();
+			result.and(satisfying(f.getRight()));
+			break;
+		case OR:
+			result = (BitSet) satisfying(f.getLeft()).clone();
+			result.or(satisfying(f.getRight()));
+			break;
+		case EX:
+			result = checkEX(satisfying(f.getLeft()));
+			break;
+		case EU:
+			result = GraphAlgorithms.backwardClosure(n, graph.predStart(), graph.predSource(),
+					satisfying(f.getRight()), satisfying(f.getLeft()));
+			break;
+		default:
+			result = checkEG(f, satisfying(f.getLeft()));
+		}
+		sat.put(f, result);
+		return result;
+	}
+	/**
+	 * EX a: Zustände mit einem Nachfolger in a (Deadlocks sind ihr eigener Nachfolger).
+	 */
+	private BitSet checkEX(BitSet a) {
+		int n = graph.stateCount();
+		int[] predStart = graph.predStart();
+		int[] predSource = graph.predSource();
+		BitSet result = new BitSet(n);
+		for (int s = a.nextSetBit(0); s >= 0; s = a.nextSetBit(s + 1)) {
+			if (graph.isDeadlock(s))
+				result.set(s);
+			for (int e = predStart[s]; e < predStart[s + 1]; e++)
+				result.set(predSource[e]);
+		}
+		return result;
+	}
+	/**
+	 * EG a: Zustände von denen aus man innerhalb von a eine nichttriviale Komponente
+	 * (mehr als ein Zustand, Schleife oder Deadlock) des auf a eingeschränkten Graphen erreicht.
+	 */
+	private BitSet checkEG(CtlFormula f, BitSet a) {
+		int n = graph.stateCount();
+		int[] start = graph.edgeStart();
+		int[] target = graph.edgeTarget();
+		int[] comp = new int[n];
+		int count = GraphAlgorithms.tarjan(n, start, target, a, comp);
+		int[] size = new int[count];
+		boolean[] cyclic = new boolean[count];
+		for (int s = a.nextSetBit(0); s >= 0; s = a.nextSetBit(s + 1)) {
+			size[comp[s]]++;
+			if (graph.isDeadlock(s))
+				cyclic[comp[s]] = true;
+			for (int e = start[s]; e < start[s + 1]; e++) {
+				if (target[e] == s)
+					cyclic[comp[s]] = true;
+			}
+		}
+		BitSet seeds = new BitSet(n);
+		for (int s = a.nextSetBit(0); s >= 0; s = a.nextSetBit(s + 1)) {
+			if (size[comp[s]] > 1 || cyclic[comp[s]])
+				seeds.set(s);
+		}
+		egCycles.put(f, seeds);
+		egComponents.put(f, comp);
+		return GraphAlgorithms.backwardClosure(n, graph.predStart(), graph.predSource(), seeds, a);
+	}
+
+	//**** PATHS ****
+	/**
+	 * Baut einen Pfad, der zeigt warum f im Zustand s nicht gilt.
+	 */
+	private void explain(CtlFormula f, int s, Path path) {
+		switch (f.getKind()) {
+		case NOT:
+			witness(f.getLeft(), s, path);
+			return;
+		case AND:
+			if (!satisfying(f.getLeft()).get(s))
+				explain(f.getLeft(), s, path);
+			else
+				explain(f.getRight(), s, path);
+			return;
+		case OR:
+			explain(f.getLeft(), s, path);
+			return;
+		default:
+			path.start(s);
+		}
+	}
+	/**
+	 * Baut einen Pfad, der zeigt warum f im Zustand s gilt.
+	 */
+	private void witness(CtlFormula f, int s, Path path) {
+		switch (f.getKind()) {
+		case NOT:
+			explain(f.getLeft(), s, path);
+			return;
+		case AND:
+			witness(f.getLeft(), s, path);
+			if (path.length() <= 1) {
+				path.clear();
+				witness(f.getRight(), s, path);
+			}
+			return;
+		case OR:
+			if (satisfying(f.getLeft()).get(s))
+				witness(f.getLeft(), s, path);
+			else
+				witness(f.getRight(), s, path);
+			return;
+		case EX: {
+			path.start(s);
+			BitSet a = satisfying(f.getLeft());
+			if (graph.isDeadlock(s)) {
+				path.loopAt(path.length() - 1);
+				return;
+			}
+			for (int e = graph.edgeStart()[s]; e < graph.edgeStart()[s + 1]; e++) {
+				if (a.get(graph.edgeTarget()[e])) {
+					path.append(graph.edgeLabel()[e], graph.edgeTarget()[e]);
+					return;
+				}
+			}
+			return;
+		}
+		case EU:
+			path.start(s);
+			search(path, satisfying(f.getLeft()), satisfying(f.getRight()), false);
+			return;
+		case EG: {
+			path.start(s);
+			BitSet cycles = egCycles.get(f);
+			search(path, satisfying(f), cycles, false);
+			int c = path.last();
+			if (graph.isDeadlock(c)) {
+				path.loopAt(path.length() - 1);
+				return;
+			}
+			int[] comp = egComponents.get(f);
+			BitSet sameComponent = new BitSet(graph.stateCount());
+			for (int x = cycles.nextSetBit(0); x >= 0; x = cycles.nextSetBit(x + 1)) {
+				if (comp[x] == comp[c])
+					sameComponent.set(x);
+			}
+			BitSet goal = new BitSet(graph.stateCount());
+			goal.set(c);
+			int loopStart = path.length() - 1;
+			search(path, sameComponent, goal, true);
+			path.loopAt(loopStart);
+			return;
+		}
+		default:
+			path.start(s);
+		}
+	}
+	/**
+	 * Breitensuche vom letzten Zustand des Pfades aus zu einem Zielzustand, nur über erlaubte Zustände,
+	 * und hängt den kürzesten gefundenen Weg an den Pfad an.
+	 * @param nonEmpty
+	 * 		wenn <b>true</b>, muss mindestens eine Kante gegangen werden (für Schleifen).
+	 */
+	private void search(Path path, BitSet allowed, BitSet goal, boolean nonEmpty) {
+		int from = path.last();
+		if (!nonEmpty && goal.get(from))
+			return;
+		int n = graph.stateCount();
+		int[] start = graph.edgeStart();
+		int[] target = graph.edgeTarget();
+		int[] parentEdge = new int[n];
+		Arrays.fill(parentEdge, -1);
+		int[] parentState = new int[n];
+		BitSet seen = new BitSet(n);
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		queue[tail++] = from;
+		if (!nonEmpty)
+			seen.set(from);
+		int found = -1;
+		while (head < tail && found < 0) {
+			int v = queue[head++];
+			for (int e = start[v]; e < start[v + 1]; e++) {
+				int w = target[e];
+				if (seen.get(w) || !(allowed.get(w) || goal.get(w)))
+					continue;
+				seen.set(w);
+				parentEdge[w] = e;
+				parentState[w] = v;
+				if (goal.get(w)) {
+					found = w;
+					break;
+				}
+				queue[tail++] = w;
+			}
+		}
+		if (found < 0)
+			return;
+		List<Integer> edges = new ArrayList<Integer>();
+		int v = found;
+		do {
+			edges.add(parentEdge[v]);
+			v = parentState[v];
+		} while (v != from);
+		Collections.reverse(edges);
+		for (int e : edges)
+			path.append(graph.edgeLabel()[e], target[e]);
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Der Erreichbarkeitsgraph über dem geprüft wird.
+	 */
+	public ReachabilityGraph getGraph() {
+		return graph;
+	}
+
+	//**** RESULT TYPES ****
+	/**
+	 * Ein Pfad durch den Erreichbarkeitsgraphen, ggf. mit einer Schleife am Ende (Lasso).
+	 */
+	private static class Path {
+		private final List<Integer> states = new ArrayList<Integer>();
+		private final List<Integer> labels = new ArrayList<Integer>();
+		private int loopStart = -1;
+
+		void start(int s) {
+			if (states.isEmpty())
+				states.add(s);
+		}
+		void append(int label, int s) {
+			labels.add(label);
+			states.add(s);
+		}
+		void loopAt(int i) {
+			loopStart = i;
+		}
+		void clear() {
+			states.clear();
+			labels.clear();
+			loopStart = -1;
+		}
+		int last() {
+			return states.get(states.size() - 1);
+		}
+		int length() {
+			return states.size();
+		}
+	}
+
+	/**
+	 * Das Ergebnis einer Prüfung: ob die Formel in der Anfangsmarkierung gilt und ein Gegenbeispiel-
+	 * bzw. Zeugenpfad als Folge von Markierungen und schaltenden Transitionen.
+	 */
+	public class Result {
+		private final CtlFormula formula;
+		private final boolean holds;
+		private final Path path;
+
+		private Result(CtlFormula formula, boolean holds, Path path) {
+			this.formula = formula;
+			this.holds = holds;
+			this.path = path;
+		}
+		/**
+		 * @return
+		 * 		<b>true</b>: wenn die Formel in der Anfangsmarkierung gilt
+		 */
+		public boolean holds() {
+			return holds;
+		}
+		/**
+		 * @return
+		 * 		Die geprüfte Formel.
+		 */
+		public CtlFormula getFormula() {
+			return formula;
+		}
+		/**
+		 * @return
+		 * 		Die Zustandsnummern des Pfades, beginnend mit der Anfangsmarkierung.
+		 */
+		public List<Integer> getStates() {
+			return Collections.unmodifiableList(path.states);
+		}
+		/**
+		 * @return
+		 * 		Die IDs der Transitionen die entlang des Pfades schalten.
+		 */
+		public List<String> getFiringSequence() {
+			List<String> out = new ArrayList<String>();
+			for (int t : path.labels)
+				out.add(t == ReachabilityGraph.RESET ? "reset" : graph.getNet().transitionId(t));
+			return out;
+		}
+		/**
+		 * @return
+		 * 		Index des Zustands im Pfad zu dem der letzte Zustand zurückführt, -1 wenn der Pfad keine Schleife hat.
+		 */
+		public int getLoopStart() {
+			return path.loopStart;
+		}
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(formula).append(holds ? " holds" : " does not hold");
+			sb.append(holds ? ", witness: " : ", counterexample: ");
+			for (int i = 0; i < path.states.size(); i++) {
+				if (i > 0)
+					sb.append(" -").append(getFiringSequence().get(i - 1)).append("-> ");
+				if (i == path.loopStart)
+					sb.append('*');
+				sb.append(graph.markedPlaces(path.states.get(i)));
+			}
+			if (path.loopStart >= 0)
+				sb.append(" (loops back to *)");
+			return sb.toString();
+		}
+	}
+
+}
@@ -0,0 +1,321 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Diese Klasse implementiert eine CTL-Formel über atomaren Aussagen der Form "Stelle ist markiert".<br>
+ * Intern werden nur die Grundoperatoren TRUE, Atom, DEADLOCK, NOT, AND, OR, EX, EU und EG verwendet;
+ * alle weiteren Operatoren (AX, EF, AF, AG, AU, Implikation) werden beim Erzeugen auf diese zurückgeführt.<br>
+ * Formeln können über die statischen Fabrikmethoden oder mit parse(String) erzeugt werden, z.B.
+ * <i>AG EF end</i> oder <i>AG (p1 -&gt; AF p2)</i>. Atome bezeichnen Stellen über ihre ID oder ihren Namen.
+ */
+public final class CtlFormula {
+
+	/**
+	 * Die Grundoperatoren.
+	 */
+	public enum Kind { TRUE, ATOM, DEADLOCK, NOT, AND, OR, EX, EU, EG }
+
+	//**** FIELDS ****
+	/**
+	 * Operator dieser Formel.
+	 */
+	private final Kind kind;
+	/**
+	 * ID oder Name der Stelle bei Atomen, sonst null.
+	 */
+	private final String place;
+	/**
+	 * Erster Operand, ggf. null.
+	 */
+	private final CtlFormula left;
+	/**
+	 * Zweiter Operand, ggf. null.
+	 */
+	private final CtlFormula right;
+
+	/**
+	 * Die Formel die in jedem Zustand gilt.
+	 */
+	public static final CtlFormula TRUE = new CtlFormula(Kind.TRUE, null, null, null);
+	/**
+	 * Die Formel die in jedem Zustand ohne aktivierte Transition gilt.
+	 */
+	public static final CtlFormula DEADLOCK = new CtlFormula(Kind.DEADLOCK, null, null, null);
+
+	//**** CONSTRUCTOR ****
+	private CtlFormula(Kind kind, String place, CtlFormula left, CtlFormula right) {
+		this.kind = kind;
+		this.place = place;
+		this.left = left;
+		this.right = right;
+	}
+
+	//**** FACTORIES ****
+	/**
+	 * Atom: die Stelle mit dieser ID bzw. diesem Namen ist markiert.
+	 */
+	public static CtlFormula atom(String place) {
+		return new CtlFormula(Kind.ATOM, place, null, null);
+	}
+	/**
+	 * Negation, doppelte Negationen werden gekürzt.
+	 */
+	public static CtlFormula not(CtlFormula f) {
+		if (f.kind == Kind.NOT)
+			return f.left;
+		return new CtlFormula(Kind.NOT, null, f, null);
+	}
+	/**
+	 * Konjunktion.
+	 */
+	public static CtlFormula and(CtlFormula a, CtlFormula b) {
+		return new CtlFormula(Kind.AND, null, a, b);
+	}
+	/**
+	 * Disjunktion.
+	 */
+	public static CtlFormula or(CtlFormula a, CtlFormula b) {
+		return new CtlFormula(Kind.OR, null, a, b);
+	}
+	/**
+	 * Implikation a -&gt; b = ¬a ∨ b
+	 */
+	public static CtlFormula implies(CtlFormula a, CtlFormula b) {
+		return or(not(a), b);
+	}
+	/**
+	 * EX f: es gibt einen Nachfolger in dem f gilt.
+	 */
+	public static CtlFormula ex(CtlFormula f) {
+		return new CtlFormula(Kind.EX, null, f, null);
+	}
+	/**
+	 * E[a U b]: es gibt einen Pfad auf dem a gilt bis b gilt.
+	 */
+	public static CtlFormula eu(CtlFormula a, CtlFormula b) {
+		return new CtlFormula(Kind.EU, null, a, b);
+	}
+	/**
+	 * EG f: es gibt einen Pfad auf dem f immer gilt.
+	 */
+	public static CtlFormula eg(CtlFormula f) {
+		return new CtlFormula(Kind.EG, null, f, null);
+	}
+	/**
+	 * AX f = ¬EX ¬f
+	 */
+	public static CtlFormula ax(CtlFormula f) {
+		return not(ex(not(f)));
+	}
+	/**
+	 * EF f = E[true U f]
+	 */
+	public static CtlFormula ef(CtlFormula f) {
+		return eu(TRUE, f);
+	}
+	/**
+	 * AG f = ¬EF ¬f
+	 */
+	public static CtlFormula ag(CtlFormula f) {
+		return not(ef(not(f)));
+	}
+	/**
+	 * AF f = ¬EG ¬f
+	 */
+	public static CtlFormula af(CtlFormula f) {
+		return not(eg(not(f)));
+	}
+	/**
+	 * A[a U b] = ¬E[¬b U (¬a ∧ ¬b)] ∧ ¬EG ¬b
+	 */
+	public static CtlFormula au(CtlFormula a, CtlFormula b) {
+		return and(not(eu(not(b), and(not(a), not(b)))), not(eg(not(b))));
+	}
+
+	//**** PARSER ****
+	/**
+	 * Liest eine Formel aus einem String.<br>
+	 * Grammatik (absteigende Bindungsstärke): <i>-&gt;</i> (rechtsassoziativ), <i>|</i>, <i>&amp;</i>,
+	 * dann die Präfixoperatoren <i>!</i>, <i>EX AX EF AF EG AG</i>, <i>E[f U g]</i>, <i>A[f U g]</i>,
+	 * Klammern und die Konstanten <i>true</i>, <i>false</i>, <i>deadlock</i>. Alle anderen Wörter sind Stellen.
+	 * @param in
+	 * 		Die Formel als Text.
+	 * @return
+	 * 		Die gelesene Formel.
+	 * @throws IllegalArgumentException
+	 * 		wenn die Eingabe nicht der Grammatik entspricht.
+	 */
+	public static CtlFormula parse(String in) {
+		Parser p = new Parser(in);
+		CtlFormula f = p.implication();
+		if (p.pos < p.tokens.size())
+			throw new IllegalArgumentException("unexpected '" + p.tokens.get(p.pos) + "' in CTL formula");
+		return f;
+	}
+
+	/**
+	 * Rekursiv absteigender Parser für parse(String).
+	 */
+	private static class Parser {
+		private final List<String> tokens = new ArrayList<String>();
+		private int pos = 0;
+
+		Parser(String in) {
+			int i = 0;
+			while (i < in.length()) {
+				char c = in.charAt(i);
+				if (Character.isWhitespace(c))
+					i++;
+				else if (in.startsWith("->", i)) {
+					tokens.add("->");
+					i += 2;
+				}
+				else if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+					int j = i;
+					while (j < in.length() && (Character.isLetterOrDigit(in.charAt(j))
+							|| in.charAt(j) == '_' || in.charAt(j) == '.'))
+						j++;
+					tokens.add(in.substring(i, j));
+					i = j;
+				}
+				else {
+					tokens.add(String.valueOf(c));
+					i++;
+				}
+			}
+		}
+		private String peek() {
+			return pos < tokens.size() ? tokens.get(pos) : "";
+		}
+		private void expect(String s) {
+			if (!peek().equals(s))
+				throw new IllegalArgumentException("expected '" + s + "' in CTL formula");
+			pos++;
+		}
+		CtlFormula implication() {
+			CtlFormula a = disjunction();
+			if (peek().equals("->")) {
+				pos++;
+				return implies(a, implication());
+			}
+			return a;
+		}
+		CtlFormula disjunction() {
+			CtlFormula a = conjunction();
+			while (peek().equals("|")) {
+				pos++;
+				a = or(a, conjunction());
+			}
+			return a;
+		}
+		CtlFormula conjunction() {
+			CtlFormula a = unary();
+			while (peek().equals("&")) {
+				pos++;
+				a = and(a, unary());
+			}
+			return a;
+		}
+		CtlFormula unary() {
+			String t = peek();
+			if (t.isEmpty())
+				throw new IllegalArgumentException("unexpected end of CTL formula");
+			pos++;
+			switch (t) {
+			case "!": return not(unary());
+			case "EX": return ex(unary());
+			case "AX": return ax(unary());
+			case "EF": return ef(unary());
+			case "AF": return af(unary());
+			case "EG": return eg(unary());
+			case "AG": return ag(unary());
+			case "true": return TRUE;
+			case "false": return not(TRUE);
+			case "deadlock": return DEADLOCK;
+			case "(": {
+				CtlFormula f = implication();
+				expect(")");
+				return f;
+			}
+			case "E":
+			case "A":
+				if (peek().equals("[")) {
+					pos++;
+					CtlFormula a = implication();
+					expect("U");
+					CtlFormula b = implication();
+					expect("]");
+					return t.equals("E") ? eu(a, b) : au(a, b);
+				}
+				return atom(t);
+			default:
+				if (!(Character.isLetterOrDigit(t.charAt(0)) || t.charAt(0) == '_' || t.charAt(0) == '.'))
+					throw new IllegalArgumentException("unexpected '" + t + "' in CTL formula");
+				return atom(t);
+			}
+		}
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Operator dieser Formel.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+	/**
+	 * @return
+	 * 		ID oder Name der Stelle bei Atomen, sonst null.
+	 */
+	public String getPlace() {
+		return place;
+	}
+	/**
+	 * @return
+	 * 		Erster Operand, ggf. null.
+	 */
+	public CtlFormula getLeft() {
+		return left;
+	}
+	/**
+	 * @return
+	 * 		Zweiter Operand, ggf. null.
+	 */
+	public CtlFormula getRight() {
+		return right;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof CtlFormula))
+			return false;
+		CtlFormula f = (CtlFormula) o;
+		return kind == f.kind && Objects.equals(place, f.place)
+				&& Objects.equals(left, f.left) && Objects.equals(right, f.right);
+	}
+	@Override
+	public int hashCode() {
+		return Objects.hash(kind, place, left, right);
+	}
+	@Override
+	public String toString() {
+		switch (kind) {
+		case TRUE: return "true";
+		case ATOM: return place;
+		case DEADLOCK: return "deadlock";
+		case NOT: return "!" + left;
+		case AND: return "(" + left + " & " + right + ")";
+		case OR: return "(" + left + " | " + right + ")";
+		case EX: return "EX " + left;
+		case EU: return "E[" + left + " U " + right + "]";
+		default: return "EG " + left;
+		}
+	}
+
+}
@@ -0,0 +1,559 @@
+package analysis;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import model.Delay;
+import model.IndexedNet;
+import model.PetriNet;
+import model.Transition;
+
+/**
+ * Stationäre Lösung eines Netzes mit exponentiell verzögerten Transitionen als zeitkontinuierliche Markovkette
+ * (GSPN-Semantik).<br>
+ * Grundlage ist der kurzgeschlossene Erreichbarkeitsgraph: nach der Endmarkierung beginnt der nächste Fall in der
+ * Anfangsmarkierung. Transitionen ohne Verzögerung (und die Rücksetzkante) sind sofortig; Markierungen in denen
+ * eine sofortige Transition aktiviert ist, sind verschwindend und werden eliminiert, indem ihre
+ * Wahrscheinlichkeitsmasse (gleichverteilte Wahl unter den sofortigen Transitionen) bis zu den tangiblen
+ * Markierungen weitergereicht wird. Exponentielle Verzögerungen liefern ihre Rate; andere Verteilungen werden durch
+ * eine Exponentialverteilung mit gleichem Erwartungswert angenähert (isApproximated()).<br>
+ * Der Generator der tangiblen Markierungen liegt spaltenweise in CSR-Darstellung vor (eingehende Raten je Zustand),
+ * sodass jede Iteration über die Zielzustände parallelisiert werden kann. Gelöst wird mit der Potenzmethode
+ * (Uniformisierung), Gauß-Seidel oder SOR; die beiden letzteren arbeiten blockweise parallel (innerhalb eines
+ * Blocks Gauß-Seidel, zwischen den Blöcken die Werte der vorigen Iteration). Erzeugt ein SOR-Schritt negative
+ * Einträge, wird er verworfen und mit halbiertem Überrelaxationsanteil ω-1 wiederholt (zuletzt ω = 1).
+ */
+public class CtmcSolver {
+
+	//**** FIELDS ****
+	/**
+	 * Die Lösungsverfahren.
+	 */
+	public enum Method {
+		POWER, GAUSS_SEIDEL, SOR
+	}
+
+	/**
+	 * Die Momentaufnahme des Netzes.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Der kurzgeschlossene Erreichbarkeitsgraph.
+	 */
+	private final ReachabilityGraph graph;
+	/**
+	 * Rate je Transition, 0 für sofortige Transitionen.
+	 */
+	private final double[] rate;
+	/**
+	 * flag zeigt an ob nicht exponentielle Verzögerungen angenähert wurden.
+	 */
+	private boolean approximated = false;
+	/**
+	 * Nummer im tangiblen Zustandsraum je Zustand des Graphen, -1 für verschwindende Zustände.
+	 */
+	private final int[] tangible;
+	/**
+	 * Zustand des Graphen je tangiblem Zustand.
+	 */
+	private final int[] states;
+	/**
+	 * Eingehende Raten je tangiblem Zustand in CSR-Darstellung und Austrittsrate je Zustand.
+	 */
+	private int[] inStart;
+	private int[] inSource;
+	private double[] inRate;
+	private double[] exit;
+	/**
+	 * Eliminierte verschwindende Zustände: Verteilung auf tangible Zustände und erwartete Schaltzahlen
+	 * der sofortigen Transitionen (Index transitionCount() steht für die Rücksetzkante).
+	 */
+	private final Map<Integer, Absorption> absorptions = new HashMap<Integer, Absorption>();
+
+	/**
+	 * Abbruchschranke für die relative Änderung zwischen zwei Iterationen.
+	 */
+	private double tolerance = 1e-10;
+	/**
+	 * Höchstzahl der Iterationen.
+	 */
+	private int maxIterations = 100_000;
+	/**
+	 * Relaxationsfaktor für SOR.
+	 */
+	private double omega = 1.1;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Übernimmt die Verzögerungen der Transitionen des Netzes.
+	 * @param net
+	 * 		Das zu lösende Netz.
+	 */
+	public CtmcSolver(PetriNet net) {
+		this(new IndexedNet(net), delaysOf(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param delays
+	 * 		Verzögerung je Transitionsnummer, null = sofort.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum zu groß ist, keine Markierung eine zeitbehaftete Transition aktiviert, eine
+	 * 		Verklemmung erreichbar ist oder eine Schleife aus sofortigen Transitionen nicht verlassen werden kann.
+	 */
+	public CtmcSolver(IndexedNet net, Delay[] delays) {
+		this.net = net;
+		this.rate = new double[net.transitionCount()];
+		for (int t = 0; t < rate.length; t++) {
+			Delay d = delays[t];
+			if (d instanceof Delay.Exponential)
+				rate[t] = ((Delay.Exponential) d).getRate();
+			else if (d != null && d.mean() > 0) {
+				rate[t] = 1 / d.mean();
+				approximated = true;
+			}
+		}
+		this.graph = ReachabilityGraph.explore(net, ReachabilityGraph.DEFAULT_STATE_LIMIT, true);
+		int n = graph.stateCount();
+		this.tangible = new int[n];
+		int count = 0;
+		for (int s = 0; s < n; s++)
+			tangible[s] = isVanishing(s) ? -1 : count++;
+		if (count == 0)
+			throw new IllegalStateException("no reachable marking enables a timed transition; "
+					+ "the net has no steady state in continuous time");
+		this.states = new int[count];
+		for (int s = 0; s < n; s++)
+			if (tangible[s] >= 0)
+				states[tangible[s]] = s;
+		buildGenerator();
+	}
+	private static Delay[] delaysOf(PetriNet net) {
+		IndexedNet indexed = new IndexedNet(net);
+		Delay[] delays = new Delay[indexed.transitionCount()];
+		for (int t = 0; t < delays.length; t++) {
+			Transition transition = net.getTransitions().get(indexed.transitionId(t));
+			delays[t] = transition.getDelay();
+		}
+		return delays;
+	}
+
+	//**** GENERATOR ****
+	private boolean isVanishing(int s) {
+		int[] start = graph.edgeStart(), label = graph.edgeLabel();
+		for (int e = start[s]; e < start[s + 1]; e++)
+			if (label[e] == ReachabilityGraph.RESET || rate[label[e]] == 0)
+				return true;
+		return false;
+	}
+	/**
+	 * Baut die eingehenden Raten der tangiblen Zustände auf; Übergänge in verschwindende Zustände werden auf
+	 * deren Verteilung über tangible Zustände umgelegt.
+	 */
+	private void buildGenerator() {
+		int n = states.length;
+		int[] start = graph.edgeStart(), target = graph.edgeTarget(), label = graph.edgeLabel();
+		int size = 0;
+		int[] from = new int[1024], to = new int[1024];
+		double[] value = new double[1024];
+		exit = new double[n];
+		for (int i = 0; i < n; i++) {
+			int s = states[i];
+			for (int e = start[s]; e < start[s + 1]; e++) {
+				double r = rate[label[e]];
+				int v = target[e];
+				if (tangible[v] >= 0) {
+					if (size == from.length) {
+						from = Arrays.copyOf(from, size * 2);
+						to = Arrays.copyOf(to, size * 2);
+						value = Arrays.copyOf(value, size * 2);
+					}
+					from[size] = i;
+					to[size] = tangible[v];
+					value[size++] = r;
+					continue;
+				}
+				Absorption a = absorb(v);
+				for (int k = 0; k < a.targets.length; k++) {
+					if (size == from.length) {
+						from = Arrays.copyOf(from, size * 2);
+						to = Arrays.copyOf(to, size * 2);
+						value = Arrays.copyOf(value, size * 2);
+					}
+					from[size] = i;
+					to[size] = a.targets[k];
+					value[size++] = r * a.probabilities[k];
+				}
+			}
+		}
+		// Selbstschleifen heben sich im Generator auf
+		inStart = new int[n + 1];
+		for (int k = 0; k < size; k++)
+			if (from[k] != to[k]) {
+				inStart[to[k] + 1]++;
+				exit[from[k]] += value[k];
+			}
+		for (int j = 0; j < n; j++)
+			inStart[j + 1] += inStart[j];
+		inSource = new int[inStart[n]];
+		inRate = new double[inStart[n]];
+		int[] fill = Arrays.copyOf(inStart, n);
+		for (int k = 0; k < size; k++)
+			if (from[k] != to[k]) {
+				int pos = fill[to[k]]++;
+				inSource[pos] = from[k];
+				inRate[pos] = value[k];
+			}
+		int dead = 0;
+		for (int j = 0; j < n; j++)
+			if (exit[j] == 0)
+				dead++;
+		if (dead > 0)
+			throw new IllegalStateException(dead + " reachable markings have no timed successor (deadlock); "
+					+ "the steady state would be absorbing");
+	}
+	/**
+	 * Eliminiert einen verschwindenden Zustand durch Weiterreichen seiner Masse bis in tangible Zustände.
+	 */
+	private Absorption absorb(int v) {
+		Absorption cached = absorptions.get(v);
+		if (cached != null)
+			return cached;
+		int[] start = graph.edgeStart(), target = graph.edgeTarget(), label = graph.edgeLabel();
+		Map<Integer, Double> dist = new HashMap<Integer, Double>();
+		double[] fired = new double[net.transitionCount() + 1];
+		Map<Integer, Double> pending = new HashMap<Integer, Double>();
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		pending.put(v, 1.0);
+		queue.add(v);
+		long steps = 0;
+		while (!queue.isEmpty()) {
+			int w = queue.poll();
+			double mass = pending.remove(w);
+			if (mass < 1e-15)
+				continue;
+			if (++steps > 10_000_000)
+				throw new IllegalStateException("immediate transitions loop without exit near state " + w);
+			int choices = 0;
+			for (int e = start[w]; e < start[w + 1]; e++)
+				if (label[e] == ReachabilityGraph.RESET || rate[label[e]] == 0)
+					choices++;
+			for (int e = start[w]; e < start[w + 1]; e++) {
+				if (label[e] != ReachabilityGraph.RESET && rate[label[e]] != 0)
+					continue;
+				double m = mass / choices;
+				fired[label[e] == ReachabilityGraph.RESET ? rate.length : label[e]] += m;
+				int x = target[e];
+				if (tangible[x] >= 0)
+					dist.merge(tangible[x], m, Double::sum);
+				else if (pending.merge(x, m, Double::sum) == m)
+					queue.add(x);
+			}
+		}
+		Absorption a = new Absorption();
+		a.targets = new int[dist.size()];
+		a.probabilities = new double[dist.size()];
+		int k = 0;
+		for (Map.Entry<Integer, Double> entry : dist.entrySet()) {
+			a.targets[k] = entry.getKey();
+			a.probabilities[k++] = entry.getValue();
+		}
+		a.fired = fired;
+		absorptions.put(v, a);
+		return a;
+	}
+
+	//**** SOLVING ****
+	/**
+	 * Löst die stationären Gleichungen πQ = 0, Σπ = 1.
+	 * @param method
+	 * 		Das Iterationsverfahren.
+	 * @return
+	 * 		Die stationäre Verteilung mit abgeleiteten Kenngrößen und Konvergenzdaten.
+	 */
+	public Solution solve(Method method) {
+		long begin = System.nanoTime();
+		int n = states.length;
+		double[] pi = new double[n];
+		Arrays.fill(pi, 1.0 / n);
+		double[] prev = new double[n];
+		double uniform = 0;
+		for (double e : exit)
+			uniform = Math.max(uniform, e);
+		double lambda = uniform * 1.05;
+		int blocks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), n / 1024));
+		double[] w = { method == Method.SOR ? omega : 1 };
+		int iteration = 0;
+		double delta = Double.POSITIVE_INFINITY;
+		while (iteration < maxIterations && delta > tolerance) {
+			System.arraycopy(pi, 0, prev, 0, n);
+			if (method == Method.POWER) {
+				IntStream.range(0, n).parallel().forEach(j -> {
+					double in = 0;
+					for (int k = inStart[j]; k < inStart[j + 1]; k++)
+						in += prev[inSource[k]] * inRate[k];
+					pi[j] = prev[j] * (1 - exit[j] / lambda) + in / lambda;
+				});
+			}
+			else {
+				boolean[] clamped = new boolean[blocks];
+				IntStream.range(0, blocks).parallel().forEach(b -> {
+					int lo = (int) ((long) n * b / blocks), hi = (int) ((long) n * (b + 1) / blocks);
+					for (int j = lo; j < hi; j++) {
+						double in = 0;
+						for (int k = inStart[j]; k < inStart[j + 1]; k++) {
+							int i = inSource[k];
+							in += (i >= lo && i < hi ? pi[i] : prev[i]) * inRate[k];
+						}
+						double x = (1 - w[0]) * pi[j] + w[0] * in / exit[j];
+						if (x < 0) {
+							clamped[b] = true;
+							x = 0;
+						}
+						pi[j] = x;
+					}
+				});
+				if (w[0] > 1 && contains(clamped)) {
+					// Überrelaxation schießt über: Schritt verwerfen und mit kleinerem ω wiederholen
+					System.arraycopy(prev, 0, pi, 0, n);
+					w[0] = w[0] - 1 < 0.01 ? 1 : 1 + (w[0] - 1) / 2;
+					iteration++;
+					continue;
+				}
+			}
+			double sum = IntStream.range(0, n).parallel().mapToDouble(j -> pi[j]).sum();
+			double max = 0, diff = 0;
+			for (int j = 0; j < n; j++) {
+				pi[j] /= sum;
+				max = Math.max(max, pi[j]);
+				diff = Math.max(diff, Math.abs(pi[j] - prev[j]));
+			}
+			delta = diff / max;
+			iteration++;
+		}
+		double residual = IntStream.range(0, n).parallel().mapToDouble(j -> {
+			double in = 0;
+			for (int k = inStart[j]; k < inStart[j + 1]; k++)
+				in += pi[inSource[k]] * inRate[k];
+			return Math.abs(in - pi[j] * exit[j]);
+		}).max().orElse(0);
+		return new Solution(method, pi, iteration, delta <= tolerance, delta, residual,
+				(System.nanoTime() - begin) / 1e6);
+	}
+
+	private static boolean contains(boolean[] flags) {
+		for (boolean f : flags)
+			if (f)
+				return true;
+		return false;
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Die Momentaufnahme des Netzes.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Zustände des Erreichbarkeitsgraphen.
+	 */
+	public int stateCount() {
+		return graph.stateCount();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der tangiblen Zustände (Dimension der Markovkette).
+	 */
+	public int tangibleCount() {
+		return states.length;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Einträge außerhalb der Diagonalen des Generators.
+	 */
+	public int nonZeros() {
+		return inSource.length;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn nicht exponentielle Verzögerungen durch Exponentialverteilungen angenähert wurden
+	 */
+	public boolean isApproximated() {
+		return approximated;
+	}
+	/**
+	 * @param tolerance
+	 * 		Abbruchschranke für die relative Änderung zwischen zwei Iterationen.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+	/**
+	 * @param maxIterations
+	 * 		Höchstzahl der Iterationen.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+	/**
+	 * @param omega
+	 * 		Relaxationsfaktor für SOR, üblich zwischen 1 und 2.
+	 */
+	public void setOmega(double omega) {
+		this.omega = omega;
+	}
+
+	//**** INNER CLASSES ****
+	/**
+	 * Ergebnis der Elimination eines verschwindenden Zustands.
+	 */
+	private static class Absorption {
+		int[] targets;
+		double[] probabilities;
+		double[] fired;
+	}
+
+	/**
+	 * Stationäre Verteilung mit Belegung der Stellen, Durchsatz der Transitionen und Konvergenzdaten.
+	 */
+	public class Solution {
+
+		private final Method method;
+		private final double[] pi;
+		private final int iterations;
+		private final boolean converged;
+		private final double delta;
+		private final double residual;
+		private final double millis;
+		private final double[] occupancy;
+		private final double[] throughput;
+		private final double caseThroughput;
+
+		Solution(Method method, double[] pi, int iterations, boolean converged, double delta, double residual,
+				double millis) {
+			this.method = method;
+			this.pi = pi;
+			this.iterations = iterations;
+			this.converged = converged;
+			this.delta = delta;
+			this.residual = residual;
+			this.millis = millis;
+			this.occupancy = new double[net.placeCount()];
+			this.throughput = new double[net.transitionCount() + 1];
+			int[] start = graph.edgeStart(), target = graph.edgeTarget(), label = graph.edgeLabel();
+			for (int i = 0; i < states.length; i++) {
+				int s = states[i];
+				for (int p = 0; p < occupancy.length; p++)
+					if (graph.isMarked(s, p))
+						occupancy[p] += pi[i];
+				for (int e = start[s]; e < start[s + 1]; e++) {
+					double flow = pi[i] * rate[label[e]];
+					throughput[label[e]] += flow;
+					if (tangible[target[e]] < 0) {
+						double[] fired = absorb(target[e]).fired;
+						for (int t = 0; t < fired.length; t++)
+							throughput[t] += flow * fired[t];
+					}
+				}
+			}
+			this.caseThroughput = throughput[rate.length];
+		}
+
+		/**
+		 * @param p
+		 * 		Nummer der Stelle.
+		 * @return
+		 * 		Stationäre Wahrscheinlichkeit, dass die Stelle markiert ist.
+		 */
+		public double getOccupancy(int p) {
+			return occupancy[p];
+		}
+		/**
+		 * @param t
+		 * 		Nummer der Transition.
+		 * @return
+		 * 		Mittlere Anzahl der Schaltvorgänge pro Zeiteinheit.
+		 */
+		public double getThroughput(int t) {
+			return throughput[t];
+		}
+		/**
+		 * @return
+		 * 		Abgeschlossene Fälle pro Zeiteinheit (Durchsatz der Rücksetzkante), 0 ohne Endmarkierung.
+		 */
+		public double getCaseThroughput() {
+			return caseThroughput;
+		}
+		/**
+		 * @return
+		 * 		Mittlere Durchlaufzeit eines Falls (Kehrwert des Falldurchsatzes).
+		 */
+		public double getCycleTime() {
+			return 1 / caseThroughput;
+		}
+		/**
+		 * @param i
+		 * 		Nummer des tangiblen Zustands.
+		 * @return
+		 * 		Stationäre Wahrscheinlichkeit des Zustands.
+		 */
+		public double getProbability(int i) {
+			return pi[i];
+		}
+		/**
+		 * @return
+		 * 		Das verwendete Verfahren.
+		 */
+		public Method getMethod() {
+			return method;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Iterationen.
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+		/**
+		 * @return
+		 * 		<b>true</b>: wenn die Abbruchschranke vor der Höchstzahl an Iterationen erreicht wurde
+		 */
+		public boolean isConverged() {
+			return converged;
+		}
+		/**
+		 * @return
+		 * 		Relative Änderung der letzten Iteration.
+		 */
+		public double getDelta() {
+			return delta;
+		}
+		/**
+		 * @return
+		 * 		Maximumsnorm des Residuums πQ.
+		 */
+		public double getResidual() {
+			return residual;
+		}
+		/**
+		 * @return
+		 * 		Rechenzeit in Millisekunden.
+		 */
+		public double getMillis() {
+			return millis;
+		}
+		@Override
+		public String toString() {
+			return String.format("%s: %d iterations (%s), delta %.2e, residual %.2e, %.1f ms, cycle time %.6g",
+					method, iterations, converged ? "converged" : "not converged", delta, residual, millis,
+					getCycleTime());
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+package analysis;
+
+import java.util.Arrays;
+
+import model.IndexedNet;
+
+/**
+ * Entscheidet die Korrektheit (soundness) von free-choice Workflownetzen strukturell in polynomieller Zeit, ohne
+ * den Zustandsraum aufzubauen.<br>
+ * Ein free-choice Workflownetz ist genau dann korrekt, wenn das kurzgeschlossene Netz (zusätzliche Transition von
+ * der End- zur Startstelle) wohlgeformt ist (van der Aalst). Nach dem Rangsatz (Desel/Esparza) ist ein
+ * free-choice Netz genau dann wohlgeformt, wenn es zusammenhängend ist, eine positive S- und eine positive
+ * T-Invariante hat und der Rang seiner Inzidenzmatrix um eins kleiner ist als die Anzahl seiner Cluster.<br>
+ * Die Invarianten werden als Zulässigkeitsprobleme mit dem ganzzahligen Simplexverfahren nach Edmonds (Regel von
+ * Bland) exakt entschieden, der Rang mit dem bruchfreien Gauß-Verfahren nach Bareiss. Gerechnet wird mit long;
+ * läuft eine Zwischengröße über, gilt die Korrektheit als nicht festgestellt und der Aufrufer fällt auf den
+ * Zustandsraum zurück.<br>
+ * Korrekte free-choice Workflownetze sind sicher, die Kontaktregel der Momentaufnahme ändert ihr Verhalten daher
+ * nicht.
+ */
+final class FreeChoiceSoundness {
+
+	private FreeChoiceSoundness() {
+	}
+
+	//**** METHODS ****
+	/**
+	 * Prüft ein Netz auf Korrektheit über den Rangsatz.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @return
+	 * 		<b>true</b>: wenn das Netz ein free-choice Workflownetz ist, seine Anfangsmarkierung genau die Startstelle
+	 * 		markiert und es korrekt ist<br>
+	 * 		<b>false</b>: sonst, auch wenn eine Voraussetzung fehlt oder die Rechnung überläuft
+	 */
+	static boolean isSound(IndexedNet net) {
+		int start = net.getStart();
+		int end = net.getEnd();
+		if (start < 0 || end < 0 || start == end || !isFreeChoice(net) || !onlyStartMarked(net, start))
+			return false;
+		int places = net.placeCount();
+		int reset = net.transitionCount();
+		int transitions = reset + 1;
+		// Inzidenzmatrix des kurzgeschlossenen Netzes, Spalte reset ist die Kurzschlusstransition
+		long[][] incidence = new long[places][transitions];
+		for (int t = 0; t < reset; t++) {
+			for (int p : net.pre(t))
+				incidence[p][t]--;
+			for (int p : net.post(t))
+				incidence[p][t]++;
+		}
+		incidence[end][reset] = -1;
+		incidence[start][reset] = 1;
+
+		// Zusammenhang über alle Bögen, Cluster über die Bögen von Stellen zu Transitionen
+		int[] connected = new int[places + transitions];
+		int[] cluster = new int[places + transitions];
+		for (int v = 0; v < connected.length; v++) {
+			connected[v] = v;
+			cluster[v] = v;
+		}
+		for (int t = 0; t < reset; t++) {
+			for (int p : net.pre(t)) {
+				union(connected, p, places + t);
+				union(cluster, p, places + t);
+			}
+			for (int p : net.post(t))
+				union(connected, p, places + t);
+		}
+		union(connected, end, places + reset);
+		union(cluster, end, places + reset);
+		union(connected, start, places + reset);
+		if (count(connected) != 1)
+			return false;
+		try {
+			if (rank(incidence) != count(cluster) - 1)
+				return false;
+			long[][] transposed = new long[transitions][places];
+			for (int p = 0; p < places; p++)
+				for (int t = 0; t < transitions; t++)
+					transposed[t][p] = incidence[p][t];
+			return hasPositiveKernelVector(incidence) && hasPositiveKernelVector(transposed);
+		} catch (ArithmeticException e) {
+			return false;
+		}
+	}
+	/**
+	 * Prüft ob das Netz free-choice ist: verzweigt eine Stelle auf mehrere Transitionen, haben diese nur sie im
+	 * Vorbereich. Der Rangsatz gilt in dieser Form nur für free-choice Netze, nicht für erweitert free-choice.
+	 */
+	private static boolean isFreeChoice(IndexedNet net) {
+		for (int p = 0; p < net.placeCount(); p++) {
+			int[] out = net.consumers(p);
+			if (out.length < 2)
+				continue;
+			for (int t : out)
+				if (net.pre(t).length != 1)
+					return false;
+		}
+		return true;
+	}
+	private static boolean onlyStartMarked(IndexedNet net, int start) {
+		long[] marking = net.initialMarking();
+		long[] expected = new long[marking.length];
+		expected[start >>> 6] = 1L << start;
+		return Arrays.equals(marking, expected);
+	}
+
+	//**** UNION-FIND ****
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+	private static void union(int[] parent, int a, int b) {
+		parent[find(parent, a)] = find(parent, b);
+	}
+	private static int count(int[] parent) {
+		int roots = 0;
+		for (int v = 0; v < parent.length; v++)
+			if (find(parent, v) == v)
+				roots++;
+		return roots;
+	}
+
+	//**** LINEAR ALGEBRA ****
+	/**
+	 * Rang einer ganzzahligen Matrix mit dem bruchfreien Gauß-Verfahren nach Bareiss; jede Zwischengröße ist ein
+	 * Minor der Matrix, die Divisionen gehen daher auf.
+	 * @param matrix
+	 * 		Die Matrix; wird überschrieben.
+	 * @throws ArithmeticException
+	 * 		wenn eine Zwischengröße nicht in long passt.
+	 */
+	private static int rank(long[][] matrix) {
+		int rows = matrix.length;
+		int cols = rows == 0 ? 0 : matrix[0].length;
+		long[][] a = new long[rows][];
+		for (int i = 0; i < rows; i++)
+			a[i] = matrix[i].clone();
+		int rank = 0;
+		long previous = 1;
+		for (int col = 0; col < cols && rank < rows; col++) {
+			int pivot = rank;
+			while (pivot < rows && a[pivot][col] == 0)
+				pivot++;
+			if (pivot == rows)
+				continue;
+			long[] swap = a[pivot];
+			a[pivot] = a[rank];
+			a[rank] = swap;
+			long p = a[rank][col];
+			for (int i = rank + 1; i < rows; i++) {
+				long f = a[i][col];
+				for (int j = col + 1; j < cols; j++)
+					a[i][j] = Math.subtractExact(Math.multiplyExact(a[i][j], p),
+							Math.multiplyExact(f, a[rank][j])) / previous;
+				a[i][col] = 0;
+			}
+			previous = p;
+			rank++;
+		}
+		return rank;
+	}
+	/**
+	 * Entscheidet ob A·x = 0 eine Lösung mit x &gt;= 1 in jeder Komponente hat, d.h. ob eine positive Invariante
+	 * existiert.<br>
+	 * Mit x = 1 + z ist A·z = -A·1, z &gt;= 0 zu lösen; Phase 1 des Simplexverfahrens minimiert dazu die Summe
+	 * künstlicher Variablen. Das Tableau ist ganzzahlig mit gemeinsamem Nenner d (Determinante der Basis, stets
+	 * positiv, da nur auf positiven Elementen pivotiert wird); ein Pivotschritt ersetzt jede andere Zeile durch
+	 * (Zeile·p - f·Pivotzeile) / d, die Pivotzeile bleibt unverändert.
+	 * @throws ArithmeticException
+	 * 		wenn eine Zwischengröße nicht in long passt.
+	 */
+	private static boolean hasPositiveKernelVector(long[][] a) {
+		int m = a.length;
+		int n = m == 0 ? 0 : a[0].length;
+		if (m == 0 || n == 0)
+			return true;
+		// Spalten 0..n-1: z, n..n+m-1: künstliche Variablen, n+m: rechte Seite; Zeile m: reduzierte Kosten
+		int rhs = n + m;
+		long[][] tableau = new long[m + 1][rhs + 1];
+		int[] basis = new int[m];
+		for (int i = 0; i < m; i++) {
+			long b = 0;
+			for (int j = 0; j < n; j++)
+				b = Math.subtractExact(b, a[i][j]);
+			long sign = b < 0 ? -1 : 1;
+			for (int j = 0; j < n; j++)
+				tableau[i][j] = sign * a[i][j];
+			tableau[i][n + i] = 1;
+			tableau[i][rhs] = sign * b;
+			basis[i] = n + i;
+		}
+		long[] cost = tableau[m];
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < n; j++)
+				cost[j] = Math.subtractExact(cost[j], tableau[i][j]);
+			cost[rhs] = Math.subtractExact(cost[rhs], tableau[i][rhs]);
+		}
+
+		long d = 1;
+		while (true) {
+			// Regel von Bland: kleinste Spalte mit negativen reduzierten Kosten, bei gleichem Quotienten die Zeile
+			// mit der kleinsten Basisvariable
+			int k = -1;
+			for (int j = 0; j < rhs; j++) {
+				if (cost[j] < 0) {
+					k = j;
+					break;
+				}
+			}
+			if (k < 0)
+				return cost[rhs] == 0;
+			int r = -1;
+			for (int i = 0; i < m; i++) {
+				if (tableau[i][k] <= 0)
+					continue;
+				if (r < 0) {
+					r = i;
+					continue;
+				}
+				int c = Long.compare(Math.multiplyExact(tableau[i][rhs], tableau[r][k]),
+						Math.multiplyExact(tableau[r][rhs], tableau[i][k]));
+				if (c < 0 || c == 0 && basis[i] < basis[r])
+					r = i;
+			}
+			if (r < 0)
+				return cost[rhs] == 0; // unbeschränkt kann Phase 1 nicht sein, die Summe ist nach unten durch 0 beschränkt
+			long p = tableau[r][k];
+			long[] row = tableau[r];
+			for (int i = 0; i <= m; i++) {
+				if (i == r)
+					continue;
+				long[] other = tableau[i];
+				long f = other[k];
+				for (int j = 0; j <= rhs; j++)
+					other[j] = Math.subtractExact(Math.multiplyExact(other[j], p), Math.multiplyExact(f, row[j])) / d;
+			}
+			d = p;
+			basis[r] = k;
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package analysis;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sammlung von Graphalgorithmen auf Graphen in CSR-Darstellung
+ * (Kanten von Knoten v liegen in target[start[v]..start[v+1])).
+ */
+final class GraphAlgorithms {
+
+	private GraphAlgorithms() {
+	}
+
+	/**
+	 * Berechnet die starken Zusammenhangskomponenten nach Tarjan, iterativ um auch bei
+	 * Millionen von Zuständen keinen Stack-Overflow zu riskieren.<br>
+	 * Die Komponenten werden in umgekehrt topologischer Reihenfolge nummeriert, d.h. eine Komponente
+	 * hat eine kleinere Nummer als jede Komponente von der aus sie erreichbar ist.
+	 * @param n
+	 * 		Anzahl der Knoten.
+	 * @param start
+	 * 		CSR-Startindizes (Länge n + 1).
+	 * @param target
+	 * 		CSR-Zielknoten, Einträge < 0 werden ignoriert.
+	 * @param restrict
+	 * 		Wenn nicht null, werden nur Knoten und Kanten innerhalb dieser Menge betrachtet.
+	 * @param comp
+	 * 		Ausgabe: Komponentennummer pro Knoten, -1 für Knoten außerhalb von restrict.
+	 * @return
+	 * 		Anzahl der Komponenten.
+	 */
+	static int tarjan(int n, int[] start, int[] target, BitSet restrict, int[] comp) {
+		int[] index = new int[n];
+		int[] low = new int[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		int[] edgePos = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+		Arrays.fill(comp, -1);
+		int counter = 0;
+		int sp = 0;
+		int components = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0 || (restrict != null && !restrict.get(root)))
+				continue;
+			int csp = 0;
+			callStack[csp++] = root;
+			index[root] = low[root] = counter++;
+			edgePos[root] = start[root];
+			stack[sp++] = root;
+			onStack[root] = true;
+
+			while (csp > 0) {
+				int v = callStack[csp - 1];
+				if (edgePos[v] < start[v + 1]) {
+					int w = target[edgePos[v]++];
+					if (w < 0 || (restrict != null && !restrict.get(w)))
+						continue;
+					if (index[w] < 0) {
+						index[w] = low[w] = counter++;
+						edgePos[w] = start[w];
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[csp++] = w;
+					}
+					else if (onStack[w] && index[w] < low[v])
+						low[v] = index[w];
+				}
+				else {
+					csp--;
+					if (csp > 0) {
+						int parent = callStack[csp - 1];
+						if (low[v] < low[parent])
+							low[parent] = low[v];
+					}
+					if (low[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--sp];
+							onStack[w] = false;
+							comp[w] = components;
+						} while (w != v);
+						components++;
+					}
+				}
+			}
+		}
+		return components;
+	}
+
+	/**
+	 * Markiert alle Knoten von denen aus die Startmenge über Kanten innerhalb von allowed erreichbar ist
+	 * (Rückwärtssuche über die Vorgängerliste).
+	 * @param n
+	 * 		Anzahl der Knoten.
+	 * @param predStart
+	 * 		CSR-Startindizes der Vorgängerliste.
+	 * @param predSource
+	 * 		CSR-Vorgänger, Einträge < 0 werden ignoriert.
+	 * @param seeds
+	 * 		Startmenge, ist im Ergebnis enthalten.
+	 * @param allowed
+	 * 		Knoten über die die Suche laufen darf, null für alle.
+	 * @return
+	 * 		Menge der Knoten die die Startmenge erreichen.
+	 */
+	static BitSet backwardClosure(int n, int[] predStart, int[] predSource, BitSet seeds, BitSet allowed) {
+		BitSet result = (BitSet) seeds.clone();
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		for (int s = seeds.nextSetBit(0); s >= 0; s = seeds.nextSetBit(s + 1))
+			queue[tail++] = s;
+		while (head < tail) {
+			int v = queue[head++];
+			for (int e = predStart[v]; e < predStart[v + 1]; e++) {
+				int u = predSource[e];
+				if (u < 0 || result.get(u) || (allowed != null && !allowed.get(u)))
+					continue;
+				result.set(u);
+				queue[tail++] = u;
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,419 @@
+package analysis;
+
+import java.util.Arrays;
+
+import model.IndexedNet;
+
+/**
+ * Hält den zuletzt berechneten Erreichbarkeitsgraphen eines Netzes und berechnet ihn nach kleinen Änderungen
+ * inkrementell neu.<br>
+ * Transitionen werden über ihre ID zugeordnet; eine Transition gilt als unverändert, wenn Vor- und Nachbereich
+ * (als Stellen-IDs) gleich geblieben sind. Da die Aktivierung und das Ergebnis des Schaltens nur von diesen beiden
+ * Bereichen abhängen, gelten alle Kanten des alten Graphen mit einer unveränderten Transition weiterhin. Die
+ * Breitensuche übernimmt für Markierungen, die schon im alten Graphen vorkamen, diese Kanten ungeprüft und
+ * untersucht nur die geänderten und neuen Transitionen; nur neu entstandene Markierungen werden vollständig
+ * exploriert. Kanten gelöschter oder geänderter Transitionen entfallen, nicht mehr erreichbare Markierungen werden
+ * von der Suche gar nicht erst übernommen.<br>
+ * Ändert sich die Anfangsmarkierung, wird der Graph vollständig neu berechnet; ist das Netz unverändert (gleicher
+ * Strukturhash), wird der gespeicherte Graph ohne Suche zurückgegeben.<br>
+ * Gespeichert wird der Graph ohne Kurzschluss. Der kurzgeschlossene wird bei Bedarf daraus abgeleitet
+ * (ReachabilityGraph.shortCircuit()) und bis zur nächsten Änderung aufbewahrt, sodass Analysen beider Formen auf
+ * derselben Exploration aufsetzen und sich abwechselnde Anforderungen nicht gegenseitig verdrängen.<br>
+ * Jedes PetriNet hält einen solchen Speicher; der AnalysisScheduler reicht ihn an die Analysen weiter.
+ */
+public class IncrementalReachability {
+
+	//**** FIELDS ****
+	/**
+	 * Obergrenze für die Anzahl der Zustände.
+	 */
+	private final int maxStates;
+	/**
+	 * Der zuletzt berechnete Graph ohne Kurzschluss, null wenn noch keiner berechnet wurde.
+	 */
+	private ReachabilityGraph graph;
+	/**
+	 * Strukturhash des Netzes, zu dem der Graph gehört.
+	 */
+	private String hash;
+	/**
+	 * Der daraus abgeleitete kurzgeschlossene Graph, null solange er nicht angefordert wurde.
+	 */
+	private ReachabilityGraph shortCircuited;
+	/**
+	 * Anzahl der aus dem alten Graphen übernommenen Zustände und Kanten bei der letzten Berechnung.
+	 */
+	private int reusedStates = 0;
+	private int reusedEdges = 0;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt einen leeren Speicher mit der Standard-Obergrenze für die Anzahl der Zustände.
+	 */
+	public IncrementalReachability() {
+		this(ReachabilityGraph.DEFAULT_STATE_LIMIT);
+	}
+	/**
+	 * @param maxStates
+	 * 		Obergrenze für die Anzahl der Zustände.
+	 */
+	public IncrementalReachability(int maxStates) {
+		if (maxStates < 1)
+			throw new IllegalArgumentException("maxStates must be positive");
+		this.maxStates = maxStates;
+	}
+
+	//**** METHODS ****
+	/**
+	 * Liefert den Erreichbarkeitsgraphen eines Netzes und merkt ihn sich für die nächste Berechnung.
+	 * @param net
+	 * 		Aktuelle Momentaufnahme des Netzes.
+	 * @param shortCircuit
+	 * 		wenn <b>true</b>, erhält die Endmarkierung eine RESET-Kante zur Anfangsmarkierung.
+	 * @return
+	 * 		Der Graph, inkrementell aus dem vorigen berechnet wenn möglich.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Obergrenze überschreitet.
+	 */
+	public ReachabilityGraph update(IndexedNet net, boolean shortCircuit) {
+		return update(net, shortCircuit, new Cancellation());
+	}
+	/**
+	 * Liefert den Erreichbarkeitsgraphen wie update(IndexedNet, boolean) und prüft alle 4096 Zustände auf einen
+	 * Abbruch. Wird abgebrochen oder die Obergrenze überschritten, bleibt der vorige Graph gespeichert.
+	 * @param cancellation
+	 * 		Merker für den Abbruch.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Obergrenze überschreitet.
+	 * @throws java.util.concurrent.CancellationException
+	 * 		wenn abgebrochen wurde.
+	 */
+	public synchronized ReachabilityGraph update(IndexedNet net, boolean shortCircuit, Cancellation cancellation) {
+		String h = StructuralHash.of(net);
+		if (graph != null && h.equals(hash)) {
+			reusedStates = graph.stateCount();
+			reusedEdges = graph.edgeCount();
+		} else {
+			ReachabilityGraph plain;
+			if (graph == null || !sameInitialMarking(graph.getNet(), net)) {
+				plain = ReachabilityGraph.explore(net, maxStates, false, cancellation);
+				reusedStates = 0;
+				reusedEdges = 0;
+			} else {
+				plain = reexplore(graph, net, cancellation);
+			}
+			graph = plain;
+			hash = h;
+			shortCircuited = null;
+		}
+		if (!shortCircuit)
+			return graph;
+		if (shortCircuited == null)
+			shortCircuited = graph.shortCircuit();
+		return shortCircuited;
+	}
+	/**
+	 * Vergisst den gespeicherten Graphen, die nächste Berechnung erfolgt vollständig.
+	 */
+	public synchronized void invalidate() {
+		graph = null;
+		hash = null;
+		shortCircuited = null;
+	}
+	/**
+	 * Breitensuche über das geänderte Netz, die für bekannte Markierungen die Kanten unveränderter Transitionen
+	 * aus dem alten Graphen übernimmt.<br>
+	 * Ist die Nummerierung der Stellen unverändert, wird die alte Zustandstabelle kopiert und alte Markierungen
+	 * behalten ihre Nummern, sodass übernommene Kanten ohne Hashzugriff auskommen; nur wenn danach alte Markierungen
+	 * unerreichbar geblieben sind, wird die Tabelle auf die erreichbaren verdichtet. Sonst werden alte Markierungen
+	 * beim ersten Erreichen umgerechnet und neu eingetragen.
+	 */
+	private ReachabilityGraph reexplore(ReachabilityGraph previous, IndexedNet net, Cancellation cancellation) {
+		IndexedNet old = previous.getNet();
+		Layout layout = new Layout(old, net);
+		int[] transitionMap = new int[old.transitionCount()];
+		boolean[] kept = new boolean[net.transitionCount()];
+		for (int t = 0; t < transitionMap.length; t++) {
+			int nt = net.transitionIndex(old.transitionId(t));
+			transitionMap[t] = nt >= 0 && layout.sameArcs(old, t, net, nt) ? nt : -1;
+			if (transitionMap[t] >= 0)
+				kept[transitionMap[t]] = true;
+		}
+		int changedCount = 0;
+		int[] changed = new int[net.transitionCount()];
+		for (int t = 0; t < kept.length; t++)
+			if (!kept[t])
+				changed[changedCount++] = t;
+
+		int oldCount = previous.stateCount();
+		int[] oldStart = previous.edgeStart();
+		int[] oldTarget = previous.edgeTarget();
+		int[] oldLabel = previous.edgeLabel();
+		boolean identity = layout.identity;
+		// bei gleicher Nummerierung gilt: alte Nummer = neue Nummer für alle Nummern < oldCount
+		int[] oldToNew = identity ? null : new int[oldCount];
+		int[] newToOld = identity ? null : new int[Math.max(1024, oldCount)];
+		MarkingTable states;
+		int words = net.words();
+		if (identity) {
+			states = previous.copyStates();
+		} else {
+			Arrays.fill(oldToNew, -1);
+			states = new MarkingTable(words, Math.max(1024, oldCount));
+			states.add(net.initialMarking(), 0);
+			oldToNew[0] = 0;
+			newToOld[0] = 0;
+		}
+
+		// Kanten je Zustand in Bearbeitungsreihenfolge, am Ende nach Zustandsnummern umsortiert
+		int capacity = Math.max(1024, states.size());
+		int[] segment = new int[capacity];
+		int[] segmentLength = new int[capacity];
+		boolean[] visited = new boolean[capacity];
+		int[] queue = new int[capacity];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		visited[0] = true;
+
+		int[] edgeTarget = new int[Math.max(4096, oldTarget.length)];
+		int[] edgeLabel = new int[edgeTarget.length];
+		int edges = 0;
+		long[] current = new long[words];
+		long[] next = new long[words];
+		long[] oldMarking = new long[old.words()];
+		int reusedS = 0;
+		int reusedE = 0;
+
+		while (head < tail) {
+			if ((head & 0xFFF) == 0)
+				cancellation.check();
+			int s = queue[head++];
+			int o = identity ? (s < oldCount ? s : -1) : newToOld[s];
+			if (o < 0 || changedCount > 0)
+				states.copy(s, current, 0);
+			int extra = o >= 0 ? oldStart[o + 1] - oldStart[o] + changedCount : net.transitionCount();
+			if (edges + extra > edgeTarget.length) {
+				edgeTarget = Arrays.copyOf(edgeTarget, Math.max(edgeTarget.length * 2, edges + extra));
+				edgeLabel = Arrays.copyOf(edgeLabel, edgeTarget.length);
+			}
+			segment[s] = edges;
+			if (o >= 0) {
+				reusedS++;
+				for (int e = oldStart[o]; e < oldStart[o + 1]; e++) {
+					int t = transitionMap[oldLabel[e]];
+					if (t < 0)
+						continue;
+					int ot = oldTarget[e];
+					int id = identity ? ot : oldToNew[ot];
+					if (id < 0) {
+						previous.copyMarking(ot, oldMarking, 0);
+						layout.toNew(oldMarking, next);
+						id = states.add(next, 0);
+						if (id < 0) {
+							id = -id - 1;
+						} else {
+							if (states.size() > maxStates)
+								throw new IllegalStateException("state space exceeds " + maxStates + " markings");
+							newToOld = grow(newToOld, id);
+							newToOld[id] = ot;
+						}
+						oldToNew[ot] = id;
+					}
+					edgeTarget[edges] = id;
+					edgeLabel[edges++] = t;
+					reusedE++;
+				}
+			}
+			int count = o >= 0 ? changedCount : net.transitionCount();
+			for (int i = 0; i < count; i++) {
+				int t = o >= 0 ? changed[i] : i;
+				if (!net.isEnabled(current, 0, t))
+					continue;
+				net.fire(current, 0, next, 0, t);
+				int id = states.add(next, 0);
+				if (id < 0) {
+					id = -id - 1;
+				} else {
+					if (states.size() > maxStates)
+						throw new IllegalStateException("state space exceeds " + maxStates + " markings");
+					if (!identity) {
+						int known = layout.toOld(next, oldMarking) ? previous.findState(oldMarking) : -1;
+						newToOld = grow(newToOld, id);
+						newToOld[id] = known;
+						if (known >= 0)
+							oldToNew[known] = id;
+					}
+				}
+				edgeTarget[edges] = id;
+				edgeLabel[edges++] = t;
+			}
+			segmentLength[s] = edges - segment[s];
+			// Ziele einreihen
+			if (states.size() > visited.length) {
+				int cap = Math.max(states.size(), visited.length * 2);
+				visited = Arrays.copyOf(visited, cap);
+				segment = Arrays.copyOf(segment, cap);
+				segmentLength = Arrays.copyOf(segmentLength, cap);
+				queue = Arrays.copyOf(queue, cap);
+			}
+			for (int e = segment[s]; e < edges; e++) {
+				int target = edgeTarget[e];
+				if (!visited[target]) {
+					visited[target] = true;
+					queue[tail++] = target;
+				}
+			}
+		}
+		reusedStates = reusedS;
+		reusedEdges = reusedE;
+
+		// unerreichbar gebliebene alte Markierungen entfernen
+		int n = states.size();
+		int[] renumber = null;
+		if (tail < n) {
+			renumber = new int[n];
+			MarkingTable compact = new MarkingTable(words, tail);
+			for (int s = 0; s < n; s++) {
+				if (visited[s]) {
+					states.copy(s, current, 0);
+					renumber[s] = compact.add(current, 0);
+				}
+			}
+			states = compact;
+		}
+		int[] edgeStart = new int[states.size() + 1];
+		int[] target = new int[edges];
+		int[] label = new int[edges];
+		int pos = 0;
+		for (int s = 0; s < n; s++) {
+			if (!visited[s])
+				continue;
+			int id = renumber == null ? s : renumber[s];
+			edgeStart[id] = pos;
+			for (int e = segment[s]; e < segment[s] + segmentLength[s]; e++) {
+				target[pos] = renumber == null ? edgeTarget[e] : renumber[edgeTarget[e]];
+				label[pos++] = edgeLabel[e];
+			}
+		}
+		edgeStart[states.size()] = pos;
+		return new ReachabilityGraph(net, states, edgeStart, target, label, false);
+	}
+	private static int[] grow(int[] array, int index) {
+		return index < array.length ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+	}
+	private static boolean sameInitialMarking(IndexedNet old, IndexedNet net) {
+		Layout layout = new Layout(old, net);
+		long[] mapped = new long[net.words()];
+		return layout.toNew(old.initialMarking(), mapped) && Arrays.equals(mapped, net.initialMarking());
+	}
+
+	/**
+	 * Zuordnung der Stellen des alten Netzes zu denen des neuen über ihre IDs und Umrechnung von Markierungen
+	 * zwischen beiden Nummerierungen.
+	 */
+	private static final class Layout {
+		/**
+		 * Neue Nummer je alter Stelle (-1 wenn gelöscht) und umgekehrt.
+		 */
+		private final int[] toNew;
+		private final int[] toOld;
+		/**
+		 * flag zeigt an ob beide Nummerierungen übereinstimmen, dann genügt eine Kopie.
+		 */
+		final boolean identity;
+
+		Layout(IndexedNet old, IndexedNet net) {
+			toNew = new int[old.placeCount()];
+			toOld = new int[net.placeCount()];
+			Arrays.fill(toOld, -1);
+			boolean same = old.placeCount() == net.placeCount();
+			for (int p = 0; p < toNew.length; p++) {
+				toNew[p] = net.placeIndex(old.placeId(p));
+				if (toNew[p] >= 0)
+					toOld[toNew[p]] = p;
+				same &= toNew[p] == p;
+			}
+			identity = same;
+		}
+		/**
+		 * Rechnet eine alte Markierung in die neue Nummerierung um.
+		 * @return
+		 * 		<b>false</b>: wenn eine gelöschte Stelle markiert ist
+		 */
+		boolean toNew(long[] src, long[] dst) {
+			return map(src, dst, toNew);
+		}
+		/**
+		 * Rechnet eine neue Markierung in die alte Nummerierung um.
+		 * @return
+		 * 		<b>false</b>: wenn eine neue Stelle markiert ist
+		 */
+		boolean toOld(long[] src, long[] dst) {
+			return map(src, dst, toOld);
+		}
+		private boolean map(long[] src, long[] dst, int[] to) {
+			if (identity) {
+				System.arraycopy(src, 0, dst, 0, dst.length);
+				return true;
+			}
+			Arrays.fill(dst, 0);
+			boolean complete = true;
+			for (int w = 0; w < src.length; w++) {
+				long bits = src[w];
+				while (bits != 0) {
+					int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					if (to[p] < 0)
+						complete = false;
+					else
+						dst[to[p] >>> 6] |= 1L << to[p];
+				}
+			}
+			return complete;
+		}
+		/**
+		 * @return
+		 * 		<b>true</b>: wenn die Transition t des alten Netzes dieselben Vor- und Nachstellen hat wie die
+		 * 		Transition nt des neuen
+		 */
+		boolean sameArcs(IndexedNet old, int t, IndexedNet net, int nt) {
+			return sameSet(old.pre(t), net.pre(nt)) && sameSet(old.post(t), net.post(nt));
+		}
+		private boolean sameSet(int[] oldPlaces, int[] newPlaces) {
+			if (oldPlaces.length != newPlaces.length)
+				return false;
+			int[] mapped = new int[oldPlaces.length];
+			for (int i = 0; i < mapped.length; i++)
+				mapped[i] = toNew[oldPlaces[i]];
+			int[] sorted = newPlaces.clone();
+			Arrays.sort(mapped);
+			Arrays.sort(sorted);
+			return Arrays.equals(mapped, sorted);
+		}
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Der zuletzt berechnete Graph ohne Kurzschluss, null wenn noch keiner berechnet wurde.
+	 */
+	public synchronized ReachabilityGraph getGraph() {
+		return graph;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der bei der letzten Berechnung aus dem alten Graphen übernommenen Zustände (0 wenn vollständig).
+	 */
+	public synchronized int getReusedStates() {
+		return reusedStates;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der bei der letzten Berechnung ungeprüft übernommenen Kanten (0 wenn vollständig).
+	 */
+	public synchronized int getReusedEdges() {
+		return reusedEdges;
+	}
+
+}
@@ -0,0 +1,230 @@
+package analysis;
+
+import java.util.Arrays;
+
+import model.IndexedNet;
+
+/**
+ * Ein Erreichbarkeitsgraph, der nur auf Anforderung Zustand für Zustand aufgebaut wird.<br>
+ * Zustand 0 ist die Anfangsmarkierung. Ein Zustand wird expandiert, indem alle aktivierten Transitionen geschaltet
+ * werden; neu entdeckte Markierungen erhalten die Tiefe des expandierten Zustands plus eins und werden hinten an
+ * ihre Schicht angehängt. Tiefe und Position in der Schicht ändern sich danach nicht mehr, sodass eine Ansicht sie
+ * direkt als Koordinaten verwenden und zu einem sichtbaren Ausschnitt die Zustände ohne Suche finden kann.<br>
+ * Alle Methoden sind synchronisiert: expandiert wird in einem Hintergrund-Thread, gelesen im FX-Thread.
+ */
+public class LazyStateSpace {
+
+	//**** FIELDS ****
+	/**
+	 * Das Netz dessen Zustandsraum aufgebaut wird.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Die bisher entdeckten Markierungen.
+	 */
+	private final MarkingTable states;
+	/**
+	 * Schicht (Tiefe bei der Entdeckung) und Position in der Schicht je Zustand.
+	 */
+	private int[] depth = new int[1024];
+	private int[] slot = new int[1024];
+	/**
+	 * Zielzustände und Transitionsnummern der ausgehenden Kanten je Zustand, null solange nicht expandiert.
+	 */
+	private int[][] successors = new int[1024][];
+	private int[][] labels = new int[1024][];
+	/**
+	 * Zustände je Schicht in Entdeckungsreihenfolge und die Belegung der Schichten.
+	 */
+	private int[][] layers = new int[16][];
+	private int[] layerSize = new int[16];
+	private int layerCount = 0;
+	/**
+	 * Anzahl der Kanten und der expandierten Zustände.
+	 */
+	private int edges = 0;
+	private int expanded = 0;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Erzeugt einen Zustandsraum, der nur die Anfangsmarkierung enthält.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 */
+	public LazyStateSpace(IndexedNet net) {
+		this.net = net;
+		this.states = new MarkingTable(net.words(), 1024);
+		states.add(net.initialMarking(), 0);
+		place(0, 0);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Expandiert einen Zustand, falls das noch nicht geschehen ist.
+	 * @param state
+	 * 		Nummer des Zustands.
+	 * @return
+	 * 		Anzahl der neu entdeckten Zustände, -1 wenn der Zustand schon expandiert war.
+	 */
+	public synchronized int expand(int state) {
+		if (successors[state] != null)
+			return -1;
+		int words = net.words();
+		long[] current = new long[words];
+		long[] next = new long[words];
+		states.copy(state, current, 0);
+		int[] target = new int[net.transitionCount()];
+		int[] label = new int[target.length];
+		int count = 0;
+		int before = states.size();
+		for (int t = 0; t < net.transitionCount(); t++) {
+			if (!net.isEnabled(current, 0, t))
+				continue;
+			net.fire(current, 0, next, 0, t);
+			int id = states.add(next, 0);
+			if (id < 0)
+				id = -id - 1;
+			else
+				place(id, depth[state] + 1);
+			target[count] = id;
+			label[count++] = t;
+		}
+		successors[state] = Arrays.copyOf(target, count);
+		labels[state] = Arrays.copyOf(label, count);
+		edges += count;
+		expanded++;
+		return states.size() - before;
+	}
+	/**
+	 * Hängt einen neuen Zustand an seine Schicht an.
+	 */
+	private void place(int state, int layer) {
+		if (state >= depth.length) {
+			int cap = depth.length * 2;
+			depth = Arrays.copyOf(depth, cap);
+			slot = Arrays.copyOf(slot, cap);
+			successors = Arrays.copyOf(successors, cap);
+			labels = Arrays.copyOf(labels, cap);
+		}
+		if (layer == layers.length) {
+			layers = Arrays.copyOf(layers, layer * 2);
+			layerSize = Arrays.copyOf(layerSize, layer * 2);
+		}
+		if (layer == layerCount) {
+			layers[layer] = new int[16];
+			layerCount++;
+		}
+		if (layerSize[layer] == layers[layer].length)
+			layers[layer] = Arrays.copyOf(layers[layer], layerSize[layer] * 2);
+		depth[state] = layer;
+		slot[state] = layerSize[layer];
+		layers[layer][layerSize[layer]++] = state;
+	}
+
+	//**** QUERIES ****
+	/**
+	 * Gibt an ob ein Zustand schon expandiert wurde.
+	 */
+	public synchronized boolean isExpanded(int state) {
+		return successors[state] != null;
+	}
+	/**
+	 * Gibt an ob ein Zustand expandiert wurde und keine ausgehenden Kanten hat.
+	 */
+	public synchronized boolean isDeadlock(int state) {
+		return successors[state] != null && successors[state].length == 0;
+	}
+	/**
+	 * Gibt an ob ein Zustand die Endmarkierung ist.
+	 */
+	public synchronized boolean isFinal(int state) {
+		return net.isFinal(states.data(), state * states.width());
+	}
+	/**
+	 * Kopiert die Markierung eines Zustands in ein Array.
+	 */
+	public synchronized void copyMarking(int state, long[] dst, int off) {
+		states.copy(state, dst, off);
+	}
+	/**
+	 * @return
+	 * 		Zielzustände der ausgehenden Kanten, null wenn der Zustand noch nicht expandiert wurde; nicht verändern.
+	 */
+	public synchronized int[] successors(int state) {
+		return successors[state];
+	}
+	/**
+	 * @return
+	 * 		Transitionsnummern der ausgehenden Kanten, null wenn der Zustand noch nicht expandiert wurde;
+	 * 		nicht verändern.
+	 */
+	public synchronized int[] labels(int state) {
+		return labels[state];
+	}
+	/**
+	 * @return
+	 * 		Schicht in der ein Zustand liegt.
+	 */
+	public synchronized int depth(int state) {
+		return depth[state];
+	}
+	/**
+	 * @return
+	 * 		Position eines Zustands in seiner Schicht.
+	 */
+	public synchronized int slot(int state) {
+		return slot[state];
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Zustände in einer Schicht, 0 wenn es die Schicht (noch) nicht gibt.
+	 */
+	public synchronized int layerSize(int layer) {
+		return layer < layerCount ? layerSize[layer] : 0;
+	}
+	/**
+	 * @return
+	 * 		Der Zustand an einer Position einer Schicht.
+	 */
+	public synchronized int stateAt(int layer, int position) {
+		return layers[layer][position];
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Das Netz dessen Zustandsraum aufgebaut wird.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der bisher entdeckten Markierungen.
+	 */
+	public synchronized int stateCount() {
+		return states.size();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der bisher bekannten Kanten.
+	 */
+	public synchronized int edgeCount() {
+		return edges;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der expandierten Zustände.
+	 */
+	public synchronized int expandedCount() {
+		return expanded;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Schichten.
+	 */
+	public synchronized int layerCount() {
+		return layerCount;
+	}
+
+}
@@ -0,0 +1,162 @@
+package analysis;
+
+import java.util.Arrays;
+
+/**
+ * Diese Klasse implementiert eine Hashtabelle für Zustände fester Breite (z.B. Markierungen als Bitvektoren).<br>
+ * Die Zustände werden hintereinander in einem einzigen long-Array abgelegt und fortlaufend nummeriert;
+ * die Tabelle selbst ist ein int-Array mit offener Adressierung. Pro Zustand wird so kein eigenes Objekt angelegt.
+ */
+public class MarkingTable {
+
+	//**** FIELDS ****
+	/**
+	 * Anzahl der long-Wörter pro Zustand.
+	 */
+	private final int width;
+	/**
+	 * Die Zustände, Zustand i belegt die Wörter [i*width, (i+1)*width).
+	 */
+	private long[] data;
+	/**
+	 * Hashtabelle, enthält Zustandsnummer + 1 oder 0 für einen freien Platz.
+	 */
+	private int[] table;
+	/**
+	 * Anzahl der gespeicherten Zustände.
+	 */
+	private int size = 0;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt eine leere Tabelle.
+	 * @param width
+	 * 		Anzahl der long-Wörter pro Zustand.
+	 * @param expected
+	 * 		Erwartete Anzahl von Zuständen, dient nur der anfänglichen Größe.
+	 */
+	public MarkingTable(int width, int expected) {
+		this.width = width;
+		int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+		table = new int[cap];
+		data = new long[Math.max(16, expected) * width];
+	}
+
+	/**
+	 * Erzeugt eine unabhängige Kopie einer Tabelle; die Zustände behalten ihre Nummern.
+	 * @param other
+	 * 		Die zu kopierende Tabelle.
+	 */
+	MarkingTable(MarkingTable other) {
+		this.width = other.width;
+		this.table = other.table.clone();
+		this.data = other.data.clone();
+		this.size = other.size;
+	}
+
+	//**** METHODS ****
+	/**
+	 * Fügt einen Zustand ein, falls er noch nicht enthalten ist.
+	 * @param src
+	 * 		Array das den Zustand enthält.
+	 * @param off
+	 * 		Position des ersten Wortes im Array.
+	 * @return
+	 * 		die Nummer des neuen Zustands (>= 0) oder, falls er schon enthalten war, -(Nummer + 1).
+	 */
+	public int add(long[] src, int off) {
+		int mask = table.length - 1;
+		int slot = hash(src, off) & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (equalsAt(id, src, off))
+				return -id - 1;
+			slot = (slot + 1) & mask;
+		}
+		int id = size++;
+		if (size * width > data.length)
+			data = Arrays.copyOf(data, Math.max(data.length * 2, size * width));
+		System.arraycopy(src, off, data, id * width, width);
+		table[slot] = id + 1;
+		if (size * 2 > table.length)
+			rehash();
+		return id;
+	}
+	/**
+	 * Sucht einen Zustand.
+	 * @return
+	 * 		Nummer des Zustands, -1 wenn er nicht enthalten ist.
+	 */
+	public int find(long[] src, int off) {
+		int mask = table.length - 1;
+		int slot = hash(src, off) & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (equalsAt(id, src, off))
+				return id;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	/**
+	 * Kopiert einen gespeicherten Zustand in ein Array.
+	 */
+	public void copy(int id, long[] dst, int off) {
+		System.arraycopy(data, id * width, dst, off, width);
+	}
+	/**
+	 * Verdoppelt die Hashtabelle und verteilt alle Zustände neu.
+	 */
+	private void rehash() {
+		int[] next = new int[table.length * 2];
+		int mask = next.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hash(data, id * width) & mask;
+			while (next[slot] != 0)
+				slot = (slot + 1) & mask;
+			next[slot] = id + 1;
+		}
+		table = next;
+	}
+	private boolean equalsAt(int id, long[] src, int off) {
+		int base = id * width;
+		for (int w = 0; w < width; w++) {
+			if (data[base + w] != src[off + w])
+				return false;
+		}
+		return true;
+	}
+	private int hash(long[] src, int off) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int w = 0; w < width; w++) {
+			h ^= src[off + w];
+			h *= 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der gespeicherten Zustände.
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der long-Wörter pro Zustand.
+	 */
+	public int width() {
+		return width;
+	}
+	/**
+	 * Gibt das interne Datenarray heraus, Zustand i beginnt bei i * width().<br>
+	 * Das Array wird beim Einfügen ggf. ersetzt und darf nicht verändert werden.
+	 */
+	public long[] data() {
+		return data;
+	}
+
+}
@@ -0,0 +1,391 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import model.IndexedNet;
+
+/**
+ * Diese Klasse implementiert den Erreichbarkeitsgraphen eines Netzes.<br>
+ * Die Zustände (Markierungen) liegen in einer MarkingTable, die Kanten in CSR-Darstellung
+ * (Kanten von Zustand s liegen in den Arrays an den Positionen edgeStart[s]..edgeStart[s+1]-1).
+ * Zustand 0 ist immer die Anfangsmarkierung. Der Graph wird einmal berechnet und kann dann
+ * von beliebig vielen Analysen gemeinsam verwendet werden.
+ */
+public class ReachabilityGraph {
+
+	//**** FIELDS ****
+	/**
+	 * Obergrenze für die Anzahl der Zustände, wenn keine andere angegeben wird.
+	 */
+	public static final int DEFAULT_STATE_LIMIT = 2_000_000;
+	/**
+	 * Kantenbeschriftung der Rücksetzkante von der Endmarkierung zur Anfangsmarkierung
+	 * (nur im kurzgeschlossenen Graphen).
+	 */
+	public static final int RESET = -1;
+
+	/**
+	 * Das Netz dessen Zustandsraum dieser Graph beschreibt.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Die erreichbaren Markierungen.
+	 */
+	private final MarkingTable states;
+	/**
+	 * CSR-Startindizes der ausgehenden Kanten (Länge: Zustandsanzahl + 1).
+	 */
+	private final int[] edgeStart;
+	/**
+	 * Zielzustände der Kanten.
+	 */
+	private final int[] edgeTarget;
+	/**
+	 * Beschriftung der Kanten mit der Nummer der schaltenden Transition (oder RESET).
+	 */
+	private final int[] edgeLabel;
+	/**
+	 * flag zeigt an ob die Endmarkierung mit der Anfangsmarkierung kurzgeschlossen wurde.
+	 */
+	private final boolean shortCircuited;
+
+	/**
+	 * CSR-Startindizes der eingehenden Kanten, wird bei Bedarf berechnet.
+	 */
+	private int[] predStart;
+	/**
+	 * Quellzustände der eingehenden Kanten, wird bei Bedarf berechnet.
+	 */
+	private int[] predSource;
+	/**
+	 * Beschriftung der eingehenden Kanten, wird bei Bedarf berechnet.
+	 */
+	private int[] predLabel;
+	/**
+	 * Komponentennummer jedes Zustands, wird bei Bedarf berechnet.
+	 */
+	private int[] component;
+	/**
+	 * Anzahl der starken Zusammenhangskomponenten.
+	 */
+	private int componentCount;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Setzt einen Graphen aus bereits berechneten Teilen zusammen.
+	 */
+	ReachabilityGraph(IndexedNet net, MarkingTable states, int[] edgeStart, int[] edgeTarget, int[] edgeLabel,
+			boolean shortCircuited) {
+		this.net = net;
+		this.states = states;
+		this.edgeStart = edgeStart;
+		this.edgeTarget = edgeTarget;
+		this.edgeLabel = edgeLabel;
+		this.shortCircuited = shortCircuited;
+	}
+
+	/**
+	 * Berechnet den Erreichbarkeitsgraphen mit der Standard-Obergrenze.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 */
+	public static ReachabilityGraph explore(IndexedNet net) {
+		return explore(net, DEFAULT_STATE_LIMIT, false);
+	}
+	/**
+	 * Berechnet den Erreichbarkeitsgraphen in Breitensuche von der Anfangsmarkierung aus.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param maxStates
+	 * 		Obergrenze für die Anzahl der Zustände.
+	 * @param shortCircuit
+	 * 		wenn <b>true</b>, erhält die Endmarkierung eine RESET-Kante zur Anfangsmarkierung
+	 * 		(kurzgeschlossenes Workflownetz).
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Obergrenze überschreitet.
+	 * @throws CancellationException
+	 * 		wenn der ausführende Thread unterbrochen wird (geprüft alle 4096 Zustände).
+	 */
+	public static ReachabilityGraph explore(IndexedNet net, int maxStates, boolean shortCircuit) {
+		return explore(net, maxStates, shortCircuit, new Cancellation());
+	}
+	/**
+	 * Berechnet den Erreichbarkeitsgraphen wie explore(IndexedNet, int, boolean) und prüft alle 4096 Zustände
+	 * auf einen Abbruch.
+	 * @param cancellation
+	 * 		Merker für den Abbruch.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Obergrenze überschreitet.
+	 * @throws CancellationException
+	 * 		wenn abgebrochen wurde oder der ausführende Thread unterbrochen wird.
+	 */
+	public static ReachabilityGraph explore(IndexedNet net, int maxStates, boolean shortCircuit,
+			Cancellation cancellation) {
+		int words = net.words();
+		MarkingTable states = new MarkingTable(words, 1024);
+		states.add(net.initialMarking(), 0);
+
+		int[] edgeStart = new int[1025];
+		int[] edgeTarget = new int[4096];
+		int[] edgeLabel = new int[4096];
+		int edges = 0;
+		long[] current = new long[words];
+		long[] next = new long[words];
+
+		for (int s = 0; s < states.size(); s++) {
+			if ((s & 0xFFF) == 0)
+				cancellation.check();
+			if (s + 1 >= edgeStart.length)
+				edgeStart = Arrays.copyOf(edgeStart, edgeStart.length * 2);
+			edgeStart[s] = edges;
+			states.copy(s, current, 0);
+			if (shortCircuit && net.isFinal(current, 0)) {
+				if (edges == edgeTarget.length) {
+					edgeTarget = Arrays.copyOf(edgeTarget, edges * 2);
+					edgeLabel = Arrays.copyOf(edgeLabel, edges * 2);
+				}
+				edgeTarget[edges] = 0;
+				edgeLabel[edges++] = RESET;
+			}
+			for (int t = 0; t < net.transitionCount(); t++) {
+				if (!net.isEnabled(current, 0, t))
+					continue;
+				net.fire(current, 0, next, 0, t);
+				int id = states.add(next, 0);
+				if (id < 0)
+					id = -id - 1;
+				else if (states.size() > maxStates)
+					throw new IllegalStateException("state space exceeds " + maxStates + " markings");
+				if (edges == edgeTarget.length) {
+					edgeTarget = Arrays.copyOf(edgeTarget, edges * 2);
+					edgeLabel = Arrays.copyOf(edgeLabel, edges * 2);
+				}
+				edgeTarget[edges] = id;
+				edgeLabel[edges++] = t;
+			}
+		}
+		edgeStart = Arrays.copyOf(edgeStart, states.size() + 1);
+		edgeStart[states.size()] = edges;
+		return new ReachabilityGraph(net, states, edgeStart, Arrays.copyOf(edgeTarget, edges),
+				Arrays.copyOf(edgeLabel, edges), shortCircuit);
+	}
+
+	/**
+	 * @return
+	 * 		Eine unabhängige Kopie der Zustandstabelle, die Zustände behalten ihre Nummern.
+	 */
+	MarkingTable copyStates() {
+		return new MarkingTable(states);
+	}
+	/**
+	 * Leitet den kurzgeschlossenen Graphen ab, ohne erneut zu explorieren: er teilt sich die Zustandstabelle mit
+	 * diesem Graphen, jede Endmarkierung erhält wie bei explore(net, maxStates, true) vor ihren übrigen Kanten eine
+	 * RESET-Kante zur Anfangsmarkierung. Kostet eine Kopie der Kanten.
+	 * @return
+	 * 		Der kurzgeschlossene Graph, dieser selbst wenn er schon kurzgeschlossen ist.
+	 */
+	public ReachabilityGraph shortCircuit() {
+		if (shortCircuited)
+			return this;
+		int n = stateCount();
+		int[] start = new int[n + 1];
+		int resets = 0;
+		for (int s = 0; s < n; s++) {
+			start[s] = edgeStart[s] + resets;
+			if (isFinal(s))
+				resets++;
+		}
+		start[n] = edgeTarget.length + resets;
+		int[] target = new int[start[n]];
+		int[] label = new int[start[n]];
+		for (int s = 0; s < n; s++) {
+			int pos = start[s];
+			int length = edgeStart[s + 1] - edgeStart[s];
+			if (start[s + 1] - pos > length) {
+				target[pos] = 0;
+				label[pos++] = RESET;
+			}
+			System.arraycopy(edgeTarget, edgeStart[s], target, pos, length);
+			System.arraycopy(edgeLabel, edgeStart[s], label, pos, length);
+		}
+		return new ReachabilityGraph(net, states, start, target, label, true);
+	}
+
+	//**** DERIVED STRUCTURES ****
+	/**
+	 * Berechnet die Vorgängerlisten (umgekehrte Kanten), falls noch nicht geschehen.
+	 */
+	private synchronized void computePredecessors() {
+		if (predStart != null)
+			return;
+		int n = stateCount();
+		int[] start = new int[n + 1];
+		for (int target : edgeTarget)
+			start[target + 1]++;
+		for (int s = 0; s < n; s++)
+			start[s + 1] += start[s];
+		int[] fill = Arrays.copyOf(start, n);
+		int[] source = new int[edgeTarget.length];
+		int[] label = new int[edgeTarget.length];
+		for (int s = 0; s < n; s++) {
+			for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+				int pos = fill[edgeTarget[e]]++;
+				source[pos] = s;
+				label[pos] = edgeLabel[e];
+			}
+		}
+		predSource = source;
+		predLabel = label;
+		predStart = start;
+	}
+	/**
+	 * Berechnet die starken Zusammenhangskomponenten, falls noch nicht geschehen.
+	 */
+	private synchronized void computeComponents() {
+		if (component != null)
+			return;
+		int[] comp = new int[stateCount()];
+		componentCount = GraphAlgorithms.tarjan(stateCount(), edgeStart, edgeTarget, null, comp);
+		component = comp;
+	}
+
+	//**** QUERIES ****
+	/**
+	 * Gibt an ob eine Stelle in einem Zustand markiert ist.
+	 */
+	public boolean isMarked(int state, int place) {
+		return IndexedNet.isMarked(states.data(), state * states.width(), place);
+	}
+	/**
+	 * Gibt an ob ein Zustand keine ausgehenden Kanten hat.
+	 */
+	public boolean isDeadlock(int state) {
+		return edgeStart[state] == edgeStart[state + 1];
+	}
+	/**
+	 * Gibt an ob ein Zustand die Endmarkierung ist.
+	 */
+	public boolean isFinal(int state) {
+		return net.isFinal(states.data(), state * states.width());
+	}
+	/**
+	 * Gibt die IDs der in einem Zustand markierten Stellen zurück.
+	 */
+	public List<String> markedPlaces(int state) {
+		List<String> out = new ArrayList<String>();
+		for (int p = 0; p < net.placeCount(); p++) {
+			if (isMarked(state, p))
+				out.add(net.placeId(p));
+		}
+		return out;
+	}
+	/**
+	 * Kopiert die Markierung eines Zustands in ein Array.
+	 */
+	public void copyMarking(int state, long[] dst, int off) {
+		states.copy(state, dst, off);
+	}
+	/**
+	 * Sucht den Zustand zu einer Markierung.
+	 * @return
+	 * 		Zustandsnummer, -1 wenn die Markierung nicht erreichbar ist.
+	 */
+	public int findState(long[] marking) {
+		return states.find(marking, 0);
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Das Netz dessen Zustandsraum dieser Graph beschreibt.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der erreichbaren Markierungen.
+	 */
+	public int stateCount() {
+		return states.size();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Kanten.
+	 */
+	public int edgeCount() {
+		return edgeTarget.length;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Endmarkierung mit der Anfangsmarkierung kurzgeschlossen wurde.
+	 */
+	public boolean isShortCircuited() {
+		return shortCircuited;
+	}
+	/**
+	 * @return
+	 * 		CSR-Startindizes der ausgehenden Kanten; nicht verändern.
+	 */
+	public int[] edgeStart() {
+		return edgeStart;
+	}
+	/**
+	 * @return
+	 * 		Zielzustände der ausgehenden Kanten; nicht verändern.
+	 */
+	public int[] edgeTarget() {
+		return edgeTarget;
+	}
+	/**
+	 * @return
+	 * 		Transitionsnummern der ausgehenden Kanten (RESET für die Rücksetzkante); nicht verändern.
+	 */
+	public int[] edgeLabel() {
+		return edgeLabel;
+	}
+	/**
+	 * @return
+	 * 		CSR-Startindizes der eingehenden Kanten; nicht verändern.
+	 */
+	public int[] predStart() {
+		computePredecessors();
+		return predStart;
+	}
+	/**
+	 * @return
+	 * 		Quellzustände der eingehenden Kanten; nicht verändern.
+	 */
+	public int[] predSource() {
+		computePredecessors();
+		return predSource;
+	}
+	/**
+	 * @return
+	 * 		Transitionsnummern der eingehenden Kanten; nicht verändern.
+	 */
+	public int[] predLabel() {
+		computePredecessors();
+		return predLabel;
+	}
+	/**
+	 * @return
+	 * 		Nummer der starken Zusammenhangskomponente jedes Zustands (umgekehrt topologisch); nicht verändern.
+	 */
+	public int[] components() {
+		computeComponents();
+		return component;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der starken Zusammenhangskomponenten.
+	 */
+	public int componentCount() {
+		computeComponents();
+		return componentCount;
+	}
+
+}
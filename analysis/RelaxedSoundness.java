@@ -0,0 +1,170 @@
+package analysis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import model.IndexedNet;
+
+/**
+ * Prüfung auf schwache Korrektheit (relaxed soundness) eines Workflownetzes: jede Transition liegt auf mindestens
+ * einem Lauf von der Anfangs- zur Endmarkierung.<br>
+ * Statt für jede Transition einen eigenen Lauf zu suchen, genügt ein einziger Erreichbarkeitsgraph: Eine
+ * Rückwärtssuche von den Endmarkierungen aus markiert alle Zustände, von denen aus die Endmarkierung erreichbar
+ * ist. Eine Transition ist genau dann abgedeckt, wenn eine ihrer Kanten in einem solchen Zustand endet, denn jeder
+ * Zustand des Graphen ist von der Anfangsmarkierung aus erreichbar. Der Aufwand ist linear in der Größe des
+ * Graphen. RESET-Kanten werden übergangen, sodass derselbe kurzgeschlossene Graph wie für die
+ * BehaviourClassification verwendet werden kann und beide Ergebnisse aus einer einzigen Exploration entstehen.<br>
+ * Das Ergebnis ist klein und serialisierbar und kann im AnalysisCache abgelegt werden.
+ */
+public class RelaxedSoundness implements Serializable {
+
+	private static final long serialVersionUID = 2L;
+
+	//**** FIELDS ****
+	/**
+	 * Bezeichnungen der Transitionen (Name, sonst ID) in der Reihenfolge der Momentaufnahme.
+	 */
+	private final String[] transitionLabels;
+	/**
+	 * Abgedeckte Transitionen, d.h. solche auf einem Lauf zur Endmarkierung.
+	 */
+	private final BitSet covered;
+	/**
+	 * flag zeigt an ob die Endmarkierung erreichbar ist.
+	 */
+	private final boolean finalReachable;
+	/**
+	 * Anzahl der Zustände und der Zustände, von denen aus die Endmarkierung erreichbar ist.
+	 */
+	private final int states;
+	private final int completingStates;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Prüft ein Workflownetz auf schwache Korrektheit; exploriert wie BehaviourClassification.of den
+	 * kurzgeschlossenen Graphen.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @throws IllegalArgumentException
+	 * 		wenn das Netz keine eindeutige Start- und Endstelle hat.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Standard-Obergrenze überschreitet.
+	 */
+	public static RelaxedSoundness of(IndexedNet net) {
+		if (net.getStart() < 0 || net.getEnd() < 0)
+			throw new IllegalArgumentException("net has no unique start and end place");
+		return new RelaxedSoundness(ReachabilityGraph.explore(net, ReachabilityGraph.DEFAULT_STATE_LIMIT, true));
+	}
+	/**
+	 * Liefert das Ergebnis der Prüfung, bei unverändertem Netz aus dem gemeinsamen AnalysisCache.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @throws IllegalArgumentException
+	 * 		wenn das Netz keine eindeutige Start- und Endstelle hat.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Standard-Obergrenze überschreitet.
+	 */
+	public static RelaxedSoundness cached(IndexedNet net) {
+		return AnalysisCache.getShared().getOrCompute(net, "relaxed-soundness", () -> of(net));
+	}
+	/**
+	 * Prüft ein Netz anhand eines bereits berechneten Erreichbarkeitsgraphen.
+	 * @param graph
+	 * 		Der Graph; RESET-Kanten eines kurzgeschlossenen Graphen werden nicht als Schaltvorgänge gezählt.
+	 */
+	public RelaxedSoundness(ReachabilityGraph graph) {
+		IndexedNet net = graph.getNet();
+		int n = graph.stateCount();
+		BitSet seeds = new BitSet(n);
+		for (int s = 0; s < n; s++)
+			if (graph.isFinal(s))
+				seeds.set(s);
+		// eine RESET-Kante führt von einer Endmarkierung weg und fügt der Rückwärtssuche daher nichts hinzu
+		BitSet completing = seeds.isEmpty() ? seeds
+				: GraphAlgorithms.backwardClosure(n, graph.predStart(), graph.predSource(), seeds, null);
+
+		int[] start = graph.edgeStart();
+		int[] target = graph.edgeTarget();
+		int[] label = graph.edgeLabel();
+		BitSet covered = new BitSet(net.transitionCount());
+		for (int s = completing.nextSetBit(0); s >= 0; s = completing.nextSetBit(s + 1))
+			for (int e = start[s]; e < start[s + 1]; e++)
+				if (label[e] != ReachabilityGraph.RESET && completing.get(target[e]))
+					covered.set(label[e]);
+
+		this.transitionLabels = new String[net.transitionCount()];
+		for (int t = 0; t < transitionLabels.length; t++)
+			transitionLabels[t] = net.transitionLabel(t);
+		this.covered = covered;
+		this.finalReachable = !seeds.isEmpty();
+		this.states = n;
+		this.completingStates = completing.cardinality();
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Endmarkierung erreichbar ist und jede Transition auf einem Lauf dorthin liegt
+	 */
+	public boolean isRelaxedSound() {
+		return finalReachable && covered.cardinality() == transitionLabels.length;
+	}
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		<b>true</b>: wenn die Transition auf einem Lauf zur Endmarkierung liegt
+	 */
+	public boolean isCovered(int t) {
+		return covered.get(t);
+	}
+	/**
+	 * @return
+	 * 		Bezeichnungen (Name, sonst ID) der Transitionen, die auf keinem Lauf zur Endmarkierung liegen.
+	 */
+	public List<String> uncoveredTransitions() {
+		ArrayList<String> labels = new ArrayList<String>();
+		for (int t = covered.nextClearBit(0); t < transitionLabels.length; t = covered.nextClearBit(t + 1))
+			labels.add(transitionLabels[t]);
+		return labels;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Transitionen.
+	 */
+	public int transitionCount() {
+		return transitionLabels.length;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Endmarkierung erreichbar ist
+	 */
+	public boolean isFinalReachable() {
+		return finalReachable;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der erreichbaren Markierungen.
+	 */
+	public int getStates() {
+		return states;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der erreichbaren Markierungen, von denen aus die Endmarkierung erreichbar ist.
+	 */
+	public int getCompletingStates() {
+		return completingStates;
+	}
+
+	@Override
+	public String toString() {
+		if (isRelaxedSound())
+			return String.format("relaxed sound, %d of %d states can complete", completingStates, states);
+		return String.format("not relaxed sound, uncovered transitions %s, %d of %d states can complete",
+				uncoveredTransitions(), completingStates, states);
+	}
+
+}
@@ -0,0 +1,597 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Diese Klasse implementiert einen inkrementellen CDCL-SAT-Solver.<br>
+ * Variablen werden mit newVariable() angelegt und sind ab 1 nummeriert, Literale werden wie im DIMACS-Format
+ * als +v bzw. -v angegeben. Der Solver verwendet zwei beobachtete Literale pro Klausel, Konfliktanalyse nach
+ * dem ersten UIP mit Minimierung, VSIDS-Heuristik mit Phasenspeicher und Neustarts nach der Luby-Folge.<br>
+ * Zwischen zwei Aufrufen von solve() dürfen Klauseln hinzugefügt werden; gelernte Klauseln bleiben erhalten.
+ * Annahmen (assumptions) gelten nur für einen Aufruf und eignen sich für Aktivierungsliterale.
+ */
+public class SatSolver {
+
+	/**
+	 * Eine Klausel, die ersten beiden Literale werden beobachtet.
+	 */
+	private static class Clause {
+		final int[] lits;
+		final boolean learnt;
+		double activity = 0;
+		boolean deleted = false;
+
+		Clause(int[] lits, boolean learnt) {
+			this.lits = lits;
+			this.learnt = learnt;
+		}
+	}
+
+	/**
+	 * Wachsende Liste von Klauseln für die Beobachterlisten.
+	 */
+	private static class ClauseList {
+		Clause[] data = new Clause[4];
+		int size = 0;
+
+		void add(Clause c) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = c;
+		}
+	}
+
+	//**** FIELDS ****
+	/**
+	 * Anzahl der Konflikte pro Einheit der Luby-Folge.
+	 */
+	private static final int RESTART_BASE = 100;
+	private static final double VAR_DECAY = 0.95;
+	private static final double CLAUSE_DECAY = 0.999;
+
+	private int vars = 0;
+	/**
+	 * Belegung je Variable: 0 offen, 1 wahr, -1 falsch.
+	 */
+	private byte[] assign = new byte[0];
+	private int[] level = new int[0];
+	private Clause[] reason = new Clause[0];
+	private boolean[] seen = new boolean[0];
+	/**
+	 * zuletzt gewählter Wert je Variable (Phasenspeicher).
+	 */
+	private boolean[] phase = new boolean[0];
+	private double[] activity = new double[0];
+	private double varInc = 1;
+	private double clauseInc = 1;
+	/**
+	 * Beobachterlisten je internem Literal (2*v bzw. 2*v+1).
+	 */
+	private ClauseList[] watches = new ClauseList[0];
+
+	private int[] trail = new int[0];
+	private int trailSize = 0;
+	private int qhead = 0;
+	private int[] trailLim = new int[16];
+	private int levels = 0;
+
+	/**
+	 * Binärer Heap der Variablen nach Aktivität.
+	 */
+	private int[] heap = new int[0];
+	private int heapSize = 0;
+	private int[] heapIndex = new int[0];
+
+	private final List<Clause> clauses = new ArrayList<Clause>();
+	private final List<Clause> learnts = new ArrayList<Clause>();
+	private double maxLearnts = 0;
+	/**
+	 * false sobald die Klauselmenge ohne Annahmen unerfüllbar ist.
+	 */
+	private boolean ok = true;
+	private boolean[] model = null;
+	private long conflicts = 0;
+	private long decisions = 0;
+	private long propagations = 0;
+
+	//**** VARIABLES AND CLAUSES ****
+	/**
+	 * Legt eine neue Variable an.
+	 * @return
+	 * 		Nummer der Variable (ab 1).
+	 */
+	public int newVariable() {
+		int v = vars++;
+		if (v == assign.length) {
+			int cap = Math.max(16, v * 2);
+			assign = Arrays.copyOf(assign, cap);
+			level = Arrays.copyOf(level, cap);
+			reason = Arrays.copyOf(reason, cap);
+			seen = Arrays.copyOf(seen, cap);
+			phase = Arrays.copyOf(phase, cap);
+			activity = Arrays.copyOf(activity, cap);
+			trail = Arrays.copyOf(trail, cap);
+			heap = Arrays.copyOf(heap, cap);
+			heapIndex = Arrays.copyOf(heapIndex, cap);
+			int old = watches.length;
+			watches = Arrays.copyOf(watches, 2 * cap);
+			for (int i = old; i < watches.length; i++)
+				watches[i] = new ClauseList();
+		}
+		heapIndex[v] = -1;
+		heapInsert(v);
+		return v + 1;
+	}
+	/**
+	 * Fügt eine Klausel hinzu. Darf nur zwischen Aufrufen von solve() verwendet werden.
+	 * @param literals
+	 * 		Literale im DIMACS-Format (+v / -v).
+	 * @return
+	 * 		<b>false</b>: wenn die Klauselmenge damit bereits ohne Suche unerfüllbar ist
+	 */
+	public boolean addClause(int... literals) {
+		if (!ok)
+			return false;
+		int[] lits = new int[literals.length];
+		int k = 0;
+		for (int ext : literals) {
+			int l = internal(ext);
+			int val = litValue(l);
+			if (val == 1)
+				return true;
+			if (val == -1)
+				continue;
+			boolean dup = false;
+			for (int i = 0; i < k; i++) {
+				if (lits[i] == l)
+					dup = true;
+				else if (lits[i] == (l ^ 1))
+					return true;
+			}
+			if (!dup)
+				lits[k++] = l;
+		}
+		if (k == 0)
+			return ok = false;
+		if (k == 1) {
+			enqueue(lits[0], null);
+			return ok = propagate() == null;
+		}
+		Clause c = new Clause(Arrays.copyOf(lits, k), false);
+		clauses.add(c);
+		attach(c);
+		return true;
+	}
+	private int internal(int ext) {
+		int v = Math.abs(ext) - 1;
+		if (ext == 0 || v >= vars)
+			throw new IllegalArgumentException("unknown variable " + ext);
+		return 2 * v + (ext < 0 ? 1 : 0);
+	}
+	private void attach(Clause c) {
+		watches[c.lits[0]].add(c);
+		watches[c.lits[1]].add(c);
+	}
+	/**
+	 * @return
+	 * 		Wert eines internen Literals: 1 wahr, -1 falsch, 0 offen.
+	 */
+	private int litValue(int lit) {
+		int a = assign[lit >> 1];
+		return (lit & 1) == 0 ? a : -a;
+	}
+	private void enqueue(int lit, Clause from) {
+		int v = lit >> 1;
+		assign[v] = (byte) ((lit & 1) == 0 ? 1 : -1);
+		level[v] = levels;
+		reason[v] = from;
+		trail[trailSize++] = lit;
+	}
+
+	//**** SEARCH ****
+	/**
+	 * Löst die Klauselmenge unter den gegebenen Annahmen.
+	 * @param assumptions
+	 * 		Literale im DIMACS-Format, die für diesen Aufruf als wahr angenommen werden.
+	 * @return
+	 * 		<b>true</b>: wenn eine erfüllende Belegung gefunden wurde, abfragbar mit value(int)
+	 */
+	public boolean solve(int... assumptions) {
+		model = null;
+		if (!ok)
+			return false;
+		int[] assume = new int[assumptions.length];
+		for (int i = 0; i < assume.length; i++)
+			assume[i] = internal(assumptions[i]);
+		if (propagate() != null)
+			return ok = false;
+		if (maxLearnts == 0)
+			maxLearnts = Math.max(clauses.size() / 3.0, 1000);
+		int restarts = 0;
+		while (true) {
+			int status = search((long) (luby(2, restarts++) * RESTART_BASE), assume);
+			if (status != 0) {
+				cancelUntil(0);
+				return status > 0;
+			}
+		}
+	}
+	/**
+	 * Sucht bis zum nächsten Neustart.
+	 * @return
+	 * 		1 erfüllbar, -1 unerfüllbar (ggf. nur unter den Annahmen), 0 Neustart
+	 */
+	private int search(long budget, int[] assume) {
+		long local = 0;
+		while (true) {
+			Clause conflict = propagate();
+			if (conflict != null) {
+				conflicts++;
+				local++;
+				if (levels == 0) {
+					ok = false;
+					return -1;
+				}
+				int[] learnt = analyze(conflict);
+				int back = 0;
+				for (int i = 1; i < learnt.length; i++)
+					back = Math.max(back, level[learnt[i] >> 1]);
+				cancelUntil(back);
+				if (learnt.length == 1)
+					enqueue(learnt[0], null);
+				else {
+					Clause c = new Clause(learnt, true);
+					learnts.add(c);
+					attach(c);
+					bumpClause(c);
+					enqueue(learnt[0], c);
+				}
+				varInc /= VAR_DECAY;
+				clauseInc /= CLAUSE_DECAY;
+				continue;
+			}
+			if (local >= budget) {
+				cancelUntil(0);
+				return 0;
+			}
+			if (learnts.size() - trailSize >= maxLearnts)
+				reduceLearnts();
+			int next = -1;
+			while (levels < assume.length) {
+				int a = assume[levels];
+				int val = litValue(a);
+				if (val == 1)
+					newLevel();
+				else if (val == -1)
+					return -1;
+				else {
+					next = a;
+					break;
+				}
+			}
+			if (next < 0) {
+				next = pickBranch();
+				if (next < 0) {
+					model = new boolean[vars];
+					for (int v = 0; v < vars; v++)
+						model[v] = assign[v] == 1;
+					return 1;
+				}
+			}
+			decisions++;
+			newLevel();
+			enqueue(next, null);
+		}
+	}
+	private void newLevel() {
+		if (levels == trailLim.length)
+			trailLim = Arrays.copyOf(trailLim, levels * 2);
+		trailLim[levels++] = trailSize;
+	}
+	private void cancelUntil(int target) {
+		if (levels <= target)
+			return;
+		for (int i = trailSize - 1; i >= trailLim[target]; i--) {
+			int v = trail[i] >> 1;
+			phase[v] = assign[v] == 1;
+			assign[v] = 0;
+			reason[v] = null;
+			if (heapIndex[v] < 0)
+				heapInsert(v);
+		}
+		trailSize = trailLim[target];
+		qhead = trailSize;
+		levels = target;
+	}
+	private int pickBranch() {
+		while (heapSize > 0) {
+			int v = heapRemoveMax();
+			if (assign[v] == 0)
+				return 2 * v + (phase[v] ? 0 : 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * Propagiert alle Einheitsklauseln über die Beobachterlisten.
+	 * @return
+	 * 		Die Konfliktklausel oder null.
+	 */
+	private Clause propagate() {
+		Clause conflict = null;
+		while (qhead < trailSize && conflict == null) {
+			int falseLit = trail[qhead++] ^ 1;
+			propagations++;
+			ClauseList ws = watches[falseLit];
+			int i = 0;
+			int j = 0;
+			while (i < ws.size) {
+				Clause c = ws.data[i++];
+				if (c.deleted)
+					continue;
+				int[] l = c.lits;
+				if (l[0] == falseLit) {
+					l[0] = l[1];
+					l[1] = falseLit;
+				}
+				if (litValue(l[0]) == 1) {
+					ws.data[j++] = c;
+					continue;
+				}
+				boolean moved = false;
+				for (int k = 2; k < l.length; k++) {
+					if (litValue(l[k]) != -1) {
+						l[1] = l[k];
+						l[k] = falseLit;
+						watches[l[1]].add(c);
+						moved = true;
+						break;
+					}
+				}
+				if (moved)
+					continue;
+				ws.data[j++] = c;
+				if (litValue(l[0]) == -1) {
+					conflict = c;
+					while (i < ws.size)
+						ws.data[j++] = ws.data[i++];
+				}
+				else
+					enqueue(l[0], c);
+			}
+			Arrays.fill(ws.data, j, ws.size, null);
+			ws.size = j;
+		}
+		return conflict;
+	}
+
+	/**
+	 * Konfliktanalyse nach dem ersten UIP.
+	 * @return
+	 * 		Die gelernte Klausel, das bestätigende Literal an Position 0 und das Literal mit der
+	 * 		höchsten Ebene der übrigen an Position 1.
+	 */
+	private int[] analyze(Clause conflict) {
+		int[] out = new int[8];
+		int n = 1;
+		int pathCount = 0;
+		int p = -1;
+		int index = trailSize - 1;
+		Clause c = conflict;
+		do {
+			if (c.learnt)
+				bumpClause(c);
+			for (int i = p < 0 ? 0 : 1; i < c.lits.length; i++) {
+				int q = c.lits[i];
+				int v = q >> 1;
+				if (!seen[v] && level[v] > 0) {
+					seen[v] = true;
+					bumpVariable(v);
+					if (level[v] >= levels)
+						pathCount++;
+					else {
+						if (n == out.length)
+							out = Arrays.copyOf(out, n * 2);
+						out[n++] = q;
+					}
+				}
+			}
+			while (!seen[trail[index] >> 1])
+				index--;
+			p = trail[index--];
+			c = reason[p >> 1];
+			seen[p >> 1] = false;
+			pathCount--;
+		} while (pathCount > 0);
+		out[0] = p ^ 1;
+
+		// Minimierung: Literale deren Grund vollständig in der Klausel liegt entfallen
+		int[] all = Arrays.copyOf(out, n);
+		int k = 1;
+		for (int i = 1; i < n; i++) {
+			Clause r = reason[out[i] >> 1];
+			boolean redundant = r != null;
+			if (r != null)
+				for (int j = 1; j < r.lits.length && redundant; j++) {
+					int v = r.lits[j] >> 1;
+					redundant = seen[v] || level[v] == 0;
+				}
+			if (!redundant)
+				out[k++] = out[i];
+		}
+		for (int i = 1; i < n; i++)
+			seen[all[i] >> 1] = false;
+		int[] learnt = Arrays.copyOf(out, k);
+		int max = 1;
+		for (int i = 2; i < k; i++)
+			if (level[learnt[i] >> 1] > level[learnt[max] >> 1])
+				max = i;
+		if (k > 1) {
+			int t = learnt[1];
+			learnt[1] = learnt[max];
+			learnt[max] = t;
+		}
+		return learnt;
+	}
+
+	/**
+	 * Entfernt die weniger aktive Hälfte der gelernten Klauseln, die nicht als Grund verwendet werden.
+	 */
+	private void reduceLearnts() {
+		learnts.sort(Comparator.comparingDouble(c -> c.activity));
+		int limit = learnts.size() / 2;
+		int removed = 0;
+		List<Clause> keep = new ArrayList<Clause>(learnts.size());
+		for (Clause c : learnts) {
+			boolean locked = reason[c.lits[0] >> 1] == c && litValue(c.lits[0]) == 1;
+			if (removed < limit && c.lits.length > 2 && !locked) {
+				c.deleted = true;
+				removed++;
+			}
+			else
+				keep.add(c);
+		}
+		learnts.clear();
+		learnts.addAll(keep);
+		maxLearnts *= 1.1;
+	}
+
+	//**** ACTIVITY ****
+	private void bumpVariable(int v) {
+		if ((activity[v] += varInc) > 1e100) {
+			for (int i = 0; i < vars; i++)
+				activity[i] *= 1e-100;
+			varInc *= 1e-100;
+		}
+		if (heapIndex[v] >= 0)
+			heapUp(heapIndex[v]);
+	}
+	private void bumpClause(Clause c) {
+		if ((c.activity += clauseInc) > 1e20) {
+			for (Clause l : learnts)
+				l.activity *= 1e-20;
+			clauseInc *= 1e-20;
+		}
+	}
+	private void heapInsert(int v) {
+		heap[heapSize] = v;
+		heapIndex[v] = heapSize;
+		heapUp(heapSize++);
+	}
+	private int heapRemoveMax() {
+		int top = heap[0];
+		heapIndex[top] = -1;
+		if (--heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			heapDown(0);
+		}
+		return top;
+	}
+	private void heapUp(int i) {
+		int v = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (activity[heap[parent]] >= activity[v])
+				break;
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+	private void heapDown(int i) {
+		int v = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]])
+				child++;
+			if (activity[heap[child]] <= activity[v])
+				break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+	/**
+	 * Luby-Folge 1 1 2 1 1 2 4 ... zur Basis y.
+	 */
+	private static double luby(double y, int x) {
+		int size = 1;
+		int seq = 0;
+		while (size < x + 1) {
+			seq++;
+			size = 2 * size + 1;
+		}
+		while (size - 1 != x) {
+			size = (size - 1) >> 1;
+			seq--;
+			x = x % size;
+		}
+		return Math.pow(y, seq);
+	}
+
+	//**** GETTER ****
+	/**
+	 * @param variable
+	 * 		Nummer der Variable (ab 1).
+	 * @return
+	 * 		Wert der Variable in der zuletzt gefundenen erfüllenden Belegung.
+	 */
+	public boolean value(int variable) {
+		if (model == null)
+			throw new IllegalStateException("no model available");
+		return model[variable - 1];
+	}
+	/**
+	 * @return
+	 * 		Anzahl der angelegten Variablen.
+	 */
+	public int variableCount() {
+		return vars;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der ursprünglichen Klauseln (ohne Einheitsklauseln).
+	 */
+	public int clauseCount() {
+		return clauses.size();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der aktuell gehaltenen gelernten Klauseln.
+	 */
+	public int learntCount() {
+		return learnts.size();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Konflikte über alle Aufrufe.
+	 */
+	public long getConflicts() {
+		return conflicts;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Entscheidungen über alle Aufrufe.
+	 */
+	public long getDecisions() {
+		return decisions;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der propagierten Literale über alle Aufrufe.
+	 */
+	public long getPropagations() {
+		return propagations;
+	}
+
+}
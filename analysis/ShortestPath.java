@@ -0,0 +1,456 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Kürzeste Schaltfolge von der Anfangsmarkierung zur Endmarkierung (nur die Endstelle markiert), gesucht mit A*.<br>
+ * Jede Transition hat Kosten (Standard 1, also die Anzahl der Schaltvorgänge). Die Heuristik ist das Maximum zweier
+ * unterer Schranken, beide zulässig und konsistent:
+ * <ul>
+ * <li>Markierungsgleichung: Für jede Lösung y des dualen Problems von min kosten·x mit M + C·x = M_end, also
+ * Potentiale je Stelle mit Summe y(•t) - Summe y(t•) &lt;= kosten(t) für jede Transition t, ist y·M - y·M_end eine
+ * untere Schranke. Ohne LP-Löser wird eine zulässige Lösung einmal vor der Suche durch schrittweises Anheben der
+ * Potentiale ab y = 0 bestimmt, von der Endstelle aus rückwärts.</li>
+ * <li>Abstand je Marke: Jede Marke in einer Stelle p außer der Endstelle muss von einer Transition t aus p•
+ * verbraucht werden, deren Nachstellen ihrerseits wieder geleert werden müssen. Der kleinste Fixpunkt von
+ * d(Endstelle) = 0 und d(p) = min über t in p• von kosten(t) + max d(q) für q in t• liefert h(M) = max d(p) über die
+ * markierten Stellen. Markierungen mit einer Marke in einer Stelle ohne endlichen Abstand können die Endmarkierung
+ * nicht mehr erreichen und werden verworfen.</li>
+ * </ul>
+ * Die Zustände liegen als Bitmengen in einer MarkingTable, Kosten, Vorgänger und die offene Menge in primitiven
+ * Arrays; pro Zustand entsteht kein eigenes Objekt.
+ */
+public class ShortestPath {
+
+	//**** FIELDS ****
+	/**
+	 * Abstand einer Stelle, von der aus die Endmarkierung nicht erreichbar ist.
+	 */
+	private static final double INFINITE = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Die Momentaufnahme des Netzes.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Kosten je Transition.
+	 */
+	private final double[] cost;
+	/**
+	 * Obergrenze für die Anzahl der erzeugten Zustände.
+	 */
+	private int maxStates = ReachabilityGraph.DEFAULT_STATE_LIMIT;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * @param net
+	 * 		Das Workflownetz.
+	 */
+	public ShortestPath(PetriNet net) {
+		this(new IndexedNet(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme eines Workflownetzes.
+	 */
+	public ShortestPath(IndexedNet net) {
+		if (net.getStart() < 0 || net.getEnd() < 0)
+			throw new IllegalArgumentException("net has no unique start and end place");
+		this.net = net;
+		this.cost = new double[net.transitionCount()];
+		Arrays.fill(cost, 1);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Sucht eine kostengünstigste Schaltfolge zur Endmarkierung.
+	 * @return
+	 * 		Die gefundene Folge, oder ein Ergebnis ohne Folge wenn die Endmarkierung nicht erreichbar ist.
+	 * @throws IllegalStateException
+	 * 		wenn die Suche mehr als maxStates Zustände erzeugt.
+	 * @throws CancellationException
+	 * 		wenn der ausführende Thread unterbrochen wird.
+	 */
+	public Result search() {
+		return search(new Cancellation());
+	}
+	/**
+	 * Sucht wie search(), mit einem Prüfpunkt für einen Abbruch alle 4096 expandierten Zustände.
+	 * @param cancellation
+	 * 		Merker für den Abbruch.
+	 * @return
+	 * 		Die gefundene Folge, oder ein Ergebnis ohne Folge wenn die Endmarkierung nicht erreichbar ist.
+	 * @throws IllegalStateException
+	 * 		wenn die Suche mehr als maxStates Zustände erzeugt.
+	 * @throws CancellationException
+	 * 		wenn abgebrochen wurde oder der ausführende Thread unterbrochen wird.
+	 */
+	public Result search(Cancellation cancellation) {
+		long begin = System.nanoTime();
+		double[] distance = distances();
+		double[] potential = potentials(distance);
+		int words = net.words();
+		MarkingTable states = new MarkingTable(words, 1024);
+		Search s = new Search();
+		long[] current = new long[words];
+		long[] next = new long[words];
+
+		long[] initial = net.initialMarking();
+		double h0 = heuristic(initial, distance, potential);
+		if (h0 == INFINITE)
+			return new Result(null, INFINITE, 0, 1, begin);
+		states.add(initial, 0);
+		s.ensure(1);
+		s.g[0] = 0;
+		s.parent[0] = -1;
+		s.via[0] = -1;
+		s.push(0, h0);
+		int explored = 0;
+		while (s.heapSize > 0) {
+			int id = s.pop();
+			if (s.closed[id])
+				continue;
+			s.closed[id] = true;
+			if ((++explored & 0xFFF) == 0)
+				cancellation.check();
+			states.copy(id, current, 0);
+			if (net.isFinal(current, 0))
+				return new Result(s.backtrack(id), s.g[id], explored, states.size(), begin);
+			for (int t = 0; t < cost.length; t++) {
+				if (!net.isEnabled(current, 0, t))
+					continue;
+				net.fire(current, 0, next, 0, t);
+				double h = heuristic(next, distance, potential);
+				if (h == INFINITE)
+					continue;
+				double g = s.g[id] + cost[t];
+				int succ = states.add(next, 0);
+				if (succ >= 0) {
+					if (succ >= maxStates)
+						throw new IllegalStateException("shortest path search exceeds " + maxStates + " states");
+					s.ensure(succ + 1);
+				} else {
+					succ = -succ - 1;
+					if (s.closed[succ] || s.g[succ] <= g)
+						continue;
+				}
+				s.g[succ] = g;
+				s.parent[succ] = id;
+				s.via[succ] = t;
+				s.push(succ, g + h);
+			}
+		}
+		return new Result(null, INFINITE, explored, states.size(), begin);
+	}
+	/**
+	 * Berechnet den kleinsten Fixpunkt der Abstände je Stelle (siehe Klassenbeschreibung).
+	 */
+	private double[] distances() {
+		double[] d = new double[net.placeCount()];
+		Arrays.fill(d, INFINITE);
+		d[net.getEnd()] = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int t = 0; t < cost.length; t++) {
+				double worst = 0;
+				for (int q : net.post(t))
+					worst = Math.max(worst, d[q]);
+				if (worst == INFINITE)
+					continue;
+				double via = cost[t] + worst;
+				for (int p : net.pre(t)) {
+					if (via < d[p]) {
+						d[p] = via;
+						changed = true;
+					}
+				}
+			}
+		}
+		return d;
+	}
+	/**
+	 * Bestimmt zulässige Potentiale y für das duale Problem der Markierungsgleichung (siehe Klassenbeschreibung).
+	 * Ausgehend von y = 0 (zulässig, da alle Kosten nicht negativ sind) wird jede Stelle in der Reihenfolge ihres
+	 * Abstands zur Endstelle so weit angehoben, wie es der kleinste Schlupf der Transitionen erlaubt, die aus ihr
+	 * verbrauchen ohne in sie zu produzieren; dadurch bleibt y in jedem Schritt zulässig. Die Endstelle und Stellen
+	 * ohne endlichen Abstand behalten das Potential 0.
+	 */
+	private double[] potentials(double[] distance) {
+		int places = net.placeCount();
+		double[] y = new double[places];
+		double[] slack = cost.clone();
+		Integer[] order = new Integer[places];
+		for (int p = 0; p < places; p++)
+			order[p] = p;
+		Arrays.sort(order, (a, b) -> Double.compare(distance[a], distance[b]));
+		for (int round = 0; round < places; round++) {
+			boolean raised = false;
+			for (int p : order) {
+				if (p == net.getEnd() || distance[p] == INFINITE)
+					continue;
+				double delta = INFINITE;
+				for (int t : net.consumers(p))
+					if (!contains(net.post(t), p))
+						delta = Math.min(delta, slack[t]);
+				if (delta <= 0 || delta == INFINITE)
+					continue;
+				y[p] += delta;
+				raised = true;
+				for (int t : net.consumers(p))
+					if (!contains(net.post(t), p))
+						slack[t] -= delta;
+				for (int t : net.producers(p))
+					if (!contains(net.pre(t), p))
+						slack[t] += delta;
+			}
+			if (!raised)
+				break;
+		}
+		return y;
+	}
+	private static boolean contains(int[] places, int p) {
+		for (int q : places)
+			if (q == p)
+				return true;
+		return false;
+	}
+	private double heuristic(long[] m, double[] distance, double[] potential) {
+		double max = 0;
+		double sum = 0;
+		for (int w = 0; w < m.length; w++) {
+			long bits = m[w];
+			while (bits != 0) {
+				int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				max = Math.max(max, distance[p]);
+				sum += potential[p];
+			}
+		}
+		return Math.max(max, sum);
+	}
+
+	/**
+	 * Zustandsdaten einer Suche in primitiven, mitwachsenden Feldern und die offene Menge als binärer Heap über
+	 * (f, -g), damit bei gleichem f der weiter fortgeschrittene Zustand zuerst kommt.
+	 */
+	private static final class Search {
+		double[] g = new double[1024];
+		int[] parent = new int[1024];
+		int[] via = new int[1024];
+		boolean[] closed = new boolean[1024];
+		double[] heapKey = new double[1024];
+		double[] heapG = new double[1024];
+		int[] heapId = new int[1024];
+		int heapSize = 0;
+
+		void ensure(int size) {
+			if (size <= g.length)
+				return;
+			int cap = Math.max(size, g.length * 2);
+			g = Arrays.copyOf(g, cap);
+			parent = Arrays.copyOf(parent, cap);
+			via = Arrays.copyOf(via, cap);
+			closed = Arrays.copyOf(closed, cap);
+		}
+		void push(int id, double key) {
+			if (heapSize == heapKey.length) {
+				heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+				heapG = Arrays.copyOf(heapG, heapSize * 2);
+				heapId = Arrays.copyOf(heapId, heapSize * 2);
+			}
+			double gid = g[id];
+			int i = heapSize++;
+			while (i > 0) {
+				int up = (i - 1) >>> 1;
+				if (!before(key, gid, heapKey[up], heapG[up]))
+					break;
+				move(up, i);
+				i = up;
+			}
+			heapKey[i] = key;
+			heapG[i] = gid;
+			heapId[i] = id;
+		}
+		int pop() {
+			int top = heapId[0];
+			heapSize--;
+			double key = heapKey[heapSize];
+			double gid = heapG[heapSize];
+			int id = heapId[heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize)
+					break;
+				if (child + 1 < heapSize && before(heapKey[child + 1], heapG[child + 1], heapKey[child], heapG[child]))
+					child++;
+				if (!before(heapKey[child], heapG[child], key, gid))
+					break;
+				move(child, i);
+				i = child;
+			}
+			heapKey[i] = key;
+			heapG[i] = gid;
+			heapId[i] = id;
+			return top;
+		}
+		private boolean before(double f1, double g1, double f2, double g2) {
+			return f1 < f2 || f1 == f2 && g1 > g2;
+		}
+		private void move(int from, int to) {
+			heapKey[to] = heapKey[from];
+			heapG[to] = heapG[from];
+			heapId[to] = heapId[from];
+		}
+		int[] backtrack(int id) {
+			int length = 0;
+			for (int s = id; parent[s] >= 0; s = parent[s])
+				length++;
+			int[] path = new int[length];
+			for (int s = id; parent[s] >= 0; s = parent[s])
+				path[--length] = via[s];
+			return path;
+		}
+	}
+
+	//**** SETTER ****
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @param c
+	 * 		Kosten eines Schaltvorgangs der Transition (nicht negativ).
+	 */
+	public void setCost(int t, double c) {
+		if (!(c >= 0) || c == INFINITE)
+			throw new IllegalArgumentException("cost must be finite and non-negative: " + c);
+		cost[t] = c;
+	}
+	/**
+	 * @param maxStates
+	 * 		Obergrenze für die Anzahl der erzeugten Zustände.
+	 */
+	public void setMaxStates(int maxStates) {
+		if (maxStates < 1)
+			throw new IllegalArgumentException("maxStates must be positive");
+		this.maxStates = maxStates;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		Kosten eines Schaltvorgangs der Transition.
+	 */
+	public double getCost(int t) {
+		return cost[t];
+	}
+	/**
+	 * @return
+	 * 		Die Momentaufnahme des Netzes.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+
+	//**** RESULT ****
+	/**
+	 * Ergebnis einer Suche: die Schaltfolge (falls die Endmarkierung erreichbar ist), ihre Kosten und der Aufwand.
+	 */
+	public class Result {
+		private final int[] transitions;
+		private final double cost;
+		private final int explored;
+		private final int states;
+		private final double millis;
+
+		Result(int[] transitions, double cost, int explored, int states, long begin) {
+			this.transitions = transitions;
+			this.cost = cost;
+			this.explored = explored;
+			this.states = states;
+			this.millis = (System.nanoTime() - begin) / 1e6;
+		}
+
+		/**
+		 * @return
+		 * 		<b>true</b>: wenn die Endmarkierung erreichbar ist
+		 */
+		public boolean isFound() {
+			return transitions != null;
+		}
+		/**
+		 * @return
+		 * 		Die Transitionsnummern der Schaltfolge, null wenn die Endmarkierung nicht erreichbar ist; nicht verändern.
+		 */
+		public int[] getTransitions() {
+			return transitions;
+		}
+		/**
+		 * @return
+		 * 		Die IDs der Transitionen der Schaltfolge, leer wenn die Endmarkierung nicht erreichbar ist.
+		 */
+		public List<String> transitionIds() {
+			ArrayList<String> ids = new ArrayList<String>();
+			if (transitions != null)
+				for (int t : transitions)
+					ids.add(net.transitionId(t));
+			return ids;
+		}
+		/**
+		 * @return
+		 * 		Die Bezeichnungen (Name, sonst ID) der Transitionen der Schaltfolge.
+		 */
+		public List<String> transitionLabels() {
+			ArrayList<String> labels = new ArrayList<String>();
+			if (transitions != null)
+				for (int t : transitions)
+					labels.add(net.transitionLabel(t));
+			return labels;
+		}
+		/**
+		 * @return
+		 * 		Die Kosten der Schaltfolge, unendlich wenn die Endmarkierung nicht erreichbar ist.
+		 */
+		public double getCost() {
+			return cost;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der expandierten Zustände.
+		 */
+		public int getExplored() {
+			return explored;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der erzeugten Zustände.
+		 */
+		public int getStates() {
+			return states;
+		}
+		/**
+		 * @return
+		 * 		Laufzeit der Suche in Millisekunden.
+		 */
+		public double getMillis() {
+			return millis;
+		}
+		@Override
+		public String toString() {
+			if (transitions == null)
+				return String.format("final marking not reachable, %d of %d states explored, %.1f ms",
+						explored, states, millis);
+			return String.format("cost %s: %s, %d of %d states explored, %.1f ms", cost, transitionLabels(),
+					explored, states, millis);
+		}
+	}
+
+}
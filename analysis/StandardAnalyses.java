@@ -0,0 +1,68 @@
+package analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Die mitgelieferten Analysen als Analysis-Objekte für den AnalysisScheduler.<br>
+ * Ergebnisse, die im AnalysisCache abgelegt werden können, werden dort abgelegt; wiederholte Aufträge für ein
+ * unverändertes Netz kosten dann nur die Berechnung des Strukturhashs. Alle reichen den Cancellation-Merker an
+ * ihre Suche weiter.<br>
+ * Die Analysen auf dem Erreichbarkeitsgraphen holen ihn aus dem IncrementalReachability-Speicher des Netzes:
+ * nach einer kleinen Änderung wird er inkrementell neu berechnet, und Verhaltensklassifikation und schwache
+ * Korrektheit teilen sich denselben kurzgeschlossenen Graphen.
+ */
+public final class StandardAnalyses {
+
+	private StandardAnalyses() {
+	}
+
+	/**
+	 * Verhaltensklassifikation (Lebendigkeit, Schranken, Reversibilität, Heimatmarkierung).
+	 */
+	public static final Analysis<BehaviourClassification> BEHAVIOUR =
+			Analysis.of("behaviour", (net, reachability, cancellation) -> AnalysisCache.getShared().getOrCompute(net,
+					"behaviour", () -> new BehaviourClassification(reachability.update(net,
+							net.getStart() >= 0 && net.getEnd() >= 0, cancellation))));
+	/**
+	 * Schwache Korrektheit eines Workflownetzes.
+	 */
+	public static final Analysis<RelaxedSoundness> RELAXED_SOUNDNESS =
+			Analysis.of("relaxed-soundness", (net, reachability, cancellation) -> {
+				if (net.getStart() < 0 || net.getEnd() < 0)
+					throw new IllegalArgumentException("net has no unique start and end place");
+				return AnalysisCache.getShared().getOrCompute(net, "relaxed-soundness",
+						() -> new RelaxedSoundness(reachability.update(net, true, cancellation)));
+			});
+	/**
+	 * Kennzahlen des Erreichbarkeitsgraphen.
+	 */
+	public static final Analysis<StateSpaceStatistics> STATE_SPACE =
+			Analysis.of("state-space", (net, reachability, cancellation) -> AnalysisCache.getShared().getOrCompute(net,
+					"state-space", () -> new StateSpaceStatistics(reachability.update(net, false, cancellation))));
+	/**
+	 * Kürzeste Schaltfolge zur Endmarkierung mit Kosten 1 je Transition.
+	 */
+	public static final Analysis<ShortestPath.Result> SHORTEST_PATH =
+			Analysis.of("shortest-path", (net, cancellation) -> new ShortestPath(net).search(cancellation));
+
+	/**
+	 * Kritischer Pfad und Engpässe.
+	 * @param duration
+	 * 		Dauer je Transitionsnummer; die Dauern gehören zum Namen der Analyse.
+	 */
+	public static Analysis<CriticalPath.Result> criticalPath(double[] duration) {
+		double[] copy = duration.clone();
+		return Analysis.of("critical-path" + Arrays.toString(copy),
+				(net, cancellation) -> new CriticalPath(net, copy).analyse(cancellation));
+	}
+
+	/**
+	 * @return
+	 * 		Die Analysen ohne Parameter.
+	 */
+	public static List<Analysis<?>> all() {
+		return Arrays.asList(BEHAVIOUR, RELAXED_SOUNDNESS, STATE_SPACE, SHORTEST_PATH);
+	}
+
+}
@@ -0,0 +1,99 @@
+package analysis;
+
+import java.io.Serializable;
+
+/**
+ * Kennzahlen eines Erreichbarkeitsgraphen, klein und serialisierbar, damit sie im AnalysisCache
+ * abgelegt werden können ohne den Graphen selbst aufzubewahren.
+ */
+public class StateSpaceStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	//**** FIELDS ****
+	/**
+	 * Anzahl der erreichbaren Markierungen.
+	 */
+	private final int states;
+	/**
+	 * Anzahl der Kanten.
+	 */
+	private final int edges;
+	/**
+	 * Anzahl der Markierungen ohne aktivierte Transition, die nicht die Endmarkierung sind.
+	 */
+	private final int deadlocks;
+	/**
+	 * Anzahl der starken Zusammenhangskomponenten.
+	 */
+	private final int components;
+	/**
+	 * flag zeigt an ob die Endmarkierung erreichbar ist.
+	 */
+	private final boolean finalReachable;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Bestimmt die Kennzahlen eines Erreichbarkeitsgraphen.
+	 * @param graph
+	 * 		Der auszuwertende Graph.
+	 */
+	public StateSpaceStatistics(ReachabilityGraph graph) {
+		int dead = 0;
+		boolean fin = false;
+		for (int s = 0; s < graph.stateCount(); s++) {
+			boolean isFinal = graph.isFinal(s);
+			fin |= isFinal;
+			if (!isFinal && graph.isDeadlock(s))
+				dead++;
+		}
+		this.states = graph.stateCount();
+		this.edges = graph.edgeCount();
+		this.deadlocks = dead;
+		this.components = graph.componentCount();
+		this.finalReachable = fin;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der erreichbaren Markierungen.
+	 */
+	public int getStates() {
+		return states;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Kanten.
+	 */
+	public int getEdges() {
+		return edges;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Markierungen ohne aktivierte Transition, die nicht die Endmarkierung sind.
+	 */
+	public int getDeadlocks() {
+		return deadlocks;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der starken Zusammenhangskomponenten.
+	 */
+	public int getComponents() {
+		return components;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Endmarkierung erreichbar ist
+	 */
+	public boolean isFinalReachable() {
+		return finalReachable;
+	}
+	@Override
+	public String toString() {
+		return states + " states, " + edges + " edges, " + deadlocks + " deadlocks, " + components
+				+ " SCCs, final marking " + (finalReachable ? "reachable" : "not reachable");
+	}
+
+}
@@ -0,0 +1,91 @@
+package analysis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Berechnet einen stabilen Strukturhash eines Netzes (SHA-256, hexadezimal).<br>
+ * In den Hash gehen die IDs der Stellen und Transitionen in sortierter Reihenfolge, die Vor- und Nachbereiche
+ * der Transitionen und die Anfangsmarkierung ein; Positionen und Namen werden ignoriert. Zwei Netze mit
+ * gleichem Hash haben daher denselben Zustandsraum und dieselben Analyseergebnisse.
+ */
+public final class StructuralHash {
+
+	private StructuralHash() {
+	}
+
+	/**
+	 * @param net
+	 * 		Das Netz dessen Hash berechnet werden soll.
+	 * @return
+	 * 		Strukturhash als Hex-String (64 Zeichen).
+	 */
+	public static String of(PetriNet net) {
+		return of(new IndexedNet(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes dessen Hash berechnet werden soll.
+	 * @return
+	 * 		Strukturhash als Hex-String (64 Zeichen).
+	 */
+	public static String of(IndexedNet net) {
+		return toHex(digest(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes dessen Hash berechnet werden soll.
+	 * @return
+	 * 		Strukturhash als 32 Bytes.
+	 */
+	public static byte[] digest(IndexedNet net) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		long[] initial = net.initialMarking();
+		updateInt(md, net.placeCount());
+		for (int p = 0; p < net.placeCount(); p++) {
+			updateString(md, net.placeId(p));
+			md.update(IndexedNet.isMarked(initial, 0, p) ? (byte) 1 : (byte) 0);
+		}
+		updateInt(md, net.transitionCount());
+		for (int t = 0; t < net.transitionCount(); t++) {
+			updateString(md, net.transitionId(t));
+			updateInt(md, net.pre(t).length);
+			for (int p : net.pre(t))
+				updateInt(md, p);
+			updateInt(md, net.post(t).length);
+			for (int p : net.post(t))
+				updateInt(md, p);
+		}
+		return md.digest();
+	}
+	private static void updateInt(MessageDigest md, int v) {
+		md.update((byte) (v >>> 24));
+		md.update((byte) (v >>> 16));
+		md.update((byte) (v >>> 8));
+		md.update((byte) v);
+	}
+	private static void updateString(MessageDigest md, String s) {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		updateInt(md, b.length);
+		md.update(b);
+	}
+	/**
+	 * Wandelt Bytes in einen Hex-String um.
+	 */
+	static String toHex(byte[] in) {
+		StringBuilder sb = new StringBuilder(in.length * 2);
+		for (byte b : in)
+			sb.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return sb.toString();
+	}
+
+}
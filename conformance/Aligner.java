@@ -0,0 +1,578 @@
+package conformance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import analysis.MarkingTable;
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Berechnet optimale Alignments zwischen Traces eines Ereignislogs und einem Workflownetz.<br>
+ * Gesucht wird mit A* im synchronen Produkt aus Trace und Netz. Ein Zustand ist die Markierung als Bitvektor
+ * zusammen mit der Position im Trace; er wird in einer MarkingTable abgelegt, die zugleich als geschlossene
+ * Menge dient. Züge: synchron (Ereignis und gleich bezeichnete aktivierte Transition, Kosten 0), nur im Log
+ * (Kosten 1) und nur im Modell (Kosten 1, für stille Transitionen 0). Still ist eine Transition, deren
+ * Bezeichnung mit "tau" beginnt.<br>
+ * Heuristik: zu jeder Stelle wird vorab berechnet, wie viele sichtbare Transitionen eine Marke dort mindestens
+ * noch durchlaufen muss, bis sie die Endstelle erreicht oder verbraucht ist. Höchstens so viele wie noch
+ * zuordenbare Ereignisse übrig sind, können davon synchron schalten; Ereignisse ohne gleich bezeichnete
+ * Transition sind in jedem Fall Log-Züge. Die Schranke ist zulässig und konsistent, sodass jeder Zustand nur
+ * einmal expandiert wird. Eine Lösung der Zustandsgleichung per LP wäre schärfer, es steht aber kein LP-Löser
+ * zur Verfügung.<br>
+ * Alignments werden je Variante zwischengespeichert und die Varianten eines Logs parallel ausgerichtet.
+ */
+public class Aligner {
+
+	//**** FIELDS ****
+	/**
+	 * Vorgabe für die Anzahl der Zustände, nach der die Suche für einen Trace abgebrochen wird.
+	 */
+	public static final int DEFAULT_MAX_STATES = 1 << 20;
+	private static final int INFINITE = Integer.MAX_VALUE / 4;
+	private static final byte SYNC = 0;
+	private static final byte LOG = 1;
+	private static final byte MODEL = 2;
+
+	/**
+	 * Die Momentaufnahme des Netzes.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Transitionen je Bezeichnung (nur sichtbare).
+	 */
+	private final HashMap<String, int[]> byLabel = new HashMap<String, int[]>();
+	/**
+	 * flag je Transition ob sie still ist.
+	 */
+	private final boolean[] silent;
+	/**
+	 * Mindestanzahl sichtbarer Transitionen die eine Marke in der Stelle noch durchlaufen muss.
+	 */
+	private final int[] distance;
+	/**
+	 * Kosten des Alignments des leeren Traces (kürzester Lauf des Modells), -1 wenn es keinen gibt,
+	 * -2 solange sie nicht berechnet sind.
+	 */
+	private volatile int emptyCost = -2;
+	/**
+	 * Bereits berechnete Alignments je Trace.
+	 */
+	private final ConcurrentHashMap<List<String>, Alignment> cache = new ConcurrentHashMap<List<String>, Alignment>();
+	/**
+	 * Anzahl der Zustände, nach der die Suche für einen Trace abgebrochen wird.
+	 */
+	private int maxStates = DEFAULT_MAX_STATES;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * @param net
+	 * 		Das Workflownetz.
+	 */
+	public Aligner(PetriNet net) {
+		this(new IndexedNet(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme eines Workflownetzes.
+	 */
+	public Aligner(IndexedNet net) {
+		if (net.getStart() < 0 || net.getEnd() < 0)
+			throw new IllegalArgumentException("net has no unique start and end place");
+		this.net = net;
+		int transitions = net.transitionCount();
+		silent = new boolean[transitions];
+		HashMap<String, List<Integer>> labels = new HashMap<String, List<Integer>>();
+		for (int t = 0; t < transitions; t++) {
+			String label = net.transitionLabel(t);
+			silent[t] = label.regionMatches(true, 0, "tau", 0, 3);
+			if (!silent[t])
+				labels.computeIfAbsent(label, k -> new ArrayList<Integer>()).add(t);
+		}
+		labels.forEach((label, ts) -> byLabel.put(label, ts.stream().mapToInt(Integer::intValue).toArray()));
+		distance = distances();
+	}
+	/**
+	 * Berechnet distance[] als kleinsten Fixpunkt von d(Endstelle) = 0 und
+	 * d(p) = min über Transitionen t in p• von (1 falls t sichtbar) + (0 falls t• leer, sonst min d(q) für q in t•).
+	 */
+	private int[] distances() {
+		int[] d = new int[net.placeCount()];
+		Arrays.fill(d, INFINITE);
+		d[net.getEnd()] = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int t = 0; t < silent.length; t++) {
+				int best = net.post(t).length == 0 ? 0 : INFINITE;
+				for (int q : net.post(t))
+					best = Math.min(best, d[q]);
+				if (best >= INFINITE)
+					continue;
+				int via = best + (silent[t] ? 0 : 1);
+				for (int p : net.pre(t)) {
+					if (via < d[p]) {
+						d[p] = via;
+						changed = true;
+					}
+				}
+			}
+		}
+		return d;
+	}
+
+	//**** ALIGNMENT ****
+	/**
+	 * Richtet alle Varianten eines Logs parallel aus; bereits bekannte Varianten werden aus dem Zwischenspeicher
+	 * genommen.
+	 * @param log
+	 * 		Das Ereignislog.
+	 * @return
+	 * 		Die Alignments je Variante.
+	 */
+	public Result align(EventLog log) {
+		long start = System.nanoTime();
+		emptyCost();
+		Alignment[] alignments = new Alignment[log.variantCount()];
+		IntStream.range(0, alignments.length).parallel().forEach(v -> {
+			int[] codes = log.variant(v);
+			String[] trace = new String[codes.length];
+			for (int i = 0; i < codes.length; i++)
+				trace[i] = log.activityName(codes[i]);
+			alignments[v] = align(trace);
+		});
+		return new Result(log, alignments, (System.nanoTime() - start) / 1e6);
+	}
+	/**
+	 * Berechnet ein optimales Alignment eines Traces, oder holt es aus dem Zwischenspeicher.
+	 * @param trace
+	 * 		Die Aktivitäten des Traces.
+	 * @return
+	 * 		Das Alignment; null wenn die Endmarkierung nicht erreichbar ist oder die Suche nach maxStates
+	 * 		Zuständen abgebrochen wurde.
+	 */
+	public Alignment align(String... trace) {
+		List<String> key = Arrays.asList(trace.clone());
+		Alignment cached = cache.get(key);
+		if (cached != null)
+			return cached;
+		Alignment a = search(trace);
+		if (a != null)
+			cache.putIfAbsent(key, a);
+		return a;
+	}
+	/**
+	 * @return
+	 * 		Kosten des kürzesten Laufs des Modells (Alignment des leeren Traces), -1 wenn es keinen gibt.
+	 */
+	public int emptyCost() {
+		if (emptyCost == -2) {
+			Alignment empty = search(new String[0]);
+			emptyCost = empty == null ? -1 : empty.cost;
+		}
+		return emptyCost;
+	}
+
+	/**
+	 * A* im synchronen Produkt.
+	 */
+	private Alignment search(String[] trace) {
+		int n = trace.length;
+		int words = net.words();
+		int width = words + 1;
+		int[][] candidates = new int[n][];
+		int[] unmappable = new int[n + 1];
+		int[] mappable = new int[n + 1];
+		for (int i = n - 1; i >= 0; i--) {
+			candidates[i] = byLabel.getOrDefault(trace[i], new int[0]);
+			unmappable[i] = unmappable[i + 1] + (candidates[i].length == 0 ? 1 : 0);
+			mappable[i] = mappable[i + 1] + (candidates[i].length == 0 ? 0 : 1);
+		}
+
+		MarkingTable states = new MarkingTable(width, 1024);
+		Search s = new Search();
+		long[] buf = new long[width];
+		long[] next = new long[width];
+		long[] initial = net.initialMarking();
+		System.arraycopy(initial, 0, buf, 0, words);
+		buf[words] = 0;
+		int root = states.add(buf, 0);
+		s.ensure(1);
+		s.g[root] = 0;
+		s.parent[root] = -1;
+		int h0 = heuristic(buf, words, 0, unmappable, mappable);
+		if (h0 >= INFINITE)
+			return null;
+		s.push(root, h0, 0);
+
+		while (s.heapSize > 0) {
+			int id = s.pop();
+			if (s.closed[id])
+				continue;
+			s.closed[id] = true;
+			states.copy(id, buf, 0);
+			int pos = (int) buf[words];
+			int g = s.g[id];
+			if (pos == n && net.isFinal(buf, 0))
+				return s.backtrack(id, trace, g, states.size());
+			if (states.size() > maxStates)
+				return null;
+			// Log-Zug
+			if (pos < n) {
+				System.arraycopy(buf, 0, next, 0, width);
+				next[words] = pos + 1;
+				visit(states, s, next, words, pos + 1, id, g + 1, LOG, -1, unmappable, mappable);
+				// synchrone Züge
+				for (int t : candidates[pos]) {
+					if (!net.isEnabled(buf, 0, t))
+						continue;
+					net.fire(buf, 0, next, 0, t);
+					next[words] = pos + 1;
+					visit(states, s, next, words, pos + 1, id, g, SYNC, t, unmappable, mappable);
+				}
+			}
+			// Modell-Züge
+			for (int t = 0; t < silent.length; t++) {
+				if (!net.isEnabled(buf, 0, t))
+					continue;
+				net.fire(buf, 0, next, 0, t);
+				next[words] = pos;
+				visit(states, s, next, words, pos, id, g + (silent[t] ? 0 : 1), MODEL, t, unmappable, mappable);
+			}
+		}
+		return null;
+	}
+	private void visit(MarkingTable states, Search s, long[] state, int words, int pos, int from, int g, byte kind,
+			int t, int[] unmappable, int[] mappable) {
+		int id = states.add(state, 0);
+		boolean fresh = id >= 0;
+		if (!fresh)
+			id = -id - 1;
+		s.ensure(states.size());
+		if (!fresh && (s.closed[id] || s.g[id] <= g))
+			return;
+		int h = heuristic(state, words, pos, unmappable, mappable);
+		if (h >= INFINITE)
+			return;
+		s.g[id] = g;
+		s.parent[id] = from;
+		s.kind[id] = kind;
+		s.arg[id] = t;
+		s.push(id, g + h, pos);
+	}
+	private int heuristic(long[] state, int words, int pos, int[] unmappable, int[] mappable) {
+		int d = 0;
+		for (int w = 0; w < words; w++) {
+			long bits = state[w];
+			while (bits != 0) {
+				int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				d = Math.max(d, distance[p]);
+			}
+		}
+		if (d >= INFINITE)
+			return INFINITE;
+		return unmappable[pos] + Math.max(0, d - mappable[pos]);
+	}
+
+	/**
+	 * Zustandsdaten einer Suche in primitiven, mitwachsenden Feldern und die offene Menge als binärer Heap
+	 * über (f, -Position), damit bei gleichem f der weiter fortgeschrittene Zustand zuerst kommt.
+	 */
+	private final class Search {
+		int[] g = new int[1024];
+		int[] parent = new int[1024];
+		byte[] kind = new byte[1024];
+		int[] arg = new int[1024];
+		boolean[] closed = new boolean[1024];
+		long[] heapKey = new long[1024];
+		int[] heapId = new int[1024];
+		int heapSize = 0;
+
+		void ensure(int size) {
+			if (size <= g.length)
+				return;
+			int cap = Math.max(size, g.length * 2);
+			g = Arrays.copyOf(g, cap);
+			parent = Arrays.copyOf(parent, cap);
+			kind = Arrays.copyOf(kind, cap);
+			arg = Arrays.copyOf(arg, cap);
+			closed = Arrays.copyOf(closed, cap);
+		}
+		void push(int id, int f, int pos) {
+			if (heapSize == heapKey.length) {
+				heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+				heapId = Arrays.copyOf(heapId, heapSize * 2);
+			}
+			long key = (long) f << 32 | (Integer.MAX_VALUE - pos);
+			int i = heapSize++;
+			while (i > 0) {
+				int up = (i - 1) >>> 1;
+				if (heapKey[up] <= key)
+					break;
+				heapKey[i] = heapKey[up];
+				heapId[i] = heapId[up];
+				i = up;
+			}
+			heapKey[i] = key;
+			heapId[i] = id;
+		}
+		int pop() {
+			int top = heapId[0];
+			long key = heapKey[--heapSize];
+			int id = heapId[heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize)
+					break;
+				if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child])
+					child++;
+				if (heapKey[child] >= key)
+					break;
+				heapKey[i] = heapKey[child];
+				heapId[i] = heapId[child];
+				i = child;
+			}
+			heapKey[i] = key;
+			heapId[i] = id;
+			return top;
+		}
+		Alignment backtrack(int id, String[] trace, int cost, int explored) {
+			int length = 0;
+			for (int s = id; parent[s] >= 0; s = parent[s])
+				length++;
+			byte[] kinds = new byte[length];
+			int[] transitions = new int[length];
+			String[] activities = new String[length];
+			int pos = trace.length;
+			for (int s = id, i = length - 1; parent[s] >= 0; s = parent[s], i--) {
+				kinds[i] = kind[s];
+				transitions[i] = arg[s];
+				if (kind[s] != MODEL)
+					activities[i] = trace[--pos];
+			}
+			return new Alignment(kinds, transitions, activities, trace.length, cost, explored);
+		}
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Die Momentaufnahme des Netzes.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @param maxStates
+	 * 		Anzahl der Zustände, nach der die Suche für einen Trace abgebrochen wird.
+	 */
+	public void setMaxStates(int maxStates) {
+		if (maxStates < 1)
+			throw new IllegalArgumentException("maxStates must be positive: " + maxStates);
+		this.maxStates = maxStates;
+	}
+	/**
+	 * Leert den Zwischenspeicher der Alignments.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	//**** ALIGNMENT ****
+	/**
+	 * Ein optimales Alignment: eine Folge von Zügen, von denen jeder synchron, nur im Log oder nur im Modell ist.
+	 */
+	public class Alignment {
+		/**
+		 * Die Arten von Zügen.
+		 */
+		private final byte[] kinds;
+		private final int[] transitions;
+		private final String[] activities;
+		private final int traceLength;
+		private final int cost;
+		private final int explored;
+
+		Alignment(byte[] kinds, int[] transitions, String[] activities, int traceLength, int cost, int explored) {
+			this.kinds = kinds;
+			this.transitions = transitions;
+			this.activities = activities;
+			this.traceLength = traceLength;
+			this.cost = cost;
+			this.explored = explored;
+		}
+
+		/**
+		 * @return
+		 * 		Anzahl der Züge.
+		 */
+		public int size() {
+			return kinds.length;
+		}
+		/**
+		 * @param i
+		 * 		Nummer des Zuges.
+		 * @return
+		 * 		<b>true</b>: wenn der Zug synchron ist
+		 */
+		public boolean isSync(int i) {
+			return kinds[i] == SYNC;
+		}
+		/**
+		 * @param i
+		 * 		Nummer des Zuges.
+		 * @return
+		 * 		<b>true</b>: wenn der Zug nur im Log stattfindet
+		 */
+		public boolean isLogMove(int i) {
+			return kinds[i] == LOG;
+		}
+		/**
+		 * @param i
+		 * 		Nummer des Zuges.
+		 * @return
+		 * 		<b>true</b>: wenn der Zug nur im Modell stattfindet
+		 */
+		public boolean isModelMove(int i) {
+			return kinds[i] == MODEL;
+		}
+		/**
+		 * @param i
+		 * 		Nummer des Zuges.
+		 * @return
+		 * 		Nummer der schaltenden Transition, -1 bei einem Log-Zug.
+		 */
+		public int transition(int i) {
+			return transitions[i];
+		}
+		/**
+		 * @param i
+		 * 		Nummer des Zuges.
+		 * @return
+		 * 		Die Aktivität des Ereignisses, null bei einem Modell-Zug.
+		 */
+		public String activity(int i) {
+			return activities[i];
+		}
+		/**
+		 * @return
+		 * 		Die Kosten (Anzahl der Log-Züge und der Modell-Züge sichtbarer Transitionen).
+		 */
+		public int getCost() {
+			return cost;
+		}
+		/**
+		 * @return
+		 * 		Fitness 1 - Kosten / (Länge des Traces + Kosten des kürzesten Modelllaufs).
+		 */
+		public double getFitness() {
+			int worst = traceLength + Math.max(0, emptyCost());
+			return worst == 0 ? 1 : 1 - (double) cost / worst;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Zustände die bei der Suche angelegt wurden.
+		 */
+		public int getExplored() {
+			return explored;
+		}
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < kinds.length; i++) {
+				if (i > 0)
+					sb.append(' ');
+				String log = kinds[i] == MODEL ? ">>" : activities[i];
+				String model = kinds[i] == LOG ? ">>" : net.transitionLabel(transitions[i]);
+				sb.append('[').append(log).append('|').append(model).append(']');
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Alignments aller Varianten eines Logs.
+	 */
+	public static class Result {
+		private final EventLog log;
+		private final Alignment[] alignments;
+		private final double millis;
+
+		Result(EventLog log, Alignment[] alignments, double millis) {
+			this.log = log;
+			this.alignments = alignments;
+			this.millis = millis;
+		}
+
+		/**
+		 * @return
+		 * 		Das ausgerichtete Log.
+		 */
+		public EventLog getLog() {
+			return log;
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Ihr Alignment, null wenn keines gefunden wurde.
+		 */
+		public Alignment variantAlignment(int v) {
+			return alignments[v];
+		}
+		/**
+		 * @param c
+		 * 		Nummer des Falls.
+		 * @return
+		 * 		Das Alignment seiner Variante, null wenn keines gefunden wurde.
+		 */
+		public Alignment caseAlignment(int c) {
+			return alignments[log.caseVariant(c)];
+		}
+		/**
+		 * @return
+		 * 		Mittlere Fitness der ausgerichteten Fälle.
+		 */
+		public double getFitness() {
+			double sum = 0;
+			long cases = 0;
+			for (int v = 0; v < alignments.length; v++) {
+				if (alignments[v] != null) {
+					sum += log.variantFrequency(v) * alignments[v].getFitness();
+					cases += log.variantFrequency(v);
+				}
+			}
+			return cases == 0 ? 0 : sum / cases;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Varianten für die kein Alignment gefunden wurde.
+		 */
+		public int getUnaligned() {
+			int n = 0;
+			for (Alignment a : alignments)
+				if (a == null)
+					n++;
+			return n;
+		}
+		/**
+		 * @return
+		 * 		Laufzeit in Millisekunden.
+		 */
+		public double getMillis() {
+			return millis;
+		}
+		@Override
+		public String toString() {
+			return String.format("fitness %.4f, %d variants, %d unaligned, %.1f ms",
+					getFitness(), alignments.length, getUnaligned(), millis);
+		}
+	}
+
+}
@@ -0,0 +1,272 @@
+package conformance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Kompakte Darstellung eines Ereignislogs für die Konformitätsprüfung.<br>
+ * Aktivitäten werden fortlaufend nummeriert und Traces als int-Arrays dieser Nummern abgelegt. Gleiche Traces
+ * (Varianten) werden nur einmal gespeichert und gezählt; pro Fall bleibt nur die Nummer seiner Variante und,
+ * falls gewünscht, seine ID. Der Speicherbedarf wächst daher mit der Anzahl der Varianten und Fälle, nicht mit
+ * der Anzahl der Ereignisse. Solange ein Fall offen ist (siehe EventLogReader), wird er als wachsendes int-Array
+ * gepuffert.
+ */
+public class EventLog {
+
+	//**** FIELDS ****
+	/**
+	 * Die Aktivitäten in der Reihenfolge ihres ersten Auftretens und ihre Nummern.
+	 */
+	private final ArrayList<String> activities = new ArrayList<String>();
+	private final HashMap<String, Integer> activityIndex = new HashMap<String, Integer>();
+	/**
+	 * Die Varianten und wie viele Fälle jeweils zu ihnen gehören.
+	 */
+	private final ArrayList<int[]> variants = new ArrayList<int[]>();
+	private long[] frequency = new long[16];
+	private final HashMap<Key, Integer> variantIndex = new HashMap<Key, Integer>();
+	/**
+	 * flag zeigt an ob die IDs der Fälle aufbewahrt werden.
+	 */
+	private final boolean keepCaseIds;
+	/**
+	 * IDs der Fälle in der Reihenfolge ihres Abschlusses, leer wenn sie nicht aufbewahrt werden.
+	 */
+	private final ArrayList<String> caseIds = new ArrayList<String>();
+	/**
+	 * Variante je Fall.
+	 */
+	private int[] caseVariant = new int[16];
+	private int caseCount = 0;
+	/**
+	 * Anzahl der Ereignisse.
+	 */
+	private long eventCount = 0;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt ein leeres Log das die IDs der Fälle aufbewahrt.
+	 */
+	public EventLog() {
+		this(true);
+	}
+	/**
+	 * Erzeugt ein leeres Log.
+	 * @param keepCaseIds
+	 * 		Ob die IDs der Fälle aufbewahrt werden (sonst werden Fälle nur durchnummeriert).
+	 */
+	public EventLog(boolean keepCaseIds) {
+		this.keepCaseIds = keepCaseIds;
+	}
+	/**
+	 * Liest ein Log vollständig ein.
+	 * @param reader
+	 * 		Reader der Logdatei.
+	 * @param keepCaseIds
+	 * 		Ob die IDs der Fälle aufbewahrt werden.
+	 * @return
+	 * 		Das eingelesene Log.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann.
+	 */
+	public static EventLog read(EventLogReader reader, boolean keepCaseIds) throws IOException {
+		EventLog log = new EventLog(keepCaseIds);
+		reader.read(log.new Collector());
+		return log;
+	}
+
+	//**** BUILDING ****
+	/**
+	 * Fügt einen abgeschlossenen Fall hinzu.
+	 * @param caseId
+	 * 		ID des Falls.
+	 * @param trace
+	 * 		Die Aktivitäten des Falls in ihrer Reihenfolge.
+	 */
+	public void addCase(String caseId, String... trace) {
+		int[] codes = new int[trace.length];
+		for (int i = 0; i < trace.length; i++)
+			codes[i] = activity(trace[i]);
+		addCase(caseId, codes);
+	}
+	private void addCase(String caseId, int[] trace) {
+		Key key = new Key(trace);
+		Integer v = variantIndex.get(key);
+		if (v == null) {
+			v = variants.size();
+			variants.add(trace);
+			variantIndex.put(key, v);
+			if (v == frequency.length)
+				frequency = Arrays.copyOf(frequency, v * 2);
+		}
+		frequency[v]++;
+		if (caseCount == caseVariant.length)
+			caseVariant = Arrays.copyOf(caseVariant, caseCount * 2);
+		caseVariant[caseCount++] = v;
+		if (keepCaseIds)
+			caseIds.add(caseId);
+		eventCount += trace.length;
+	}
+	private int activity(String name) {
+		Integer a = activityIndex.get(name);
+		if (a == null) {
+			a = activities.size();
+			activities.add(name);
+			activityIndex.put(name, a);
+		}
+		return a;
+	}
+
+	/**
+	 * Nimmt die Ereignisse eines EventLogReaders entgegen und puffert offene Fälle, bis sie abgeschlossen sind.
+	 */
+	private class Collector implements EventLogReader.Handler {
+		/**
+		 * Offene Fälle: Aktivitätsnummern, der erste Eintrag ist die aktuelle Länge.
+		 */
+		private final HashMap<String, int[]> open = new HashMap<String, int[]>();
+
+		@Override
+		public void event(String caseId, String activity) {
+			int[] trace = open.get(caseId);
+			if (trace == null) {
+				trace = new int[8];
+				open.put(caseId, trace);
+			}
+			int n = trace[0] + 1;
+			if (n == trace.length) {
+				trace = Arrays.copyOf(trace, n * 2);
+				open.put(caseId, trace);
+			}
+			trace[n] = activity(activity);
+			trace[0] = n;
+		}
+		@Override
+		public void endCase(String caseId) {
+			int[] trace = open.remove(caseId);
+			if (trace != null)
+				addCase(caseId, Arrays.copyOfRange(trace, 1, trace[0] + 1));
+		}
+		@Override
+		public void endLog() {
+			// die übrigen Fälle in einer festen Reihenfolge abschließen, damit Läufe reproduzierbar sind
+			String[] rest = open.keySet().toArray(new String[0]);
+			Arrays.sort(rest);
+			for (String caseId : rest)
+				endCase(caseId);
+		}
+	}
+
+	/**
+	 * Schlüssel für die Suche nach gleichen Varianten.
+	 */
+	private static final class Key {
+		private final int[] trace;
+		private final int hash;
+
+		Key(int[] trace) {
+			this.trace = trace;
+			this.hash = Arrays.hashCode(trace);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(trace, ((Key) o).trace);
+		}
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der verschiedenen Aktivitäten.
+	 */
+	public int activityCount() {
+		return activities.size();
+	}
+	/**
+	 * @param a
+	 * 		Nummer der Aktivität.
+	 * @return
+	 * 		Name der Aktivität.
+	 */
+	public String activityName(int a) {
+		return activities.get(a);
+	}
+	/**
+	 * @param name
+	 * 		Name einer Aktivität.
+	 * @return
+	 * 		Nummer der Aktivität, -1 wenn sie im Log nicht vorkommt.
+	 */
+	public int activityIndex(String name) {
+		Integer a = activityIndex.get(name);
+		return a == null ? -1 : a;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Varianten.
+	 */
+	public int variantCount() {
+		return variants.size();
+	}
+	/**
+	 * @param v
+	 * 		Nummer der Variante.
+	 * @return
+	 * 		Die Aktivitätsnummern der Variante (nicht verändern).
+	 */
+	public int[] variant(int v) {
+		return variants.get(v);
+	}
+	/**
+	 * @param v
+	 * 		Nummer der Variante.
+	 * @return
+	 * 		Anzahl der Fälle dieser Variante.
+	 */
+	public long variantFrequency(int v) {
+		return frequency[v];
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Fälle.
+	 */
+	public int caseCount() {
+		return caseCount;
+	}
+	/**
+	 * @param c
+	 * 		Nummer des Falls in der Reihenfolge des Abschlusses.
+	 * @return
+	 * 		ID des Falls, null wenn die IDs nicht aufbewahrt werden.
+	 */
+	public String caseId(int c) {
+		if (c < 0 || c >= caseCount)
+			throw new IndexOutOfBoundsException("case " + c);
+		return keepCaseIds ? caseIds.get(c) : null;
+	}
+	/**
+	 * @param c
+	 * 		Nummer des Falls.
+	 * @return
+	 * 		Nummer seiner Variante.
+	 */
+	public int caseVariant(int c) {
+		if (c < 0 || c >= caseCount)
+			throw new IndexOutOfBoundsException("case " + c);
+		return caseVariant[c];
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Ereignisse.
+	 */
+	public long eventCount() {
+		return eventCount;
+	}
+
+}
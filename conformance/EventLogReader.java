@@ -0,0 +1,375 @@
+package conformance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Liest ein Ereignislog als Strom, ohne es vollständig in den Speicher zu laden: jedes Ereignis wird sofort als
+ * Paar (Fall-ID, Aktivität) an einen Handler weitergereicht.<br>
+ * Unterstützt werden CSV mit Kopfzeile und XES (beide auch gzip-komprimiert, Endung .gz). In CSV-Dateien werden
+ * Fall- und Aktivitätsspalte an üblichen Spaltennamen erkannt oder explizit gesetzt; das Trennzeichen ist
+ * ',' oder ';', wenn die Kopfzeile kein Komma aber ein Semikolon enthält. Gibt es eine Lifecycle-Spalte bzw. ein
+ * lifecycle:transition-Attribut, werden nur Ereignisse mit dem Wert "complete" weitergereicht.<br>
+ * Das Ende eines Falls wird gemeldet, sobald es sicher ist: in XES am Ende eines trace-Elements, in CSV erst am
+ * Ende der Datei, es sei denn setGroupedByCase(true) sagt zu, dass die Ereignisse eines Falls zusammenhängend
+ * vorliegen.
+ */
+public class EventLogReader {
+
+	/**
+	 * Empfänger der gelesenen Ereignisse.
+	 */
+	public interface Handler {
+		/**
+		 * Ein Ereignis in der Reihenfolge des Logs.
+		 * @param caseId
+		 * 		ID des Falls.
+		 * @param activity
+		 * 		Name der Aktivität.
+		 */
+		void event(String caseId, String activity);
+		/**
+		 * Der Fall hat keine weiteren Ereignisse.
+		 * @param caseId
+		 * 		ID des Falls.
+		 */
+		void endCase(String caseId);
+		/**
+		 * Das Log ist zu Ende; alle noch offenen Fälle sind abgeschlossen.
+		 */
+		void endLog();
+	}
+
+	/**
+	 * Die unterstützten Formate.
+	 */
+	public enum Format { CSV, XES }
+
+	//**** FIELDS ****
+	/**
+	 * Spaltennamen (klein geschrieben) an denen Fall-, Aktivitäts- und Lifecycle-Spalte erkannt werden.
+	 */
+	private static final String[] CASE_COLUMNS = { "case:concept:name", "case id", "caseid", "case_id", "case" };
+	private static final String[] ACTIVITY_COLUMNS = { "concept:name", "activity", "activity name", "activity_name",
+			"event" };
+	private static final String[] LIFECYCLE_COLUMNS = { "lifecycle:transition", "lifecycle" };
+
+	/**
+	 * Die zu lesende Datei.
+	 */
+	private final File file;
+	/**
+	 * Das Format der Datei.
+	 */
+	private final Format format;
+	/**
+	 * Explizit gesetzte Spaltennamen, null = automatisch erkennen.
+	 */
+	private String caseColumn;
+	private String activityColumn;
+	/**
+	 * flag zeigt an ob die Ereignisse eines Falls in der CSV-Datei zusammenhängend vorliegen.
+	 */
+	private boolean groupedByCase = false;
+	/**
+	 * Anzahl der zuletzt weitergereichten Ereignisse.
+	 */
+	private long events = 0;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt einen Reader und bestimmt das Format an der Dateiendung (.xes oder .csv, jeweils auch mit .gz).
+	 * @param file
+	 * 		Die Logdatei.
+	 */
+	public EventLogReader(File file) {
+		this(file, formatOf(file));
+	}
+	/**
+	 * @param file
+	 * 		Die Logdatei.
+	 * @param format
+	 * 		Ihr Format.
+	 */
+	public EventLogReader(File file, Format format) {
+		this.file = file;
+		this.format = format;
+	}
+	private static Format formatOf(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".gz"))
+			name = name.substring(0, name.length() - 3);
+		if (name.endsWith(".xes"))
+			return Format.XES;
+		if (name.endsWith(".csv"))
+			return Format.CSV;
+		throw new IllegalArgumentException("unknown log format: " + file.getName());
+	}
+
+	//**** READING ****
+	/**
+	 * Liest das Log einmal vollständig und reicht alle Ereignisse an den Handler weiter.
+	 * @param handler
+	 * 		Empfänger der Ereignisse.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann oder nicht dem Format entspricht.
+	 */
+	public void read(Handler handler) throws IOException {
+		events = 0;
+		try (InputStream in = open()) {
+			if (format == Format.XES)
+				readXes(in, handler);
+			else
+				readCsv(in, handler);
+		}
+		handler.endLog();
+	}
+	private InputStream open() throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		if (file.getName().toLowerCase().endsWith(".gz"))
+			in = new GZIPInputStream(in, 1 << 16);
+		return in;
+	}
+
+	//** CSV **
+	private void readCsv(InputStream in, Handler handler) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+		String header = reader.readLine();
+		if (header == null)
+			return;
+		if (header.startsWith("\uFEFF"))
+			header = header.substring(1);
+		char delimiter = header.indexOf(',') < 0 && header.indexOf(';') >= 0 ? ';' : ',';
+		ArrayList<String> fields = new ArrayList<String>();
+		splitCsv(header, reader, delimiter, fields);
+		int caseIdx = column(fields, caseColumn, CASE_COLUMNS);
+		int activityIdx = column(fields, activityColumn, ACTIVITY_COLUMNS);
+		int lifecycleIdx = column(fields, null, LIFECYCLE_COLUMNS);
+		if (caseIdx < 0)
+			throw new IOException("no case column in " + fields);
+		if (activityIdx < 0)
+			throw new IOException("no activity column in " + fields);
+		int needed = Math.max(caseIdx, Math.max(activityIdx, lifecycleIdx));
+
+		String openCase = null;
+		String line;
+		long lineNo = 1;
+		while ((line = reader.readLine()) != null) {
+			lineNo++;
+			if (line.isEmpty())
+				continue;
+			splitCsv(line, reader, delimiter, fields);
+			if (fields.size() <= needed)
+				throw new IOException("line " + lineNo + ": expected at least " + (needed + 1) + " fields");
+			if (lifecycleIdx >= 0 && !isComplete(fields.get(lifecycleIdx)))
+				continue;
+			String caseId = fields.get(caseIdx);
+			if (groupedByCase && openCase != null && !openCase.equals(caseId))
+				handler.endCase(openCase);
+			openCase = caseId;
+			handler.event(caseId, fields.get(activityIdx));
+			events++;
+		}
+		if (groupedByCase && openCase != null)
+			handler.endCase(openCase);
+	}
+	/**
+	 * Zerlegt eine CSV-Zeile nach RFC 4180; ein in Anführungszeichen stehendes Feld darf sich über mehrere
+	 * Zeilen erstrecken, die dann aus dem Reader nachgelesen werden.
+	 */
+	private static void splitCsv(String line, BufferedReader reader, char delimiter, ArrayList<String> out)
+			throws IOException {
+		out.clear();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		int i = 0;
+		while (true) {
+			if (i == line.length()) {
+				if (!quoted)
+					break;
+				String next = reader.readLine();
+				if (next == null)
+					throw new IOException("unterminated quoted field");
+				field.append('\n');
+				line = next;
+				i = 0;
+				continue;
+			}
+			char c = line.charAt(i++);
+			if (quoted) {
+				if (c != '"')
+					field.append(c);
+				else if (i < line.length() && line.charAt(i) == '"') {
+					field.append('"');
+					i++;
+				}
+				else
+					quoted = false;
+			}
+			else if (c == '"')
+				quoted = true;
+			else if (c == delimiter) {
+				out.add(field.toString());
+				field.setLength(0);
+			}
+			else
+				field.append(c);
+		}
+		out.add(field.toString());
+	}
+	private static int column(ArrayList<String> header, String explicit, String[] candidates) {
+		if (explicit != null) {
+			for (int i = 0; i < header.size(); i++)
+				if (header.get(i).trim().equalsIgnoreCase(explicit))
+					return i;
+			return -1;
+		}
+		for (String candidate : candidates)
+			for (int i = 0; i < header.size(); i++)
+				if (header.get(i).trim().equalsIgnoreCase(candidate))
+					return i;
+		return -1;
+	}
+	private static boolean isComplete(String lifecycle) {
+		return lifecycle.isEmpty() || lifecycle.equalsIgnoreCase("complete");
+	}
+
+	//** XES **
+	private void readXes(InputStream in, Handler handler) throws IOException {
+		XMLStreamReader xml;
+		try {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			xml = factory.createXMLStreamReader(in);
+		} catch (XMLStreamException e) {
+			throw new IOException("XML Verarbeitungsfehler: " + e.getMessage(), e);
+		}
+		try {
+			// depth 1 = log, 2 = trace, 3 = event; Attribute tieferer Ebenen (verschachtelte Listen) zählen nicht
+			int depth = 0;
+			int traceDepth = -1;
+			int eventDepth = -1;
+			int traceNo = 0;
+			String caseId = null;
+			String activity = null;
+			String lifecycle = null;
+			ArrayList<String> pending = new ArrayList<String>();
+			while (xml.hasNext()) {
+				int type = xml.next();
+				if (type == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					String name = xml.getLocalName();
+					if (traceDepth < 0 && name.equals("trace")) {
+						traceDepth = depth;
+						caseId = null;
+						pending.clear();
+					}
+					else if (traceDepth >= 0 && eventDepth < 0 && name.equals("event")) {
+						eventDepth = depth;
+						activity = null;
+						lifecycle = null;
+					}
+					else if (eventDepth >= 0 && depth == eventDepth + 1) {
+						String key = xml.getAttributeValue(null, "key");
+						if ("concept:name".equals(key))
+							activity = xml.getAttributeValue(null, "value");
+						else if ("lifecycle:transition".equals(key))
+							lifecycle = xml.getAttributeValue(null, "value");
+					}
+					else if (traceDepth >= 0 && eventDepth < 0 && depth == traceDepth + 1
+							&& "concept:name".equals(xml.getAttributeValue(null, "key"))) {
+						caseId = xml.getAttributeValue(null, "value");
+						// Ereignisse vor dem concept:name-Attribut des Traces werden nachgereicht
+						flush(caseId, pending, handler);
+					}
+				}
+				else if (type == XMLStreamConstants.END_ELEMENT) {
+					if (depth == eventDepth) {
+						eventDepth = -1;
+						if (activity != null && (lifecycle == null || isComplete(lifecycle))) {
+							if (caseId == null)
+								pending.add(activity);
+							else {
+								handler.event(caseId, activity);
+								events++;
+							}
+						}
+					}
+					else if (depth == traceDepth) {
+						traceDepth = -1;
+						traceNo++;
+						if (caseId == null) {
+							caseId = "trace " + traceNo;
+							flush(caseId, pending, handler);
+						}
+						handler.endCase(caseId);
+					}
+					depth--;
+				}
+			}
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("Fehler beim Parsen des XES Dokuments: " + e.getMessage(), e);
+		}
+	}
+
+	private void flush(String caseId, ArrayList<String> pending, Handler handler) {
+		for (String activity : pending) {
+			handler.event(caseId, activity);
+			events++;
+		}
+		pending.clear();
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Das Format der Datei.
+	 */
+	public Format getFormat() {
+		return format;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der beim letzten read(Handler) weitergereichten Ereignisse.
+	 */
+	public long getEventCount() {
+		return events;
+	}
+	/**
+	 * @param caseColumn
+	 * 		Name der Fallspalte einer CSV-Datei, null = automatisch erkennen.
+	 */
+	public void setCaseColumn(String caseColumn) {
+		this.caseColumn = caseColumn;
+	}
+	/**
+	 * @param activityColumn
+	 * 		Name der Aktivitätsspalte einer CSV-Datei, null = automatisch erkennen.
+	 */
+	public void setActivityColumn(String activityColumn) {
+		this.activityColumn = activityColumn;
+	}
+	/**
+	 * @param groupedByCase
+	 * 		<b>true</b>: die Ereignisse eines Falls liegen in der CSV-Datei zusammenhängend vor, ein Fall ist
+	 * 		abgeschlossen sobald die Fall-ID wechselt
+	 */
+	public void setGroupedByCase(boolean groupedByCase) {
+		this.groupedByCase = groupedByCase;
+	}
+
+}
@@ -0,0 +1,341 @@
+package conformance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Tokenbasiertes Replay eines Ereignislogs auf einem Workflownetz.<br>
+ * Jeder Trace wird ab einer Marke in der Startstelle nachgespielt. Fehlt einer Transition eine Marke in einer
+ * Vorstelle, wird sie als fehlend gezählt und künstlich erzeugt; am Ende wird die Marke der Endstelle verbraucht
+ * und alle übrigen Marken zählen als übrig. Dafür wird pro Trace eine Markierung mit Markenanzahlen (int je
+ * Stelle) geführt, auch wenn das Netz im Editor 1-sicher gespielt wird.<br>
+ * Fitness nach Rozinat/van der Aalst: f = 1/2 (1 - fehlend/verbraucht) + 1/2 (1 - übrig/erzeugt).<br>
+ * Aktivitäten werden Transitionen über ihre Bezeichnung zugeordnet (Name, sonst ID); tragen mehrere Transitionen
+ * dieselbe Bezeichnung, wird die erste aktivierte genommen, sonst die mit den wenigsten fehlenden Marken.
+ * Ereignisse ohne passende Transition werden übersprungen und gesondert gezählt.<br>
+ * Jede Variante des Logs wird nur einmal nachgespielt, die Varianten parallel.
+ */
+public class TokenReplay {
+
+	//**** FIELDS ****
+	/**
+	 * Die Momentaufnahme des Netzes.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Transitionen je Bezeichnung.
+	 */
+	private final HashMap<String, int[]> byLabel = new HashMap<String, int[]>();
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * @param net
+	 * 		Das Workflownetz.
+	 */
+	public TokenReplay(PetriNet net) {
+		this(new IndexedNet(net));
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme eines Workflownetzes.
+	 */
+	public TokenReplay(IndexedNet net) {
+		if (net.getStart() < 0 || net.getEnd() < 0)
+			throw new IllegalArgumentException("net has no unique start and end place");
+		this.net = net;
+		HashMap<String, List<Integer>> labels = new HashMap<String, List<Integer>>();
+		for (int t = 0; t < net.transitionCount(); t++)
+			labels.computeIfAbsent(net.transitionLabel(t), k -> new ArrayList<Integer>()).add(t);
+		labels.forEach((label, ts) -> byLabel.put(label, ts.stream().mapToInt(Integer::intValue).toArray()));
+	}
+
+	//**** METHODS ****
+	/**
+	 * Spielt alle Varianten eines Logs nach.
+	 * @param log
+	 * 		Das Ereignislog.
+	 * @return
+	 * 		Ergebnis je Variante, Fall und insgesamt.
+	 */
+	public Result replay(EventLog log) {
+		long start = System.nanoTime();
+		int[][] candidates = new int[log.activityCount()][];
+		for (int a = 0; a < candidates.length; a++)
+			candidates[a] = byLabel.getOrDefault(log.activityName(a), new int[0]);
+		Result result = new Result(log, net.placeCount());
+		IntStream.range(0, log.variantCount()).parallel()
+				.forEach(v -> replay(log.variant(v), candidates, v, log.variantFrequency(v), result));
+		result.millis = (System.nanoTime() - start) / 1e6;
+		return result;
+	}
+	/**
+	 * Spielt einen einzelnen Trace nach.
+	 */
+	private void replay(int[] trace, int[][] candidates, int v, long frequency, Result result) {
+		int[] m = new int[net.placeCount()];
+		int missing = 0;
+		int consumed = 0;
+		int produced = 1;
+		int unmapped = 0;
+		m[net.getStart()] = 1;
+		for (int a : trace) {
+			int[] ts = candidates[a];
+			if (ts.length == 0) {
+				unmapped++;
+				continue;
+			}
+			int t = choose(ts, m);
+			for (int p : net.pre(t)) {
+				consumed++;
+				if (m[p] > 0)
+					m[p]--;
+				else {
+					missing++;
+					result.missingAt.addAndGet(p, frequency);
+				}
+			}
+			for (int p : net.post(t)) {
+				m[p]++;
+				produced++;
+			}
+		}
+		consumed++;
+		if (m[net.getEnd()] > 0)
+			m[net.getEnd()]--;
+		else {
+			missing++;
+			result.missingAt.addAndGet(net.getEnd(), frequency);
+		}
+		int remaining = 0;
+		for (int p = 0; p < m.length; p++) {
+			if (m[p] > 0) {
+				remaining += m[p];
+				result.remainingAt.addAndGet(p, frequency * m[p]);
+			}
+		}
+		result.missing[v] = missing;
+		result.remaining[v] = remaining;
+		result.consumed[v] = consumed;
+		result.produced[v] = produced;
+		result.unmapped[v] = unmapped;
+	}
+	private int choose(int[] ts, int[] m) {
+		if (ts.length == 1)
+			return ts[0];
+		int best = ts[0];
+		int bestMissing = Integer.MAX_VALUE;
+		for (int t : ts) {
+			int missing = 0;
+			for (int p : net.pre(t))
+				if (m[p] == 0)
+					missing++;
+			if (missing == 0)
+				return t;
+			if (missing < bestMissing) {
+				bestMissing = missing;
+				best = t;
+			}
+		}
+		return best;
+	}
+	/**
+	 * Berechnet die Fitness aus den Markenzählern.
+	 * @param missing
+	 * 		fehlende Marken
+	 * @param consumed
+	 * 		verbrauchte Marken
+	 * @param remaining
+	 * 		übrige Marken
+	 * @param produced
+	 * 		erzeugte Marken
+	 * @return
+	 * 		Die Fitness zwischen 0 und 1.
+	 */
+	static double fitness(double missing, double consumed, double remaining, double produced) {
+		double f = 0.5 * (consumed == 0 ? 1 : 1 - missing / consumed)
+				+ 0.5 * (produced == 0 ? 1 : 1 - remaining / produced);
+		return Math.max(0, f);
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Die Momentaufnahme des Netzes.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+
+	//**** RESULT ****
+	/**
+	 * Ergebnis eines Replays: Markenzähler je Variante, daraus Fitness je Variante, je Fall und insgesamt
+	 * (gewichtet mit der Anzahl der Fälle je Variante), sowie je Stelle wie oft dort Marken fehlten oder übrig
+	 * blieben.
+	 */
+	public static class Result {
+		private final EventLog log;
+		private final int[] missing;
+		private final int[] remaining;
+		private final int[] consumed;
+		private final int[] produced;
+		private final int[] unmapped;
+		private final AtomicLongArray missingAt;
+		private final AtomicLongArray remainingAt;
+		private double millis;
+
+		Result(EventLog log, int places) {
+			this.log = log;
+			int n = log.variantCount();
+			missing = new int[n];
+			remaining = new int[n];
+			consumed = new int[n];
+			produced = new int[n];
+			unmapped = new int[n];
+			missingAt = new AtomicLongArray(places);
+			remainingAt = new AtomicLongArray(places);
+		}
+
+		/**
+		 * @return
+		 * 		Das nachgespielte Log.
+		 */
+		public EventLog getLog() {
+			return log;
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Fitness der Variante.
+		 */
+		public double variantFitness(int v) {
+			return TokenReplay.fitness(missing[v], consumed[v], remaining[v], produced[v]);
+		}
+		/**
+		 * @param c
+		 * 		Nummer des Falls.
+		 * @return
+		 * 		Fitness des Falls.
+		 */
+		public double caseFitness(int c) {
+			return variantFitness(log.caseVariant(c));
+		}
+		/**
+		 * @return
+		 * 		Fitness des ganzen Logs.
+		 */
+		public double getFitness() {
+			double m = 0, c = 0, r = 0, p = 0;
+			for (int v = 0; v < missing.length; v++) {
+				long f = log.variantFrequency(v);
+				m += f * (double) missing[v];
+				c += f * (double) consumed[v];
+				r += f * (double) remaining[v];
+				p += f * (double) produced[v];
+			}
+			return TokenReplay.fitness(m, c, r, p);
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		<b>true</b>: wenn die Variante ohne fehlende und übrige Marken nachgespielt wurde
+		 */
+		public boolean fits(int v) {
+			return missing[v] == 0 && remaining[v] == 0 && unmapped[v] == 0;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Fälle deren Variante passt.
+		 */
+		public long fittingCases() {
+			long n = 0;
+			for (int v = 0; v < missing.length; v++)
+				if (fits(v))
+					n += log.variantFrequency(v);
+			return n;
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Anzahl der fehlenden Marken beim Nachspielen der Variante.
+		 */
+		public int getMissing(int v) {
+			return missing[v];
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Anzahl der übrigen Marken beim Nachspielen der Variante.
+		 */
+		public int getRemaining(int v) {
+			return remaining[v];
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Anzahl der verbrauchten Marken beim Nachspielen der Variante.
+		 */
+		public int getConsumed(int v) {
+			return consumed[v];
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Anzahl der erzeugten Marken beim Nachspielen der Variante.
+		 */
+		public int getProduced(int v) {
+			return produced[v];
+		}
+		/**
+		 * @param v
+		 * 		Nummer der Variante.
+		 * @return
+		 * 		Anzahl der Ereignisse der Variante ohne passende Transition.
+		 */
+		public int getUnmapped(int v) {
+			return unmapped[v];
+		}
+		/**
+		 * @param p
+		 * 		Nummer der Stelle.
+		 * @return
+		 * 		Anzahl der über alle Fälle in dieser Stelle fehlenden Marken.
+		 */
+		public long getMissingAt(int p) {
+			return missingAt.get(p);
+		}
+		/**
+		 * @param p
+		 * 		Nummer der Stelle.
+		 * @return
+		 * 		Anzahl der über alle Fälle in dieser Stelle übrig gebliebenen Marken.
+		 */
+		public long getRemainingAt(int p) {
+			return remainingAt.get(p);
+		}
+		/**
+		 * @return
+		 * 		Laufzeit des Replays in Millisekunden (ohne Einlesen).
+		 */
+		public double getMillis() {
+			return millis;
+		}
+		@Override
+		public String toString() {
+			return String.format("fitness %.4f, %d of %d cases fit, %d variants, %.1f ms",
+					getFitness(), fittingCases(), log.caseCount(), missing.length, millis);
+		}
+	}
+
+}
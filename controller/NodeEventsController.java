@@ -5,13 +5,18 @@ import java.util.Map;
 import javafx.event.EventHandler;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.text.Text;
+import model.Delay;
+import model.Transition;
 import view.NetElementGraphic;
 import view.NodeGraphic;
 import view.TransitionGraphic;
@@ -87,6 +92,10 @@ class NodeEventsController {
 	 * Menüeintrag für das Umbenennen
 	 */
 	private MenuItem renameNode = new MenuItem("rename node");
+	/**
+	 * Menüeintrag für das Setzen der Verzögerung einer Transition
+	 */
+	private MenuItem setDelay = new MenuItem("set delay");
 
 	//**** CONSTRUCTOR ****
 	/**
@@ -99,8 +108,36 @@ class NodeEventsController {
 	public NodeEventsController(ViewController v, PaneEventsController p) {
 		viewContr = v;
 		paneContr = p;
-		rightClickMenu.getItems().add(renameNode);
+		rightClickMenu.getItems().addAll(renameNode, setDelay);
+
+	}
+
+	//**** METHODS ****
+	/**
+	 * Fragt in einem Dialog die Verzögerung einer Transition in der Schreibweise von Delay.toString() ab,
+	 * etwa "exponential(0.5)"; eine bloße Zahl ist eine feste Verzögerung, eine leere Eingabe entfernt sie.<br>
+	 * Bei ungültiger Eingabe bleibt die Verzögerung unverändert und ein Fehler wird angezeigt.
+	 * @param transition
+	 * 		Die Transition deren Verzögerung gesetzt werden soll.
+	 */
+	private void editDelay(Transition transition) {
+		TextInputDialog dialog = new TextInputDialog(transition.getDelay() == null ? "" : transition.getDelay().toString());
+		dialog.setTitle("Set delay");
+		String name = transition.getName();
+		dialog.setHeaderText("Delay of transition " + (name == null || name.isEmpty() ? transition.ID : name));
+		dialog.setContentText("e.g. 2.5, exponential(0.5), uniform(1, 3), empirical[2, 4]; empty for none:");
+		dialog.showAndWait().ifPresent(text -> {
+			try {
+				transition.setDelay(text.trim().isEmpty() ? null : Delay.parse(text));
+			} catch (IllegalArgumentException ex) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error setting delay.");
+				alert.setHeaderText("Invalid delay.");
+				alert.setContentText(ex.getMessage());
 
+				alert.showAndWait();
+			}
+		});
 	}
 
 	//**** EVENT HANDLERS ****
@@ -163,6 +200,7 @@ class NodeEventsController {
 						&& e.getSource().getClass() == TransitionGraphic.class 
 						&& ((TransitionGraphic) e.getSource()).getModel().activated().get()
 						&& !((TransitionGraphic) e.getSource()).getModel().hasContact()) {
+					viewContr.recordFiring(((TransitionGraphic) e.getSource()).getModel());
 					((TransitionGraphic) e.getSource()).getModel().fireTransition();
 					viewContr.getCurrentNet().testDeadlock();
 					viewContr.getCurrentNet().testFinished();
@@ -200,6 +238,11 @@ class NodeEventsController {
 				{
 					nameTagHandler.handle(e);
 				});
+				setDelay.setVisible(e.getSource() instanceof TransitionGraphic);
+				setDelay.setOnAction(f ->
+				{
+					editDelay(((TransitionGraphic) e.getSource()).getModel());
+				});
 			}
 			e.consume();
 
@@ -0,0 +1,430 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.animation.AnimationTimer;
+import model.IndexedNet;
+import model.PetriNet;
+import model.Place;
+import model.Transition;
+import view.PNPane;
+import simulation.AutoPlayer;
+import simulation.FiringHistory;
+import simulation.FiringStatistics;
+import simulation.TokenGame;
+import simulation.TraceReader;
+import simulation.TraceWriter;
+
+/**
+ * Implementiert das automatische Abspielen des Tokenspiels im Simulationsmodus.<br>
+ * Geschaltet wird von einem AutoPlayer außerhalb des FX-Threads; ein AnimationTimer holt einmal pro Bild
+ * die neueste Markierung ab und setzt nur die Stellen des Modells, deren Markierung sich geändert hat.
+ * So bleibt die Oberfläche flüssig, auch wenn tausende Transitionen pro Sekunde schalten.<br>
+ * Außerdem führt die Klasse den Verlauf aller Schaltvorgänge (von Hand und automatisch), über den sich
+ * im Simulationsmodus schrittweise zurück und wieder vor gehen lässt, sowie eine FiringStatistics, die auf
+ * Wunsch als Heatmap über das Netz gelegt wird. Während des Abspielens wird die Heatmap nur so oft neu gefärbt,
+ * wie der AutoPlayer die Statistik veröffentlicht (höchstens alle AutoPlayer.STATISTICS_NANOS).<br>
+ * Der Verlauf lässt sich als Binärdatei (TraceWriter) speichern und wieder laden, um ihn schrittweise
+ * nachzuspielen.
+ */
+class SimulationPlayer {
+
+	//**** FIELDS ****
+	/**
+	 * Referenz auf den ViewController.
+	 */
+	private ViewController viewContr;
+	/**
+	 * Der laufende AutoPlayer, null wenn nicht abgespielt wird.
+	 */
+	private AutoPlayer player;
+	/**
+	 * Das Netz zu dem Momentaufnahme und Verlauf gehören.
+	 */
+	private PetriNet net;
+	/**
+	 * Momentaufnahme des Netzes.
+	 */
+	private IndexedNet snapshot;
+	/**
+	 * Verlauf der Schaltvorgänge, null wenn noch keiner angelegt wurde.
+	 */
+	private FiringHistory history;
+	/**
+	 * Schaltstatistik, null wenn noch keine angelegt wurde; gehört während des Abspielens dem AutoPlayer.
+	 */
+	private FiringStatistics statistics;
+	/**
+	 * Vom AutoPlayer abgeholte Kopie der Statistik für die Heatmap während des Abspielens.
+	 */
+	private FiringStatistics polledStatistics;
+	/**
+	 * flag zeigt an ob die Heatmap angezeigt wird.
+	 */
+	private boolean heatmap = false;
+	/**
+	 * Das Pane auf dem die Heatmap zuletzt gezeichnet wurde, null wenn keine gezeichnet ist.
+	 */
+	private PNPane heatPane;
+	/**
+	 * Die Stellen des Netzes in der Nummerierung der Momentaufnahme.
+	 */
+	private Place[] places;
+	/**
+	 * Puffer für die abgeholte Markierung.
+	 */
+	private long[] buffer;
+	/**
+	 * Die eingestellte Rate in Schaltvorgängen pro Sekunde.
+	 */
+	private double rate = 10;
+	/**
+	 * flag zeigt an ob in maximalen Schritten (alle unabhängigen Transitionen gleichzeitig) abgespielt wird.
+	 */
+	private boolean maximalSteps = false;
+	/**
+	 * Höchstzahl der Schritte die aus einer Aufzeichnung in den Verlauf geladen werden; bei längeren
+	 * Aufzeichnungen werden die letzten Schritte geladen.
+	 */
+	private static final int MAX_LOADED_STEPS = 1 << 22;
+	/**
+	 * Zeichentakt: überträgt pro Bild die neueste Markierung ins Modell.
+	 */
+	private final AnimationTimer pulse = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			render();
+		}
+	};
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * @param v
+	 * 		Referenz auf den ViewController.
+	 */
+	public SimulationPlayer(ViewController v) {
+		viewContr = v;
+	}
+
+	//**** METHODS ****
+	/**
+	 * Startet das Abspielen auf dem aktuellen Netz ab seiner aktuellen Markierung.
+	 */
+	public void play() {
+		stop();
+		if (!prepare())
+			return;
+		TokenGame game = new TokenGame(snapshot);
+		game.setMarking(history.getMarking());
+		game.setHistory(history);
+		game.setStatistics(statistics);
+		polledStatistics = new FiringStatistics(snapshot, history.getMarking());
+		game.setMaximalSteps(maximalSteps);
+		player = new AutoPlayer(game);
+		player.setRate(rate);
+		player.start();
+		pulse.start();
+	}
+	/**
+	 * Hält das Abspielen an, überträgt die letzte Markierung ins Modell und aktualisiert die Statusliste.
+	 */
+	public void stop() {
+		if (player == null)
+			return;
+		pulse.stop();
+		player.stop();
+		apply();
+		player = null;
+		paintHeatmap(statistics);
+		refresh();
+		viewContr.getToolBoard().playStopped();
+	}
+	/**
+	 * Hält das Abspielen an und verwirft den Verlauf, z.B. nach dem Zurücksetzen auf die Anfangsmarkierung
+	 * oder beim Wechsel in den Edit-Modus.
+	 */
+	public void reset() {
+		stop();
+		history = null;
+		statistics = null;
+		net = null;
+		snapshot = null;
+		if (heatmap && prepare())
+			paintHeatmap(statistics);
+	}
+	/**
+	 * Trägt einen Schaltvorgang von Hand in den Verlauf ein; muss vor dem Schalten im Modell aufgerufen werden.
+	 * @param transition
+	 * 		Die Transition die gleich schaltet.
+	 */
+	public void record(Transition transition) {
+		stop();
+		if (!prepare())
+			return;
+		int t = snapshot.transitionIndex(transition.ID);
+		if (t < 0)
+			return;
+		history.record(t);
+		statistics.record(t);
+		paintHeatmap(statistics);
+	}
+	/**
+	 * Nimmt den letzten Schaltvorgang zurück.
+	 */
+	public void stepBack() {
+		stop();
+		if (prepare())
+			show(history.stepBack());
+	}
+	/**
+	 * Wiederholt den nächsten zurückgenommenen Schaltvorgang.
+	 */
+	public void stepForward() {
+		stop();
+		if (prepare())
+			show(history.stepForward());
+	}
+	/**
+	 * Springt auf eine Markierung, etwa einen im Erreichbarkeitsgraphen gewählten Zustand: der Verlauf und die
+	 * Statistik beginnen bei ihr neu. Stellen, die die Momentaufnahme der Markierung nicht kennt, behalten ihre
+	 * Markierung; Stellen der Markierung, die es nicht mehr gibt, werden übergangen.
+	 * @param from
+	 * 		Momentaufnahme des Netzes, in deren Nummerierung die Markierung vorliegt.
+	 * @param marking
+	 * 		Die neue Markierung.
+	 */
+	public void jumpTo(IndexedNet from, long[] marking) {
+		stop();
+		if (!prepare())
+			return;
+		long[] target = history.getMarking().clone();
+		for (int p = 0; p < from.placeCount(); p++) {
+			int q = snapshot.placeIndex(from.placeId(p));
+			if (q < 0)
+				continue;
+			if (IndexedNet.isMarked(marking, 0, p))
+				target[q >>> 6] |= 1L << q;
+			else
+				target[q >>> 6] &= ~(1L << q);
+		}
+		history = new FiringHistory(snapshot, target);
+		statistics = new FiringStatistics(snapshot, history.getMarking());
+		for (int p = 0; p < places.length; p++)
+			setMark(p, history.getMarking());
+		paintHeatmap(statistics);
+		refresh();
+	}
+	/**
+	 * Legt Momentaufnahme und Verlauf für das aktuelle Netz ab seiner aktuellen Markierung an,
+	 * falls sie nicht schon zu diesem Netz gehören.
+	 * @return
+	 * 		<b>false</b>: wenn es kein aktuelles Netz gibt
+	 */
+	private boolean prepare() {
+		PetriNet current = viewContr.getCurrentNet();
+		if (current == null)
+			return false;
+		if (history != null && net == current)
+			return true;
+		net = current;
+		snapshot = new IndexedNet(net);
+		history = new FiringHistory(snapshot, snapshot.currentMarking());
+		statistics = new FiringStatistics(snapshot, history.getMarking());
+		places = new Place[snapshot.placeCount()];
+		for (int p = 0; p < places.length; p++)
+			places[p] = net.getPlaces().get(snapshot.placeId(p));
+		buffer = new long[snapshot.words()];
+		return true;
+	}
+	/**
+	 * Überträgt die von einem Schritt im Verlauf geänderten Stellen ins Modell.
+	 * @param t
+	 * 		Die vor- oder zurückgenommene Transition, -1 wenn es keinen Schritt gab.
+	 */
+	private void show(int t) {
+		if (t < 0)
+			return;
+		for (int p : snapshot.consume(t))
+			setMark(p, history.getMarking());
+		for (int p : snapshot.produce(t))
+			setMark(p, history.getMarking());
+		statistics.sync(history.getMarking());
+		paintHeatmap(statistics);
+		refresh();
+	}
+	private void setMark(int p, long[] marking) {
+		boolean marked = IndexedNet.isMarked(marking, 0, p);
+		if (places[p] != null && places[p].isMarked() != marked)
+			places[p].setMark(marked ? "1" : "0");
+	}
+	/**
+	 * Prüft Verklemmung und Ende neu und aktualisiert die Statusliste, falls das Netz noch das aktuelle ist.
+	 */
+	private void refresh() {
+		net.testDeadlock();
+		net.testFinished();
+		if (viewContr.getCurrentNet() == net)
+			viewContr.getToolBoard().updateList();
+	}
+	/**
+	 * Wird einmal pro Bild aufgerufen.
+	 */
+	private void render() {
+		if (player == null)
+			return;
+		apply();
+		if (heatmap && player.pollStatistics(polledStatistics))
+			paintHeatmap(polledStatistics);
+		if (player.isHalted())
+			stop();
+	}
+	/**
+	 * Überträgt die neueste Markierung, nur geänderte Stellen werden gesetzt.
+	 */
+	private void apply() {
+		if (!player.poll(buffer))
+			return;
+		for (int p = 0; p < places.length; p++)
+			setMark(p, buffer);
+	}
+
+	/**
+	 * Färbt das aktuelle Pane gemäß der Statistik ein, falls die Heatmap angezeigt wird: Transitionen nach
+	 * ihrer Anzahl an Schaltvorgängen relativ zur häufigsten, Stellen nach dem Anteil der Schritte in denen sie
+	 * markiert waren.
+	 * @param stats
+	 * 		Die darzustellende Statistik.
+	 */
+	private void paintHeatmap(FiringStatistics stats) {
+		if (!heatmap || stats == null || viewContr.getCurrentNet() != net)
+			return;
+		PNPane pane = viewContr.getCurrentPane();
+		if (pane == null)
+			return;
+		if (heatPane != null && heatPane != pane)
+			heatPane.clearHeatmap();
+		heatPane = pane;
+		Map<String, Double> heat = new HashMap<String, Double>();
+		double max = Math.max(1, stats.maxFirings());
+		for (int t = 0; t < snapshot.transitionCount(); t++)
+			heat.put(snapshot.transitionId(t), stats.firings(t) / max);
+		for (int p = 0; p < snapshot.placeCount(); p++)
+			heat.put(snapshot.placeId(p), stats.occupancy(p));
+		pane.showHeatmap(heat);
+	}
+	/**
+	 * Schreibt die Schaltstatistik des aktuellen Netzes als CSV; hält dazu das Abspielen an.
+	 * @param out
+	 * 		Ziel der Ausgabe; wird nicht geschlossen.
+	 * @throws IOException
+	 * 		wenn das Schreiben fehlschlägt.
+	 */
+	public void exportStatistics(Writer out) throws IOException {
+		stop();
+		if (!prepare())
+			throw new IllegalStateException("no current net");
+		statistics.writeCsv(out);
+	}
+
+	/**
+	 * Schreibt den gespeicherten Verlauf des aktuellen Netzes als Binärdatei; hält dazu das Abspielen an.
+	 * @param file
+	 * 		Die Zieldatei.
+	 * @throws IOException
+	 * 		wenn die Datei nicht geschrieben werden kann.
+	 */
+	public void saveTrace(File file) throws IOException {
+		stop();
+		if (!prepare())
+			throw new IllegalStateException("no current net");
+		long position = history.getPosition();
+		history.jumpTo(history.getFirst());
+		try (TraceWriter out = new TraceWriter(file, snapshot, history.getMarking())) {
+			for (long s = history.getFirst(); s < history.getEnd(); s++)
+				out.record(history.transitionAt(s));
+		} finally {
+			history.jumpTo(position);
+		}
+	}
+	/**
+	 * Lädt eine Aufzeichnung als Verlauf des aktuellen Netzes und setzt das Netz auf ihren ersten Schritt;
+	 * mit stepForward() lässt sie sich dann nachspielen. Von sehr langen Aufzeichnungen werden nur die letzten
+	 * MAX_LOADED_STEPS Schritte geladen, der Anfang wird über den Index übersprungen.
+	 * @param file
+	 * 		Die zu lesende Datei.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann.
+	 * @throws IllegalArgumentException
+	 * 		wenn die Aufzeichnung nicht zum aktuellen Netz gehört.
+	 */
+	public void loadTrace(File file) throws IOException {
+		stop();
+		if (!prepare())
+			throw new IllegalStateException("no current net");
+		try (TraceReader in = new TraceReader(file)) {
+			if (!in.matches(snapshot))
+				throw new IllegalArgumentException("the trace was recorded on a different net");
+			int capacity = (int) Math.max(FiringHistory.DEFAULT_CAPACITY, Math.min(in.length(), MAX_LOADED_STEPS));
+			in.seek(Math.max(0, in.length() - capacity));
+			FiringHistory loaded = new FiringHistory(snapshot, in.getMarking(), capacity);
+			int t;
+			while ((t = in.next()) >= 0)
+				loaded.record(t);
+			loaded.jumpTo(loaded.getFirst());
+			history = loaded;
+		}
+		statistics = new FiringStatistics(snapshot, history.getMarking());
+		for (int p = 0; p < places.length; p++)
+			setMark(p, history.getMarking());
+		paintHeatmap(statistics);
+		refresh();
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn zur Zeit abgespielt wird
+	 */
+	public boolean isPlaying() {
+		return player != null;
+	}
+	/**
+	 * @param rate
+	 * 		Die Rate in Schaltvorgängen pro Sekunde.
+	 */
+	public void setRate(double rate) {
+		this.rate = rate;
+		if (player != null)
+			player.setRate(rate);
+	}
+	/**
+	 * @param maximalSteps
+	 * 		Ob in maximalen Schritten abgespielt wird; wirkt ab dem nächsten play().
+	 */
+	public void setMaximalSteps(boolean maximalSteps) {
+		this.maximalSteps = maximalSteps;
+	}
+	/**
+	 * Blendet die Heatmap ein oder aus.
+	 * @param heatmap
+	 * 		<b>true</b>: Knoten nach der Schaltstatistik einfärben, <b>false</b>: gewöhnliche Färbung
+	 */
+	public void setHeatmap(boolean heatmap) {
+		this.heatmap = heatmap;
+		if (!heatmap) {
+			if (heatPane != null)
+				heatPane.clearHeatmap();
+			heatPane = null;
+		}
+		else if (isPlaying()) {
+			player.pollStatistics(polledStatistics);
+			paintHeatmap(polledStatistics);
+		}
+		else if (prepare())
+			paintHeatmap(statistics);
+	}
+}
@@ -1,9 +1,16 @@
 package controller;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import analysis.BehaviourClassification;
+import analysis.BehaviourClassification.Liveness;
+import analysis.RelaxedSoundness;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
+import javafx.scene.control.Slider;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.ColumnConstraints;
@@ -12,6 +19,7 @@ import javafx.scene.layout.Priority;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
+import model.PetriNet;
 
 /**
  * Implementiert die Werkzeugleiste für die Benutzeroberfläche des Workflownetzeditor.
@@ -56,6 +64,66 @@ class ToolBoard extends GridPane {
 	 * Button mit dem sich ein Netz im Simulationsmodus auf die Anfangsmarkierung zurücksetzen lässt.
 	 */
 	private Button rewind = new Button("rewind");
+	/**
+	 * Button mit dem sich das automatische Abspielen im Simulationsmodus starten und anhalten lässt.
+	 */
+	private ToggleButton play = new ToggleButton("play");
+	/**
+	 * Button mit dem sich im Simulationsmodus der letzte Schaltvorgang zurücknehmen lässt.
+	 */
+	private Button back = new Button("back");
+	/**
+	 * Button mit dem sich im Simulationsmodus ein zurückgenommener Schaltvorgang wiederholen lässt.
+	 */
+	private Button forward = new Button("forward");
+	/**
+	 * Regler für die Geschwindigkeit des automatischen Abspielens (Zehnerlogarithmus der Schaltvorgänge pro Sekunde).
+	 */
+	private Slider speed = new Slider(0, 5, 1);
+	/**
+	 * Button der festlegt, ob beim automatischen Abspielen alle unabhängigen Transitionen gleichzeitig schalten.
+	 */
+	private ToggleButton concurrent = new ToggleButton("concurrent");
+	/**
+	 * Button der die Heatmap der Schaltstatistik im Simulationsmodus ein- und ausblendet.
+	 */
+	private ToggleButton heatmap = new ToggleButton("heatmap");
+	/**
+	 * Button der die Verhaltensklassifikation des Netzes im Simulationsmodus startet.
+	 */
+	private Button behaviour = new Button("behaviour");
+	/**
+	 * Button der im Simulationsmodus eine kürzeste Schaltfolge zur Endmarkierung sucht und hervorhebt.
+	 */
+	private ToggleButton path = new ToggleButton("shortest path");
+	/**
+	 * Das Netz zu dem die Zeile über die kürzeste Schaltfolge gehört, null wenn keine vorliegt.
+	 */
+	private PetriNet pathNet;
+	/**
+	 * Zeile über die kürzeste Schaltfolge für die Liste der Statusinformationen.
+	 */
+	private String pathLine;
+	/**
+	 * Button der im Simulationsmodus den kritischen Pfad sucht und seine Engpässe hervorhebt.
+	 */
+	private ToggleButton critical = new ToggleButton("critical path");
+	/**
+	 * Das Netz zu dem die Zeilen über den kritischen Pfad gehören, null wenn keine vorliegen.
+	 */
+	private PetriNet criticalNet;
+	/**
+	 * Zeilen über den kritischen Pfad und die Engpässe für die Liste der Statusinformationen.
+	 */
+	private final List<String> criticalLines = new ArrayList<String>();
+	/**
+	 * Das Netz zu dem die Zeilen der Verhaltensklassifikation gehören, null wenn keine vorliegt.
+	 */
+	private PetriNet behaviourNet;
+	/**
+	 * Zeilen der letzten Verhaltensklassifikation für die Liste der Statusinformationen.
+	 */
+	private final List<String> behaviourLines = new ArrayList<String>();
 	/**
 	 * Toggle-Gruppe die sicherstellt, dass erkennbar immer entweder Simulations- oder Edit-Modus ausgewählt sein muss.
 	 */
@@ -133,13 +201,70 @@ class ToolBoard extends GridPane {
 					viewContr.sizeDown();
 			});
 			rewind.setOnAction(e -> {
+				if (viewContr.getCurrentNet() != null) {
+					viewContr.resetSimulation();
+					viewContr.getCurrentNet().setInitialMarking();
+					viewContr.getCurrentNet().testDeadlock();
+					viewContr.getCurrentNet().testFinished();
+					updateList();
+				}
+			});
+			play.setOnAction(e -> {
+				if (viewContr.getCurrentNet() == null)
+					play.setSelected(false);
+				else if (play.isSelected())
+					viewContr.startAutoPlay();
+				else
+					viewContr.stopAutoPlay();
+			});
+			back.setOnAction(e -> {
 				if (viewContr.getCurrentNet() != null)
-				viewContr.getCurrentNet().setInitialMarking();
+					viewContr.stepBack();
 			});
+			forward.setOnAction(e -> {
+				if (viewContr.getCurrentNet() != null)
+					viewContr.stepForward();
+			});
+			concurrent.setOnAction(e -> viewContr.setConcurrentSteps(concurrent.isSelected()));
+			heatmap.setOnAction(e -> {
+				if (viewContr.getCurrentNet() == null)
+					heatmap.setSelected(false);
+				else
+					viewContr.showHeatmap(heatmap.isSelected());
+			});
+			behaviour.setOnAction(e -> {
+				if (viewContr.getCurrentNet() != null) {
+					behaviour.setDisable(true);
+					viewContr.classifyBehaviour();
+				}
+			});
+			path.setOnAction(e -> {
+				if (viewContr.getCurrentNet() == null)
+					path.setSelected(false);
+				else
+					viewContr.showShortestPath(path.isSelected());
+			});
+			critical.setOnAction(e -> {
+				if (viewContr.getCurrentNet() == null)
+					critical.setSelected(false);
+				else
+					viewContr.showCriticalPath(critical.isSelected());
+			});
+			speed.valueProperty().addListener((obs, oldV, newV) ->
+				viewContr.setAutoPlayRate(Math.pow(10, newV.doubleValue())));
 
 			//Stellt sicher, dass die Elemente den zur Verfügung stehenden Platz ausnutzen.
 			simulation.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
 			rewind.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			play.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			back.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			forward.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			speed.setMaxWidth(Double.MAX_VALUE);
+			concurrent.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			heatmap.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			behaviour.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			path.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+			critical.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
 			edit.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
 			placeBrush.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
 			transBrush.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
@@ -157,43 +282,170 @@ class ToolBoard extends GridPane {
 			}
 			
 			this.add(simulation, 0, 0, 2, 1);
-			this.add(rewind, 0, 1, 2, 1);
-			this.add(list, 0, 2, 2, 4);
-			this.add(edit, 0, 7, 2, 1);
-			this.add(placeBrush, 0, 8, 1, 1);
-			this.add(transBrush, 1, 8, 1, 1);
-			this.add(sizeUp, 0, 9, 1, 1);
-			this.add(sizeDown, 1, 9, 1, 1);
+			this.add(rewind, 0, 1, 1, 1);
+			this.add(play, 1, 1, 1, 1);
+			this.add(back, 0, 2, 1, 1);
+			this.add(forward, 1, 2, 1, 1);
+			this.add(speed, 0, 3, 1, 1);
+			this.add(concurrent, 1, 3, 1, 1);
+			this.add(heatmap, 0, 4, 1, 1);
+			this.add(behaviour, 1, 4, 1, 1);
+			this.add(path, 0, 5, 1, 1);
+			this.add(critical, 1, 5, 1, 1);
+			this.add(list, 0, 6, 2, 4);
+			this.add(edit, 0, 10, 2, 1);
+			this.add(placeBrush, 0, 11, 1, 1);
+			this.add(transBrush, 1, 11, 1, 1);
+			this.add(sizeUp, 0, 12, 1, 1);
+			this.add(sizeDown, 1, 12, 1, 1);
 			
 			list.setItems(items);
 
 		}
 	
 	/**
-	 * Wenn der Simulations-Modus ausgewählt wird, werden die Pinsel deaktiviert und der Rewind-Button aktiviert.
+	 * Wenn der Simulations-Modus ausgewählt wird, werden die Pinsel deaktiviert und die Simulations-Buttons aktiviert.
 	 */
 	public void simulationButtonToggle() {
 		simEd.selectToggle(simulation);
 		if (viewContr.getCurrentPane() != null) {
 			plaTra.selectToggle(null);
 			rewind.setDisable(false);
+			play.setDisable(false);
+			back.setDisable(false);
+			forward.setDisable(false);
+			speed.setDisable(false);
+			concurrent.setDisable(false);
+			heatmap.setDisable(false);
+			behaviour.setDisable(false);
+			path.setDisable(false);
+			path.setSelected(pathNet != null && pathNet == viewContr.getCurrentNet());
+			critical.setDisable(false);
+			critical.setSelected(criticalNet != null && criticalNet == viewContr.getCurrentNet());
 			placeBrush.setDisable(true);
 			transBrush.setDisable(true);
 		}
 	}
 	/**
-	 * Wenn der Edit-Modus ausgewählt wird, werden die Pinsel aktiviert und der Rewind-Button deaktiviert.
+	 * Wenn der Edit-Modus ausgewählt wird, werden die Pinsel aktiviert und die Simulations-Buttons deaktiviert.
 	 */
 	public void editButtonToggle() {
 		simEd.selectToggle(edit);
 		if (viewContr.getCurrentPane() != null) {
 			plaTra.selectToggle(null);
 			rewind.setDisable(true);
+			play.setSelected(false);
+			play.setDisable(true);
+			back.setDisable(true);
+			forward.setDisable(true);
+			speed.setDisable(true);
+			concurrent.setDisable(true);
+			heatmap.setSelected(false);
+			heatmap.setDisable(true);
+			behaviour.setDisable(true);
+			behaviourNet = null;
+			path.setSelected(false);
+			path.setDisable(true);
+			pathNet = null;
+			critical.setSelected(false);
+			critical.setDisable(true);
+			criticalNet = null;
 			placeBrush.setDisable(false);
 			transBrush.setDisable(false);
 		}
 	}
 
+	/**
+	 * Setzt den Play-Button zurück, wenn das automatische Abspielen angehalten wurde
+	 * (durch den Benutzer, eine Verklemmung oder das Erreichen der Endstelle).
+	 */
+	public void playStopped() {
+		play.setSelected(false);
+	}
+
+	/**
+	 * Übernimmt das Ergebnis der Suche nach einer kürzesten Schaltfolge in die Liste der Statusinformationen.
+	 * @param net
+	 * 		Das untersuchte Netz, null wenn die Hervorhebung entfernt wurde.
+	 * @param line
+	 * 		Die anzuzeigende Zeile.
+	 */
+	public void showShortestPath(PetriNet net, String line) {
+		pathNet = net;
+		pathLine = line;
+		path.setSelected(net != null);
+		updateList();
+	}
+	/**
+	 * Übernimmt das Ergebnis der Analyse des kritischen Pfads in die Liste der Statusinformationen.
+	 * @param net
+	 * 		Das untersuchte Netz, null wenn die Hervorhebung entfernt wurde.
+	 * @param lines
+	 * 		Die anzuzeigenden Zeilen.
+	 */
+	public void showCriticalPath(PetriNet net, List<String> lines) {
+		criticalNet = net;
+		criticalLines.clear();
+		if (lines != null)
+			criticalLines.addAll(lines);
+		critical.setSelected(net != null);
+		updateList();
+	}
+	/**
+	 * Übernimmt das Ergebnis einer Verhaltensklassifikation in die Liste der Statusinformationen; es bleibt
+	 * sichtbar, bis das Netz wieder bearbeitet wird.
+	 * @param net
+	 * 		Das klassifizierte Netz.
+	 * @param result
+	 * 		Die Klassifikation, null wenn sie fehlgeschlagen ist.
+	 * @param relaxed
+	 * 		Die Prüfung auf schwache Korrektheit, null wenn das Netz kein Workflownetz ist oder sie fehlgeschlagen ist.
+	 * @param error
+	 * 		Fehlermeldung wenn die Klassifikation oder die Prüfung auf schwache Korrektheit fehlgeschlagen ist, sonst
+	 * 		null.
+	 */
+	public void showBehaviour(PetriNet net, BehaviourClassification result, RelaxedSoundness relaxed, String error) {
+		behaviour.setDisable(paneEventsContr.isEditMode());
+		if (net != viewContr.getCurrentNet() || paneEventsContr.isEditMode())
+			return;
+		behaviourNet = net;
+		behaviourLines.clear();
+		if (result == null) {
+			behaviourLines.add("behaviour not classified: " + error);
+		} else {
+			if (result.isLive())
+				behaviourLines.add("all transitions are live");
+			if (!result.transitions(Liveness.DEAD).isEmpty())
+				behaviourLines.add("dead transitions: " + String.join(", ", result.transitions(Liveness.DEAD)));
+			if (!result.transitions(Liveness.L1).isEmpty())
+				behaviourLines.add("L1-live, not live: " + String.join(", ", result.transitions(Liveness.L1)));
+			List<String> unmarked = new ArrayList<String>();
+			for (int p = 0; p < result.placeCount(); p++)
+				if (result.bound(p) == 0)
+					unmarked.add(result.placeId(p));
+			behaviourLines.add(result.isSafe() ? "the net is safe"
+					: "the net is not safe, contact in: " + String.join(", ", result.unsafePlaces()));
+			if (!unmarked.isEmpty())
+				behaviourLines.add("places never marked: " + String.join(", ", unmarked));
+			behaviourLines.add(result.isReversible() ? "the net is reversible" : "the net is not reversible");
+			behaviourLines.add(result.hasHomeMarking()
+					? "home marking: " + String.join(", ", result.getHomeMarking())
+					: "no home marking");
+		}
+		if (relaxed != null) {
+			if (relaxed.isRelaxedSound())
+				behaviourLines.add("the net is relaxed sound");
+			else if (!relaxed.isFinalReachable())
+				behaviourLines.add("not relaxed sound: the end marking is not reachable");
+			else
+				behaviourLines.add("not relaxed sound, on no completing run: "
+						+ String.join(", ", relaxed.uncoveredTransitions()));
+		} else if (result != null && error != null) {
+			behaviourLines.add("relaxed soundness not checked: " + error);
+		}
+		updateList();
+	}
+
 	/**
 	 * Fügt genau die dem Zustand des Modellnetzes entsprechenden Statusinformationen in die Liste
 	 * über die Statusinformationen ein.
@@ -221,5 +473,14 @@ class ToolBoard extends GridPane {
 		if (viewContr.getCurrentNet().getSimFinProp().get() && !paneEventsContr.isEditMode()) {
 			items.add(simFinish);
 		}
+		if (pathNet == viewContr.getCurrentNet() && !paneEventsContr.isEditMode()) {
+			items.add(pathLine);
+		}
+		if (criticalNet == viewContr.getCurrentNet() && !paneEventsContr.isEditMode()) {
+			items.addAll(criticalLines);
+		}
+		if (behaviourNet == viewContr.getCurrentNet() && !paneEventsContr.isEditMode()) {
+			items.addAll(behaviourLines);
+		}
 	}
 }
\ No newline at end of file
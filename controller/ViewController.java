@@ -1,11 +1,29 @@
 package controller;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import analysis.AnalysisScheduler;
+import analysis.AnalysisScheduler.Priority;
+import analysis.CriticalPath;
+import analysis.IncrementalReachability;
+import analysis.StandardAnalyses;
+import javafx.application.Platform;
 import javafx.scene.Cursor;
 import javafx.scene.Scene;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import model.Arc;
+import model.IndexedNet;
 import model.PetriNet;
 import model.Place;
 import model.Transition;
@@ -50,6 +68,29 @@ public class ViewController {
 	 * Referenz auf die Schaltfläche der Benutzeroberfläche.
 	 */
 	private ToolBoard tools = new ToolBoard(this, paneController);
+	/**
+	 * Referenz auf das automatische Abspielen des Tokenspiels.
+	 */
+	private SimulationPlayer player = new SimulationPlayer(this);
+	/**
+	 * Das Pane auf dem zuletzt eine kürzeste Schaltfolge hervorgehoben wurde, null wenn keine hervorgehoben ist.
+	 */
+	private PNPane pathPane;
+	/**
+	 * Das Pane auf dem zuletzt die Engpässe des kritischen Pfads hervorgehoben wurden, null wenn keine hervorgehoben
+	 * sind.
+	 */
+	private PNPane criticalPane;
+	/**
+	 * Die laufenden Aufträge für die kürzeste Schaltfolge und den kritischen Pfad, null wenn keiner läuft; sie werden
+	 * zurückgezogen, wenn ihre Hervorhebung abgeschaltet oder neu angefordert wird.
+	 */
+	private AnalysisScheduler.Request pathRequest;
+	private AnalysisScheduler.Request criticalRequest;
+	/**
+	 * Führt die Analysen im Hintergrund aus und stellt ihre Ergebnisse im FX-Thread zu.
+	 */
+	private final AnalysisScheduler scheduler = new AnalysisScheduler(Platform::runLater);
 
 	/**
 	 * Faktor der beim Vergrößern und Verkleinern auf die Größen aller Netzelemente multipliziert/dividiert wird.
@@ -69,6 +110,11 @@ public class ViewController {
 	 * und richtet die Buttons der Benutzeroberfläche passend ein.
 	 */
 	public void toggleEditMode() {
+		player.setHeatmap(false);
+		showShortestPath(false);
+		showCriticalPath(false);
+		scheduler.cancel(currentNet);
+		player.reset();
 		currentNet.voidMarking();
 		paneController.setEditMode(true);
 		currentPane.setInEditMode(true);
@@ -92,6 +138,23 @@ public class ViewController {
 		tools.simulationButtonToggle();
 		currentNet.setInitialMarking();
 		currentNet.testDeadlock();
+		player.reset();
+		prefetchAnalyses();
+	}
+	/**
+	 * Gibt die Verhaltensklassifikation und bei Workflownetzen die Prüfung auf schwache Korrektheit als
+	 * Hintergrundaufträge ab, damit ihre Ergebnisse im AnalysisCache bereitliegen, wenn sie angefordert werden.
+	 * Beide verwenden den Graphenspeicher des Netzes, nach einer kleinen Änderung wird der Erreichbarkeitsgraph
+	 * also inkrementell und nur einmal neu berechnet. Beim Wechsel in den Edit-Modus werden sie abgebrochen.
+	 */
+	private void prefetchAnalyses() {
+		IndexedNet snapshot = new IndexedNet(currentNet);
+		IncrementalReachability graphs = currentNet.getReachability();
+		scheduler.submit(currentNet, snapshot, graphs, StandardAnalyses.BEHAVIOUR, Priority.BATCH,
+				result -> { }, e -> { });
+		if (snapshot.getStart() >= 0 && snapshot.getEnd() >= 0)
+			scheduler.submit(currentNet, snapshot, graphs, StandardAnalyses.RELAXED_SOUNDNESS, Priority.BATCH,
+					result -> { }, e -> { });
 	}
 
 	//**** SIMULATION ROUTINES ****
@@ -110,6 +173,255 @@ public class ViewController {
 
 		tools.updateList();
 	}
+	/**
+	 * Startet das automatische Abspielen des Tokenspiels auf dem aktuellen Netz ab seiner aktuellen Markierung.
+	 */
+	public void startAutoPlay() {
+		player.play();
+	}
+	/**
+	 * Hält das automatische Abspielen an, falls es läuft.
+	 */
+	public void stopAutoPlay() {
+		player.stop();
+	}
+	/**
+	 * Setzt die Geschwindigkeit des automatischen Abspielens.
+	 * @param firingsPerSecond
+	 * 		Anzahl der Schaltvorgänge pro Sekunde.
+	 */
+	public void setAutoPlayRate(double firingsPerSecond) {
+		player.setRate(firingsPerSecond);
+	}
+	/**
+	 * Legt fest ob das automatische Abspielen in maximalen Schritten erfolgt, in denen alle aktivierten
+	 * und nicht in Konflikt stehenden Transitionen gleichzeitig schalten.
+	 * @param concurrent
+	 * 		<b>true</b>: maximale Schritte, <b>false</b>: einzelne Schaltvorgänge
+	 */
+	public void setConcurrentSteps(boolean concurrent) {
+		player.setMaximalSteps(concurrent);
+	}
+	/**
+	 * Hält das automatische Abspielen an und verwirft den Verlauf der Schaltvorgänge.
+	 */
+	public void resetSimulation() {
+		player.reset();
+	}
+	/**
+	 * Trägt einen Schaltvorgang von Hand in den Verlauf ein, bevor er im Modell ausgeführt wird.
+	 * @param t
+	 * 		Die Transition die gleich schaltet.
+	 */
+	public void recordFiring(Transition t) {
+		player.record(t);
+	}
+	/**
+	 * Nimmt den letzten Schaltvorgang zurück.
+	 */
+	public void stepBack() {
+		player.stepBack();
+	}
+	/**
+	 * Wiederholt den zuletzt zurückgenommenen Schaltvorgang.
+	 */
+	public void stepForward() {
+		player.stepForward();
+	}
+	/**
+	 * Blendet die Heatmap der Schaltstatistik über dem aktuellen Netz ein oder aus.
+	 * @param show
+	 * 		<b>true</b>: einblenden, <b>false</b>: ausblenden
+	 */
+	public void showHeatmap(boolean show) {
+		player.setHeatmap(show);
+	}
+	/**
+	 * Schreibt die Schaltstatistik des aktuellen Netzes (je Transition Anzahl der Schaltvorgänge,
+	 * je Stelle Anzahl der markierten Schritte) als CSV-Datei.
+	 * @param file
+	 * 		Die Zieldatei.
+	 * @throws IOException
+	 * 		wenn die Datei nicht geschrieben werden kann.
+	 */
+	public void exportStatistics(File file) throws IOException {
+		try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			player.exportStatistics(out);
+		}
+	}
+
+	/**
+	 * Speichert den Verlauf der Schaltvorgänge des aktuellen Netzes als Binärdatei.
+	 * @param file
+	 * 		Die Zieldatei.
+	 * @throws IOException
+	 * 		wenn die Datei nicht geschrieben werden kann.
+	 */
+	public void saveTrace(File file) throws IOException {
+		player.saveTrace(file);
+	}
+	/**
+	 * Lädt eine gespeicherte Schaltfolge als Verlauf des aktuellen Netzes, das dafür im Simulationsmodus
+	 * sein muss; die Schritte lassen sich danach mit "step forward" nachspielen.
+	 * @param file
+	 * 		Die zu lesende Datei.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann.
+	 * @throws IllegalArgumentException
+	 * 		wenn die Aufzeichnung nicht zum aktuellen Netz gehört.
+	 * @throws IllegalStateException
+	 * 		wenn das aktuelle Netz im Edit-Modus ist.
+	 */
+	public void loadTrace(File file) throws IOException {
+		if (paneController.isEditMode())
+			throw new IllegalStateException("switch to simulation mode to replay a trace");
+		player.loadTrace(file);
+	}
+	/**
+	 * Setzt das aktuelle Netz auf eine Markierung aus seinem Erreichbarkeitsgraphen; der Verlauf der
+	 * Schaltvorgänge beginnt dort neu, Verklemmung und Ende werden neu geprüft.
+	 * @param net
+	 * 		Das Netz zu dem die Markierung gehört.
+	 * @param snapshot
+	 * 		Momentaufnahme des Netzes, in deren Nummerierung die Markierung vorliegt.
+	 * @param marking
+	 * 		Die neue Markierung.
+	 * @throws IllegalStateException
+	 * 		wenn das Netz nicht das aktuelle ist oder im Edit-Modus ist.
+	 */
+	public void jumpToMarking(PetriNet net, IndexedNet snapshot, long[] marking) {
+		if (net != currentNet)
+			throw new IllegalStateException("select the tab of the net to jump to a marking");
+		if (paneController.isEditMode())
+			throw new IllegalStateException("switch to simulation mode to jump to a marking");
+		player.jumpTo(snapshot, marking);
+	}
+
+	/**
+	 * Sucht im Hintergrund eine kürzeste Schaltfolge von der Anfangs- zur Endmarkierung des aktuellen
+	 * Netzes und hebt sie anschließend im FX-Thread auf dem Pane hervor, oder entfernt die Hervorhebung.
+	 * @param show
+	 * 		<b>true</b>: suchen und hervorheben, <b>false</b>: Hervorhebung entfernen
+	 */
+	public void showShortestPath(boolean show) {
+		if (pathRequest != null)
+			pathRequest.cancel();
+		pathRequest = null;
+		if (pathPane != null)
+			pathPane.clearPath();
+		pathPane = null;
+		if (!show) {
+			tools.showShortestPath(null, null);
+			return;
+		}
+		showCriticalPath(false);
+		PetriNet net = currentNet;
+		PNPane pane = currentPane;
+		IndexedNet snapshot = new IndexedNet(net);
+		pathRequest = scheduler.submit(net, snapshot, StandardAnalyses.SHORTEST_PATH, Priority.INTERACTIVE, result -> {
+			pathRequest = null;
+			if (net != currentNet || pane != currentPane || paneController.isEditMode())
+				return;
+			if (result.isFound()) {
+				pane.showPath(result.transitionIds());
+				pathPane = pane;
+				tools.showShortestPath(net,
+						"shortest path (cost " + result.getCost() + "): " + String.join(", ", result.transitionLabels()));
+			} else {
+				tools.showShortestPath(net, "the end marking is not reachable");
+			}
+		}, e -> {
+			pathRequest = null;
+			if (net == currentNet && pane == currentPane && !paneController.isEditMode())
+				tools.showShortestPath(net, "no shortest path: " + e.getMessage());
+		});
+	}
+	/**
+	 * Bestimmt im Hintergrund den kritischen Pfad des aktuellen Netzes mit den Erwartungswerten der
+	 * Verzögerungen als Dauern und hebt anschließend im FX-Thread seine Transitionen nach ihrem Anteil an der Dauer
+	 * hervor, oder entfernt die Hervorhebung. Da beide den Rand der Transitionen färben, wird eine hervorgehobene
+	 * kürzeste Schaltfolge vorher entfernt.
+	 * @param show
+	 * 		<b>true</b>: analysieren und hervorheben, <b>false</b>: Hervorhebung entfernen
+	 */
+	public void showCriticalPath(boolean show) {
+		if (criticalRequest != null)
+			criticalRequest.cancel();
+		criticalRequest = null;
+		if (criticalPane != null)
+			criticalPane.clearPath();
+		criticalPane = null;
+		if (!show) {
+			tools.showCriticalPath(null, null);
+			return;
+		}
+		showShortestPath(false);
+		PetriNet net = currentNet;
+		PNPane pane = currentPane;
+		IndexedNet snapshot = new IndexedNet(net);
+		double[] duration = CriticalPath.durationsOf(net);
+		criticalRequest = scheduler.submit(net, snapshot, StandardAnalyses.criticalPath(duration), Priority.INTERACTIVE,
+				result -> {
+			criticalRequest = null;
+			if (net != currentNet || pane != currentPane || paneController.isEditMode())
+				return;
+			List<String> lines = new ArrayList<String>();
+			Map<String, Double> heat = new HashMap<String, Double>();
+			if (result.isFound()) {
+				lines.add("critical path (duration " + result.getDuration() + "): "
+						+ String.join(", ", result.transitionLabels()));
+				int[] bottlenecks = result.getBottlenecks();
+				double largest = bottlenecks.length > 0 ? duration[bottlenecks[0]] : 0;
+				List<String> top = new ArrayList<String>();
+				for (int i = 0; i < bottlenecks.length; i++) {
+					int t = bottlenecks[i];
+					heat.put(snapshot.transitionId(t), largest > 0 ? duration[t] / largest : 0);
+					if (i < 5)
+						top.add(String.format("%s %.0f%%", snapshot.transitionLabel(t), 100 * result.share(t)));
+				}
+				lines.add("bottlenecks: " + String.join(", ", top));
+			} else {
+				lines.add("the end place is not reachable from the start place");
+			}
+			for (int i = 0; i < Math.min(3, result.getCycles().size()); i++) {
+				CriticalPath.Cycle cycle = result.getCycles().get(i);
+				lines.add("loop (cycle mean " + cycle.getMean() + ", each repetition adds " + cycle.getDuration() + "): "
+						+ String.join(", ", cycle.transitionLabels()));
+			}
+			pane.showBottlenecks(heat);
+			criticalPane = pane;
+			tools.showCriticalPath(net, lines);
+		}, e -> {
+			criticalRequest = null;
+			if (net == currentNet && pane == currentPane && !paneController.isEditMode())
+				tools.showCriticalPath(net, Arrays.asList("no critical path: " + e.getMessage()));
+		});
+	}
+	/**
+	 * Klassifiziert das Verhalten des aktuellen Netzes im Hintergrund, prüft Workflownetze zusätzlich
+	 * auf schwache Korrektheit und übergibt die Ergebnisse anschließend im FX-Thread an die Liste der
+	 * Statusinformationen.
+	 */
+	public void classifyBehaviour() {
+		PetriNet net = currentNet;
+		try {
+			IndexedNet snapshot = new IndexedNet(net);
+			boolean workflow = snapshot.getStart() >= 0 && snapshot.getEnd() >= 0;
+			IncrementalReachability graphs = net.getReachability();
+			scheduler.submit(net, snapshot, graphs, StandardAnalyses.BEHAVIOUR, Priority.INTERACTIVE, result -> {
+				if (!workflow) {
+					tools.showBehaviour(net, result, null, null);
+					return;
+				}
+				scheduler.submit(net, snapshot, graphs, StandardAnalyses.RELAXED_SOUNDNESS, Priority.INTERACTIVE,
+						relaxed -> tools.showBehaviour(net, result, relaxed, null),
+						e -> tools.showBehaviour(net, result, null, e.getMessage()));
+			}, e -> tools.showBehaviour(net, null, null, e.getMessage()));
+		} catch (RuntimeException e) {
+			// jede Ausnahme muss den Button wieder freigeben
+			tools.showBehaviour(net, null, null, e.getMessage());
+		}
+	}
 
 	//**** EDITING ROUTINES ****
 	/**
@@ -249,6 +561,7 @@ public class ViewController {
 	 * 		Referenz auf das als aktuelles zu setzende PetriNetPane.
 	 */
 	public void setCurrentPane(PNPane p) {
+		player.stop();
 		if (p != null) {
 			paneController.unregisterSelectRect();
 			currentPane = p;
@@ -0,0 +1,373 @@
+package discovery;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import conformance.EventLogReader;
+import model.PetriNet;
+
+/**
+ * Prozesserkennung mit dem Alpha-Algorithmus (van der Aalst): erzeugt aus einem Ereignislog ein Workflownetz.<br>
+ * Das Log wird als Strom gelesen; gespeichert werden nur die Aktivitätsnamen, die Direkt-Folge-Relation als
+ * Paarzähler, Start- und Endaktivitäten sowie je offenem Fall die zuletzt gesehene Aktivität. Der Speicherbedarf
+ * hängt also nicht von der Anzahl der Ereignisse ab; bei CSV-Logs sollte dafür
+ * EventLogReader.setGroupedByCase(true) gesetzt sein, sonst bleibt jeder Fall bis zum Ende offen.<br>
+ * Aus der Direkt-Folge-Relation ergibt sich der Footprint (Kausalität, Parallelität, Wahl). Die maximalen Paare
+ * (X, Y) werden mit Bitmengen aufgezählt: zu jedem Paar werden die Aktivitäten, die X bzw. Y noch erweitern
+ * könnten, als Schnitt der Bitmengen seiner Elemente mitgeführt, sodass nur gültige Erweiterungen probiert werden
+ * und ein Paar genau dann maximal ist, wenn beide Mengen leer sind.<br>
+ * Bekannte Grenzen des Alpha-Algorithmus: Schleifen der Länge eins und zwei sowie nicht-freiwählende
+ * Konstrukte werden nicht korrekt erkannt.
+ */
+public class AlphaMiner implements EventLogReader.Handler {
+
+	/**
+	 * Relationen des Footprints zwischen zwei Aktivitäten a und b.
+	 */
+	public enum Relation {
+		/** a → b: b folgt direkt auf a, nie umgekehrt */
+		CAUSAL,
+		/** a ← b: a folgt direkt auf b, nie umgekehrt */
+		REVERSE,
+		/** a ∥ b: beide Reihenfolgen kommen vor */
+		PARALLEL,
+		/** a # b: keine folgt direkt auf die andere */
+		CHOICE
+	}
+
+	//**** FIELDS ****
+	/**
+	 * Abstände des automatischen Layouts.
+	 */
+	private static final double LAYER_SPACING = 90;
+	private static final double ROW_SPACING = 70;
+	private static final double MARGIN = 60;
+
+	/**
+	 * Die Aktivitäten in der Reihenfolge ihres ersten Auftretens und ihre Nummern.
+	 */
+	private final ArrayList<String> activities = new ArrayList<String>();
+	private final HashMap<String, Integer> activityIndex = new HashMap<String, Integer>();
+	/**
+	 * Die Direkt-Folge-Relation mit Häufigkeiten.
+	 */
+	private final PairCountMap directlyFollows = new PairCountMap();
+	/**
+	 * Aktivitäten mit denen ein Fall beginnt bzw. endet.
+	 */
+	private final BitSet startActivities = new BitSet();
+	private final BitSet endActivities = new BitSet();
+	/**
+	 * Die zuletzt gesehene Aktivität je offenem Fall.
+	 */
+	private final HashMap<String, Integer> last = new HashMap<String, Integer>();
+	/**
+	 * Anzahl der gelesenen Ereignisse und abgeschlossenen Fälle.
+	 */
+	private long events = 0;
+	private long cases = 0;
+
+	//**** DISCOVERY ****
+	/**
+	 * Liest ein Log und erzeugt daraus ein Workflownetz.
+	 * @param reader
+	 * 		Reader der Logdatei.
+	 * @return
+	 * 		Das gefundene Netz mit Layout.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann.
+	 */
+	public static PetriNet discover(EventLogReader reader) throws IOException {
+		AlphaMiner miner = new AlphaMiner();
+		reader.read(miner);
+		return miner.toPetriNet();
+	}
+
+	//** LOG HANDLER **
+	@Override
+	public void event(String caseId, String activity) {
+		Integer a = activityIndex.get(activity);
+		if (a == null) {
+			a = activities.size();
+			activities.add(activity);
+			activityIndex.put(activity, a);
+		}
+		Integer previous = last.put(caseId, a);
+		if (previous == null)
+			startActivities.set(a);
+		else
+			directlyFollows.increment(previous, a);
+		events++;
+	}
+	@Override
+	public void endCase(String caseId) {
+		Integer a = last.remove(caseId);
+		if (a != null) {
+			endActivities.set(a);
+			cases++;
+		}
+	}
+	@Override
+	public void endLog() {
+		for (Integer a : last.values())
+			endActivities.set(a);
+		cases += last.size();
+		last.clear();
+	}
+
+	//** FOOTPRINT **
+	/**
+	 * @param a
+	 * 		Nummer der ersten Aktivität.
+	 * @param b
+	 * 		Nummer der zweiten Aktivität.
+	 * @return
+	 * 		Die Relation zwischen a und b im Footprint.
+	 */
+	public Relation relation(int a, int b) {
+		boolean ab = directlyFollows.get(a, b) > 0;
+		boolean ba = directlyFollows.get(b, a) > 0;
+		if (ab && ba)
+			return Relation.PARALLEL;
+		if (ab)
+			return Relation.CAUSAL;
+		if (ba)
+			return Relation.REVERSE;
+		return Relation.CHOICE;
+	}
+
+	//** PLACES **
+	/**
+	 * Zählt alle maximalen Paare (X, Y) auf: X und Y nicht leer, innerhalb von X und von Y steht jedes Paar in
+	 * Wahl (auch mit sich selbst), und jedes x aus X steht kausal vor jedem y aus Y.
+	 * @return
+	 * 		Die maximalen Paare, je ein Array {X, Y} von Bitmengen.
+	 */
+	public List<BitSet[]> maximalPairs() {
+		int n = activities.size();
+		BitSet[] succ = new BitSet[n];
+		BitSet[] pred = new BitSet[n];
+		BitSet[] choice = new BitSet[n];
+		for (int a = 0; a < n; a++) {
+			succ[a] = new BitSet(n);
+			pred[a] = new BitSet(n);
+			choice[a] = new BitSet(n);
+		}
+		for (int a = 0; a < n; a++) {
+			for (int b = 0; b < n; b++) {
+				Relation r = relation(a, b);
+				if (r == Relation.CAUSAL) {
+					succ[a].set(b);
+					pred[b].set(a);
+				}
+				else if (r == Relation.CHOICE)
+					choice[a].set(b);
+			}
+		}
+		List<BitSet[]> result = new ArrayList<BitSet[]>();
+		HashSet<List<BitSet>> seen = new HashSet<List<BitSet>>();
+		ArrayDeque<BitSet[]> stack = new ArrayDeque<BitSet[]>();
+		for (int a = 0; a < n; a++) {
+			if (!choice[a].get(a))
+				continue;
+			for (int b = succ[a].nextSetBit(0); b >= 0; b = succ[a].nextSetBit(b + 1)) {
+				if (!choice[b].get(b))
+					continue;
+				BitSet x = new BitSet(n);
+				x.set(a);
+				BitSet y = new BitSet(n);
+				y.set(b);
+				// Kandidaten: {X, Y, in Wahl mit ganz X, in Wahl mit ganz Y, kausal vor ganz Y, kausal nach ganz X}
+				stack.push(new BitSet[] { x, y, (BitSet) choice[a].clone(), (BitSet) choice[b].clone(),
+						(BitSet) pred[b].clone(), (BitSet) succ[a].clone() });
+			}
+		}
+		while (!stack.isEmpty()) {
+			BitSet[] s = stack.pop();
+			if (!seen.add(Arrays.asList(s[0], s[1])))
+				continue;
+			BitSet addX = (BitSet) s[2].clone();
+			addX.and(s[4]);
+			addX.andNot(s[0]);
+			BitSet addY = (BitSet) s[3].clone();
+			addY.and(s[5]);
+			addY.andNot(s[1]);
+			if (addX.isEmpty() && addY.isEmpty()) {
+				result.add(new BitSet[] { s[0], s[1] });
+				continue;
+			}
+			for (int x = addX.nextSetBit(0); x >= 0; x = addX.nextSetBit(x + 1)) {
+				BitSet[] next = s.clone();
+				next[0] = (BitSet) s[0].clone();
+				next[0].set(x);
+				next[2] = (BitSet) s[2].clone();
+				next[2].and(choice[x]);
+				next[5] = (BitSet) s[5].clone();
+				next[5].and(succ[x]);
+				stack.push(next);
+			}
+			for (int y = addY.nextSetBit(0); y >= 0; y = addY.nextSetBit(y + 1)) {
+				BitSet[] next = s.clone();
+				next[1] = (BitSet) s[1].clone();
+				next[1].set(y);
+				next[3] = (BitSet) s[3].clone();
+				next[3].and(choice[y]);
+				next[4] = (BitSet) s[4].clone();
+				next[4].and(pred[y]);
+				stack.push(next);
+			}
+		}
+		return result;
+	}
+
+	//** NET **
+	/**
+	 * Erzeugt das Workflownetz: je Aktivität eine Transition (ID t<i>, Name = Aktivität), eine Startstelle vor
+	 * allen Startaktivitäten, eine Endstelle nach allen Endaktivitäten und je maximalem Paar (X, Y) eine Stelle
+	 * zwischen X und Y. Alle Knoten werden in Schichten von links nach rechts angeordnet.
+	 * @return
+	 * 		Das neue Netz.
+	 */
+	public PetriNet toPetriNet() {
+		int n = activities.size();
+		List<BitSet[]> pairs = maximalPairs();
+		PetriNet net = new PetriNet();
+		// Knoten 0..n-1: Transitionen, n: Start, n+1: Ende, n+2+i: Stelle des i-ten Paares
+		int nodes = n + 2 + pairs.size();
+		String[] ids = new String[nodes];
+		List<List<Integer>> out = new ArrayList<List<Integer>>();
+		for (int i = 0; i < nodes; i++)
+			out.add(new ArrayList<Integer>());
+		for (int a = 0; a < n; a++) {
+			ids[a] = "t" + a;
+			net.newTransition(ids[a]);
+			net.setName(ids[a], activities.get(a));
+		}
+		ids[n] = "start";
+		ids[n + 1] = "end";
+		net.newPlace(ids[n]);
+		net.newPlace(ids[n + 1]);
+		net.setName(ids[n], "start");
+		net.setName(ids[n + 1], "end");
+		for (int i = 0; i < pairs.size(); i++) {
+			ids[n + 2 + i] = "p" + i;
+			net.newPlace(ids[n + 2 + i]);
+		}
+		int arc = 0;
+		for (int a = startActivities.nextSetBit(0); a >= 0; a = startActivities.nextSetBit(a + 1)) {
+			net.newArc("a" + arc++, ids[n], ids[a]);
+			out.get(n).add(a);
+		}
+		for (int a = endActivities.nextSetBit(0); a >= 0; a = endActivities.nextSetBit(a + 1)) {
+			net.newArc("a" + arc++, ids[a], ids[n + 1]);
+			out.get(a).add(n + 1);
+		}
+		for (int i = 0; i < pairs.size(); i++) {
+			int p = n + 2 + i;
+			BitSet x = pairs.get(i)[0];
+			BitSet y = pairs.get(i)[1];
+			for (int a = x.nextSetBit(0); a >= 0; a = x.nextSetBit(a + 1)) {
+				net.newArc("a" + arc++, ids[a], ids[p]);
+				out.get(a).add(p);
+			}
+			for (int b = y.nextSetBit(0); b >= 0; b = y.nextSetBit(b + 1)) {
+				net.newArc("a" + arc++, ids[p], ids[b]);
+				out.get(p).add(b);
+			}
+		}
+		layout(net, ids, out, n);
+		return net;
+	}
+	/**
+	 * Ordnet die Knoten in Schichten nach ihrem Abstand zur Startstelle (Breitensuche) an; die Endstelle kommt
+	 * in die letzte Schicht, nicht erreichbare Knoten in eine eigene Schicht davor.
+	 */
+	private static void layout(PetriNet net, String[] ids, List<List<Integer>> out, int start) {
+		int[] layer = new int[ids.length];
+		Arrays.fill(layer, -1);
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		layer[start] = 0;
+		queue.add(start);
+		int deepest = 0;
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			for (int w : out.get(v)) {
+				if (layer[w] < 0 && w != start + 1) {
+					layer[w] = layer[v] + 1;
+					deepest = Math.max(deepest, layer[w]);
+					queue.add(w);
+				}
+			}
+		}
+		for (int v = 0; v < ids.length; v++)
+			if (layer[v] < 0 && v != start + 1)
+				layer[v] = deepest + 1;
+		boolean unreachable = false;
+		for (int v = 0; v < ids.length; v++)
+			unreachable |= layer[v] == deepest + 1;
+		layer[start + 1] = deepest + (unreachable ? 2 : 1);
+
+		int[] rows = new int[layer[start + 1] + 1];
+		for (int v = 0; v < ids.length; v++)
+			rows[layer[v]]++;
+		int height = 0;
+		for (int r : rows)
+			height = Math.max(height, r);
+		int[] row = new int[rows.length];
+		for (int v = 0; v < ids.length; v++) {
+			int l = layer[v];
+			double offset = (height - rows[l]) * ROW_SPACING / 2;
+			net.setPosition(ids[v], MARGIN + l * LAYER_SPACING, MARGIN + offset + row[l]++ * ROW_SPACING);
+		}
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der verschiedenen Aktivitäten.
+	 */
+	public int activityCount() {
+		return activities.size();
+	}
+	/**
+	 * @param a
+	 * 		Nummer der Aktivität.
+	 * @return
+	 * 		Name der Aktivität.
+	 */
+	public String activityName(int a) {
+		return activities.get(a);
+	}
+	/**
+	 * @param a
+	 * 		Nummer der ersten Aktivität.
+	 * @param b
+	 * 		Nummer der zweiten Aktivität.
+	 * @return
+	 * 		Wie oft b im Log direkt auf a folgt.
+	 */
+	public long directlyFollows(int a, int b) {
+		return directlyFollows.get(a, b);
+	}
+	/**
+	 * @return
+	 * 		Anzahl der gelesenen Ereignisse.
+	 */
+	public long getEventCount() {
+		return events;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der abgeschlossenen Fälle.
+	 */
+	public long getCaseCount() {
+		return cases;
+	}
+
+}
@@ -0,0 +1,89 @@
+package discovery;
+
+import java.util.Arrays;
+
+/**
+ * Zähler für Paare nicht negativer int-Werte (z.B. Aktivitätsnummern der Direkt-Folge-Relation).<br>
+ * Jedes Paar wird als ein long-Schlüssel in einer Hashtabelle mit offener Adressierung abgelegt, die Zähler
+ * in einem parallelen long-Array; pro Paar entsteht so kein eigenes Objekt.
+ */
+class PairCountMap {
+
+	//**** FIELDS ****
+	/**
+	 * Markiert einen freien Platz; kein gültiger Schlüssel, da beide Hälften nicht negativ sind.
+	 */
+	private static final long EMPTY = -1;
+
+	private long[] keys;
+	private long[] counts;
+	private int size = 0;
+
+	//**** CONSTRUCTOR ****
+	PairCountMap() {
+		keys = new long[64];
+		counts = new long[64];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Erhöht den Zähler eines Paares um eins.
+	 */
+	void increment(int a, int b) {
+		long key = key(a, b);
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			keys[slot] = key;
+			if (++size * 2 > keys.length) {
+				counts[slot] = 1;
+				grow();
+				return;
+			}
+		}
+		counts[slot]++;
+	}
+	/**
+	 * @return
+	 * 		Der Zähler des Paares, 0 wenn es nie gezählt wurde.
+	 */
+	long get(int a, int b) {
+		int slot = find(key(a, b));
+		return keys[slot] == EMPTY ? 0 : counts[slot];
+	}
+	/**
+	 * @return
+	 * 		Anzahl der gezählten Paare.
+	 */
+	int size() {
+		return size;
+	}
+	private static long key(int a, int b) {
+		if (a < 0 || b < 0)
+			throw new IllegalArgumentException("negative pair (" + a + ", " + b + ")");
+		return (long) a << 32 | b;
+	}
+	private int find(long key) {
+		int mask = keys.length - 1;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h ^ (h >>> 32)) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldCounts = counts;
+		keys = new long[oldKeys.length * 2];
+		counts = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+}
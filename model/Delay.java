@@ -0,0 +1,245 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Verteilung der Verzögerung einer Transition für die zeitbehaftete Simulation.<br>
+ * Eine Transition ohne Verzögerung (null) schaltet sofort, sobald sie aktiviert ist.
+ * Instanzen sind unveränderlich.
+ */
+public abstract class Delay implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	//**** METHODS ****
+	/**
+	 * Zieht eine Verzögerung.
+	 * @param random
+	 * 		Der Zufallsgenerator des Simulationslaufs.
+	 * @return
+	 * 		Eine nicht negative Verzögerung.
+	 */
+	public abstract double sample(SplittableRandom random);
+	/**
+	 * @return
+	 * 		Der Erwartungswert der Verzögerung.
+	 */
+	public abstract double mean();
+
+	//**** FACTORIES ****
+	/**
+	 * @param value
+	 * 		Die feste Verzögerung.
+	 * @return
+	 * 		Eine feste Verzögerung.
+	 */
+	public static Delay deterministic(double value) {
+		return new Deterministic(value);
+	}
+	/**
+	 * @param rate
+	 * 		Die Rate (Kehrwert des Erwartungswerts).
+	 * @return
+	 * 		Eine exponentialverteilte Verzögerung.
+	 */
+	public static Delay exponential(double rate) {
+		return new Exponential(rate);
+	}
+	/**
+	 * @param min
+	 * 		Untere Grenze.
+	 * @param max
+	 * 		Obere Grenze.
+	 * @return
+	 * 		Eine auf [min, max) gleichverteilte Verzögerung.
+	 */
+	public static Delay uniform(double min, double max) {
+		return new Uniform(min, max);
+	}
+	/**
+	 * @param observations
+	 * 		Beobachtete Verzögerungen, aus denen gleichverteilt gezogen wird.
+	 * @return
+	 * 		Eine empirische Verzögerung.
+	 */
+	public static Delay empirical(double... observations) {
+		return new Empirical(observations);
+	}
+	/**
+	 * Liest eine Verzögerung in der Schreibweise von toString(), etwa "exponential(0.5)", "uniform(1.0, 3.0)"
+	 * oder "empirical[2.0, 4.0]"; eine bloße Zahl ist eine feste Verzögerung.
+	 * @param text
+	 * 		Die Verzögerung als Text.
+	 * @return
+	 * 		Die Verzögerung.
+	 * @throws IllegalArgumentException
+	 * 		wenn der Text keine gültige Verzögerung beschreibt.
+	 */
+	public static Delay parse(String text) {
+		String s = text.trim();
+		int open = s.indexOf('(') >= 0 ? s.indexOf('(') : s.indexOf('[');
+		if (open < 0)
+			return deterministic(number(s));
+		char close = s.charAt(open) == '(' ? ')' : ']';
+		if (s.charAt(s.length() - 1) != close)
+			throw new IllegalArgumentException("missing '" + close + "' in delay: " + text);
+		String kind = s.substring(0, open).trim().toLowerCase();
+		String[] parts = s.substring(open + 1, s.length() - 1).split(",");
+		double[] args = new double[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			args[i] = number(parts[i]);
+		switch (kind) {
+		case "deterministic":
+			if (args.length == 1)
+				return deterministic(args[0]);
+			break;
+		case "exponential":
+			if (args.length == 1)
+				return exponential(args[0]);
+			break;
+		case "uniform":
+			if (args.length == 2)
+				return uniform(args[0], args[1]);
+			break;
+		case "empirical":
+			return empirical(args);
+		default:
+			throw new IllegalArgumentException("unknown delay distribution: " + kind);
+		}
+		throw new IllegalArgumentException("wrong number of parameters for " + kind + ": " + args.length);
+	}
+	private static double number(String s) {
+		try {
+			return Double.parseDouble(s.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("not a number in delay: " + s.trim());
+		}
+	}
+	private static void checkNonNegative(double value, String what) {
+		if (!(value >= 0) || Double.isInfinite(value))
+			throw new IllegalArgumentException(what + " must be finite and non-negative: " + value);
+	}
+
+	//**** DISTRIBUTIONS ****
+	/**
+	 * Feste Verzögerung.
+	 */
+	public static final class Deterministic extends Delay {
+		private static final long serialVersionUID = 1L;
+		private final double value;
+
+		Deterministic(double value) {
+			checkNonNegative(value, "delay");
+			this.value = value;
+		}
+		@Override
+		public double sample(SplittableRandom random) {
+			return value;
+		}
+		@Override
+		public double mean() {
+			return value;
+		}
+		@Override
+		public String toString() {
+			return "deterministic(" + value + ")";
+		}
+	}
+
+	/**
+	 * Exponentialverteilte Verzögerung.
+	 */
+	public static final class Exponential extends Delay {
+		private static final long serialVersionUID = 1L;
+		private final double rate;
+
+		Exponential(double rate) {
+			if (!(rate > 0) || Double.isInfinite(rate))
+				throw new IllegalArgumentException("rate must be finite and positive: " + rate);
+			this.rate = rate;
+		}
+		@Override
+		public double sample(SplittableRandom random) {
+			return -Math.log(1 - random.nextDouble()) / rate;
+		}
+		@Override
+		public double mean() {
+			return 1 / rate;
+		}
+		/**
+		 * @return
+		 * 		Die Rate.
+		 */
+		public double getRate() {
+			return rate;
+		}
+		@Override
+		public String toString() {
+			return "exponential(" + rate + ")";
+		}
+	}
+
+	/**
+	 * Gleichverteilte Verzögerung.
+	 */
+	public static final class Uniform extends Delay {
+		private static final long serialVersionUID = 1L;
+		private final double min;
+		private final double max;
+
+		Uniform(double min, double max) {
+			checkNonNegative(min, "min");
+			checkNonNegative(max, "max");
+			if (max < min)
+				throw new IllegalArgumentException("max < min: " + max + " < " + min);
+			this.min = min;
+			this.max = max;
+		}
+		@Override
+		public double sample(SplittableRandom random) {
+			return min + (max - min) * random.nextDouble();
+		}
+		@Override
+		public double mean() {
+			return (min + max) / 2;
+		}
+		@Override
+		public String toString() {
+			return "uniform(" + min + ", " + max + ")";
+		}
+	}
+
+	/**
+	 * Empirische Verzögerung: gleichverteilte Wahl unter beobachteten Werten.
+	 */
+	public static final class Empirical extends Delay {
+		private static final long serialVersionUID = 1L;
+		private final double[] observations;
+
+		Empirical(double[] observations) {
+			if (observations.length == 0)
+				throw new IllegalArgumentException("no observations");
+			for (double d : observations)
+				checkNonNegative(d, "observation");
+			this.observations = observations.clone();
+		}
+		@Override
+		public double sample(SplittableRandom random) {
+			return observations[random.nextInt(observations.length)];
+		}
+		@Override
+		public double mean() {
+			double sum = 0;
+			for (double d : observations)
+				sum += d;
+			return sum / observations.length;
+		}
+		@Override
+		public String toString() {
+			return "empirical" + Arrays.toString(observations);
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vergibt neue IDs blockweise, statt wie der Editor für jeden neuen Knoten ab 0 nach einer freien ID zu suchen.<br>
+ * Eine ID besteht aus einem Präfix und einer Nummer; für jedes Präfix wird die nächste freie Nummer geführt.
+ * Beim Erzeugen werden einmal alle IDs eines bestehenden Netzes durchgesehen, danach kostet ein Block beliebiger
+ * Größe O(1) und die IDs des Blocks sind Präfix + (erste Nummer ... erste Nummer + Anzahl - 1).
+ */
+public class IdAllocator {
+
+	//**** FIELDS ****
+	/**
+	 * Nächste freie Nummer je Präfix.
+	 */
+	private final Map<String, Long> next = new HashMap<String, Long>();
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Erzeugt einen Vergeber für ein leeres Netz.
+	 */
+	public IdAllocator() {
+	}
+	/**
+	 * Erzeugt einen Vergeber, dessen IDs mit keiner ID (Stelle, Transition oder Bogen) eines Netzes kollidieren.
+	 * @param net
+	 * 		Das Netz dessen IDs schon vergeben sind.
+	 */
+	public IdAllocator(PetriNet net) {
+		net.getPlaces().keySet().forEach(this::reserve);
+		net.getTransitions().keySet().forEach(this::reserve);
+		net.getArcs().keySet().forEach(this::reserve);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Reserviert einen Block von IDs.
+	 * @param prefix
+	 * 		Das Präfix der IDs; es darf nicht auf eine Ziffer enden.
+	 * @param count
+	 * 		Anzahl der IDs.
+	 * @return
+	 * 		Die Nummer der ersten ID des Blocks.
+	 */
+	public long allocate(String prefix, int count) {
+		if (!prefix.isEmpty() && Character.isDigit(prefix.charAt(prefix.length() - 1)))
+			throw new IllegalArgumentException("prefix must not end with a digit: " + prefix);
+		long first = next.getOrDefault(prefix, 0L);
+		next.put(prefix, first + count);
+		return first;
+	}
+	/**
+	 * Markiert eine bestehende ID als vergeben.
+	 */
+	private void reserve(String id) {
+		int split = id.length();
+		while (split > 0 && Character.isDigit(id.charAt(split - 1)))
+			split--;
+		// führende Nullen und sehr lange Nummern können mit keiner vergebenen ID übereinstimmen
+		if (split == id.length() || id.length() - split > 18 || (id.charAt(split) == '0' && split < id.length() - 1))
+			return;
+		long number = Long.parseLong(id.substring(split));
+		next.merge(id.substring(0, split), number + 1, Math::max);
+	}
+
+}
@@ -0,0 +1,434 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diese Klasse implementiert eine unveränderliche, durchnummerierte Momentaufnahme eines Petrinetzes.<br>
+ * Stellen und Transitionen werden nach ihren IDs sortiert auf die Indizes 0..n-1 abgebildet, Vor- und Nachbereiche
+ * liegen als int-Arrays vor und Markierungen werden als Bitvektoren (long-Wörter, ein Bit pro Stelle) dargestellt.<br>
+ * Die Schaltregel entspricht der des Simulationsmodus (siehe model.Transition): eine Transition ist aktiviert,
+ * wenn sie Vorgänger hat, alle Vorgänger markiert sind und kein Kontakt vorliegt.
+ * Beim Schalten werden die Vorgänger entmarkiert und die Nachfolger markiert.<br>
+ * Die Arrays werden aus Performancegründen direkt herausgegeben und dürfen nicht verändert werden.
+ */
+public class IndexedNet {
+
+	//**** FIELDS ****
+	/**
+	 * IDs der Stellen, Index entspricht der Stellennummer.
+	 */
+	private final String[] placeIds;
+	/**
+	 * Namen der Stellen, Index entspricht der Stellennummer (ggf. null).
+	 */
+	private final String[] placeNames;
+	/**
+	 * IDs der Transitionen, Index entspricht der Transitionsnummer.
+	 */
+	private final String[] transitionIds;
+	/**
+	 * Namen der Transitionen, Index entspricht der Transitionsnummer (ggf. null).
+	 */
+	private final String[] transitionNames;
+	/**
+	 * Bildet die IDs der Stellen auf ihre Nummern ab.
+	 */
+	private final Map<String, Integer> placeIndex = new HashMap<String, Integer>();
+	/**
+	 * Bildet die IDs der Transitionen auf ihre Nummern ab.
+	 */
+	private final Map<String, Integer> transitionIndex = new HashMap<String, Integer>();
+	/**
+	 * Vorbereich jeder Transition als Stellennummern.
+	 */
+	private final int[][] pre;
+	/**
+	 * Nachbereich jeder Transition als Stellennummern.
+	 */
+	private final int[][] post;
+	/**
+	 * Stellen die beim Schalten einer Transition entmarkiert werden (Vorbereich ohne Nachbereich).
+	 */
+	private final int[][] consume;
+	/**
+	 * Stellen die beim Schalten einer Transition neu markiert werden (Nachbereich ohne Vorbereich).<br>
+	 * Genau diese Stellen dürfen vor dem Schalten nicht markiert sein (Kontakt).
+	 */
+	private final int[][] produce;
+	/**
+	 * Für jede Stelle die Transitionen, in deren Vorbereich sie liegt.
+	 */
+	private final int[][] consumers;
+	/**
+	 * Für jede Stelle die Transitionen, in deren Nachbereich sie liegt.
+	 */
+	private final int[][] producers;
+	/**
+	 * Anzahl der long-Wörter die eine Markierung belegt.
+	 */
+	private final int words;
+	/**
+	 * Nummer der Startstelle, -1 wenn es keine eindeutige gibt.
+	 */
+	private final int start;
+	/**
+	 * Nummer der Endstelle, -1 wenn es keine eindeutige gibt.
+	 */
+	private final int end;
+	/**
+	 * Anfangsmarkierung: nur die Startstelle, falls vorhanden, sonst die aktuelle Markierung des Netzes.
+	 */
+	private final long[] initialMarking;
+	/**
+	 * Die Markierung die das Netz zum Zeitpunkt der Momentaufnahme trug.
+	 */
+	private final long[] currentMarking;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Erzeugt die Momentaufnahme eines Netzes.<br>
+	 * Sind Start- und Endknoten im Netz nicht gesetzt (etwa bei headless geladenen Netzen), werden sie
+	 * als die eindeutige Stelle ohne Vorgänger bzw. ohne Nachfolger bestimmt.
+	 * @param net
+	 * 		Das Netz dessen Struktur und Markierung festgehalten werden soll.
+	 */
+	public IndexedNet(PetriNet net) {
+		placeIds = net.getPlaces().keySet().toArray(new String[0]);
+		transitionIds = net.getTransitions().keySet().toArray(new String[0]);
+		Arrays.sort(placeIds);
+		Arrays.sort(transitionIds);
+		placeNames = new String[placeIds.length];
+		transitionNames = new String[transitionIds.length];
+		for (int i = 0; i < placeIds.length; i++) {
+			placeIndex.put(placeIds[i], i);
+			placeNames[i] = net.getPlaces().get(placeIds[i]).getName();
+		}
+		for (int i = 0; i < transitionIds.length; i++) {
+			transitionIndex.put(transitionIds[i], i);
+			transitionNames[i] = net.getTransitions().get(transitionIds[i]).getName();
+		}
+
+		int t = transitionIds.length;
+		pre = new int[t][];
+		post = new int[t][];
+		consume = new int[t][];
+		produce = new int[t][];
+		for (int i = 0; i < t; i++) {
+			Transition trans = net.getTransitions().get(transitionIds[i]);
+			pre[i] = indicesOf(trans.pre);
+			post[i] = indicesOf(trans.post);
+			consume[i] = difference(pre[i], post[i]);
+			produce[i] = difference(post[i], pre[i]);
+		}
+		consumers = invert(pre, placeIds.length);
+		producers = invert(post, placeIds.length);
+
+		words = Math.max(1, (placeIds.length + 63) >>> 6);
+		start = net.getStartNode() != null ? placeIndex.get(net.getStartNode().ID) : uniquePlace(producers);
+		end = net.getEndNode() != null ? placeIndex.get(net.getEndNode().ID) : uniquePlace(consumers);
+
+		currentMarking = new long[words];
+		for (int i = 0; i < placeIds.length; i++) {
+			if (net.getPlaces().get(placeIds[i]).isMarked())
+				currentMarking[i >>> 6] |= 1L << i;
+		}
+		if (start >= 0) {
+			initialMarking = new long[words];
+			initialMarking[start >>> 6] |= 1L << start;
+		}
+		else
+			initialMarking = currentMarking.clone();
+	}
+
+	//**** HELPERS ****
+	/**
+	 * Bildet eine Liste von Stellen auf ihre sortierten, duplikatfreien Nummern ab.
+	 */
+	private int[] indicesOf(ArrayList<Place> in) {
+		return in.stream().mapToInt(p -> placeIndex.get(p.ID)).sorted().distinct().toArray();
+	}
+	/**
+	 * Gibt die Elemente von a zurück, die nicht in b liegen (beide sortiert).
+	 */
+	private static int[] difference(int[] a, int[] b) {
+		return Arrays.stream(a).filter(x -> Arrays.binarySearch(b, x) < 0).toArray();
+	}
+	/**
+	 * Kehrt eine Zuordnung Transition -> Stellen in eine Zuordnung Stelle -> Transitionen um.
+	 */
+	private static int[][] invert(int[][] in, int places) {
+		int[] count = new int[places];
+		for (int[] row : in)
+			for (int p : row)
+				count[p]++;
+		int[][] out = new int[places][];
+		for (int p = 0; p < places; p++)
+			out[p] = new int[count[p]];
+		Arrays.fill(count, 0);
+		for (int t = 0; t < in.length; t++)
+			for (int p : in[t])
+				out[p][count[p]++] = t;
+		return out;
+	}
+	/**
+	 * Gibt die Nummer der einzigen Stelle mit leerer Zuordnung zurück, -1 wenn es keine oder mehrere gibt.
+	 */
+	private static int uniquePlace(int[][] adjacency) {
+		int found = -1;
+		for (int p = 0; p < adjacency.length; p++) {
+			if (adjacency[p].length == 0) {
+				if (found >= 0)
+					return -1;
+				found = p;
+			}
+		}
+		return found;
+	}
+
+	//**** SEMANTICS ****
+	/**
+	 * Gibt an ob eine Stelle in einer Markierung markiert ist.
+	 * @param m
+	 * 		Array das die Markierung enthält.
+	 * @param off
+	 * 		Position des ersten Wortes der Markierung im Array.
+	 * @param p
+	 * 		Nummer der Stelle.
+	 */
+	public static boolean isMarked(long[] m, int off, int p) {
+		return (m[off + (p >>> 6)] & (1L << p)) != 0;
+	}
+	/**
+	 * Prüft ob eine Transition unter einer Markierung aktiviert ist und keinen Kontakt hat.
+	 * @param m
+	 * 		Array das die Markierung enthält.
+	 * @param off
+	 * 		Position des ersten Wortes der Markierung im Array.
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		<b>true</b>: wenn die Transition schalten kann<br>
+	 * 		<b>false</b>: sonst
+	 */
+	public boolean isEnabled(long[] m, int off, int t) {
+		int[] in = pre[t];
+		if (in.length == 0)
+			return false;
+		for (int p : in) {
+			if ((m[off + (p >>> 6)] & (1L << p)) == 0)
+				return false;
+		}
+		for (int p : produce[t]) {
+			if ((m[off + (p >>> 6)] & (1L << p)) != 0)
+				return false;
+		}
+		return true;
+	}
+	/**
+	 * Schreibt die Folgemarkierung nach dem Schalten einer Transition.<br>
+	 * Quelle und Ziel dürfen identisch sein; die Aktivierung wird nicht geprüft.
+	 * @param src
+	 * 		Array das die Ausgangsmarkierung enthält.
+	 * @param srcOff
+	 * 		Position der Ausgangsmarkierung.
+	 * @param dst
+	 * 		Array in das die Folgemarkierung geschrieben wird.
+	 * @param dstOff
+	 * 		Position der Folgemarkierung.
+	 * @param t
+	 * 		Nummer der schaltenden Transition.
+	 */
+	public void fire(long[] src, int srcOff, long[] dst, int dstOff, int t) {
+		if (src != dst || srcOff != dstOff)
+			System.arraycopy(src, srcOff, dst, dstOff, words);
+		for (int p : consume[t])
+			dst[dstOff + (p >>> 6)] &= ~(1L << p);
+		for (int p : produce[t])
+			dst[dstOff + (p >>> 6)] |= 1L << p;
+	}
+	/**
+	 * Prüft ob eine Markierung die Endmarkierung ist, d.h. genau die Endstelle markiert ist.
+	 * @param m
+	 * 		Array das die Markierung enthält.
+	 * @param off
+	 * 		Position der Markierung.
+	 */
+	public boolean isFinal(long[] m, int off) {
+		if (end < 0)
+			return false;
+		for (int w = 0; w < words; w++) {
+			long expected = (end >>> 6) == w ? 1L << end : 0L;
+			if (m[off + w] != expected)
+				return false;
+		}
+		return true;
+	}
+
+	//**** LOOKUP ****
+	/**
+	 * @return
+	 * 		Nummer der Stelle mit dieser ID, -1 wenn sie nicht existiert.
+	 */
+	public int placeIndex(String id) {
+		Integer i = placeIndex.get(id);
+		return i == null ? -1 : i;
+	}
+	/**
+	 * @return
+	 * 		Nummer der Transition mit dieser ID, -1 wenn sie nicht existiert.
+	 */
+	public int transitionIndex(String id) {
+		Integer i = transitionIndex.get(id);
+		return i == null ? -1 : i;
+	}
+	/**
+	 * Sucht eine Stelle zuerst über die ID, dann über einen eindeutigen Namen.
+	 * @return
+	 * 		Nummer der Stelle, -1 wenn keine oder mehrere passen.
+	 */
+	public int findPlace(String idOrName) {
+		int i = placeIndex(idOrName);
+		if (i >= 0)
+			return i;
+		for (int p = 0; p < placeNames.length; p++) {
+			if (idOrName.equals(placeNames[p])) {
+				if (i >= 0)
+					return -1;
+				i = p;
+			}
+		}
+		return i;
+	}
+	/**
+	 * Gibt die Bezeichnung einer Transition wie sie in Ereignislogs auftaucht: den Namen, wenn gesetzt, sonst die ID.
+	 */
+	public String transitionLabel(int t) {
+		String name = transitionNames[t];
+		return name == null || name.isEmpty() ? transitionIds[t] : name;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der Stellen.
+	 */
+	public int placeCount() {
+		return placeIds.length;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Transitionen.
+	 */
+	public int transitionCount() {
+		return transitionIds.length;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der long-Wörter einer Markierung.
+	 */
+	public int words() {
+		return words;
+	}
+	/**
+	 * @return
+	 * 		ID der Stelle mit der Nummer p.
+	 */
+	public String placeId(int p) {
+		return placeIds[p];
+	}
+	/**
+	 * @return
+	 * 		Name der Stelle mit der Nummer p (ggf. null).
+	 */
+	public String placeName(int p) {
+		return placeNames[p];
+	}
+	/**
+	 * @return
+	 * 		ID der Transition mit der Nummer t.
+	 */
+	public String transitionId(int t) {
+		return transitionIds[t];
+	}
+	/**
+	 * @return
+	 * 		Name der Transition mit der Nummer t (ggf. null).
+	 */
+	public String transitionName(int t) {
+		return transitionNames[t];
+	}
+	/**
+	 * @return
+	 * 		Vorbereich der Transition t als Stellennummern.
+	 */
+	public int[] pre(int t) {
+		return pre[t];
+	}
+	/**
+	 * @return
+	 * 		Nachbereich der Transition t als Stellennummern.
+	 */
+	public int[] post(int t) {
+		return post[t];
+	}
+	/**
+	 * @return
+	 * 		Stellen die t beim Schalten entmarkiert.
+	 */
+	public int[] consume(int t) {
+		return consume[t];
+	}
+	/**
+	 * @return
+	 * 		Stellen die t beim Schalten markiert.
+	 */
+	public int[] produce(int t) {
+		return produce[t];
+	}
+	/**
+	 * @return
+	 * 		Transitionen in deren Vorbereich die Stelle p liegt.
+	 */
+	public int[] consumers(int p) {
+		return consumers[p];
+	}
+	/**
+	 * @return
+	 * 		Transitionen in deren Nachbereich die Stelle p liegt.
+	 */
+	public int[] producers(int p) {
+		return producers[p];
+	}
+	/**
+	 * @return
+	 * 		Nummer der Startstelle, -1 wenn es keine eindeutige gibt.
+	 */
+	public int getStart() {
+		return start;
+	}
+	/**
+	 * @return
+	 * 		Nummer der Endstelle, -1 wenn es keine eindeutige gibt.
+	 */
+	public int getEnd() {
+		return end;
+	}
+	/**
+	 * @return
+	 * 		Kopie der Anfangsmarkierung.
+	 */
+	public long[] initialMarking() {
+		return initialMarking.clone();
+	}
+	/**
+	 * @return
+	 * 		Kopie der Markierung die das Netz beim Erzeugen der Momentaufnahme trug.
+	 */
+	public long[] currentMarking() {
+		return currentMarking.clone();
+	}
+
+}
@@ -1,11 +1,22 @@
 package model;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.BooleanProperty;
 import parser.*;
+import analysis.BehaviourClassification;
+import analysis.BehaviouralProfile;
+import analysis.Cancellation;
+import analysis.IncrementalReachability;
+import analysis.ReachabilityGraph;
+import analysis.RelaxedSoundness;
+import analysis.StandardAnalyses;
+import analysis.StateSpaceStatistics;
+import analysis.StructuralHash;
 
 
 /**
@@ -68,6 +79,11 @@ public class PetriNet {
 	 * flag-Property beschreibt ob die Endmarkierung erreicht ist
 	 */
 	private BooleanProperty simFinProp = new SimpleBooleanProperty();
+	/**
+	 * Hält den zuletzt berechneten Erreichbarkeitsgraphen, damit er nach kleinen Änderungen
+	 * inkrementell neu berechnet werden kann; wird den Analysen des AnalysisSchedulers mitgegeben.
+	 */
+	private final IncrementalReachability reachability = new IncrementalReachability();
 
 	/**
 	 * Wird verwendet in der Implementierung des Löschens eines Knotens
@@ -328,6 +344,23 @@ public class PetriNet {
 			System.out.println("setMarking called with bad values");
 	}
 
+	/**
+	 * Nimmt eine ID und einen String der die Verzögerung der zur ID korrespondierenden Transition beschreibt.
+	 * @param id
+	 * 		Die ID der Transition deren Verzögerung gesetzt werden soll.
+	 * @param delay
+	 * 		Die Verzögerung in der Schreibweise von Delay.toString().
+	 * @throws IllegalArgumentException
+	 * 		wenn der String keine gültige Verzögerung beschreibt.
+	 */
+	public void setDelay(String id, String delay) {
+		if (transitions.containsKey(id)) {
+			transitions.get(id).setDelay(Delay.parse(delay));
+		}
+		else
+			System.out.println("setDelay called with bad values");
+	}
+
 	//**** SIMULATION ****
 	/**
 	 * Überprüft ob es Start- und Endknoten gibt und ob die Pfadeigenschaft eines Workflownetzes erfüllt ist.<br>
@@ -514,6 +547,162 @@ public class PetriNet {
 		return null;
 	}
 
+	//**** ANALYSIS ****
+	/**
+	 * Berechnet das Verhaltensprofil des Netzes (strikte Ordnung, Exklusivität und Verschränkung
+	 * für alle Paare von Transitionen) auf einer Momentaufnahme des aktuellen Zustands.
+	 * @return
+	 * 		Das Verhaltensprofil als in O(1) abfragbare Relationsmatrix.
+	 */
+	public BehaviouralProfile behaviouralProfile() {
+		return BehaviouralProfile.compute(new IndexedNet(this));
+	}
+	/**
+	 * Berechnet den Strukturhash des Netzes (IDs, Kanten und Anfangsmarkierung, ohne Positionen und Namen).
+	 * @return
+	 * 		Strukturhash als Hex-String, Schlüssel für den AnalysisCache.
+	 */
+	public String structuralHash() {
+		return StructuralHash.of(this);
+	}
+	/**
+	 * Liefert die Kennzahlen des Zustandsraums, bei unverändertem Netz aus dem gemeinsamen AnalysisCache.
+	 * @return
+	 * 		Anzahl der Zustände, Kanten, Verklemmungen und Komponenten.
+	 */
+	public StateSpaceStatistics stateSpaceStatistics() {
+		return StandardAnalyses.STATE_SPACE.analyse(new IndexedNet(this), reachability, new Cancellation());
+	}
+	/**
+	 * Liefert den Erreichbarkeitsgraphen des Netzes. Nach kleinen Änderungen werden nur die Kanten
+	 * geänderter Transitionen und neu entstandene Markierungen neu untersucht.
+	 * @param shortCircuit
+	 * 		wenn <b>true</b>, erhält die Endmarkierung eine RESET-Kante zur Anfangsmarkierung.
+	 * @return
+	 * 		Der Erreichbarkeitsgraph einer Momentaufnahme des aktuellen Zustands.
+	 * @throws IllegalStateException
+	 * 		wenn der Zustandsraum die Standard-Obergrenze überschreitet.
+	 */
+	public ReachabilityGraph reachabilityGraph(boolean shortCircuit) {
+		return reachability.update(new IndexedNet(this), shortCircuit);
+	}
+	/**
+	 * Klassifiziert das Verhalten des Netzes (Lebendigkeit, Schranken, Reversibilität, Heimatmarkierung),
+	 * bei unverändertem Netz aus dem gemeinsamen AnalysisCache.
+	 * @return
+	 * 		Die Klassifikation.
+	 */
+	public BehaviourClassification behaviourClassification() {
+		return StandardAnalyses.BEHAVIOUR.analyse(new IndexedNet(this), reachability, new Cancellation());
+	}
+	/**
+	 * Prüft das Workflownetz auf schwache Korrektheit (jede Transition liegt auf einem Lauf zur Endmarkierung),
+	 * bei unverändertem Netz aus dem gemeinsamen AnalysisCache.
+	 * @return
+	 * 		Das Ergebnis der Prüfung mit den nicht abgedeckten Transitionen.
+	 * @throws IllegalArgumentException
+	 * 		wenn das Netz keine eindeutige Start- und Endstelle hat.
+	 */
+	public RelaxedSoundness relaxedSoundness() {
+		return StandardAnalyses.RELAXED_SOUNDNESS.analyse(new IndexedNet(this), reachability, new Cancellation());
+	}
+
+	//**** COMPOSITION ****
+	/**
+	 * Setzt Workflownetze hintereinander: die Endstelle jedes Netzes wird mit der Startstelle des nächsten
+	 * verschmolzen.
+	 * @param nets
+	 * 		Die Netze in Ausführungsreihenfolge.
+	 * @return
+	 * 		Ein neues Netz, die Operanden bleiben unverändert.
+	 * @throws IllegalArgumentException
+	 * 		wenn ein Operand keine eindeutige Start- und Endstelle hat.
+	 */
+	public static PetriNet sequence(List<PetriNet> nets) {
+		return WorkflowFragment.sequence(fragments(nets)).toPetriNet();
+	}
+	/**
+	 * Setzt Workflownetze nebenläufig zusammen, mit neuer Start- und Endstelle, AND-Split und AND-Join.
+	 * @param nets
+	 * 		Die nebenläufigen Netze.
+	 * @return
+	 * 		Ein neues Netz, die Operanden bleiben unverändert.
+	 * @throws IllegalArgumentException
+	 * 		wenn ein Operand keine eindeutige Start- und Endstelle hat.
+	 */
+	public static PetriNet parallel(List<PetriNet> nets) {
+		return WorkflowFragment.parallel(fragments(nets)).toPetriNet();
+	}
+	/**
+	 * Setzt Workflownetze als exklusive Alternativen zusammen: alle Startstellen werden zu einer verschmolzen,
+	 * ebenso alle Endstellen.
+	 * @param nets
+	 * 		Die alternativen Netze.
+	 * @return
+	 * 		Ein neues Netz, die Operanden bleiben unverändert.
+	 * @throws IllegalArgumentException
+	 * 		wenn ein Operand keine eindeutige Start- und Endstelle hat.
+	 */
+	public static PetriNet choice(List<PetriNet> nets) {
+		return WorkflowFragment.choice(fragments(nets)).toPetriNet();
+	}
+	private static List<WorkflowFragment> fragments(List<PetriNet> nets) {
+		List<WorkflowFragment> out = new ArrayList<WorkflowFragment>(nets.size());
+		for (PetriNet net : nets)
+			out.add(WorkflowFragment.of(net));
+		return out;
+	}
+	/**
+	 * Ersetzt in diesem Netz eine Transition durch ein Workflownetz. Die Transition behält ihre ID und Vorbögen
+	 * und führt in die Startstelle des eingesetzten Netzes; ihre Nachbögen gehen auf eine neue Transition über,
+	 * die aus dessen Endstelle schaltet. Die neuen Knoten erhalten blockweise vergebene IDs und werden rechts
+	 * der Transition angeordnet, die Knoten rechts davon rücken entsprechend nach rechts.
+	 * @param transitionId
+	 * 		ID der zu verfeinernden Transition.
+	 * @param replacement
+	 * 		Das einzusetzende Workflownetz; es bleibt unverändert.
+	 * @throws IllegalArgumentException
+	 * 		wenn es die Transition nicht gibt oder das einzusetzende Netz keine eindeutige Start- und Endstelle hat.
+	 */
+	public void refine(String transitionId, PetriNet replacement) {
+		Transition t = transitions.get(transitionId);
+		if (t == null)
+			throw new IllegalArgumentException("no transition " + transitionId);
+		WorkflowFragment fragment = WorkflowFragment.of(replacement);
+		IdAllocator ids = new IdAllocator(this);
+		double tx = t.getXpos();
+		double shift = fragment.refinementShift();
+		for (Place p : places.values())
+			if (p.getXpos() > tx)
+				p.setXpos(p.getXpos() + shift);
+		for (Transition u : transitions.values())
+			if (u.getXpos() > tx)
+				u.setXpos(u.getXpos() + shift);
+		Place[] inserted = fragment.insertInto(this, ids, fragment.refinementX(tx), t.getYpos() - fragment.centerY());
+
+		String outId = "T" + ids.allocate("T", 1);
+		newTransition(outId);
+		Transition out = transitions.get(outId);
+		out.setName(WorkflowFragment.label(t.getName(), "out"));
+		out.setXpos(tx + shift);
+		out.setYpos((double) t.getYpos());
+		t.setName(WorkflowFragment.label(t.getName(), "in"));
+		List<Arc> outgoing = new ArrayList<Arc>();
+		for (Arc a : arcs.values())
+			if (a.from == t)
+				outgoing.add(a);
+		long arc = ids.allocate("K", outgoing.size() + 2);
+		for (Arc a : outgoing) {
+			a.from.removeArc(a);
+			a.to.removeArc(a);
+			arcs.remove(a.ID);
+			newArc("K" + arc++, outId, a.to.ID);
+		}
+		newArc("K" + arc++, transitionId, inserted[fragment.getStart()].ID);
+		newArc("K" + arc++, inserted[fragment.getEnd()].ID, outId);
+		this.testIfPathPropHolds();
+	}
+
 	//**** LOAD AND SAVE ****
 	/**
 	 * Nimmt ein File-Objekt aus dem ein Netz geladen werden soll, erzeugt eine neue Instanz 
@@ -545,7 +734,8 @@ public class PetriNet {
 
 		for (Transition transition: transitions.values()) {
 			pnmlWriter.addTransition(transition.ID, transition.getName(), 
-					Integer.toString(transition.getXpos()), Integer.toString(transition.getYpos()));
+					Integer.toString(transition.getXpos()), Integer.toString(transition.getYpos()),
+					transition.getDelay() == null ? null : transition.getDelay().toString());
 		}
 
 		for (Arc arc: arcs.values()) {
@@ -556,6 +746,13 @@ public class PetriNet {
 	}
 
 	//**** GETTER & SETTER
+	/**
+	 * @return
+	 * Gibt den Speicher für den zuletzt berechneten Erreichbarkeitsgraphen zurück.
+	 */
+	public IncrementalReachability getReachability() {
+		return reachability;
+	}
 	/**
 	 * @return
 	 * Gibt die Menge der Stellen als Map zurück.
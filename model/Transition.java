@@ -31,6 +31,10 @@ public class Transition extends PetriNode {
 	 * Es wurde ein BeanProperty verwendet um Datenbindung der visuellen Darstellung zu ermöglichen.
 	 */
 	private BooleanProperty contact = new SimpleBooleanProperty();
+	/**
+	 * Verteilung der Verzögerung für die zeitbehaftete Simulation, null heißt die Transition schaltet sofort.
+	 */
+	private Delay delay;
 
 	//**** CONSTRUCTOR ****
 	/**
@@ -175,5 +179,19 @@ public class Transition extends PetriNode {
 	public BooleanProperty contact() {
 		return contact;
 	}
+	/**
+	 * @return
+	 * 		Die Verzögerung der Transition, null wenn sie sofort schaltet.
+	 */
+	public Delay getDelay() {
+		return delay;
+	}
+	/**
+	 * @param delay
+	 * 		Die Verzögerung der Transition, null wenn sie sofort schalten soll.
+	 */
+	public void setDelay(Delay delay) {
+		this.delay = delay;
+	}
 
 }
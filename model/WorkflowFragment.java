@@ -0,0 +1,511 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ein unveränderliches Workflownetz in indizierter Form, auf dem sich größere Modelle aus kleineren zusammensetzen
+ * lassen.<br>
+ * Stellen und Transitionen sind durchnummeriert und tragen nur Name, Position (und Transitionen ihre
+ * Verzögerung), Bögen sind Paare aus Stellen- und Transitionsnummer mit Richtung; IDs gibt es erst beim Übertragen
+ * in ein PetriNet, wo sie blockweise von einem IdAllocator vergeben werden. Jede Operation kopiert ihre Operanden
+ * mit System.arraycopy bzw. einer Umnummerierung der Stellen in Arrays der endgültigen Größe und kostet damit
+ * O(Größe des Ergebnisses); die mehrstelligen Varianten setzen beliebig viele Fragmente in einem Durchgang
+ * zusammen.<br>
+ * Die Operationen erhalten die Workflownetz-Eigenschaft (genau eine Start- und eine Endstelle, alle Knoten auf
+ * einem Pfad dazwischen) und, für korrekte Operanden, die Korrektheit (soundness).
+ */
+public final class WorkflowFragment {
+
+	//**** FIELDS ****
+	/**
+	 * Abstand in Pixeln zwischen nebeneinander bzw. untereinander angeordneten Teilen.
+	 */
+	static final double GAP = 80;
+
+	/**
+	 * Namen und Positionen der Stellen.
+	 */
+	private final String[] placeNames;
+	private final double[] placeX;
+	private final double[] placeY;
+	/**
+	 * Namen, Positionen und Verzögerungen der Transitionen.
+	 */
+	private final String[] transitionNames;
+	private final double[] transitionX;
+	private final double[] transitionY;
+	private final Delay[] delays;
+	/**
+	 * Bögen: Stelle, Transition und Richtung (<b>true</b>: von der Transition zur Stelle).
+	 */
+	private final int[] arcPlace;
+	private final int[] arcTransition;
+	private final boolean[] arcToPlace;
+	/**
+	 * Nummern der Start- und der Endstelle.
+	 */
+	private final int start;
+	private final int end;
+
+	//**** CONSTRUCTORS ****
+	private WorkflowFragment(Builder b) {
+		placeNames = b.placeNames;
+		placeX = b.placeX;
+		placeY = b.placeY;
+		transitionNames = b.transitionNames;
+		transitionX = b.transitionX;
+		transitionY = b.transitionY;
+		delays = b.delays;
+		arcPlace = b.arcPlace;
+		arcTransition = b.arcTransition;
+		arcToPlace = b.arcToPlace;
+		start = b.start;
+		end = b.end;
+	}
+
+	/**
+	 * Erzeugt das kleinste Workflownetz: Startstelle, eine Transition, Endstelle.
+	 * @param name
+	 * 		Name der Transition.
+	 */
+	public static WorkflowFragment activity(String name) {
+		Builder b = new Builder(2, 1, 2);
+		int i = b.place(null, 0, 0);
+		int t = b.transition(name, GAP, 0, null);
+		int o = b.place(null, 2 * GAP, 0);
+		b.arc(i, t, false);
+		b.arc(o, t, true);
+		b.start = i;
+		b.end = o;
+		return new WorkflowFragment(b);
+	}
+	/**
+	 * Liest ein Workflownetz in die indizierte Form ein.
+	 * @param net
+	 * 		Ein Netz mit genau einer Stelle ohne Vorgänger und genau einer Stelle ohne Nachfolger.
+	 * @throws IllegalArgumentException
+	 * 		wenn das Netz keine eindeutige Start- und Endstelle hat.
+	 */
+	public static WorkflowFragment of(PetriNet net) {
+		Builder b = new Builder(net.getPlaces().size(), net.getTransitions().size(), net.getArcs().size());
+		Map<PetriNode, Integer> index = new HashMap<PetriNode, Integer>();
+		b.start = -1;
+		b.end = -1;
+		for (Place p : net.getPlaces().values()) {
+			int i = b.place(p.getName(), p.getXpos(), p.getYpos());
+			index.put(p, i);
+			if (p.pre.isEmpty()) {
+				if (b.start >= 0)
+					throw new IllegalArgumentException("more than one start place: " + p.ID);
+				b.start = i;
+			}
+			if (p.post.isEmpty()) {
+				if (b.end >= 0)
+					throw new IllegalArgumentException("more than one end place: " + p.ID);
+				b.end = i;
+			}
+		}
+		if (b.start < 0 || b.end < 0 || b.start == b.end)
+			throw new IllegalArgumentException("not a workflow net: no unique start and end place");
+		for (Transition t : net.getTransitions().values())
+			index.put(t, b.transition(t.getName(), t.getXpos(), t.getYpos(), t.getDelay()));
+		for (Arc a : net.getArcs().values()) {
+			if (a.from instanceof Place)
+				b.arc(index.get(a.from), index.get(a.to), false);
+			else
+				b.arc(index.get(a.to), index.get(a.from), true);
+		}
+		return new WorkflowFragment(b);
+	}
+
+	//**** OPERATORS ****
+	/**
+	 * Sequenz: die Endstelle jedes Fragments wird mit der Startstelle des nächsten verschmolzen.
+	 * @param parts
+	 * 		Die Fragmente in Ausführungsreihenfolge, mindestens eines.
+	 */
+	public static WorkflowFragment sequence(List<WorkflowFragment> parts) {
+		requireParts(parts);
+		int places = 1, transitions = 0, arcs = 0;
+		for (WorkflowFragment f : parts) {
+			places += f.placeCount() - 1;
+			transitions += f.transitionCount();
+			arcs += f.arcCount();
+		}
+		Builder b = new Builder(places, transitions, arcs);
+		double x = 0;
+		int previous = -1;
+		for (WorkflowFragment f : parts) {
+			int[] map = b.append(f, x - f.minX(), -f.centerY(), previous, -1);
+			if (previous < 0)
+				b.start = map[f.start];
+			previous = map[f.end];
+			// die Startstelle des nächsten Fragments liegt auf der Endstelle dieses
+			x += f.width() - GAP;
+		}
+		b.end = previous;
+		return new WorkflowFragment(b);
+	}
+	/**
+	 * Parallelität: eine neue Startstelle und eine AND-Split-Transition vor den Startstellen, eine AND-Join-Transition
+	 * und eine neue Endstelle hinter den Endstellen aller Fragmente.
+	 * @param parts
+	 * 		Die nebenläufig auszuführenden Fragmente, mindestens eines.
+	 */
+	public static WorkflowFragment parallel(List<WorkflowFragment> parts) {
+		requireParts(parts);
+		int places = 2, transitions = 2, arcs = 2;
+		double width = 0, height = -GAP;
+		for (WorkflowFragment f : parts) {
+			places += f.placeCount();
+			transitions += f.transitionCount();
+			arcs += f.arcCount() + 2;
+			width = Math.max(width, f.width());
+			height += f.height() + GAP;
+		}
+		Builder b = new Builder(places, transitions, arcs);
+		b.start = b.place(null, 0, 0);
+		int split = b.transition("AND-split", GAP, 0, null);
+		int join = b.transition("AND-join", 3 * GAP + width, 0, null);
+		b.end = b.place(null, 4 * GAP + width, 0);
+		b.arc(b.start, split, false);
+		b.arc(b.end, join, true);
+		double y = -height / 2;
+		for (WorkflowFragment f : parts) {
+			int[] map = b.append(f, 2 * GAP - f.minX(), y - f.minY(), -1, -1);
+			b.arc(map[f.start], split, true);
+			b.arc(map[f.end], join, false);
+			y += f.height() + GAP;
+		}
+		return new WorkflowFragment(b);
+	}
+	/**
+	 * Exklusive Auswahl (XOR): die Startstellen aller Fragmente werden zu einer verschmolzen, ebenso die Endstellen.
+	 * @param parts
+	 * 		Die alternativen Fragmente, mindestens eines.
+	 */
+	public static WorkflowFragment choice(List<WorkflowFragment> parts) {
+		requireParts(parts);
+		int places = 2, transitions = 0, arcs = 0;
+		double width = 0, height = -GAP;
+		for (WorkflowFragment f : parts) {
+			places += f.placeCount() - 2;
+			transitions += f.transitionCount();
+			arcs += f.arcCount();
+			width = Math.max(width, f.width());
+			height += f.height() + GAP;
+		}
+		Builder b = new Builder(places, transitions, arcs);
+		b.start = b.place(null, 0, 0);
+		b.end = b.place(null, width - GAP, 0);
+		double y = -height / 2;
+		for (WorkflowFragment f : parts) {
+			b.append(f, -f.minX(), y - f.minY(), b.start, b.end);
+			y += f.height() + GAP;
+		}
+		return new WorkflowFragment(b);
+	}
+	/**
+	 * Verfeinerung: eine Transition wird durch ein Workflownetz ersetzt. Die Transition behält ihren Vorbereich
+	 * und führt stattdessen in die Startstelle des Fragments; aus dessen Endstelle führt eine neue Transition in
+	 * ihren bisherigen Nachbereich. Knoten rechts der Transition werden um die Breite des Fragments nach rechts
+	 * verschoben.
+	 * @param t
+	 * 		Nummer der zu ersetzenden Transition.
+	 * @param replacement
+	 * 		Das einzusetzende Fragment.
+	 */
+	public WorkflowFragment refine(int t, WorkflowFragment replacement) {
+		if (t < 0 || t >= transitionCount())
+			throw new IllegalArgumentException("no transition " + t);
+		double shift = replacement.refinementShift();
+		double tx = transitionX[t];
+		Builder b = new Builder(placeCount() + replacement.placeCount(), transitionCount() + 1 + replacement.transitionCount(),
+				arcCount() + replacement.arcCount() + 2);
+		for (int p = 0; p < placeCount(); p++)
+			b.place(placeNames[p], placeX[p] > tx ? placeX[p] + shift : placeX[p], placeY[p]);
+		// die ersetzte Transition behält ihre Nummer und wird zur Eingangstransition
+		for (int u = 0; u < transitionCount(); u++) {
+			if (u == t)
+				b.transition(label(transitionNames[t], "in"), tx, transitionY[t], null);
+			else
+				b.transition(transitionNames[u], transitionX[u] > tx ? transitionX[u] + shift : transitionX[u],
+						transitionY[u], delays[u]);
+		}
+		int out = b.transition(label(transitionNames[t], "out"), tx + shift, transitionY[t], null);
+		for (int a = 0; a < arcCount(); a++)
+			b.arc(arcPlace[a], arcToPlace[a] && arcTransition[a] == t ? out : arcTransition[a], arcToPlace[a]);
+		int[] map = b.append(replacement, replacement.refinementX(tx), transitionY[t] - replacement.centerY(), -1, -1);
+		b.arc(map[replacement.start], t, true);
+		b.arc(map[replacement.end], out, false);
+		b.start = start;
+		b.end = end;
+		return new WorkflowFragment(b);
+	}
+	/**
+	 * Varianten der Operatoren mit variabler Argumentliste.
+	 */
+	public static WorkflowFragment sequence(WorkflowFragment... parts) {
+		return sequence(Arrays.asList(parts));
+	}
+	public static WorkflowFragment parallel(WorkflowFragment... parts) {
+		return parallel(Arrays.asList(parts));
+	}
+	public static WorkflowFragment choice(WorkflowFragment... parts) {
+		return choice(Arrays.asList(parts));
+	}
+	/**
+	 * Name der Ein- bzw. Ausgangstransition einer verfeinerten Transition.
+	 */
+	static String label(String name, String suffix) {
+		return name == null || name.isEmpty() ? suffix : name + " (" + suffix + ")";
+	}
+	private static void requireParts(List<WorkflowFragment> parts) {
+		if (parts.isEmpty())
+			throw new IllegalArgumentException("at least one fragment required");
+	}
+
+	//**** EXPORT ****
+	/**
+	 * Überträgt das Fragment in ein neues PetriNet.
+	 * @return
+	 * 		Das neue Netz mit den IDs P0.., T0.. und K0...
+	 */
+	public PetriNet toPetriNet() {
+		PetriNet net = new PetriNet();
+		insertInto(net, new IdAllocator(), 0, 0);
+		return net;
+	}
+	/**
+	 * Fügt das Fragment als neue Knoten und Bögen in ein Netz ein.
+	 * @param net
+	 * 		Das Zielnetz.
+	 * @param ids
+	 * 		Vergibt die IDs; muss alle IDs des Zielnetzes kennen.
+	 * @param dx
+	 * 		Verschiebung in x-Richtung.
+	 * @param dy
+	 * 		Verschiebung in y-Richtung.
+	 * @return
+	 * 		Die neuen Stellen in der Nummerierung des Fragments.
+	 */
+	public Place[] insertInto(PetriNet net, IdAllocator ids, double dx, double dy) {
+		long p0 = ids.allocate("P", placeCount());
+		long t0 = ids.allocate("T", transitionCount());
+		long a0 = ids.allocate("K", arcCount());
+		Place[] places = new Place[placeCount()];
+		String[] transitionIds = new String[transitionCount()];
+		for (int p = 0; p < places.length; p++) {
+			String id = "P" + (p0 + p);
+			net.newPlace(id);
+			places[p] = net.getPlaces().get(id);
+			places[p].setName(placeNames[p]);
+			places[p].setXpos(placeX[p] + dx);
+			places[p].setYpos(placeY[p] + dy);
+		}
+		for (int t = 0; t < transitionIds.length; t++) {
+			transitionIds[t] = "T" + (t0 + t);
+			net.newTransition(transitionIds[t]);
+			Transition transition = net.getTransitions().get(transitionIds[t]);
+			transition.setName(transitionNames[t]);
+			transition.setXpos(transitionX[t] + dx);
+			transition.setYpos(transitionY[t] + dy);
+			transition.setDelay(delays[t]);
+		}
+		for (int a = 0; a < arcPlace.length; a++) {
+			String place = places[arcPlace[a]].ID;
+			String transition = transitionIds[arcTransition[a]];
+			if (arcToPlace[a])
+				net.newArc("K" + (a0 + a), transition, place);
+			else
+				net.newArc("K" + (a0 + a), place, transition);
+		}
+		return places;
+	}
+
+	//**** GEOMETRY ****
+	double minX() {
+		double m = Double.POSITIVE_INFINITY;
+		for (double x : placeX)
+			m = Math.min(m, x);
+		for (double x : transitionX)
+			m = Math.min(m, x);
+		return m;
+	}
+	private double minY() {
+		double m = Double.POSITIVE_INFINITY;
+		for (double y : placeY)
+			m = Math.min(m, y);
+		for (double y : transitionY)
+			m = Math.min(m, y);
+		return m;
+	}
+	double centerY() {
+		return minY() + height() / 2;
+	}
+	/**
+	 * @return
+	 * 		Breite des Fragments einschließlich des Abstands zum nächsten Teil.
+	 */
+	double width() {
+		double m = Double.NEGATIVE_INFINITY;
+		for (double x : placeX)
+			m = Math.max(m, x);
+		for (double x : transitionX)
+			m = Math.max(m, x);
+		return m - minX() + GAP;
+	}
+	/**
+	 * Anordnung bei der Verfeinerung, gemeinsam für refine(int, WorkflowFragment) und
+	 * PetriNet.refine(String, PetriNet): Knoten rechts der ersetzten Transition rücken um refinementShift() nach
+	 * rechts, das Fragment wird um refinementX(x der Transition) verschoben, die Ausgangstransition steht bei
+	 * x der Transition + refinementShift().
+	 */
+	double refinementShift() {
+		return width() + 2 * GAP;
+	}
+	double refinementX(double tx) {
+		return tx + GAP - minX();
+	}
+	private double height() {
+		double m = Double.NEGATIVE_INFINITY;
+		for (double y : placeY)
+			m = Math.max(m, y);
+		for (double y : transitionY)
+			m = Math.max(m, y);
+		return m - minY();
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der Stellen.
+	 */
+	public int placeCount() {
+		return placeNames.length;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Transitionen.
+	 */
+	public int transitionCount() {
+		return transitionNames.length;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Bögen.
+	 */
+	public int arcCount() {
+		return arcPlace.length;
+	}
+	/**
+	 * @return
+	 * 		Name einer Transition, für die Auswahl der zu verfeinernden Transition.
+	 */
+	public String transitionName(int t) {
+		return transitionNames[t];
+	}
+	/**
+	 * @return
+	 * 		Nummer der Startstelle.
+	 */
+	public int getStart() {
+		return start;
+	}
+	/**
+	 * @return
+	 * 		Nummer der Endstelle.
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Füllt die Arrays eines neuen Fragments, deren Größe vorab feststeht.
+	 */
+	private static final class Builder {
+		final String[] placeNames;
+		final double[] placeX;
+		final double[] placeY;
+		final String[] transitionNames;
+		final double[] transitionX;
+		final double[] transitionY;
+		final Delay[] delays;
+		final int[] arcPlace;
+		final int[] arcTransition;
+		final boolean[] arcToPlace;
+		int places = 0;
+		int transitions = 0;
+		int arcs = 0;
+		int start;
+		int end;
+
+		Builder(int places, int transitions, int arcs) {
+			placeNames = new String[places];
+			placeX = new double[places];
+			placeY = new double[places];
+			transitionNames = new String[transitions];
+			transitionX = new double[transitions];
+			transitionY = new double[transitions];
+			delays = new Delay[transitions];
+			arcPlace = new int[arcs];
+			arcTransition = new int[arcs];
+			arcToPlace = new boolean[arcs];
+		}
+		int place(String name, double x, double y) {
+			placeNames[places] = name;
+			placeX[places] = x;
+			placeY[places] = y;
+			return places++;
+		}
+		int transition(String name, double x, double y, Delay delay) {
+			transitionNames[transitions] = name;
+			transitionX[transitions] = x;
+			transitionY[transitions] = y;
+			delays[transitions] = delay;
+			return transitions++;
+		}
+		void arc(int place, int transition, boolean toPlace) {
+			arcPlace[arcs] = place;
+			arcTransition[arcs] = transition;
+			arcToPlace[arcs++] = toPlace;
+		}
+		/**
+		 * Kopiert ein Fragment verschoben hinein; Start- und Endstelle können auf vorhandene Stellen abgebildet
+		 * werden.
+		 * @param startAs
+		 * 		Stelle für die Startstelle des Fragments, -1 für eine neue.
+		 * @param endAs
+		 * 		Stelle für die Endstelle des Fragments, -1 für eine neue.
+		 * @return
+		 * 		Die Abbildung der Stellen des Fragments auf die neuen Nummern.
+		 */
+		int[] append(WorkflowFragment f, double dx, double dy, int startAs, int endAs) {
+			int[] map = new int[f.placeCount()];
+			for (int p = 0; p < map.length; p++) {
+				if (p == f.start && startAs >= 0)
+					map[p] = startAs;
+				else if (p == f.end && endAs >= 0)
+					map[p] = endAs;
+				else
+					map[p] = place(f.placeNames[p], f.placeX[p] + dx, f.placeY[p] + dy);
+			}
+			int t0 = transitions;
+			int n = f.transitionCount();
+			System.arraycopy(f.transitionNames, 0, transitionNames, t0, n);
+			System.arraycopy(f.delays, 0, delays, t0, n);
+			for (int t = 0; t < n; t++) {
+				transitionX[t0 + t] = f.transitionX[t] + dx;
+				transitionY[t0 + t] = f.transitionY[t] + dy;
+			}
+			transitions += n;
+			for (int a = 0; a < f.arcCount(); a++)
+				arc(map[f.arcPlace[a]], t0 + f.arcTransition[a], f.arcToPlace[a]);
+			return map;
+		}
+	}
+
+}
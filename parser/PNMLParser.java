@@ -89,6 +89,11 @@ public class PNMLParser {
      */
     private boolean        isValue   = false;
 
+    /**
+     * Dieses Flag zeigt an, ob der Parser gerade innerhalb eines Delay Elements liest.
+     */
+    private boolean        isDelay   = false;
+
     /**
      * Dieser Konstruktor erstellt einen neuen Parser für PNML Dateien,
      * dem die PNML Datei als Java {@link File} übergeben wird.
@@ -148,6 +153,8 @@ public class PNMLParser {
                             isName = false;
                         } else if (name.equals("value")) {
                             isValue = false;
+                        } else if (name.equals("delay")) {
+                            isDelay = false;
                         }
                         break;
                     case XMLStreamConstants.CHARACTERS:
@@ -198,6 +205,8 @@ public class PNMLParser {
             isToken = true;
         } else if (element.getName().toString().toLowerCase().equals("value")) {
             isValue = true;
+        } else if (element.getName().toString().toLowerCase().equals("delay")) {
+            isDelay = true;
         }
     }
 
@@ -212,6 +221,8 @@ public class PNMLParser {
             setName(lastId, value);
         } else if (isToken) {
             setMarking(lastId, value);
+        } else if (isDelay) {
+            setDelay(lastId, value);
         }
     }
 
@@ -425,5 +436,21 @@ public class PNMLParser {
                 + marking);
         netToParseTo.setMarking(id, marking);
     }
+
+    /**
+     * Diese Methode kann überschrieben werden, um die Verzögerung der geladenen
+     * Transitionen zu setzen.<br>
+     * Sie ruft eine Routine auf dem durch den Parser gefüllten Netzelement auf.
+     * 
+     * @param id
+     *      Identifikationstext der Transition
+     * @param delay
+     *      Verzögerung in der Schreibweise von Delay.toString()
+     */
+    public void setDelay(final String id, final String delay) {
+        System.out.println("Setze die Verzögerung des Elements " + id + " auf "
+                + delay);
+        netToParseTo.setDelay(id, delay);
+    }
     
 }
@@ -48,6 +48,16 @@ public final class PNMLWriter {
         }
     }
 
+    /**
+     * Name des Werkzeugs in werkzeugspezifischen Elementen.
+     */
+    public static final String TOOL = "Workflow-Netz Editor";
+
+    /**
+     * Version der werkzeugspezifischen Elemente.
+     */
+    public static final String TOOL_VERSION = "1.0";
+
     /**
      * Dies ist eine Referenz zum Java Datei Objekt.
      */
@@ -129,6 +139,28 @@ public final class PNMLWriter {
      */
     public void addTransition(final String id, final String label,
             final String xPosition, final String yPosition) {
+        addTransition(id, label, xPosition, yPosition, null);
+    }
+
+    /**
+     * Diese Methode fügt eine neue Transition mit Verzögerung zum XML Dokument hinzu. Die Verzögerung
+     * wird als werkzeugspezifisches Element in der Schreibweise von Delay.toString() abgelegt, damit
+     * andere PNML Werkzeuge sie überspringen können. Vor dieser Methode muss startXMLDocument()
+     * aufgerufen worden sein.
+     * 
+     * @param id
+     *      Indentifikationstext der Transition
+     * @param label
+     *      Beschriftung der Transition
+     * @param xPosition
+     *      x Position der Transition
+     * @param yPosition
+     *      y Position der Transition
+     * @param delay
+     *      Verzögerung der Transition, null wenn sie sofort schaltet
+     */
+    public void addTransition(final String id, final String label,
+            final String xPosition, final String yPosition, final String delay) {
         if (writer != null) {
             try {
                 writer.writeStartElement("", "transition", "");
@@ -147,6 +179,18 @@ public final class PNMLWriter {
                 writer.writeEndElement();
                 writer.writeEndElement();
 
+                if (delay != null) {
+                    writer.writeStartElement("", "toolspecific", "");
+                    writer.writeAttribute("tool", TOOL);
+                    writer.writeAttribute("version", TOOL_VERSION);
+                    writer.writeStartElement("", "delay", "");
+                    writer.writeStartElement("", "value", "");
+                    writer.writeCharacters(delay);
+                    writer.writeEndElement();
+                    writer.writeEndElement();
+                    writer.writeEndElement();
+                }
+
                 writer.writeEndElement();
             } catch (XMLStreamException e) {
                 System.err
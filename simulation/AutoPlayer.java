@@ -0,0 +1,266 @@
+package simulation;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Diese Klasse lässt ein Tokenspiel in einem eigenen Hintergrund-Thread mit einstellbarer Rate laufen.<br>
+ * Die Markierung wird nach jedem Schub von Schaltvorgängen in einen Puffer veröffentlicht; ein Betrachter
+ * (z.B. der Zeichentakt der Oberfläche) holt mit poll(long[]) jeweils nur die neueste Markierung ab,
+ * sodass beliebig viele Schaltvorgänge zwischen zwei Bildern zu einer Änderung zusammengefasst werden.<br>
+ * Das Tokenspiel darf während des Laufs nur vom Hintergrund-Thread verwendet werden. Ist beim Tokenspiel
+ * isMaximalSteps() gesetzt, zählen Rate und getFired() maximale Schritte statt einzelner Schaltvorgänge.<br>
+ * Zählt das Tokenspiel eine FiringStatistics, wird auch sie veröffentlicht, allerdings höchstens alle
+ * STATISTICS_NANOS, da das Kopieren aller Zähler teurer ist als das der Markierung.
+ */
+public class AutoPlayer {
+
+	//**** FIELDS ****
+	/**
+	 * Kleinste und größte einstellbare Rate in Schaltvorgängen pro Sekunde.
+	 */
+	public static final double MIN_RATE = 0.5;
+	public static final double MAX_RATE = 1_000_000;
+	/**
+	 * Zeitscheibe nach der die Markierung spätestens veröffentlicht wird.
+	 */
+	private static final long SLICE_NANOS = 2_000_000;
+	/**
+	 * Mindestabstand zwischen zwei Veröffentlichungen der Statistik.
+	 */
+	public static final long STATISTICS_NANOS = 250_000_000;
+
+	/**
+	 * Das gespielte Tokenspiel.
+	 */
+	private final TokenGame game;
+	/**
+	 * Zuletzt veröffentlichte Markierung, geschützt durch sich selbst.
+	 */
+	private final long[] published;
+	/**
+	 * Version der veröffentlichten Markierung, wird bei jeder Veröffentlichung erhöht.
+	 */
+	private long version = 0;
+	/**
+	 * Version die beim letzten poll(long[]) abgeholt wurde.
+	 */
+	private long polled = 0;
+	/**
+	 * Gewünschte Rate in Schaltvorgängen pro Sekunde.
+	 */
+	private volatile double rate = 10;
+	/**
+	 * flag zeigt an ob der Hintergrund-Thread laufen soll.
+	 */
+	private volatile boolean running = false;
+	/**
+	 * flag zeigt an ob das Spiel von selbst angehalten hat (Verklemmung oder Endstelle markiert).
+	 */
+	private volatile boolean halted = false;
+	/**
+	 * Anzahl der Schaltvorgänge seit dem Erzeugen.
+	 */
+	private volatile long fired = 0;
+	/**
+	 * Der Hintergrund-Thread, null wenn keiner läuft.
+	 */
+	private volatile Thread worker;
+	/**
+	 * Zuletzt veröffentlichte Statistik, geschützt durch sich selbst; null wenn das Spiel keine zählt.
+	 */
+	private final FiringStatistics publishedStatistics;
+	/**
+	 * Version der veröffentlichten Statistik und Version die zuletzt abgeholt wurde.
+	 */
+	private long statisticsVersion = 0;
+	private long statisticsPolled = 0;
+	/**
+	 * Zeitpunkt der letzten Veröffentlichung der Statistik (nur im Hintergrund-Thread verwendet).
+	 */
+	private long statisticsPublished = System.nanoTime();
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * @param game
+	 * 		Das zu spielende Tokenspiel; seine aktuelle Markierung ist der Ausgangspunkt.
+	 */
+	public AutoPlayer(TokenGame game) {
+		this.game = game;
+		this.published = new long[game.getNet().words()];
+		game.copyMarking(published);
+		FiringStatistics statistics = game.getStatistics();
+		if (statistics == null)
+			publishedStatistics = null;
+		else {
+			publishedStatistics = new FiringStatistics(game.getNet(), published);
+			publishedStatistics.copyFrom(statistics);
+		}
+		halted = game.enabledCount() == 0 || (game.isStopAtFinal() && game.isFinished());
+	}
+
+	//**** CONTROL ****
+	/**
+	 * Startet den Hintergrund-Thread, falls er nicht bereits läuft und das Spiel nicht angehalten hat.
+	 */
+	public synchronized void start() {
+		if (running || halted)
+			return;
+		running = true;
+		worker = new Thread(this::loop, "token-game");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	/**
+	 * Hält den Hintergrund-Thread an und wartet auf sein Ende; danach darf das Tokenspiel wieder
+	 * vom aufrufenden Thread verwendet werden.
+	 */
+	public synchronized void stop() {
+		running = false;
+		if (worker == null)
+			return;
+		LockSupport.unpark(worker);
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		worker = null;
+	}
+	/**
+	 * Schaltschleife: je Zeitscheibe so viele Schaltvorgänge wie es der Rate entspricht, danach
+	 * veröffentlichen und bis zum nächsten fälligen Schaltvorgang schlafen.
+	 */
+	private void loop() {
+		long origin = System.nanoTime();
+		double originRate = rate;
+		long done = 0;
+		while (running) {
+			double r = rate;
+			long now = System.nanoTime();
+			if (r != originRate) {
+				origin = now;
+				originRate = r;
+				done = 0;
+			}
+			long due = (long) ((now - origin) / 1e9 * r) - done;
+			if (due > 0) {
+				// höchstens eine Zeitscheibe auf einmal, damit die Veröffentlichung nicht verhungert
+				long batch = Math.min(due, Math.max(1, (long) (r * SLICE_NANOS / 1e9)));
+				long n = game.run(batch);
+				done += batch;
+				fired += n;
+				publish();
+				if (n < batch) {
+					halted = true;
+					running = false;
+					break;
+				}
+			}
+			else {
+				long wait = (long) ((done + 1 - (now - origin) / 1e9 * r) / r * 1e9);
+				LockSupport.parkNanos(Math.max(100_000, Math.min(wait, SLICE_NANOS * 10)));
+			}
+		}
+	}
+	private void publish() {
+		synchronized (published) {
+			game.copyMarking(published);
+			version++;
+		}
+		FiringStatistics statistics = game.getStatistics();
+		if (publishedStatistics == null || statistics == null)
+			return;
+		long now = System.nanoTime();
+		if (now - statisticsPublished < STATISTICS_NANOS)
+			return;
+		statisticsPublished = now;
+		synchronized (publishedStatistics) {
+			publishedStatistics.copyFrom(statistics);
+			statisticsVersion++;
+		}
+	}
+	/**
+	 * Holt die neueste Markierung ab, falls sie sich seit dem letzten Aufruf geändert hat.
+	 * @param dst
+	 * 		Array mit mindestens net.words() Einträgen.
+	 * @return
+	 * 		<b>true</b>: wenn eine neue Markierung nach dst kopiert wurde
+	 */
+	public boolean poll(long[] dst) {
+		synchronized (published) {
+			if (version == polled)
+				return false;
+			polled = version;
+			System.arraycopy(published, 0, dst, 0, published.length);
+			return true;
+		}
+	}
+
+	/**
+	 * Holt die neueste Statistik ab, falls sie seit dem letzten Aufruf neu veröffentlicht wurde.
+	 * @param dst
+	 * 		Statistik derselben Momentaufnahme in die kopiert wird.
+	 * @return
+	 * 		<b>true</b>: wenn eine neue Statistik nach dst kopiert wurde; <b>false</b> auch wenn das Spiel
+	 * 		keine Statistik zählt
+	 */
+	public boolean pollStatistics(FiringStatistics dst) {
+		if (publishedStatistics == null)
+			return false;
+		synchronized (publishedStatistics) {
+			if (statisticsVersion == statisticsPolled)
+				return false;
+			statisticsPolled = statisticsVersion;
+			dst.copyFrom(publishedStatistics);
+			return true;
+		}
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Das gespielte Tokenspiel (nur bei angehaltenem Thread verwenden).
+	 */
+	public TokenGame getGame() {
+		return game;
+	}
+	/**
+	 * @return
+	 * 		Die gewünschte Rate in Schaltvorgängen pro Sekunde.
+	 */
+	public double getRate() {
+		return rate;
+	}
+	/**
+	 * @param rate
+	 * 		Die gewünschte Rate in Schaltvorgängen pro Sekunde, wird auf MIN_RATE..MAX_RATE begrenzt.
+	 */
+	public void setRate(double rate) {
+		this.rate = Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+		Thread w = worker;
+		if (w != null)
+			LockSupport.unpark(w);
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn der Hintergrund-Thread läuft
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn das Spiel von selbst angehalten hat (Verklemmung oder Endstelle markiert)
+	 */
+	public boolean isHalted() {
+		return halted;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Schaltvorgänge seit dem Erzeugen.
+	 */
+	public long getFired() {
+		return fired;
+	}
+
+}
@@ -0,0 +1,56 @@
+package simulation;
+
+/**
+ * Wählt aus den aktivierten Transitionen diejenige aus, die als nächste schaltet.<br>
+ * Implementierungen werden in der Schaltschleife aufgerufen und sollten daher nichts allokieren.
+ */
+public interface ChoiceStrategy {
+
+	/**
+	 * @param game
+	 * 		Das Tokenspiel, dessen aktivierte Transitionen zur Auswahl stehen.
+	 * @param enabled
+	 * 		Nummern der aktivierten Transitionen; nur die ersten count Einträge sind gültig.
+	 * @param count
+	 * 		Anzahl der aktivierten Transitionen (mindestens 1).
+	 * @return
+	 * 		Position der gewählten Transition in enabled (0..count-1).
+	 */
+	int choose(TokenGame game, int[] enabled, int count);
+
+	/**
+	 * @return
+	 * 		Strategie die immer die aktivierte Transition mit der kleinsten Nummer wählt (deterministisch).
+	 */
+	static ChoiceStrategy first() {
+		return (game, enabled, count) -> {
+			int best = 0;
+			for (int i = 1; i < count; i++)
+				if (enabled[i] < enabled[best])
+					best = i;
+			return best;
+		};
+	}
+	/**
+	 * Gleichverteilte Wahl mit einem eigenen xorshift-Generator; bei gleichem Startwert und gleichem Netz
+	 * ist die Folge der Schaltvorgänge reproduzierbar.
+	 * @param seed
+	 * 		Startwert des Zufallsgenerators.
+	 * @return
+	 * 		Strategie mit zufälliger Wahl.
+	 */
+	static ChoiceStrategy random(long seed) {
+		return new ChoiceStrategy() {
+			private long state = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+
+			@Override
+			public int choose(TokenGame game, int[] enabled, int count) {
+				state ^= state << 13;
+				state ^= state >>> 7;
+				state ^= state << 17;
+				return (int) (((state >>> 33) * count) >>> 31);
+			}
+		};
+	}
+
+}
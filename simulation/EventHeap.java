@@ -0,0 +1,121 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Ereigniswarteschlange der zeitbehafteten Simulation: ein indizierter binärer Min-Heap über Transitionsnummern,
+ * geordnet nach Zeitpunkt und bei gleichem Zeitpunkt nach Nummer (damit Läufe reproduzierbar sind).<br>
+ * Über den Positionsindex kann eine Transition, die ihre Aktivierung verliert, in O(log n) entfernt werden.
+ */
+class EventHeap {
+
+	//**** FIELDS ****
+	private final int[] heap;
+	private final int[] pos;
+	private final double[] time;
+	private int size = 0;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * @param capacity
+	 * 		Anzahl der Transitionen.
+	 */
+	EventHeap(int capacity) {
+		heap = new int[capacity];
+		pos = new int[capacity];
+		time = new double[capacity];
+		Arrays.fill(pos, -1);
+	}
+
+	//**** METHODS ****
+	/**
+	 * Plant eine noch nicht geplante Transition ein.
+	 */
+	void add(int t, double at) {
+		time[t] = at;
+		pos[t] = size;
+		heap[size++] = t;
+		up(pos[t]);
+	}
+	/**
+	 * Entfernt eine geplante Transition.
+	 */
+	void remove(int t) {
+		int i = pos[t];
+		int last = heap[--size];
+		pos[t] = -1;
+		if (i == size)
+			return;
+		heap[i] = last;
+		pos[last] = i;
+		up(i);
+		down(pos[last]);
+	}
+	/**
+	 * Entfernt die Transition mit dem frühesten Zeitpunkt.
+	 * @return
+	 * 		Nummer der Transition.
+	 */
+	int poll() {
+		int t = heap[0];
+		remove(t);
+		return t;
+	}
+	int peek() {
+		return heap[0];
+	}
+	double timeOf(int t) {
+		return time[t];
+	}
+	boolean contains(int t) {
+		return pos[t] >= 0;
+	}
+	boolean isEmpty() {
+		return size == 0;
+	}
+	int size() {
+		return size;
+	}
+	int get(int i) {
+		return heap[i];
+	}
+	void clear() {
+		for (int i = 0; i < size; i++)
+			pos[heap[i]] = -1;
+		size = 0;
+	}
+	private boolean less(int a, int b) {
+		return time[a] < time[b] || (time[a] == time[b] && a < b);
+	}
+	private void up(int i) {
+		int t = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!less(t, heap[parent]))
+				break;
+			heap[i] = heap[parent];
+			pos[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = t;
+		pos[t] = i;
+	}
+	private void down(int i) {
+		int t = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && less(heap[child + 1], heap[child]))
+				child++;
+			if (!less(heap[child], t))
+				break;
+			heap[i] = heap[child];
+			pos[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = t;
+		pos[t] = i;
+	}
+
+}
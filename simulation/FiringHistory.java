@@ -0,0 +1,254 @@
+package simulation;
+
+import java.util.Arrays;
+
+import model.IndexedNet;
+
+/**
+ * Verlauf der Schaltvorgänge einer Simulation, mit dem sich Schritt für Schritt zurück und wieder vor gehen lässt.<br>
+ * Jeder Schaltvorgang wird als Delta gespeichert: nur die Nummer der Transition, denn die geänderten Stellen
+ * ergeben sich aus consume(t) und produce(t) der Momentaufnahme. Eine aktivierte Transition hat ihre
+ * verbrauchten Stellen markiert und ihre erzeugten Stellen unmarkiert, daher ist das Delta in beide Richtungen
+ * eindeutig und ein Schritt kostet O(|pre|+|post|).<br>
+ * Die Deltas liegen in einem Ringpuffer fester Größe; ist er voll, werden die ältesten Schritte vergessen.
+ * Zusätzlich wird alle CHECKPOINT_INTERVAL Schritte die vollständige Markierung abgelegt, sodass ein Sprung
+ * zu einem beliebigen Schritt höchstens CHECKPOINT_INTERVAL/2 Deltas anwenden muss.
+ */
+public class FiringHistory {
+
+	//**** FIELDS ****
+	/**
+	 * Standardgröße des Ringpuffers in Schritten.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	/**
+	 * Abstand der vollständig abgelegten Markierungen in Schritten.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 256;
+
+	/**
+	 * Die zugrunde liegende Momentaufnahme.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Ringpuffer der geschalteten Transitionen; Schritt s (von s nach s+1) liegt an Position s % capacity.
+	 */
+	private final int[] ring;
+	/**
+	 * Die Markierung im aktuellen Schritt.
+	 */
+	private final long[] marking;
+	/**
+	 * Abgelegte Markierungen, je words() Einträge, und der Schritt zu dem sie jeweils gehören (-1 = leer).
+	 */
+	private final long[] checkpoints;
+	private final long[] checkpointStep;
+	/**
+	 * Ältester noch erreichbarer Schritt.
+	 */
+	private long first = 0;
+	/**
+	 * Der aktuelle Schritt.
+	 */
+	private long position = 0;
+	/**
+	 * Jüngster aufgezeichneter Schritt; zwischen position und end kann vorwärts gegangen werden.
+	 */
+	private long end = 0;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param initial
+	 * 		Markierung in Schritt 0.
+	 */
+	public FiringHistory(IndexedNet net, long[] initial) {
+		this(net, initial, DEFAULT_CAPACITY);
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param initial
+	 * 		Markierung in Schritt 0.
+	 * @param capacity
+	 * 		Anzahl der Schritte die höchstens zurückgegangen werden kann.
+	 */
+	public FiringHistory(IndexedNet net, long[] initial, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.net = net;
+		this.ring = new int[capacity];
+		this.marking = Arrays.copyOf(initial, net.words());
+		int slots = capacity / CHECKPOINT_INTERVAL + 2;
+		this.checkpoints = new long[slots * net.words()];
+		this.checkpointStep = new long[slots];
+		clear(initial);
+	}
+
+	//**** RECORDING ****
+	/**
+	 * Verwirft den Verlauf und beginnt in Schritt 0 mit der gegebenen Markierung.
+	 * @param initial
+	 * 		Die neue Markierung in Schritt 0.
+	 */
+	public void clear(long[] initial) {
+		System.arraycopy(initial, 0, marking, 0, marking.length);
+		first = position = end = 0;
+		Arrays.fill(checkpointStep, -1);
+		checkpoint();
+	}
+	/**
+	 * Zeichnet einen Schaltvorgang in der aktuellen Markierung auf. Liegen noch Schritte vor der aktuellen
+	 * Position (nach stepBack()), werden diese verworfen.
+	 * @param t
+	 * 		Nummer der geschalteten Transition; sie muss in der aktuellen Markierung aktiviert sein.
+	 */
+	public void record(int t) {
+		apply(t);
+		ring[(int) (position % ring.length)] = t;
+		end = ++position;
+		if (end - first > ring.length)
+			first = end - ring.length;
+		if (position % CHECKPOINT_INTERVAL == 0)
+			checkpoint();
+	}
+
+	//**** NAVIGATION ****
+	/**
+	 * Macht den letzten Schaltvorgang rückgängig.
+	 * @return
+	 * 		Nummer der zurückgenommenen Transition, -1 wenn kein älterer Schritt mehr gespeichert ist.
+	 */
+	public int stepBack() {
+		if (position == first)
+			return -1;
+		int t = ring[(int) (--position % ring.length)];
+		undo(t);
+		return t;
+	}
+	/**
+	 * Wiederholt den nächsten zuvor zurückgenommenen Schaltvorgang.
+	 * @return
+	 * 		Nummer der geschalteten Transition, -1 wenn es keinen jüngeren Schritt gibt.
+	 */
+	public int stepForward() {
+		if (position == end)
+			return -1;
+		int t = ring[(int) (position++ % ring.length)];
+		apply(t);
+		return t;
+	}
+	/**
+	 * Springt zu einem beliebigen gespeicherten Schritt. Ausgangspunkt ist die aktuelle Position oder die
+	 * nächstgelegene abgelegte Markierung, je nachdem von wo aus weniger Deltas anzuwenden sind.
+	 * @param step
+	 * 		Der Zielschritt zwischen getFirst() und getEnd().
+	 */
+	public void jumpTo(long step) {
+		if (step < first || step > end)
+			throw new IllegalArgumentException("step " + step + " outside " + first + ".." + end);
+		long best = Math.abs(step - position);
+		long from = -1;
+		long below = step - step % CHECKPOINT_INTERVAL;
+		for (long c : new long[] { below, below + CHECKPOINT_INTERVAL }) {
+			if (Math.abs(step - c) < best && hasCheckpoint(c)) {
+				best = Math.abs(step - c);
+				from = c;
+			}
+		}
+		if (from >= 0) {
+			int slot = (int) (from / CHECKPOINT_INTERVAL % checkpointStep.length);
+			System.arraycopy(checkpoints, slot * marking.length, marking, 0, marking.length);
+			position = from;
+		}
+		while (position < step)
+			apply(ring[(int) (position++ % ring.length)]);
+		while (position > step)
+			undo(ring[(int) (--position % ring.length)]);
+	}
+	private boolean hasCheckpoint(long c) {
+		return c >= first && c <= end
+				&& checkpointStep[(int) (c / CHECKPOINT_INTERVAL % checkpointStep.length)] == c;
+	}
+	private void checkpoint() {
+		int slot = (int) (position / CHECKPOINT_INTERVAL % checkpointStep.length);
+		System.arraycopy(marking, 0, checkpoints, slot * marking.length, marking.length);
+		checkpointStep[slot] = position;
+	}
+	private void apply(int t) {
+		for (int p : net.consume(t))
+			marking[p >>> 6] &= ~(1L << p);
+		for (int p : net.produce(t))
+			marking[p >>> 6] |= 1L << p;
+	}
+	private void undo(int t) {
+		for (int p : net.produce(t))
+			marking[p >>> 6] &= ~(1L << p);
+		for (int p : net.consume(t))
+			marking[p >>> 6] |= 1L << p;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Die zugrunde liegende Momentaufnahme.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Die Markierung im aktuellen Schritt (nicht verändern).
+	 */
+	public long[] getMarking() {
+		return marking;
+	}
+	/**
+	 * @return
+	 * 		Der aktuelle Schritt.
+	 */
+	public long getPosition() {
+		return position;
+	}
+	/**
+	 * @return
+	 * 		Ältester noch gespeicherter Schritt.
+	 */
+	public long getFirst() {
+		return first;
+	}
+	/**
+	 * @return
+	 * 		Jüngster aufgezeichneter Schritt.
+	 */
+	public long getEnd() {
+		return end;
+	}
+	/**
+	 * @param step
+	 * 		Ein Schritt zwischen getFirst() und getEnd()-1.
+	 * @return
+	 * 		Die Transition die in diesem Schritt geschaltet hat.
+	 */
+	public int transitionAt(long step) {
+		if (step < first || step >= end)
+			throw new IllegalArgumentException("step " + step + " outside " + first + ".." + (end - 1));
+		return ring[(int) (step % ring.length)];
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn stepBack() einen Schritt zurückgehen kann
+	 */
+	public boolean canStepBack() {
+		return position > first;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn stepForward() einen Schritt vorgehen kann
+	 */
+	public boolean canStepForward() {
+		return position < end;
+	}
+
+}
@@ -0,0 +1,219 @@
+package simulation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import model.IndexedNet;
+
+/**
+ * Zählt während einer Simulation wie oft jede Transition geschaltet hat und in wie vielen Schritten jede Stelle
+ * markiert war.<br>
+ * Die Zähler liegen in primitiven Feldern. Für die Belegung wird nicht in jedem Schritt über alle Stellen gezählt,
+ * sondern nur an den Rändern: wird eine Stelle markiert, merkt sie sich den Schritt, wird sie unmarkiert, wird die
+ * Länge des Intervalls aufaddiert. Ein Schaltvorgang kostet daher wie das Schalten selbst O(|pre|+|post|).<br>
+ * Die Zähler werden nicht synchronisiert; wer sie aus einem anderen Thread lesen will, lässt sie sich mit
+ * copyFrom(FiringStatistics) in eine eigene Instanz übertragen (siehe AutoPlayer).
+ */
+public class FiringStatistics {
+
+	//**** FIELDS ****
+	/**
+	 * Die zugrunde liegende Momentaufnahme.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Anzahl der Schaltvorgänge je Transition.
+	 */
+	private final long[] fired;
+	/**
+	 * Anzahl der abgeschlossenen Schritte in denen die Stelle markiert war, ohne das laufende Intervall.
+	 */
+	private final long[] occupied;
+	/**
+	 * Schritt seit dem die Stelle markiert ist, -1 wenn sie unmarkiert ist.
+	 */
+	private final long[] since;
+	/**
+	 * Anzahl der gezählten Schritte.
+	 */
+	private long steps = 0;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param marking
+	 * 		Markierung ab der gezählt wird.
+	 */
+	public FiringStatistics(IndexedNet net, long[] marking) {
+		this.net = net;
+		this.fired = new long[net.transitionCount()];
+		this.occupied = new long[net.placeCount()];
+		this.since = new long[net.placeCount()];
+		reset(marking);
+	}
+
+	//**** RECORDING ****
+	/**
+	 * Setzt alle Zähler zurück und beginnt ab der gegebenen Markierung neu zu zählen.
+	 * @param marking
+	 * 		Die aktuelle Markierung.
+	 */
+	public void reset(long[] marking) {
+		Arrays.fill(fired, 0);
+		Arrays.fill(occupied, 0);
+		steps = 0;
+		for (int p = 0; p < since.length; p++)
+			since[p] = IndexedNet.isMarked(marking, 0, p) ? 0 : -1;
+	}
+	/**
+	 * Zählt einen Schaltvorgang.
+	 * @param t
+	 * 		Nummer der geschalteten Transition; sie muss in der bisher gezählten Markierung aktiviert sein.
+	 */
+	public void record(int t) {
+		fired[t]++;
+		steps++;
+		for (int p : net.consume(t)) {
+			occupied[p] += steps - since[p];
+			since[p] = -1;
+		}
+		for (int p : net.produce(t))
+			since[p] = steps;
+	}
+	/**
+	 * Gleicht die Belegung an eine Markierung an, die ohne Schaltvorgang erreicht wurde (z.B. durch Schritte im
+	 * Verlauf). Dabei wird kein Schritt gezählt; laufende Intervalle werden beendet oder begonnen.
+	 * @param marking
+	 * 		Die neue Markierung.
+	 */
+	public void sync(long[] marking) {
+		for (int p = 0; p < since.length; p++) {
+			boolean marked = IndexedNet.isMarked(marking, 0, p);
+			if (marked && since[p] < 0)
+				since[p] = steps;
+			else if (!marked && since[p] >= 0) {
+				occupied[p] += steps - since[p];
+				since[p] = -1;
+			}
+		}
+	}
+	/**
+	 * Überträgt alle Zähler einer anderen Instanz derselben Momentaufnahme.
+	 * @param src
+	 * 		Die zu kopierende Statistik.
+	 */
+	public void copyFrom(FiringStatistics src) {
+		if (src.net != net)
+			throw new IllegalArgumentException("statistics of a different net");
+		System.arraycopy(src.fired, 0, fired, 0, fired.length);
+		System.arraycopy(src.occupied, 0, occupied, 0, occupied.length);
+		System.arraycopy(src.since, 0, since, 0, since.length);
+		steps = src.steps;
+	}
+
+	//**** EXPORT ****
+	/**
+	 * Schreibt die Statistik als CSV mit Kopfzeile: je Transition und Stelle eine Zeile mit Art, ID, Name,
+	 * Anzahl der Schaltvorgänge bzw. markierten Schritte und dem Anteil an allen Schritten.
+	 * @param out
+	 * 		Ziel der Ausgabe; wird nicht geschlossen.
+	 * @throws IOException
+	 * 		wenn das Schreiben fehlschlägt.
+	 */
+	public void writeCsv(Writer out) throws IOException {
+		out.write("kind,id,name,count,share\n");
+		for (int t = 0; t < fired.length; t++)
+			writeRow(out, "transition", net.transitionId(t), net.transitionName(t), fired[t], firingShare(t));
+		for (int p = 0; p < occupied.length; p++)
+			writeRow(out, "place", net.placeId(p), net.placeName(p), occupiedSteps(p), occupancy(p));
+		out.flush();
+	}
+	private static void writeRow(Writer out, String kind, String id, String name, long count, double share)
+			throws IOException {
+		out.write(kind);
+		out.write(',');
+		out.write(quote(id));
+		out.write(',');
+		out.write(quote(name));
+		out.write(',');
+		out.write(Long.toString(count));
+		out.write(',');
+		out.write(Double.toString(share));
+		out.write('\n');
+	}
+	private static String quote(String s) {
+		if (s == null)
+			return "";
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+			return s;
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Die zugrunde liegende Momentaufnahme.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der gezählten Schritte.
+	 */
+	public long getSteps() {
+		return steps;
+	}
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		Wie oft die Transition geschaltet hat.
+	 */
+	public long firings(int t) {
+		return fired[t];
+	}
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		Anteil der Transition an allen Schaltvorgängen, 0 wenn noch keiner gezählt wurde.
+	 */
+	public double firingShare(int t) {
+		return steps == 0 ? 0 : (double) fired[t] / steps;
+	}
+	/**
+	 * @return
+	 * 		Die größte Anzahl an Schaltvorgängen einer Transition.
+	 */
+	public long maxFirings() {
+		long max = 0;
+		for (long f : fired)
+			max = Math.max(max, f);
+		return max;
+	}
+	/**
+	 * @param p
+	 * 		Nummer der Stelle.
+	 * @return
+	 * 		In wie vielen der gezählten Schritte die Stelle markiert war, einschließlich des laufenden Intervalls.
+	 */
+	public long occupiedSteps(int p) {
+		return since[p] < 0 ? occupied[p] : occupied[p] + steps - since[p];
+	}
+	/**
+	 * @param p
+	 * 		Nummer der Stelle.
+	 * @return
+	 * 		Anteil der gezählten Schritte in denen die Stelle markiert war; vor dem ersten Schritt 1 oder 0
+	 * 		je nach aktueller Markierung.
+	 */
+	public double occupancy(int p) {
+		if (steps == 0)
+			return since[p] < 0 ? 0 : 1;
+		return (double) occupiedSteps(p) / steps;
+	}
+
+}
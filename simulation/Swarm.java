@@ -0,0 +1,474 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.IndexedNet;
+import model.PetriNet;
+
+/**
+ * Schwarmsimulation zur schnellen Fehlersuche in Netzen, deren Zustandsraum zu groß für eine vollständige
+ * Analyse ist.<br>
+ * Es laufen mehrere Läufer in eigenen Threads parallel auf allen Kernen; jeder hat ein eigenes Tokenspiel
+ * (primitive Markierung) und spielt zufällige Läufe von der Anfangsmarkierung bis zur Verklemmung, zum
+ * Erreichen der Endstelle oder bis zur Höchsttiefe. Jeder Lauf hat einen eigenen, aus Startwert, Läufer und Laufnummer abgeleiteten Seed,
+ * mit dem er sich über replay(IndexedNet, Finding) exakt wiederholen lässt.<br>
+ * Die Ergebnisse laufen ohne Sperren in eine gemeinsame Summary: Zähler über LongAdder, der jeweils erste
+ * Fund je Art über AtomicReference und die Menge der geschalteten Transitionen als atomarer Bitvektor.
+ */
+public class Swarm {
+
+	//**** FIELDS ****
+	/**
+	 * Die untersuchte Momentaufnahme.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Anzahl der Läufer, Standard ist die Anzahl der Prozessoren.
+	 */
+	private int walkers = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Höchstzahl der Schaltvorgänge je Lauf.
+	 */
+	private int maxDepth = 10_000;
+	/**
+	 * Startwert aus dem die Seeds der Läufe abgeleitet werden.
+	 */
+	private long seed = 1;
+	/**
+	 * flag zeigt an ob der Schwarm beim ersten Fund anhält.
+	 */
+	private boolean stopOnFinding = false;
+	/**
+	 * Wird bei jedem ersten Fund einer Art aus dem Läufer-Thread benachrichtigt, darf null sein.
+	 */
+	private Listener listener;
+	/**
+	 * flag zum Abbrechen eines laufenden run(long).
+	 */
+	private volatile boolean cancelled = false;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * @param net
+	 * 		Momentaufnahme des zu untersuchenden Netzes.
+	 */
+	public Swarm(IndexedNet net) {
+		this.net = net;
+	}
+	/**
+	 * @param net
+	 * 		Das zu untersuchende Netz.
+	 */
+	public Swarm(PetriNet net) {
+		this(new IndexedNet(net));
+	}
+
+	//**** RUNNING ****
+	/**
+	 * Lässt den Schwarm laufen, bis die Zeit abgelaufen ist, cancel() aufgerufen wurde oder
+	 * (falls eingestellt) der erste Fund gemacht wurde.
+	 * @param millis
+	 * 		Zeitbudget in Millisekunden.
+	 * @return
+	 * 		Die Zusammenfassung aller Läufe.
+	 */
+	public Summary run(long millis) {
+		return run(millis, Long.MAX_VALUE);
+	}
+	/**
+	 * Wie run(long), endet aber spätestens nach walks Läufen je Läufer.
+	 * @param millis
+	 * 		Zeitbudget in Millisekunden.
+	 * @param walks
+	 * 		Höchstzahl der Läufe je Läufer.
+	 * @return
+	 * 		Die Zusammenfassung aller Läufe.
+	 */
+	public Summary run(long millis, long walks) {
+		cancelled = false;
+		Summary summary = new Summary(net);
+		long deadline = System.nanoTime() + millis * 1_000_000;
+		Thread[] threads = new Thread[walkers];
+		for (int w = 0; w < walkers; w++) {
+			int walker = w;
+			threads[w] = new Thread(() -> walk(walker, walks, deadline, summary), "swarm-" + w);
+			threads[w].setDaemon(true);
+			threads[w].start();
+		}
+		try {
+			for (Thread t : threads)
+				t.join();
+		} catch (InterruptedException e) {
+			cancelled = true;
+			Thread.currentThread().interrupt();
+		}
+		return summary;
+	}
+	/**
+	 * Bricht einen laufenden run(long) ab; die bis dahin gesammelten Ergebnisse werden zurückgegeben.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	/**
+	 * Ein Läufer: spielt nacheinander Läufe mit eigenen Seeds.
+	 */
+	private void walk(int walker, long walks, long deadline, Summary summary) {
+		TokenGame game = new TokenGame(net);
+		boolean[] fired = new boolean[net.transitionCount()];
+		for (long i = 0; i < walks && !cancelled && System.nanoTime() < deadline; i++) {
+			long walkSeed = seedOf(seed, walker, i);
+			game.setStrategy(ChoiceStrategy.random(walkSeed));
+			game.reset();
+			int depth = 0;
+			while (depth < maxDepth && !game.isFinished()) {
+				int t = game.step();
+				if (t < 0)
+					break;
+				depth++;
+				if (!fired[t]) {
+					fired[t] = true;
+					summary.fired(t);
+				}
+			}
+			summary.walks.increment();
+			summary.steps.add(depth);
+			Finding.Kind kind = null;
+			if (game.isFinished()) {
+				if (game.isFinalMarking())
+					summary.proper.increment();
+				else
+					kind = Finding.Kind.IMPROPER_FINAL;
+			}
+			else if (game.enabledCount() == 0)
+				kind = Finding.Kind.DEADLOCK;
+			else
+				summary.truncated.increment();
+			if (kind != null)
+				report(new Finding(kind, walker, walkSeed, depth, game), summary);
+		}
+	}
+	private void report(Finding f, Summary summary) {
+		AtomicReference<Finding> first;
+		if (f.getKind() == Finding.Kind.DEADLOCK) {
+			summary.deadlocks.increment();
+			first = summary.firstDeadlock;
+		}
+		else {
+			summary.improper.increment();
+			first = summary.firstImproper;
+		}
+		if (first.compareAndSet(null, f)) {
+			if (listener != null)
+				listener.found(f);
+			if (stopOnFinding)
+				cancelled = true;
+		}
+	}
+	/**
+	 * Leitet den Seed eines Laufs ab (splitmix64 über Startwert, Läufer und Laufnummer).
+	 * @return
+	 * 		Der Seed mit dem ChoiceStrategy.random(long) den Lauf wiederholt.
+	 */
+	static long seedOf(long seed, int walker, long walk) {
+		long z = seed + 0x9E3779B97F4A7C15L * (((long) walker << 40) ^ walk ^ 0x5DEECE66DL);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	/**
+	 * Wiederholt den Lauf eines Fundes.
+	 * @param net
+	 * 		Die Momentaufnahme, auf der der Fund gemacht wurde.
+	 * @param f
+	 * 		Der Fund.
+	 * @return
+	 * 		Ein Tokenspiel in der Markierung des Fundes, mit dem Lauf im Verlauf (getHistory()).
+	 */
+	public static TokenGame replay(IndexedNet net, Finding f) {
+		TokenGame game = new TokenGame(net, ChoiceStrategy.random(f.getSeed()));
+		game.setHistory(new FiringHistory(net, net.initialMarking(), Math.max(1, f.getLength())));
+		for (int i = 0; i < f.getLength(); i++)
+			game.step();
+		return game;
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Die untersuchte Momentaufnahme.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Läufer.
+	 */
+	public int getWalkers() {
+		return walkers;
+	}
+	/**
+	 * @param walkers
+	 * 		Anzahl der parallel laufenden Läufer.
+	 */
+	public void setWalkers(int walkers) {
+		if (walkers < 1)
+			throw new IllegalArgumentException("walkers must be positive: " + walkers);
+		this.walkers = walkers;
+	}
+	/**
+	 * @return
+	 * 		Höchstzahl der Schaltvorgänge je Lauf.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	/**
+	 * @param maxDepth
+	 * 		Höchstzahl der Schaltvorgänge je Lauf.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+	/**
+	 * @return
+	 * 		Startwert aus dem die Seeds der Läufe abgeleitet werden.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	/**
+	 * @param seed
+	 * 		Startwert aus dem die Seeds der Läufe abgeleitet werden.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn der Schwarm beim ersten Fund anhält
+	 */
+	public boolean isStopOnFinding() {
+		return stopOnFinding;
+	}
+	/**
+	 * @param stopOnFinding
+	 * 		Ob der Schwarm beim ersten Fund anhält.
+	 */
+	public void setStopOnFinding(boolean stopOnFinding) {
+		this.stopOnFinding = stopOnFinding;
+	}
+	/**
+	 * @param listener
+	 * 		Wird bei jedem ersten Fund einer Art benachrichtigt (aus dem Läufer-Thread), null für keinen.
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	//**** INNER CLASSES ****
+	/**
+	 * Wird über den jeweils ersten Fund jeder Art benachrichtigt. Der Aufruf erfolgt aus einem Läufer-Thread.
+	 */
+	public interface Listener {
+		/**
+		 * @param f
+		 * 		Der Fund.
+		 */
+		void found(Finding f);
+	}
+
+	/**
+	 * Ein Fund eines Läufers: Art, Seed und Länge des Laufs und die erreichte Markierung.
+	 */
+	public static class Finding {
+
+		/**
+		 * Art eines Fundes.
+		 */
+		public enum Kind {
+			/** Keine Transition aktiviert, Endstelle nicht markiert. */
+			DEADLOCK,
+			/** Endstelle markiert, aber noch weitere Stellen markiert. */
+			IMPROPER_FINAL
+		}
+
+		private final Kind kind;
+		private final int walker;
+		private final long seed;
+		private final int length;
+		private final long[] marking;
+
+		Finding(Kind kind, int walker, long seed, int length, TokenGame game) {
+			this.kind = kind;
+			this.walker = walker;
+			this.seed = seed;
+			this.length = length;
+			this.marking = new long[game.getNet().words()];
+			game.copyMarking(marking);
+		}
+
+		/**
+		 * @return
+		 * 		Art des Fundes.
+		 */
+		public Kind getKind() {
+			return kind;
+		}
+		/**
+		 * @return
+		 * 		Nummer des Läufers der den Fund gemacht hat.
+		 */
+		public int getWalker() {
+			return walker;
+		}
+		/**
+		 * @return
+		 * 		Seed des Laufs; ChoiceStrategy.random(seed) ab der Anfangsmarkierung wiederholt ihn.
+		 */
+		public long getSeed() {
+			return seed;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Schaltvorgänge bis zum Fund.
+		 */
+		public int getLength() {
+			return length;
+		}
+		/**
+		 * @return
+		 * 		Die erreichte Markierung als Bitvektor.
+		 */
+		public long[] getMarking() {
+			return marking.clone();
+		}
+		@Override
+		public String toString() {
+			return kind + " after " + length + " firings (walker " + walker + ", seed " + seed + ")";
+		}
+	}
+
+	/**
+	 * Gemeinsame Zusammenfassung aller Läufe; alle Felder werden ohne Sperren aktualisiert und dürfen
+	 * auch während des Laufs gelesen werden.
+	 */
+	public static class Summary {
+
+		private final IndexedNet net;
+		private final LongAdder walks = new LongAdder();
+		private final LongAdder steps = new LongAdder();
+		private final LongAdder proper = new LongAdder();
+		private final LongAdder deadlocks = new LongAdder();
+		private final LongAdder improper = new LongAdder();
+		private final LongAdder truncated = new LongAdder();
+		private final AtomicReference<Finding> firstDeadlock = new AtomicReference<Finding>();
+		private final AtomicReference<Finding> firstImproper = new AtomicReference<Finding>();
+		/**
+		 * Bitvektor der mindestens einmal geschalteten Transitionen.
+		 */
+		private final AtomicLongArray fired;
+
+		Summary(IndexedNet net) {
+			this.net = net;
+			this.fired = new AtomicLongArray((net.transitionCount() + 63) >>> 6);
+		}
+
+		private void fired(int t) {
+			long bit = 1L << t;
+			long old;
+			do {
+				old = fired.get(t >>> 6);
+			} while ((old & bit) == 0 && !fired.compareAndSet(t >>> 6, old, old | bit));
+		}
+
+		/**
+		 * @return
+		 * 		Anzahl der gespielten Läufe.
+		 */
+		public long getWalks() {
+			return walks.sum();
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Schaltvorgänge über alle Läufe.
+		 */
+		public long getSteps() {
+			return steps.sum();
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Läufe, die ordnungsgemäß nur mit markierter Endstelle geendet haben.
+		 */
+		public long getProper() {
+			return proper.sum();
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Läufe, die in einer Verklemmung geendet haben.
+		 */
+		public long getDeadlocks() {
+			return deadlocks.sum();
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Läufe, die mit markierter Endstelle und weiteren markierten Stellen geendet haben.
+		 */
+		public long getImproper() {
+			return improper.sum();
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Läufe, die an der Höchsttiefe abgebrochen wurden.
+		 */
+		public long getTruncated() {
+			return truncated.sum();
+		}
+		/**
+		 * @return
+		 * 		Die erste gefundene Verklemmung, null wenn keine gefunden wurde.
+		 */
+		public Finding getFirstDeadlock() {
+			return firstDeadlock.get();
+		}
+		/**
+		 * @return
+		 * 		Die erste gefundene nicht ordnungsgemäße Endmarkierung, null wenn keine gefunden wurde.
+		 */
+		public Finding getFirstImproper() {
+			return firstImproper.get();
+		}
+		/**
+		 * @param t
+		 * 		Nummer der Transition.
+		 * @return
+		 * 		<b>true</b>: wenn die Transition in mindestens einem Lauf geschaltet hat
+		 */
+		public boolean wasFired(int t) {
+			return (fired.get(t >>> 6) & (1L << t)) != 0;
+		}
+		/**
+		 * @return
+		 * 		IDs der Transitionen, die in keinem Lauf geschaltet haben.
+		 */
+		public List<String> getNeverFired() {
+			List<String> result = new ArrayList<String>();
+			for (int t = 0; t < net.transitionCount(); t++)
+				if (!wasFired(t))
+					result.add(net.transitionId(t));
+			return result;
+		}
+		@Override
+		public String toString() {
+			return getWalks() + " walks, " + getSteps() + " firings: " + getProper() + " proper, "
+					+ getDeadlocks() + " deadlocks, " + getImproper() + " improper, " + getTruncated()
+					+ " truncated, " + getNeverFired().size() + " transitions never fired";
+		}
+	}
+
+}
@@ -0,0 +1,391 @@
+package simulation;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import model.Delay;
+import model.IndexedNet;
+import model.PetriNet;
+import model.Transition;
+
+/**
+ * Ereignisdiskrete, zeitbehaftete Simulation eines Falls durch das Netz zur Abschätzung von Durchlaufzeit und
+ * Durchsatz.<br>
+ * Jede aktivierte Transition zieht beim Aktivieren eine Verzögerung aus ihrer Verteilung (Transition.getDelay(),
+ * null = sofort) und wird in einen binären Heap eingeplant. Es gilt die Race-Policy: die früheste geplante
+ * Transition schaltet, in Konflikt stehende Transitionen verlieren dabei ihre Aktivierung und werden wieder
+ * ausgeplant; Transitionen die aktiviert bleiben behalten ihren Zeitpunkt. Ein Lauf endet, wenn die Endstelle
+ * markiert ist (Fall abgeschlossen), keine Transition mehr aktiviert ist (Verklemmung) oder nach maxEvents
+ * Schaltvorgängen.<br>
+ * Die Replikationen laufen parallel mit je eigenem, aus dem Startwert abgeleiteten Zufallsgenerator; das Ergebnis
+ * hängt daher nicht von der Anzahl der Kerne ab. Berichtet werden Mittelwert und 95%-Konfidenzintervall der
+ * Falldauer und der Auslastung jeder Transition (Anteil der Falldauer, in dem sie aktiviert war und lief).
+ */
+public class TimedSimulation {
+
+	//**** FIELDS ****
+	/**
+	 * Die Momentaufnahme des Netzes.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Verzögerung je Transitionsnummer, null = sofort.
+	 */
+	private final Delay[] delays;
+	/**
+	 * Anzahl der Replikationen.
+	 */
+	private int replications = 1000;
+	/**
+	 * Höchstzahl der Schaltvorgänge je Replikation.
+	 */
+	private int maxEvents = 100_000;
+	/**
+	 * Startwert aus dem die Zufallsgeneratoren der Replikationen abgeleitet werden.
+	 */
+	private long seed = 1;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Übernimmt die Verzögerungen der Transitionen des Netzes.
+	 * @param net
+	 * 		Das zu simulierende Netz.
+	 */
+	public TimedSimulation(PetriNet net) {
+		this.net = new IndexedNet(net);
+		this.delays = new Delay[this.net.transitionCount()];
+		for (int t = 0; t < delays.length; t++) {
+			Transition transition = net.getTransitions().get(this.net.transitionId(t));
+			delays[t] = transition.getDelay();
+		}
+	}
+	/**
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param delays
+	 * 		Verzögerung je Transitionsnummer, null = sofort.
+	 */
+	public TimedSimulation(IndexedNet net, Delay[] delays) {
+		if (delays.length != net.transitionCount())
+			throw new IllegalArgumentException("expected " + net.transitionCount() + " delays, got " + delays.length);
+		this.net = net;
+		this.delays = delays.clone();
+	}
+
+	//**** SIMULATION ****
+	/**
+	 * Führt alle Replikationen parallel aus.
+	 * @return
+	 * 		Die zusammengefassten Schätzungen.
+	 */
+	public Result run() {
+		Run[] runs = new Run[replications];
+		IntStream.range(0, replications).parallel().forEach(r -> runs[r] = replicate(r));
+		return new Result(runs, net.transitionCount());
+	}
+	/**
+	 * Simuliert einen Fall.
+	 * @param r
+	 * 		Nummer der Replikation.
+	 * @return
+	 * 		Das Ergebnis des Falls.
+	 */
+	Run replicate(int r) {
+		SplittableRandom random = new SplittableRandom(seed + r * 0x9E3779B97F4A7C15L);
+		int transitions = net.transitionCount();
+		int end = net.getEnd();
+		long[] m = net.initialMarking();
+		EventHeap queue = new EventHeap(transitions);
+		double[] since = new double[transitions];
+		double[] busy = new double[transitions];
+		double now = 0;
+		for (int t = 0; t < transitions; t++)
+			if (net.isEnabled(m, 0, t)) {
+				since[t] = 0;
+				queue.add(t, delay(t, random));
+			}
+		int events = 0;
+		while (!queue.isEmpty() && events < maxEvents && !(end >= 0 && IndexedNet.isMarked(m, 0, end))) {
+			int t = queue.poll();
+			now = queue.timeOf(t);
+			busy[t] += now - since[t];
+			for (int p : net.consume(t))
+				m[p >>> 6] &= ~(1L << p);
+			for (int p : net.produce(t))
+				m[p >>> 6] |= 1L << p;
+			events++;
+			update(t, m, queue, since, busy, now, random);
+			for (int p : net.consume(t))
+				updateAround(p, m, queue, since, busy, now, random);
+			for (int p : net.produce(t))
+				updateAround(p, m, queue, since, busy, now, random);
+		}
+		for (int i = 0; i < queue.size(); i++) {
+			int t = queue.get(i);
+			busy[t] += now - since[t];
+		}
+		Run run = new Run();
+		run.duration = now;
+		run.events = events;
+		run.finished = end >= 0 && IndexedNet.isMarked(m, 0, end);
+		run.deadlocked = !run.finished && queue.isEmpty();
+		run.busy = busy;
+		return run;
+	}
+	private void updateAround(int p, long[] m, EventHeap queue, double[] since, double[] busy, double now,
+			SplittableRandom random) {
+		for (int u : net.consumers(p))
+			update(u, m, queue, since, busy, now, random);
+		for (int u : net.producers(p))
+			update(u, m, queue, since, busy, now, random);
+	}
+	/**
+	 * Plant eine Transition ein oder aus, je nachdem ob sie in der neuen Markierung aktiviert ist.
+	 */
+	private void update(int u, long[] m, EventHeap queue, double[] since, double[] busy, double now,
+			SplittableRandom random) {
+		boolean enabled = net.isEnabled(m, 0, u);
+		if (enabled && !queue.contains(u)) {
+			since[u] = now;
+			queue.add(u, now + delay(u, random));
+		}
+		else if (!enabled && queue.contains(u)) {
+			queue.remove(u);
+			busy[u] += now - since[u];
+		}
+	}
+	private double delay(int t, SplittableRandom random) {
+		return delays[t] == null ? 0 : delays[t].sample(random);
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Die Momentaufnahme des Netzes.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Replikationen.
+	 */
+	public int getReplications() {
+		return replications;
+	}
+	/**
+	 * @param replications
+	 * 		Anzahl der Replikationen (mindestens 2 für ein Konfidenzintervall).
+	 */
+	public void setReplications(int replications) {
+		if (replications < 1)
+			throw new IllegalArgumentException("replications must be positive: " + replications);
+		this.replications = replications;
+	}
+	/**
+	 * @return
+	 * 		Höchstzahl der Schaltvorgänge je Replikation.
+	 */
+	public int getMaxEvents() {
+		return maxEvents;
+	}
+	/**
+	 * @param maxEvents
+	 * 		Höchstzahl der Schaltvorgänge je Replikation.
+	 */
+	public void setMaxEvents(int maxEvents) {
+		this.maxEvents = maxEvents;
+	}
+	/**
+	 * @return
+	 * 		Startwert der Zufallsgeneratoren.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	/**
+	 * @param seed
+	 * 		Startwert der Zufallsgeneratoren.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	//**** INNER CLASSES ****
+	/**
+	 * Ergebnis einer Replikation.
+	 */
+	static class Run {
+		double duration;
+		int events;
+		boolean finished;
+		boolean deadlocked;
+		double[] busy;
+	}
+
+	/**
+	 * Schätzung eines Erwartungswerts: Mittelwert und halbe Breite des 95%-Konfidenzintervalls
+	 * (Student-t mit n-1 Freiheitsgraden).
+	 */
+	public static class Estimate {
+
+		/**
+		 * 97,5%-Quantile der t-Verteilung für 1 bis 30 Freiheitsgrade.
+		 */
+		private static final double[] T975 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262,
+				2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069,
+				2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+
+		private final double mean;
+		private final double halfWidth;
+		private final int n;
+
+		Estimate(double sum, double sumSq, int n) {
+			this.n = n;
+			this.mean = n == 0 ? Double.NaN : sum / n;
+			if (n < 2)
+				this.halfWidth = Double.NaN;
+			else {
+				double variance = Math.max(0, (sumSq - sum * sum / n) / (n - 1));
+				int df = n - 1;
+				double t = df <= T975.length ? T975[df - 1] : 1.960 + (T975[T975.length - 1] - 1.960) * T975.length / df;
+				this.halfWidth = t * Math.sqrt(variance / n);
+			}
+		}
+
+		/**
+		 * @return
+		 * 		Der Mittelwert der Stichprobe.
+		 */
+		public double getMean() {
+			return mean;
+		}
+		/**
+		 * @return
+		 * 		Halbe Breite des 95%-Konfidenzintervalls, NaN bei weniger als zwei Werten.
+		 */
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+		/**
+		 * @return
+		 * 		Untere Grenze des Konfidenzintervalls.
+		 */
+		public double getLower() {
+			return mean - halfWidth;
+		}
+		/**
+		 * @return
+		 * 		Obere Grenze des Konfidenzintervalls.
+		 */
+		public double getUpper() {
+			return mean + halfWidth;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Werte.
+		 */
+		public int getCount() {
+			return n;
+		}
+		@Override
+		public String toString() {
+			return String.format("%.4g ± %.2g (n=%d)", mean, halfWidth, n);
+		}
+	}
+
+	/**
+	 * Zusammenfassung aller Replikationen.
+	 */
+	public static class Result {
+
+		private final int replications;
+		private final int finished;
+		private final int deadlocked;
+		private final Estimate duration;
+		private final Estimate[] utilisation;
+
+		Result(Run[] runs, int transitions) {
+			replications = runs.length;
+			int fin = 0, dead = 0;
+			double sum = 0, sumSq = 0;
+			double[] uSum = new double[transitions];
+			double[] uSumSq = new double[transitions];
+			int uCount = 0;
+			for (Run run : runs) {
+				if (run.deadlocked)
+					dead++;
+				if (!run.finished)
+					continue;
+				fin++;
+				sum += run.duration;
+				sumSq += run.duration * run.duration;
+				if (run.duration > 0) {
+					uCount++;
+					for (int t = 0; t < transitions; t++) {
+						double u = run.busy[t] / run.duration;
+						uSum[t] += u;
+						uSumSq[t] += u * u;
+					}
+				}
+			}
+			finished = fin;
+			deadlocked = dead;
+			duration = new Estimate(sum, sumSq, fin);
+			utilisation = new Estimate[transitions];
+			for (int t = 0; t < transitions; t++)
+				utilisation[t] = new Estimate(uSum[t], uSumSq[t], uCount);
+		}
+
+		/**
+		 * @return
+		 * 		Anzahl der Replikationen.
+		 */
+		public int getReplications() {
+			return replications;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Replikationen, in denen die Endstelle erreicht wurde.
+		 */
+		public int getFinished() {
+			return finished;
+		}
+		/**
+		 * @return
+		 * 		Anzahl der Replikationen, die in einer Verklemmung endeten.
+		 */
+		public int getDeadlocked() {
+			return deadlocked;
+		}
+		/**
+		 * @return
+		 * 		Falldauer (Durchlaufzeit) über die abgeschlossenen Fälle.
+		 */
+		public Estimate getDuration() {
+			return duration;
+		}
+		/**
+		 * @return
+		 * 		Durchsatz in Fällen pro Zeiteinheit bei einem Fall nach dem anderen (Kehrwert der mittleren Falldauer).
+		 */
+		public double getThroughput() {
+			return 1 / duration.getMean();
+		}
+		/**
+		 * @param t
+		 * 		Nummer der Transition.
+		 * @return
+		 * 		Auslastung der Transition über die abgeschlossenen Fälle.
+		 */
+		public Estimate getUtilisation(int t) {
+			return utilisation[t];
+		}
+		@Override
+		public String toString() {
+			return finished + "/" + replications + " cases finished, " + deadlocked + " deadlocked, duration "
+					+ duration + ", throughput " + String.format("%.4g", getThroughput());
+		}
+	}
+
+}
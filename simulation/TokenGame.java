@@ -0,0 +1,580 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import model.IndexedNet;
+import model.PetriNet;
+import model.Place;
+
+/**
+ * Diese Klasse implementiert das Tokenspiel ohne Oberfläche auf einer Momentaufnahme (IndexedNet) eines Netzes.<br>
+ * Die Markierung liegt als boolean-Array vor, für jede Transition wird gezählt wie viele Bedingungen ihr noch
+ * fehlen (unmarkierte Vorgänger plus markierte Nachfolger wegen Kontakt). Die aktivierten Transitionen stehen
+ * in einem Array mit Positionsindex, das beim Schalten nur für die Nachbarn der geänderten Stellen angepasst
+ * wird; ein Schaltvorgang allokiert keinen Speicher.<br>
+ * Die Schaltregel und der Verklemmungsbegriff entsprechen dem Simulationsmodus: eine Transition ohne
+ * Vorgänger schaltet nie, und ist die Endstelle markiert, gilt das Spiel als beendet und nicht als verklemmt.<br>
+ * Neben dem Schalten einzelner Transitionen gibt es eine Schrittsemantik: stepMaximal() schaltet eine maximale
+ * Menge aktivierter, konfliktfreier Transitionen gleichzeitig, sodass unabhängige parallele Zweige in einem
+ * Schritt gemeinsam vorankommen.
+ * Instanzen sind nicht threadsicher.
+ */
+public class TokenGame {
+
+	//**** FIELDS ****
+	/**
+	 * Ab so vielen gleichzeitig schaltenden Transitionen wird ein maximaler Schritt parallel ausgewertet.
+	 */
+	public static final int PARALLEL_THRESHOLD = 4096;
+
+	/**
+	 * Die zugrunde liegende Momentaufnahme.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Die aktuelle Markierung, ein Eintrag pro Stelle.
+	 */
+	private final boolean[] marked;
+	/**
+	 * Anzahl der noch fehlenden Bedingungen je Transition, 0 heißt aktiviert.
+	 */
+	private final int[] missing;
+	/**
+	 * Die aktivierten Transitionen, gültig sind die ersten enabledCount Einträge.
+	 */
+	private final int[] enabled;
+	/**
+	 * Position jeder Transition in enabled, -1 wenn sie nicht aktiviert ist.
+	 */
+	private final int[] position;
+	/**
+	 * Anzahl der aktivierten Transitionen.
+	 */
+	private int enabledCount = 0;
+	/**
+	 * Vorbereich, verbrauchte und erzeugte Stellen je Transition (aus dem IndexedNet).
+	 */
+	private final int[][] pre;
+	private final int[][] consume;
+	private final int[][] produce;
+	/**
+	 * Je Stelle die Transitionen, die sie markiert brauchen bzw. durch sie blockiert werden.
+	 */
+	private final int[][] needs;
+	private final int[][] blocks;
+	/**
+	 * Nummer der Endstelle, -1 wenn es keine gibt.
+	 */
+	private final int end;
+	/**
+	 * Die Auswahlstrategie.
+	 */
+	private ChoiceStrategy strategy;
+	/**
+	 * flag zeigt an ob run(long) beim Erreichen der Endstelle anhält.
+	 */
+	private boolean stopAtFinal = true;
+	/**
+	 * Anzahl der Schaltvorgänge seit dem letzten reset().
+	 */
+	private long steps = 0;
+	/**
+	 * Die zuletzt geschaltete Transition, -1 wenn es keine gibt.
+	 */
+	private int lastFired = -1;
+	/**
+	 * Verlauf in den jeder Schaltvorgang eingetragen wird, null wenn nicht aufgezeichnet wird.
+	 */
+	private FiringHistory history;
+	/**
+	 * Statistik in die jeder Schaltvorgang gezählt wird, null wenn nicht gezählt wird.
+	 */
+	private FiringStatistics statistics;
+	/**
+	 * flag zeigt an ob run(long) maximale Schritte statt einzelner Schaltvorgänge ausführt.
+	 */
+	private boolean maximalSteps = false;
+	/**
+	 * Belegung der Stellen im laufenden maximalen Schritt: belegt wenn claimed[p] == stamp.
+	 */
+	private final int[] claimed;
+	private int stamp = 0;
+	/**
+	 * Hilfsarrays für die Auswahl eines maximalen Schritts.
+	 */
+	private final int[] candidates;
+	private final int[] chosen;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Erzeugt ein Tokenspiel in der Anfangsmarkierung mit zufälliger Auswahlstrategie.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 */
+	public TokenGame(IndexedNet net) {
+		this(net, ChoiceStrategy.random(System.nanoTime()));
+	}
+	/**
+	 * Erzeugt ein Tokenspiel in der Anfangsmarkierung.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param strategy
+	 * 		Die Auswahlstrategie.
+	 */
+	public TokenGame(IndexedNet net, ChoiceStrategy strategy) {
+		this.net = net;
+		this.strategy = strategy;
+		int places = net.placeCount();
+		int transitions = net.transitionCount();
+		marked = new boolean[places];
+		missing = new int[transitions];
+		enabled = new int[transitions];
+		position = new int[transitions];
+		pre = new int[transitions][];
+		consume = new int[transitions][];
+		produce = new int[transitions][];
+		claimed = new int[places];
+		candidates = new int[transitions];
+		chosen = new int[transitions];
+		for (int t = 0; t < transitions; t++) {
+			pre[t] = net.pre(t);
+			consume[t] = net.consume(t);
+			produce[t] = net.produce(t);
+		}
+		int[] needCount = new int[places];
+		int[] blockCount = new int[places];
+		for (int t = 0; t < transitions; t++) {
+			for (int p : pre[t])
+				needCount[p]++;
+			for (int p : produce[t])
+				blockCount[p]++;
+		}
+		needs = new int[places][];
+		blocks = new int[places][];
+		for (int p = 0; p < places; p++) {
+			needs[p] = new int[needCount[p]];
+			blocks[p] = new int[blockCount[p]];
+		}
+		for (int t = 0; t < transitions; t++) {
+			for (int p : pre[t])
+				needs[p][--needCount[p]] = t;
+			for (int p : produce[t])
+				blocks[p][--blockCount[p]] = t;
+		}
+		end = net.getEnd();
+		reset();
+	}
+	/**
+	 * @param net
+	 * 		Das Netz, von dem eine Momentaufnahme erstellt wird.
+	 * @param seed
+	 * 		Startwert der zufälligen Auswahl.
+	 * @return
+	 * 		Ein Tokenspiel in der Anfangsmarkierung.
+	 */
+	public static TokenGame of(PetriNet net, long seed) {
+		return new TokenGame(new IndexedNet(net), ChoiceStrategy.random(seed));
+	}
+
+	//**** STATE ****
+	/**
+	 * Setzt das Spiel auf die Anfangsmarkierung des Netzes zurück.
+	 */
+	public void reset() {
+		setMarking(net.initialMarking());
+		steps = 0;
+		lastFired = -1;
+	}
+	/**
+	 * Setzt eine beliebige Markierung und berechnet die aktivierten Transitionen neu.
+	 * @param m
+	 * 		Markierung als Bitvektor wie im IndexedNet.
+	 */
+	public void setMarking(long[] m) {
+		for (int p = 0; p < marked.length; p++)
+			marked[p] = IndexedNet.isMarked(m, 0, p);
+		recompute();
+	}
+	/**
+	 * Setzt eine beliebige Markierung und berechnet die aktivierten Transitionen neu.
+	 * @param m
+	 * 		Ein Eintrag pro Stelle.
+	 */
+	public void setMarking(boolean[] m) {
+		System.arraycopy(m, 0, marked, 0, marked.length);
+		recompute();
+	}
+	/**
+	 * Berechnet Zähler und aktivierte Menge aus der Markierung.
+	 */
+	private void recompute() {
+		for (int t = 0; t < missing.length; t++)
+			count(t);
+		collect();
+	}
+	/**
+	 * Zählt die fehlenden Bedingungen einer Transition aus der Markierung.
+	 */
+	private void count(int t) {
+		int m = pre[t].length == 0 ? 1 : 0;
+		for (int p : pre[t])
+			if (!marked[p])
+				m++;
+		for (int p : produce[t])
+			if (marked[p])
+				m++;
+		missing[t] = m;
+	}
+	/**
+	 * Baut die aktivierte Menge aus den Zählern neu auf.
+	 */
+	private void collect() {
+		enabledCount = 0;
+		for (int t = 0; t < missing.length; t++) {
+			position[t] = -1;
+			if (missing[t] == 0)
+				add(t);
+		}
+	}
+	/**
+	 * Schreibt die Markierung in einen Bitvektor.
+	 * @param dst
+	 * 		Array mit mindestens net.words() Einträgen.
+	 */
+	public void copyMarking(long[] dst) {
+		for (int w = 0; w < net.words(); w++)
+			dst[w] = 0;
+		for (int p = 0; p < marked.length; p++)
+			if (marked[p])
+				dst[p >>> 6] |= 1L << p;
+	}
+	/**
+	 * Überträgt die Markierung in das Netz; nur Stellen deren Markierung sich unterscheidet werden gesetzt,
+	 * damit nur für diese die Listener der Oberfläche ausgelöst werden. Muss auf dem FX-Thread aufgerufen
+	 * werden, wenn das Netz angezeigt wird.
+	 * @param target
+	 * 		Das Netz, aus dem die Momentaufnahme erstellt wurde.
+	 */
+	public void applyTo(PetriNet target) {
+		Map<String, Place> places = target.getPlaces();
+		for (int p = 0; p < marked.length; p++) {
+			Place place = places.get(net.placeId(p));
+			if (place != null && place.isMarked() != marked[p])
+				place.setMark(marked[p] ? "1" : "0");
+		}
+	}
+
+	//**** FIRING ****
+	/**
+	 * Wählt mit der Strategie eine aktivierte Transition und schaltet sie.
+	 * @return
+	 * 		Nummer der geschalteten Transition, -1 wenn keine aktiviert ist.
+	 */
+	public int step() {
+		if (enabledCount == 0)
+			return -1;
+		int t = enabled[strategy.choose(this, enabled, enabledCount)];
+		fireUnchecked(t);
+		return t;
+	}
+	/**
+	 * Schaltet bis zu n Mal, hält bei Verklemmung und (falls eingestellt) beim Erreichen der Endstelle an.
+	 * Ist isMaximalSteps() gesetzt, wird statt einer Transition jeweils ein maximaler Schritt geschaltet.
+	 * @param n
+	 * 		Höchstzahl der Schaltvorgänge bzw. Schritte.
+	 * @return
+	 * 		Anzahl der tatsächlich ausgeführten Schaltvorgänge bzw. Schritte.
+	 */
+	public long run(long n) {
+		long done = 0;
+		while (done < n && enabledCount > 0 && !(stopAtFinal && isFinished())) {
+			if (maximalSteps)
+				stepMaximal();
+			else
+				fireUnchecked(enabled[strategy.choose(this, enabled, enabledCount)]);
+			done++;
+		}
+		return done;
+	}
+	/**
+	 * Schaltet eine maximale Menge aktivierter, paarweise konfliktfreier Transitionen gleichzeitig.<br>
+	 * Zwei Transitionen stehen in Konflikt, wenn sie eine Stelle im Vorbereich teilen oder beide dieselbe
+	 * Stelle neu markieren würden. Die Strategie bestimmt die Reihenfolge in der die aktivierten Transitionen
+	 * angeboten werden; jede wird genommen, die mit keiner bereits gewählten in Konflikt steht. Jede nicht
+	 * gewählte aktivierte Transition steht also mit einer gewählten in Konflikt, die Menge ist maximal.<br>
+	 * Ab PARALLEL_THRESHOLD gewählten Transitionen werden die Markierung und die Zähler parallel neu berechnet.
+	 * In einen Verlauf wird der Schritt als Folge der einzelnen Schaltvorgänge eingetragen.
+	 * @return
+	 * 		Anzahl der gleichzeitig geschalteten Transitionen, 0 wenn keine aktiviert ist.
+	 */
+	public int stepMaximal() {
+		int n = enabledCount;
+		if (n == 0)
+			return 0;
+		System.arraycopy(enabled, 0, candidates, 0, n);
+		if (++stamp == 0) {
+			Arrays.fill(claimed, 0);
+			stamp = 1;
+		}
+		int k = 0;
+		while (n > 0) {
+			int i = strategy.choose(this, candidates, n);
+			int t = candidates[i];
+			candidates[i] = candidates[--n];
+			if (isFree(t)) {
+				for (int p : pre[t])
+					claimed[p] = stamp;
+				for (int p : produce[t])
+					claimed[p] = stamp;
+				chosen[k++] = t;
+			}
+		}
+		if (k < PARALLEL_THRESHOLD) {
+			for (int i = 0; i < k; i++)
+				fireUnchecked(chosen[i]);
+			return k;
+		}
+		// die gewählten Transitionen berühren paarweise verschiedene Stellen, daher ohne Synchronisation
+		IntStream.range(0, k).parallel().forEach(i -> {
+			int t = chosen[i];
+			for (int p : consume[t])
+				marked[p] = false;
+			for (int p : produce[t])
+				marked[p] = true;
+		});
+		IntStream.range(0, missing.length).parallel().forEach(this::count);
+		collect();
+		steps += k;
+		lastFired = chosen[k - 1];
+		if (history != null)
+			for (int i = 0; i < k; i++)
+				history.record(chosen[i]);
+		if (statistics != null)
+			for (int i = 0; i < k; i++)
+				statistics.record(chosen[i]);
+		return k;
+	}
+	private boolean isFree(int t) {
+		for (int p : pre[t])
+			if (claimed[p] == stamp)
+				return false;
+		for (int p : produce[t])
+			if (claimed[p] == stamp)
+				return false;
+		return true;
+	}
+	/**
+	 * Schaltet eine bestimmte Transition, z.B. nach einem Klick des Benutzers.
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		<b>true</b>: wenn die Transition aktiviert war und geschaltet hat
+	 */
+	public boolean fire(int t) {
+		if (position[t] < 0)
+			return false;
+		fireUnchecked(t);
+		return true;
+	}
+	private void fireUnchecked(int t) {
+		for (int p : consume[t])
+			unmark(p);
+		for (int p : produce[t])
+			mark(p);
+		steps++;
+		lastFired = t;
+		if (history != null)
+			history.record(t);
+		if (statistics != null)
+			statistics.record(t);
+	}
+	private void mark(int p) {
+		marked[p] = true;
+		for (int t : needs[p])
+			if (--missing[t] == 0)
+				add(t);
+		for (int t : blocks[p])
+			if (missing[t]++ == 0)
+				remove(t);
+	}
+	private void unmark(int p) {
+		marked[p] = false;
+		for (int t : needs[p])
+			if (missing[t]++ == 0)
+				remove(t);
+		for (int t : blocks[p])
+			if (--missing[t] == 0)
+				add(t);
+	}
+	private void add(int t) {
+		position[t] = enabledCount;
+		enabled[enabledCount++] = t;
+	}
+	private void remove(int t) {
+		int i = position[t];
+		int last = enabled[--enabledCount];
+		enabled[i] = last;
+		position[last] = i;
+		position[t] = -1;
+	}
+
+	//**** QUERIES ****
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn die Endstelle markiert ist (wie PetriNet.testFinished())
+	 */
+	public boolean isFinished() {
+		return end >= 0 && marked[end];
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn keine Transition aktiviert ist und das Spiel nicht beendet ist
+	 */
+	public boolean isDeadlock() {
+		return enabledCount == 0 && !isFinished();
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn genau die Endstelle markiert ist
+	 */
+	public boolean isFinalMarking() {
+		if (!isFinished())
+			return false;
+		for (int p = 0; p < marked.length; p++)
+			if (marked[p] && p != end)
+				return false;
+		return true;
+	}
+	/**
+	 * @param p
+	 * 		Nummer der Stelle.
+	 * @return
+	 * 		<b>true</b>: wenn die Stelle markiert ist
+	 */
+	public boolean isMarked(int p) {
+		return marked[p];
+	}
+	/**
+	 * @param t
+	 * 		Nummer der Transition.
+	 * @return
+	 * 		<b>true</b>: wenn die Transition aktiviert ist
+	 */
+	public boolean isEnabled(int t) {
+		return position[t] >= 0;
+	}
+	/**
+	 * @param i
+	 * 		Position in der aktivierten Menge (0..enabledCount()-1).
+	 * @return
+	 * 		Nummer der aktivierten Transition an dieser Position.
+	 */
+	public int enabled(int i) {
+		return enabled[i];
+	}
+
+	//**** GETTER AND SETTER ****
+	/**
+	 * @return
+	 * 		Die zugrunde liegende Momentaufnahme.
+	 */
+	public IndexedNet getNet() {
+		return net;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der aktivierten Transitionen.
+	 */
+	public int enabledCount() {
+		return enabledCount;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Schaltvorgänge seit dem letzten reset().
+	 */
+	public long getSteps() {
+		return steps;
+	}
+	/**
+	 * @return
+	 * 		Die zuletzt geschaltete Transition, -1 wenn es keine gibt.
+	 */
+	public int getLastFired() {
+		return lastFired;
+	}
+	/**
+	 * @return
+	 * 		Die Auswahlstrategie.
+	 */
+	public ChoiceStrategy getStrategy() {
+		return strategy;
+	}
+	/**
+	 * @param strategy
+	 * 		Die neue Auswahlstrategie.
+	 */
+	public void setStrategy(ChoiceStrategy strategy) {
+		this.strategy = strategy;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn run(long) beim Erreichen der Endstelle anhält
+	 */
+	public boolean isStopAtFinal() {
+		return stopAtFinal;
+	}
+	/**
+	 * @param stopAtFinal
+	 * 		Ob run(long) beim Erreichen der Endstelle anhält.
+	 */
+	public void setStopAtFinal(boolean stopAtFinal) {
+		this.stopAtFinal = stopAtFinal;
+	}
+	/**
+	 * @return
+	 * 		Der Verlauf in den geschaltet wird, null wenn nicht aufgezeichnet wird.
+	 */
+	public FiringHistory getHistory() {
+		return history;
+	}
+	/**
+	 * @param history
+	 * 		Verlauf in den jeder weitere Schaltvorgang eingetragen wird (null = nicht aufzeichnen);
+	 * 		seine aktuelle Markierung muss der des Tokenspiels entsprechen.
+	 */
+	public void setHistory(FiringHistory history) {
+		this.history = history;
+	}
+	/**
+	 * @return
+	 * 		Die Statistik in die gezählt wird, null wenn nicht gezählt wird.
+	 */
+	public FiringStatistics getStatistics() {
+		return statistics;
+	}
+	/**
+	 * @param statistics
+	 * 		Statistik in die jeder weitere Schaltvorgang gezählt wird (null = nicht zählen);
+	 * 		sie muss bis zur aktuellen Markierung des Tokenspiels gezählt haben.
+	 */
+	public void setStatistics(FiringStatistics statistics) {
+		this.statistics = statistics;
+	}
+	/**
+	 * @return
+	 * 		<b>true</b>: wenn run(long) maximale Schritte ausführt
+	 */
+	public boolean isMaximalSteps() {
+		return maximalSteps;
+	}
+	/**
+	 * @param maximalSteps
+	 * 		Ob run(long) maximale Schritte statt einzelner Schaltvorgänge ausführt.
+	 */
+	public void setMaximalSteps(boolean maximalSteps) {
+		this.maximalSteps = maximalSteps;
+	}
+
+}
@@ -0,0 +1,387 @@
+package simulation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import analysis.StructuralHash;
+import model.IndexedNet;
+
+/**
+ * Liest eine von einem TraceWriter geschriebene Schaltfolge als Strom.<br>
+ * Im Speicher liegt nur der Kopf, der Index der Blöcke und der gerade gelesene Block. Die Markierung wird beim
+ * Lesen über die im Kopf abgelegten Vor- und Nachbereiche mitgeführt, die Datei ist also ohne das Netz lesbar.
+ * seek() springt über den Index zum Block des Zielschritts, übernimmt dessen Checkpoint und dekodiert nur die
+ * Schritte innerhalb dieses Blocks. Fehlt der Index (abgebrochene Aufzeichnung), werden beim Öffnen nur die
+ * Blockköpfe überflogen; ein unvollständiger letzter Block wird ignoriert.
+ */
+public class TraceReader implements Closeable {
+
+	//**** FIELDS ****
+	/**
+	 * Die geöffnete Datei.
+	 */
+	private final RandomAccessFile file;
+	/**
+	 * Strukturhash des Netzes auf dem aufgezeichnet wurde.
+	 */
+	private final byte[] hash = new byte[32];
+	/**
+	 * Abstand der Checkpoints in Schritten.
+	 */
+	private final int interval;
+	/**
+	 * IDs der Stellen und Transitionen in der Nummerierung der Aufzeichnung.
+	 */
+	private final String[] placeIds;
+	private final String[] transitionIds;
+	/**
+	 * Verbrauchte und erzeugte Stellen je Transition.
+	 */
+	private final int[][] consume;
+	private final int[][] produce;
+	/**
+	 * Die Markierung vor dem ersten Schritt.
+	 */
+	private final long[] initial;
+	/**
+	 * Dateipositionen der Blöcke.
+	 */
+	private final long[] offsets;
+	/**
+	 * Anzahl der Schritte in der Datei.
+	 */
+	private final long length;
+
+	/**
+	 * Die Markierung vor dem Schritt an der aktuellen Position.
+	 */
+	private final long[] marking;
+	/**
+	 * Der aktuelle Schritt, d.h. der nächste den next() liefert.
+	 */
+	private long position = 0;
+	/**
+	 * Nummer des geladenen Blocks (-1 = keiner), seine Nutzdaten und die Leseposition darin.
+	 */
+	private int loaded = -1;
+	private byte[] block = new byte[0];
+	private int cursor = 0;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Öffnet eine Datei und liest Kopf und Index.
+	 * @param f
+	 * 		Die zu lesende Datei.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann oder kein gültiges Format hat.
+	 */
+	public TraceReader(File f) throws IOException {
+		file = new RandomAccessFile(f, "r");
+		try {
+			if (file.readInt() != TraceWriter.MAGIC)
+				throw new IOException("not a trace file: " + f);
+			byte version = file.readByte();
+			if (version != TraceWriter.VERSION)
+				throw new IOException("unsupported trace version " + version);
+			file.readFully(hash);
+			interval = readVarint();
+			if (interval < 1)
+				throw new IOException("invalid checkpoint interval " + interval);
+			placeIds = new String[readVarint()];
+			for (int p = 0; p < placeIds.length; p++)
+				placeIds[p] = readString();
+			transitionIds = new String[readVarint()];
+			consume = new int[transitionIds.length][];
+			produce = new int[transitionIds.length][];
+			for (int t = 0; t < transitionIds.length; t++) {
+				transitionIds[t] = readString();
+				int[] pre = readPlaces();
+				int[] post = readPlaces();
+				consume[t] = difference(pre, post);
+				produce[t] = difference(post, pre);
+			}
+			initial = new long[Math.max(1, (placeIds.length + 63) >>> 6)];
+			for (int w = 0; w < initial.length; w++)
+				initial[w] = file.readLong();
+			marking = initial.clone();
+
+			long headerEnd = file.getFilePointer();
+			long[] index = readIndex(headerEnd);
+			if (index == null)
+				index = scanBlocks(headerEnd);
+			offsets = Arrays.copyOf(index, index.length - 1);
+			length = index[index.length - 1];
+		} catch (EOFException e) {
+			file.close();
+			throw new IOException("truncated trace header: " + f);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	//**** INDEX ****
+	/**
+	 * Liest den Index am Dateiende.
+	 * @return
+	 * 		Die Blockpositionen gefolgt von der Anzahl der Schritte, null wenn kein gültiger Index vorliegt.
+	 */
+	private long[] readIndex(long headerEnd) throws IOException {
+		long size = file.length();
+		if (size - headerEnd < 1 + 4 + 8 + 8 + 4)
+			return null;
+		file.seek(size - 12);
+		long indexOffset = file.readLong();
+		if (file.readInt() != TraceWriter.END_MAGIC || indexOffset < headerEnd || indexOffset > size - 25)
+			return null;
+		file.seek(indexOffset);
+		if (file.readByte() != TraceWriter.INDEX)
+			return null;
+		int blocks = file.readInt();
+		if (blocks < 0 || indexOffset + 5 + 8L * blocks + 20 != size)
+			return null;
+		long[] index = new long[blocks + 1];
+		for (int b = 0; b < blocks; b++)
+			index[b] = file.readLong();
+		index[blocks] = file.readLong();
+		return index;
+	}
+	/**
+	 * Überfliegt die Blockköpfe ab einer Position, solange vollständige Blöcke folgen.
+	 * @return
+	 * 		Die Blockpositionen gefolgt von der Anzahl der Schritte.
+	 */
+	private long[] scanBlocks(long offset) throws IOException {
+		long size = file.length();
+		long[] index = new long[16];
+		int blocks = 0;
+		long steps = 0;
+		while (offset + 9 <= size) {
+			file.seek(offset);
+			if (file.readByte() != TraceWriter.BLOCK)
+				break;
+			int count = file.readInt();
+			int bytes = file.readInt();
+			if (count < 1 || bytes < initial.length * 8 || offset + 9 + bytes > size)
+				break;
+			if (blocks + 1 == index.length)
+				index = Arrays.copyOf(index, index.length * 2);
+			index[blocks++] = offset;
+			steps += count;
+			offset += 9 + bytes;
+			// nur der letzte Block darf weniger Schritte enthalten
+			if (count < interval)
+				break;
+		}
+		index = Arrays.copyOf(index, blocks + 1);
+		index[blocks] = steps;
+		return index;
+	}
+
+	//**** READING ****
+	/**
+	 * Liest den nächsten Schritt und schaltet die Markierung weiter.
+	 * @return
+	 * 		Nummer der Transition in der Nummerierung der Aufzeichnung, -1 am Ende.
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann.
+	 */
+	public int next() throws IOException {
+		if (position >= length)
+			return -1;
+		int b = (int) (position / interval);
+		if (b != loaded)
+			load(b);
+		int t = decode();
+		for (int p : consume[t])
+			marking[p >>> 6] &= ~(1L << p);
+		for (int p : produce[t])
+			marking[p >>> 6] |= 1L << p;
+		position++;
+		return t;
+	}
+	/**
+	 * Springt zu einem Schritt, sodass next() als nächstes die Transition dieses Schritts liefert und
+	 * getMarking() die Markierung davor enthält.
+	 * @param step
+	 * 		Der Zielschritt zwischen 0 und length().
+	 * @throws IOException
+	 * 		wenn die Datei nicht gelesen werden kann.
+	 */
+	public void seek(long step) throws IOException {
+		if (step < 0 || step > length)
+			throw new IllegalArgumentException("step " + step + " outside 0.." + length);
+		int b = (int) (step / interval);
+		if (b >= offsets.length) {
+			// Ende einer Datei deren Blöcke alle voll sind: vom letzten Block aus weiterlesen
+			b = offsets.length - 1;
+		}
+		if (b < 0) {
+			System.arraycopy(initial, 0, marking, 0, marking.length);
+			position = 0;
+			return;
+		}
+		if (b != loaded || step < position || position < (long) b * interval)
+			load(b);
+		while (position < step)
+			next();
+	}
+	/**
+	 * Lädt einen Block, übernimmt seinen Checkpoint und setzt die Position auf seinen ersten Schritt.
+	 */
+	private void load(int b) throws IOException {
+		file.seek(offsets[b]);
+		if (file.readByte() != TraceWriter.BLOCK)
+			throw new IOException("corrupt trace block " + b);
+		file.readInt();
+		int bytes = file.readInt();
+		if (block.length < bytes)
+			block = new byte[bytes];
+		file.readFully(block, 0, bytes);
+		cursor = 0;
+		for (int w = 0; w < marking.length; w++) {
+			long v = 0;
+			for (int i = 0; i < 8; i++)
+				v = (v << 8) | (block[cursor++] & 0xFF);
+			marking[w] = v;
+		}
+		loaded = b;
+		position = (long) b * interval;
+	}
+	private int decode() throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = block[cursor++];
+			v |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				if (v < 0 || v >= transitionIds.length)
+					throw new IOException("corrupt trace: transition " + v + " at step " + position);
+				return v;
+			}
+		}
+		throw new IOException("corrupt trace: varint too long at step " + position);
+	}
+
+	//**** HEADER PARSING ****
+	private int readVarint() throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = file.readByte();
+			v |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return v;
+		}
+		throw new IOException("corrupt trace header: varint too long");
+	}
+	private String readString() throws IOException {
+		byte[] b = new byte[readVarint()];
+		file.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+	private int[] readPlaces() throws IOException {
+		int[] out = new int[readVarint()];
+		for (int i = 0; i < out.length; i++) {
+			out[i] = readVarint();
+			if (out[i] < 0 || out[i] >= placeIds.length)
+				throw new IOException("corrupt trace header: place " + out[i]);
+		}
+		return out;
+	}
+	private static int[] difference(int[] a, int[] b) {
+		return Arrays.stream(a).filter(x -> Arrays.stream(b).noneMatch(y -> y == x)).toArray();
+	}
+
+	//**** NET BINDING ****
+	/**
+	 * Gibt an ob die Aufzeichnung zu einem Netz gehört; dann stimmen auch die Nummerierungen von Stellen und
+	 * Transitionen überein.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 */
+	public boolean matches(IndexedNet net) {
+		return Arrays.equals(hash, StructuralHash.digest(net));
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der Schritte in der Datei.
+	 */
+	public long length() {
+		return length;
+	}
+	/**
+	 * @return
+	 * 		Der aktuelle Schritt, d.h. der nächste den next() liefert.
+	 */
+	public long getPosition() {
+		return position;
+	}
+	/**
+	 * @return
+	 * 		Die Markierung vor dem aktuellen Schritt (nicht verändern).
+	 */
+	public long[] getMarking() {
+		return marking;
+	}
+	/**
+	 * @return
+	 * 		Eine Kopie der Markierung vor dem ersten Schritt.
+	 */
+	public long[] getInitialMarking() {
+		return initial.clone();
+	}
+	/**
+	 * @return
+	 * 		Abstand der Checkpoints in Schritten.
+	 */
+	public int getCheckpointInterval() {
+		return interval;
+	}
+	/**
+	 * @return
+	 * 		Eine Kopie des Strukturhashs des Netzes auf dem aufgezeichnet wurde.
+	 */
+	public byte[] getHash() {
+		return hash.clone();
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Stellen des aufgezeichneten Netzes.
+	 */
+	public int placeCount() {
+		return placeIds.length;
+	}
+	/**
+	 * @return
+	 * 		Anzahl der Transitionen des aufgezeichneten Netzes.
+	 */
+	public int transitionCount() {
+		return transitionIds.length;
+	}
+	/**
+	 * @return
+	 * 		ID einer Stelle in der Nummerierung der Aufzeichnung.
+	 */
+	public String placeId(int p) {
+		return placeIds[p];
+	}
+	/**
+	 * @return
+	 * 		ID einer Transition in der Nummerierung der Aufzeichnung.
+	 */
+	public String transitionId(int t) {
+		return transitionIds[t];
+	}
+
+}
@@ -0,0 +1,283 @@
+package simulation;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import analysis.StructuralHash;
+import model.IndexedNet;
+
+/**
+ * Schreibt eine Schaltfolge als Strom in eine kompakte Binärdatei, die ein TraceReader wieder liest.<br>
+ * Aufbau (Zahlen big-endian, "varint" = vorzeichenlos in 7-Bit-Gruppen, niederwertige zuerst):
+ * <ul>
+ * <li>Kopf: MAGIC (int), VERSION (byte), Strukturhash des Netzes (32 Byte), Abstand der Checkpoints (varint),
+ * die Stellen-IDs und die Transitions-IDs mit Vor- und Nachbereich (je Anzahl und Einträge als varint,
+ * Zeichenketten als Länge und UTF-8), die Anfangsmarkierung (words() longs).</li>
+ * <li>Blöcke: BLOCK (byte), Anzahl der Schritte (int), Länge der Nutzdaten (int); Nutzdaten sind die Markierung vor
+ * dem ersten Schritt des Blocks (words() longs) und die Transitionsnummern als varint. Alle Blöcke außer dem
+ * letzten enthalten genau so viele Schritte wie der Abstand der Checkpoints.</li>
+ * <li>Index: INDEX (byte), Anzahl der Blöcke (int), ihre Dateipositionen (long), Anzahl der Schritte (long),
+ * Position des Index (long), END_MAGIC (int).</li>
+ * </ul>
+ * Fehlt der Index, weil das Schreiben abgebrochen wurde, findet der TraceReader die vollständigen Blöcke über
+ * ihre Längenangaben.
+ */
+public class TraceWriter implements Closeable {
+
+	//**** FIELDS ****
+	/**
+	 * Kennung am Anfang ("WFTR") und am Ende ("WFTX") einer vollständigen Datei.
+	 */
+	public static final int MAGIC = 0x57465452;
+	public static final int END_MAGIC = 0x57465458;
+	/**
+	 * Version des Formats.
+	 */
+	public static final byte VERSION = 1;
+	/**
+	 * Markierungen der Blöcke und des Index.
+	 */
+	static final byte BLOCK = 1;
+	static final byte INDEX = 2;
+	/**
+	 * Standardabstand der Checkpoints in Schritten.
+	 */
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 4096;
+
+	/**
+	 * Die Momentaufnahme in deren Nummerierung geschrieben wird.
+	 */
+	private final IndexedNet net;
+	/**
+	 * Abstand der Checkpoints in Schritten.
+	 */
+	private final int interval;
+	/**
+	 * Ziel der Ausgabe.
+	 */
+	private final DataOutputStream out;
+	/**
+	 * Anzahl der bisher geschriebenen Bytes, entspricht der aktuellen Dateiposition.
+	 */
+	private long written = 0;
+	/**
+	 * Die Markierung nach dem letzten aufgezeichneten Schritt.
+	 */
+	private final long[] marking;
+	/**
+	 * Die varint-kodierten Transitionen des laufenden Blocks.
+	 */
+	private byte[] block = new byte[1024];
+	private int blockLength = 0;
+	private int blockSteps = 0;
+	/**
+	 * Die Markierung am Anfang des laufenden Blocks.
+	 */
+	private final long[] blockMarking;
+	/**
+	 * Dateipositionen der geschriebenen Blöcke.
+	 */
+	private long[] offsets = new long[16];
+	private int blocks = 0;
+	/**
+	 * Anzahl der aufgezeichneten Schritte.
+	 */
+	private long steps = 0;
+	/**
+	 * flag zeigt an ob die Datei schon abgeschlossen wurde.
+	 */
+	private boolean closed = false;
+
+	//**** CONSTRUCTORS ****
+	/**
+	 * Legt die Datei an und schreibt den Kopf, mit dem Standardabstand der Checkpoints.
+	 * @param file
+	 * 		Die Zieldatei.
+	 * @param net
+	 * 		Momentaufnahme des Netzes auf dem geschaltet wird.
+	 * @param initial
+	 * 		Markierung vor dem ersten Schritt.
+	 * @throws IOException
+	 * 		wenn die Datei nicht geschrieben werden kann.
+	 */
+	public TraceWriter(File file, IndexedNet net, long[] initial) throws IOException {
+		this(file, net, initial, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+	/**
+	 * Legt die Datei an und schreibt den Kopf.
+	 * @param file
+	 * 		Die Zieldatei.
+	 * @param net
+	 * 		Momentaufnahme des Netzes auf dem geschaltet wird.
+	 * @param initial
+	 * 		Markierung vor dem ersten Schritt.
+	 * @param interval
+	 * 		Abstand der Checkpoints in Schritten.
+	 * @throws IOException
+	 * 		wenn die Datei nicht geschrieben werden kann.
+	 */
+	public TraceWriter(File file, IndexedNet net, long[] initial, int interval) throws IOException {
+		if (interval < 1)
+			throw new IllegalArgumentException("checkpoint interval must be positive: " + interval);
+		this.net = net;
+		this.interval = interval;
+		this.marking = Arrays.copyOf(initial, net.words());
+		this.blockMarking = marking.clone();
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			writeHeader();
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Schreibt eine vollständige Schaltfolge, z.B. den Zeugen einer Analyse.
+	 * @param file
+	 * 		Die Zieldatei.
+	 * @param net
+	 * 		Momentaufnahme des Netzes.
+	 * @param initial
+	 * 		Markierung vor dem ersten Schritt.
+	 * @param transitions
+	 * 		Die Transitionsnummern in Schaltreihenfolge.
+	 * @throws IOException
+	 * 		wenn die Datei nicht geschrieben werden kann.
+	 */
+	public static void write(File file, IndexedNet net, long[] initial, int[] transitions) throws IOException {
+		try (TraceWriter writer = new TraceWriter(file, net, initial)) {
+			for (int t : transitions)
+				writer.record(t);
+		}
+	}
+
+	//**** METHODS ****
+	/**
+	 * Zeichnet einen Schaltvorgang auf.
+	 * @param t
+	 * 		Nummer der geschalteten Transition; sie muss in der aktuellen Markierung aktiviert sein.
+	 * @throws IOException
+	 * 		wenn ein voller Block nicht geschrieben werden kann.
+	 */
+	public void record(int t) throws IOException {
+		if (closed)
+			throw new IllegalStateException("trace already closed");
+		if (t < 0 || t >= net.transitionCount())
+			throw new IllegalArgumentException("no transition " + t);
+		if (blockLength + 5 > block.length)
+			block = Arrays.copyOf(block, block.length * 2);
+		int v = t;
+		while ((v & ~0x7F) != 0) {
+			block[blockLength++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		block[blockLength++] = (byte) v;
+		net.fire(marking, 0, marking, 0, t);
+		steps++;
+		if (++blockSteps == interval)
+			flushBlock();
+	}
+	/**
+	 * Schreibt den letzten, ggf. unvollständigen Block und den Index und schließt die Datei.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			if (blockSteps > 0)
+				flushBlock();
+			long indexOffset = written;
+			out.writeByte(INDEX);
+			out.writeInt(blocks);
+			for (int b = 0; b < blocks; b++)
+				out.writeLong(offsets[b]);
+			out.writeLong(steps);
+			out.writeLong(indexOffset);
+			out.writeInt(END_MAGIC);
+		} finally {
+			out.close();
+		}
+	}
+	/**
+	 * Schreibt den laufenden Block und beginnt einen neuen an der aktuellen Markierung.
+	 */
+	private void flushBlock() throws IOException {
+		if (blocks == offsets.length)
+			offsets = Arrays.copyOf(offsets, blocks * 2);
+		offsets[blocks++] = written;
+		out.writeByte(BLOCK);
+		out.writeInt(blockSteps);
+		out.writeInt(blockMarking.length * 8 + blockLength);
+		for (long w : blockMarking)
+			out.writeLong(w);
+		out.write(block, 0, blockLength);
+		written += 9 + blockMarking.length * 8 + blockLength;
+		System.arraycopy(marking, 0, blockMarking, 0, marking.length);
+		blockLength = 0;
+		blockSteps = 0;
+	}
+	private void writeHeader() throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.write(StructuralHash.digest(net));
+		written = 5 + 32;
+		writeVarint(interval);
+		writeVarint(net.placeCount());
+		for (int p = 0; p < net.placeCount(); p++)
+			writeString(net.placeId(p));
+		writeVarint(net.transitionCount());
+		for (int t = 0; t < net.transitionCount(); t++) {
+			writeString(net.transitionId(t));
+			writeVarint(net.pre(t).length);
+			for (int p : net.pre(t))
+				writeVarint(p);
+			writeVarint(net.post(t).length);
+			for (int p : net.post(t))
+				writeVarint(p);
+		}
+		for (long w : marking)
+			out.writeLong(w);
+		written += marking.length * 8;
+	}
+	private void writeVarint(int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+			written++;
+		}
+		out.writeByte(v);
+		written++;
+	}
+	private void writeString(String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(b.length);
+		out.write(b);
+		written += b.length;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Anzahl der bisher aufgezeichneten Schritte.
+	 */
+	public long getSteps() {
+		return steps;
+	}
+	/**
+	 * @return
+	 * 		Die Markierung nach dem letzten aufgezeichneten Schritt (nicht verändern).
+	 */
+	public long[] getMarking() {
+		return marking;
+	}
+
+}
@@ -2,10 +2,14 @@ package view;
 
 
 import java.io.File;
+import java.io.IOException;
 
+import conformance.EventLogReader;
 import controller.ViewController;
+import discovery.AlphaMiner;
 import model.PetriNet;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
 import javafx.event.EventHandler;
@@ -70,9 +74,22 @@ public class Main extends Application {
 		loadFile.setOnAction(loadFileEventHandler);
 		MenuItem saveFile = new MenuItem("Save");
 		saveFile.setOnAction(saveFileEventHandler);
+		MenuItem exportStatistics = new MenuItem("Export statistics");
+		exportStatistics.setOnAction(exportStatisticsEventHandler);
+		MenuItem discoverFile = new MenuItem("Discover from log");
+		discoverFile.setOnAction(discoverFileEventHandler);
+		MenuItem saveTrace = new MenuItem("Save trace");
+		saveTrace.setOnAction(saveTraceEventHandler);
+		MenuItem loadTrace = new MenuItem("Load trace");
+		loadTrace.setOnAction(loadTraceEventHandler);
 
-		fileMenu.getItems().addAll(newFile, loadFile, saveFile);
-		menuBar.getMenus().addAll(fileMenu);
+		fileMenu.getItems().addAll(newFile, loadFile, saveFile, exportStatistics, discoverFile, saveTrace, loadTrace);
+
+		Menu viewMenu = new Menu("View");
+		MenuItem reachability = new MenuItem("Reachability graph");
+		reachability.setOnAction(reachabilityEventHandler);
+		viewMenu.getItems().addAll(reachability);
+		menuBar.getMenus().addAll(fileMenu, viewMenu);
 
 		mainFrame.setTop(menuBar);
 		mainFrame.setCenter(tabBar);
@@ -195,6 +212,193 @@ public class Main extends Application {
 		}
 	};
 	
+	//**** export statistics ****
+	/**
+	 * Der EventHandler für den "export statistics"-Menüeintrag im Hauptfenster.<br>
+	 * Schreibt die Schaltstatistik der Simulation des derzeit ausgewählten Netzes als CSV-Datei.
+	 */
+	private static EventHandler<ActionEvent> exportStatisticsEventHandler = new EventHandler<ActionEvent>() {
+		public void handle(ActionEvent t) {
+			if (viewContr.getCurrentNet() == null) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error exporting.");
+				alert.setHeaderText("No file open.");
+				alert.setContentText("There is no net whose statistics could be exported.");
+
+				alert.showAndWait();
+				return;
+			}
+			fileChooser.setTitle("Export Statistics as CSV");
+			File csvFile = fileChooser.showSaveDialog(stage);
+			if (csvFile == null)
+				return;
+			fileChooser.setInitialDirectory(csvFile.getParentFile());
+			try {
+				viewContr.exportStatistics(csvFile);
+			} catch (IOException e) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error exporting.");
+				alert.setHeaderText("Could not write the file.");
+				alert.setContentText(e.getMessage());
+
+				alert.showAndWait();
+			}
+		}
+	};
+
+	//**** discover from log ****
+	/**
+	 * Der EventHandler für den "discover from log"-Menüeintrag im Hauptfenster.<br>
+	 * Liest ein Ereignislog (CSV oder XES) in einem Hintergrund-Thread, erzeugt daraus mit dem Alpha-Algorithmus
+	 * ein Netz und öffnet es wie ein geladenes Netz in einem neuen Tab.
+	 */
+	private static EventHandler<ActionEvent> discoverFileEventHandler = new EventHandler<ActionEvent>() {
+		public void handle(ActionEvent t) {
+			fileChooser.setTitle("Open Event Log (CSV or XES)");
+			File logFile = fileChooser.showOpenDialog(stage);
+			if (logFile == null)
+				return;
+			fileChooser.setInitialDirectory(logFile.getParentFile());
+			EventLogReader reader;
+			try {
+				reader = new EventLogReader(logFile);
+			} catch (IllegalArgumentException e) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error loading.");
+				alert.setHeaderText("Invalid file format.");
+				alert.setContentText("Can only discover from files with a CSV- or XES-format.");
+
+				alert.showAndWait();
+				return;
+			}
+			Thread worker = new Thread(() -> {
+				try {
+					PetriNet inNet = AlphaMiner.discover(reader);
+					Platform.runLater(() -> {
+						viewContr.setCurrentNet(inNet);
+
+						PNTab tab = new PNTab();
+						tab.setContent(viewContr.initializeNewPane());
+						tab.setNet(inNet);
+						tab.setText(logFile.getName() + " (discovered)");
+						tab.setOnSelectionChanged(tabChangedHandler);
+						tab.setOnClosed(close -> {
+							if (tabBar.getTabs().isEmpty())
+								viewContr.setCurrentPane(null);
+						});
+
+						tabBar.getTabs().add(tab);
+						tabBar.getSelectionModel().select(tab);
+
+						viewContr.paintNet();
+					});
+				} catch (IOException | RuntimeException e) {
+					Platform.runLater(() -> {
+						Alert alert = new Alert(AlertType.ERROR);
+						alert.setTitle("Error parsing.");
+						alert.setHeaderText(e instanceof IOException ? "Invalid event log." : "Discovery failed.");
+						alert.setContentText(e.getMessage() != null ? e.getMessage() : e.toString());
+
+						alert.showAndWait();
+					});
+				}
+			}, "discovery");
+			worker.setDaemon(true);
+			worker.start();
+		}
+	};
+
+	//**** save trace ****
+	/**
+	 * Der EventHandler für den "save trace"-Menüeintrag im Hauptfenster.<br>
+	 * Schreibt den Verlauf der Schaltvorgänge des derzeit ausgewählten Netzes als Binärdatei.
+	 */
+	private static EventHandler<ActionEvent> saveTraceEventHandler = new EventHandler<ActionEvent>() {
+		public void handle(ActionEvent t) {
+			if (viewContr.getCurrentNet() == null) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error saving.");
+				alert.setHeaderText("No file open.");
+				alert.setContentText("There is no net whose firing sequence could be saved.");
+
+				alert.showAndWait();
+				return;
+			}
+			fileChooser.setTitle("Save Trace");
+			File traceFile = fileChooser.showSaveDialog(stage);
+			if (traceFile == null)
+				return;
+			fileChooser.setInitialDirectory(traceFile.getParentFile());
+			try {
+				viewContr.saveTrace(traceFile);
+			} catch (IOException e) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error saving.");
+				alert.setHeaderText("Could not write the file.");
+				alert.setContentText(e.getMessage());
+
+				alert.showAndWait();
+			}
+		}
+	};
+	//**** load trace ****
+	/**
+	 * Der EventHandler für den "load trace"-Menüeintrag im Hauptfenster.<br>
+	 * Lädt eine gespeicherte Schaltfolge als Verlauf des derzeit ausgewählten Netzes zum Nachspielen.
+	 */
+	private static EventHandler<ActionEvent> loadTraceEventHandler = new EventHandler<ActionEvent>() {
+		public void handle(ActionEvent t) {
+			if (viewContr.getCurrentNet() == null) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error loading.");
+				alert.setHeaderText("No file open.");
+				alert.setContentText("Open the net on which the trace was recorded first.");
+
+				alert.showAndWait();
+				return;
+			}
+			fileChooser.setTitle("Load Trace");
+			File traceFile = fileChooser.showOpenDialog(stage);
+			if (traceFile == null)
+				return;
+			fileChooser.setInitialDirectory(traceFile.getParentFile());
+			try {
+				viewContr.loadTrace(traceFile);
+			} catch (IOException | IllegalArgumentException | IllegalStateException e) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error loading.");
+				alert.setHeaderText("Could not replay the trace.");
+				alert.setContentText(e.getMessage());
+
+				alert.showAndWait();
+			}
+		}
+	};
+
+	//**** VIEW MENU ****
+	//**** reachability graph ****
+	/**
+	 * Der EventHandler für den "reachability graph"-Menüeintrag im Hauptfenster.<br>
+	 * Öffnet neben dem Tab des derzeit ausgewählten Netzes ein Tab mit dessen Erreichbarkeitsgraphen.
+	 */
+	private static EventHandler<ActionEvent> reachabilityEventHandler = new EventHandler<ActionEvent>() {
+		public void handle(ActionEvent t) {
+			Tab selected = tabBar.getSelectionModel().getSelectedItem();
+			if (!(selected instanceof PNTab)) {
+				Alert alert = new Alert(AlertType.ERROR);
+				alert.setTitle("Error showing the reachability graph.");
+				alert.setHeaderText("No net selected.");
+				alert.setContentText("Select the tab of the net whose reachability graph should be shown.");
+
+				alert.showAndWait();
+				return;
+			}
+			ReachabilityTab tab = new ReachabilityTab(((PNTab) selected).getNet(), selected.getText(), viewContr);
+			tabBar.getTabs().add(tabBar.getTabs().indexOf(selected) + 1, tab);
+			tabBar.getSelectionModel().select(tab);
+		}
+	};
+
 	//**** ASSOCIATE TABS, NETS AND PANES ****
 	/**
 	 * Der EventHandler für das Wechseln von Tabs.<br>
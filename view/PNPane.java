@@ -1,10 +1,14 @@
 package view;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 
 /**
@@ -151,6 +155,86 @@ public class PNPane extends Pane {
 		this.content.getChildren().remove((Node) in);
 	}
 
+	//** HEATMAP AND PATH **
+	/**
+	 * Färbt Stellen und Transitionen als Heatmap ein, von blau (kalt) über grün und gelb nach rot (heiß).
+	 * Knoten deren ID nicht in der Map vorkommt, behalten ihre bisherige Färbung.
+	 * @param heat
+	 * 		Wert zwischen 0 und 1 je Knoten-ID.
+	 */
+	public void showHeatmap(Map<String, Double> heat) {
+		for (Node node : this.content.getChildren()) {
+			if (node instanceof PlaceGraphic) {
+				Double h = heat.get(((PlaceGraphic) node).getModel().ID);
+				if (h != null)
+					((PlaceGraphic) node).setHeat(heatColor(h));
+			}
+			else if (node instanceof TransitionGraphic) {
+				Double h = heat.get(((TransitionGraphic) node).getModel().ID);
+				if (h != null)
+					((TransitionGraphic) node).setHeat(heatColor(h));
+			}
+		}
+	}
+	/**
+	 * Entfernt die Heatmap, alle Knoten erhalten wieder ihre gewöhnliche Färbung.
+	 */
+	public void clearHeatmap() {
+		for (Node node : this.content.getChildren()) {
+			if (node instanceof PlaceGraphic)
+				((PlaceGraphic) node).setHeat(null);
+			else if (node instanceof TransitionGraphic)
+				((TransitionGraphic) node).setHeat(null);
+		}
+	}
+	/**
+	 * @param h
+	 * 		Wert zwischen 0 und 1, wird ggf. begrenzt.
+	 * @return
+	 * 		Die Farbe der Heatmap für diesen Wert.
+	 */
+	public static Color heatColor(double h) {
+		h = Double.isNaN(h) ? 0 : Math.max(0, Math.min(1, h));
+		return Color.hsb(240 * (1 - h), 0.75, 0.95);
+	}
+	/**
+	 * Hebt eine Schaltfolge hervor: der Rand jeder Transition der Folge wird nach der Position ihres ersten
+	 * Auftretens in den Farben der Heatmap eingefärbt, vom ersten Schritt (blau) bis zum letzten (rot).
+	 * @param transitionIds
+	 * 		IDs der Transitionen der Schaltfolge in ihrer Reihenfolge.
+	 */
+	public void showPath(List<String> transitionIds) {
+		HashMap<String, Double> step = new HashMap<String, Double>();
+		double last = Math.max(1, transitionIds.size() - 1);
+		for (int i = 0; i < transitionIds.size(); i++)
+			step.putIfAbsent(transitionIds.get(i), i / last);
+		showBottlenecks(step);
+	}
+	/**
+	 * Hebt Transitionen hervor, z.B. die Engpässe eines kritischen Pfads: der Rand jeder Transition aus der Map wird
+	 * nach ihrem Wert in den Farben der Heatmap eingefärbt, alle anderen erhalten ihren gewöhnlichen Rand.
+	 * @param weight
+	 * 		Wert zwischen 0 und 1 je Transitions-ID.
+	 */
+	public void showBottlenecks(Map<String, Double> weight) {
+		clearPath();
+		for (Node node : this.content.getChildren()) {
+			if (node instanceof TransitionGraphic) {
+				Double w = weight.get(((TransitionGraphic) node).getModel().ID);
+				if (w != null)
+					((TransitionGraphic) node).setStroke(heatColor(w));
+			}
+		}
+	}
+	/**
+	 * Entfernt die Hervorhebung einer Schaltfolge oder der Engpässe.
+	 */
+	public void clearPath() {
+		for (Node node : this.content.getChildren())
+			if (node instanceof TransitionGraphic)
+				((TransitionGraphic) node).setStroke(TransitionGraphic.STROKE_COLOR);
+	}
+
 	//**** GETTER AND SETTER ****
 	/**
 	 * @return
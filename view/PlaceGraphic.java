@@ -61,6 +61,10 @@ public class PlaceGraphic extends NetElementGraphic implements NodeGraphic {
 	 * Der Kreis als der eine eventuelle Markierung dargestellt wird.
 	 */
 	private Circle markGraphic;
+	/**
+	 * Die Farbe der Heatmap, null wenn keine angezeigt wird.
+	 */
+	private Color heat;
 
 	//**** CONSTRUCTORS ****
 	/**
@@ -112,7 +116,7 @@ public class PlaceGraphic extends NetElementGraphic implements NodeGraphic {
 	 * Gibt dem Element die Färbung die darauf hindeutet, dass es nicht durch den User zur Bearbeitung ausgewählt ist.
 	 */
 	public void fillStandardColor() {
-		circle.setFill(STD_COLOR);
+		circle.setFill(heat == null ? STD_COLOR : heat);
 	}
 	/**
 	 * Gibt dem Element die Färbung die darauf hindeutet, dass es zur Zeit durch den User zur Bearbeitung ausgewählt ist.
@@ -120,6 +124,15 @@ public class PlaceGraphic extends NetElementGraphic implements NodeGraphic {
 	public void fillSelectionColor() {
 		circle.setFill(SELECTION_COLOR);
 	}
+	/**
+	 * Färbt die Stelle gemäß der Heatmap ein.
+	 * @param c
+	 * 		Farbe der Heatmap, null um zur Standardfarbe zurückzukehren.
+	 */
+	public void setHeat(Color c) {
+		heat = c;
+		fillStandardColor();
+	}
 
 	//**** MODEL CORRESPONDENCE ****
 	/**
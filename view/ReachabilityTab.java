@@ -0,0 +1,376 @@
+package view;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import analysis.LazyStateSpace;
+import controller.ViewController;
+import model.IndexedNet;
+import model.PetriNet;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Implementiert ein Tab, das den Erreichbarkeitsgraphen eines Petrinetzes zeigt.<br>
+ * Der Graph wird nicht vorab berechnet: Zustände werden beim Anklicken in einem Hintergrund-Thread expandiert,
+ * die neu entdeckten Nachfolger erscheinen in der nächsten Schicht. Gezeichnet wird auf eine Canvas von der Größe
+ * des Tabs, und zwar nur die Zustände im sichtbaren Ausschnitt, die über Schicht und Position ohne Suche gefunden
+ * werden; der Aufwand pro Bild hängt daher nicht von der Größe des Graphen ab. Kanten werden von den sichtbaren
+ * Zuständen und der Schicht darüber aus gezeichnet.<br>
+ * Ein angeklickter Zustand wird ausgewählt und seine Markierung über den ViewController auf das Netz übertragen,
+ * dessen Verlauf der Schaltvorgänge dort neu beginnt; im Edit-Modus wird nur ausgewählt.
+ */
+public class ReachabilityTab extends Tab {
+
+	//**** FIELDS ****
+	/**
+	 * Radius eines Zustands sowie horizontaler und vertikaler Abstand der Zustände in Pixeln.
+	 */
+	private static final double RADIUS = 14;
+	private static final double H_SPACING = 60;
+	private static final double V_SPACING = 80;
+	private static final double MARGIN = 40;
+	/**
+	 * Bis zu dieser Anzahl sichtbarer Kanten werden sie mit dem Transitionsnamen beschriftet.
+	 */
+	private static final int LABEL_LIMIT = 400;
+	/**
+	 * die Farbe für einen expandierten, einen noch nicht expandierten und einen Verklemmungszustand
+	 */
+	public static Color EXPANDED_COLOR = PlaceGraphic.STD_COLOR;
+	public static Color FRONTIER_COLOR = Color.WHITE;
+	public static Color DEADLOCK_COLOR = Color.ORANGERED;
+
+	/**
+	 * Das Netz dessen Erreichbarkeitsgraph gezeigt wird.
+	 */
+	private final PetriNet net;
+	/**
+	 * Referenz auf den ViewController, über den die Markierung eines Zustands auf das Netz übertragen wird.
+	 */
+	private final ViewController viewContr;
+	/**
+	 * Der bisher aufgebaute Teil des Graphen, wird beim Aktualisieren ersetzt.
+	 */
+	private LazyStateSpace space;
+	/**
+	 * Expandiert die Zustände nacheinander außerhalb des FX-Threads.
+	 */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "reachability-view");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * Die Leinwand auf die der sichtbare Ausschnitt gezeichnet wird.
+	 */
+	private final Canvas canvas = new Canvas();
+	/**
+	 * Zeigt die Größe des bisher aufgebauten Graphen.
+	 */
+	private final Label status = new Label();
+	/**
+	 * Grund warum die Markierung des ausgewählten Zustands nicht übertragen wurde, null wenn sie übertragen wurde.
+	 */
+	private String notice = null;
+	/**
+	 * Verschiebung des sichtbaren Ausschnitts.
+	 */
+	private double offsetX = 0;
+	private double offsetY = 0;
+	/**
+	 * Mausposition beim letzten Drücken bzw. Ziehen, zum Verschieben des Ausschnitts.
+	 */
+	private double dragX;
+	private double dragY;
+	/**
+	 * Der ausgewählte Zustand, -1 wenn keiner ausgewählt ist.
+	 */
+	private int selected = -1;
+	/**
+	 * flag zeigt an ob schon ein Neuzeichnen im FX-Thread aussteht.
+	 */
+	private boolean repaintPending = false;
+
+	//**** CONSTRUCTOR ****
+	/**
+	 * Baut das Tab auf und expandiert die Anfangsmarkierung.
+	 * @param net
+	 * 		Das Netz dessen Erreichbarkeitsgraph gezeigt werden soll.
+	 * @param title
+	 * 		Beschriftung des Netzes im Tabtitel.
+	 * @param v
+	 * 		Referenz auf den ViewController.
+	 */
+	public ReachabilityTab(PetriNet net, String title, ViewController v) {
+		this.net = net;
+		this.viewContr = v;
+		setText(title + " (reachability)");
+
+		Button refresh = new Button("refresh");
+		refresh.setOnAction(e -> refresh());
+		HBox top = new HBox(10, refresh, status);
+		top.setPadding(new Insets(5));
+
+		Pane holder = new Pane(canvas);
+		holder.setStyle("-fx-background-color: white;");
+		holder.setMinSize(0, 0);
+		canvas.widthProperty().bind(holder.widthProperty());
+		canvas.heightProperty().bind(holder.heightProperty());
+		canvas.widthProperty().addListener(e -> repaint());
+		canvas.heightProperty().addListener(e -> repaint());
+
+		canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+			dragX = e.getX();
+			dragY = e.getY();
+		});
+		canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, e -> {
+			offsetX -= e.getX() - dragX;
+			offsetY -= e.getY() - dragY;
+			dragX = e.getX();
+			dragY = e.getY();
+			repaint();
+		});
+		canvas.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+			if (e.isStillSincePress())
+				select(stateAt(e.getX(), e.getY()));
+		});
+		canvas.addEventHandler(ScrollEvent.SCROLL, e -> {
+			if (e.isShiftDown())
+				offsetX -= e.getDeltaY();
+			else {
+				offsetX -= e.getDeltaX();
+				offsetY -= e.getDeltaY();
+			}
+			repaint();
+		});
+
+		BorderPane content = new BorderPane();
+		content.setTop(top);
+		content.setCenter(holder);
+		setContent(content);
+		setOnClosed(e -> worker.shutdownNow());
+
+		refresh();
+	}
+
+	//**** METHODS ****
+	/**
+	 * Verwirft den bisher aufgebauten Graphen und beginnt mit einer neuen Momentaufnahme des Netzes.
+	 */
+	public void refresh() {
+		space = new LazyStateSpace(new IndexedNet(net));
+		selected = -1;
+		notice = null;
+		offsetX = 0;
+		offsetY = 0;
+		expand(0);
+		repaint();
+	}
+	/**
+	 * Expandiert einen Zustand im Hintergrund und zeichnet danach neu.
+	 */
+	private void expand(int state) {
+		LazyStateSpace target = space;
+		if (target.isExpanded(state))
+			return;
+		worker.submit(() -> {
+			target.expand(state);
+			Platform.runLater(() -> {
+				if (target == space)
+					repaint();
+			});
+		});
+	}
+	/**
+	 * Wählt einen Zustand aus, überträgt seine Markierung auf das Netz und expandiert ihn.
+	 * @param state
+	 * 		Der angeklickte Zustand, -1 wenn kein Zustand getroffen wurde.
+	 */
+	private void select(int state) {
+		selected = state;
+		if (state >= 0) {
+			applyMarking(state);
+			expand(state);
+		}
+		repaint();
+	}
+	/**
+	 * Überträgt die Markierung eines Zustands über den ViewController auf das Netz; lehnt dieser ab, etwa im
+	 * Edit-Modus, wird der Grund in der Statuszeile angezeigt.
+	 */
+	private void applyMarking(int state) {
+		IndexedNet snapshot = space.getNet();
+		long[] marking = new long[snapshot.words()];
+		space.copyMarking(state, marking, 0);
+		try {
+			viewContr.jumpToMarking(net, snapshot, marking);
+			notice = null;
+		} catch (IllegalStateException e) {
+			notice = e.getMessage();
+		}
+	}
+	/**
+	 * Sucht den Zustand unter einer Position auf der Leinwand.
+	 * @return
+	 * 		Nummer des Zustands, -1 wenn dort keiner liegt.
+	 */
+	private int stateAt(double x, double y) {
+		double gx = x + offsetX - MARGIN;
+		double gy = y + offsetY - MARGIN;
+		int layer = (int) Math.round(gy / V_SPACING);
+		int position = (int) Math.round(gx / H_SPACING);
+		if (layer < 0 || position < 0 || position >= space.layerSize(layer))
+			return -1;
+		double dx = gx - position * H_SPACING;
+		double dy = gy - layer * V_SPACING;
+		return dx * dx + dy * dy <= RADIUS * RADIUS ? space.stateAt(layer, position) : -1;
+	}
+
+	//**** RENDERING ****
+	/**
+	 * Fordert ein Neuzeichnen an; mehrere Anforderungen bis zum nächsten Durchlauf des FX-Threads werden
+	 * zusammengefasst.
+	 */
+	private void repaint() {
+		if (repaintPending)
+			return;
+		repaintPending = true;
+		Platform.runLater(() -> {
+			repaintPending = false;
+			paint();
+		});
+	}
+	/**
+	 * Zeichnet den sichtbaren Ausschnitt: zuerst die Kanten, dann die Zustände.
+	 */
+	private void paint() {
+		LazyStateSpace s = space;
+		GraphicsContext g = canvas.getGraphicsContext2D();
+		double w = canvas.getWidth();
+		double h = canvas.getHeight();
+		g.clearRect(0, 0, w, h);
+		status.setText(s.stateCount() + " states, " + s.edgeCount() + " edges, "
+				+ (s.stateCount() - s.expandedCount()) + " unexpanded"
+				+ (notice == null ? "" : " (" + notice + ")"));
+
+		int firstLayer = Math.max(0, (int) Math.floor((offsetY - MARGIN - RADIUS) / V_SPACING));
+		int lastLayer = Math.min(s.layerCount() - 1, (int) Math.floor((offsetY + h - MARGIN + RADIUS) / V_SPACING));
+		int firstSlot = Math.max(0, (int) Math.floor((offsetX - MARGIN - RADIUS) / H_SPACING));
+		int lastSlot = (int) Math.floor((offsetX + w - MARGIN + RADIUS) / H_SPACING);
+		IndexedNet snapshot = s.getNet();
+
+		// Kanten der sichtbaren Zustände und der Schicht darüber
+		int visibleEdges = 0;
+		for (int layer = Math.max(0, firstLayer - 1); layer <= lastLayer; layer++) {
+			int end = Math.min(lastSlot, s.layerSize(layer) - 1);
+			for (int i = firstSlot; i <= end; i++) {
+				int[] succ = s.successors(s.stateAt(layer, i));
+				if (succ != null)
+					visibleEdges += succ.length;
+			}
+		}
+		boolean labels = visibleEdges <= LABEL_LIMIT;
+		g.setStroke(PlaceGraphic.STROKE_COLOR);
+		g.setFill(Color.BLACK);
+		g.setLineWidth(1);
+		g.setTextAlign(TextAlignment.CENTER);
+		g.setTextBaseline(VPos.CENTER);
+		for (int layer = Math.max(0, firstLayer - 1); layer <= lastLayer; layer++) {
+			int end = Math.min(lastSlot, s.layerSize(layer) - 1);
+			for (int i = firstSlot; i <= end; i++) {
+				int state = s.stateAt(layer, i);
+				int[] succ = s.successors(state);
+				if (succ == null)
+					continue;
+				int[] label = s.labels(state);
+				double x1 = screenX(i);
+				double y1 = screenY(layer);
+				for (int e = 0; e < succ.length; e++) {
+					double x2 = screenX(s.slot(succ[e]));
+					double y2 = screenY(s.depth(succ[e]));
+					drawArrow(g, x1, y1, x2, y2);
+					if (labels)
+						g.fillText(snapshot.transitionLabel(label[e]), (x1 + x2) / 2, (y1 + y2) / 2);
+				}
+			}
+		}
+
+		// Zustände
+		g.setLineWidth(2);
+		for (int layer = firstLayer; layer <= lastLayer; layer++) {
+			int end = Math.min(lastSlot, s.layerSize(layer) - 1);
+			for (int i = firstSlot; i <= end; i++) {
+				int state = s.stateAt(layer, i);
+				double x = screenX(i);
+				double y = screenY(layer);
+				if (state == selected)
+					g.setFill(PlaceGraphic.SELECTION_COLOR);
+				else if (s.isDeadlock(state) && !s.isFinal(state))
+					g.setFill(DEADLOCK_COLOR);
+				else if (s.isExpanded(state))
+					g.setFill(EXPANDED_COLOR);
+				else
+					g.setFill(FRONTIER_COLOR);
+				g.setStroke(state == 0 ? PlaceGraphic.START_COLOR
+						: s.isFinal(state) ? PlaceGraphic.END_COLOR : PlaceGraphic.STROKE_COLOR);
+				g.fillOval(x - RADIUS, y - RADIUS, 2 * RADIUS, 2 * RADIUS);
+				g.strokeOval(x - RADIUS, y - RADIUS, 2 * RADIUS, 2 * RADIUS);
+				g.setFill(Color.BLACK);
+				g.fillText(Integer.toString(state), x, y);
+			}
+		}
+	}
+	/**
+	 * Zeichnet eine Kante zwischen zwei Zustandsmittelpunkten mit Pfeilspitze am Rand des Zielzustands;
+	 * Schleifen werden als kleiner Bogen über dem Zustand gezeichnet.
+	 */
+	private static void drawArrow(GraphicsContext g, double x1, double y1, double x2, double y2) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double len = Math.sqrt(dx * dx + dy * dy);
+		if (len < RADIUS) {
+			g.strokeOval(x1 - RADIUS / 2, y1 - 2 * RADIUS, RADIUS, RADIUS);
+			return;
+		}
+		dx /= len;
+		dy /= len;
+		double sx = x1 + dx * RADIUS;
+		double sy = y1 + dy * RADIUS;
+		double tx = x2 - dx * RADIUS;
+		double ty = y2 - dy * RADIUS;
+		g.strokeLine(sx, sy, tx, ty);
+		double head = 6;
+		g.strokeLine(tx, ty, tx - head * (dx - dy / 2), ty - head * (dy + dx / 2));
+		g.strokeLine(tx, ty, tx - head * (dx + dy / 2), ty - head * (dy - dx / 2));
+	}
+	private double screenX(int position) {
+		return MARGIN + position * H_SPACING - offsetX;
+	}
+	private double screenY(int layer) {
+		return MARGIN + layer * V_SPACING - offsetY;
+	}
+
+	//**** GETTER ****
+	/**
+	 * @return
+	 * 		Das Netz dessen Erreichbarkeitsgraph gezeigt wird.
+	 */
+	public PetriNet getNet() {
+		return net;
+	}
+
+}
@@ -54,6 +54,10 @@ public class TransitionGraphic extends NetElementGraphic implements NodeGraphic
 	 * Das "Namensschild" der Transition.
 	 */
 	private Text nameTag;
+	/**
+	 * Die Farbe der Heatmap, null wenn keine angezeigt wird.
+	 */
+	private Color heat;
 
 	/**
 	 * x-Koordinate des Mittelpunktes des Vierecks<br>
@@ -101,29 +105,8 @@ public class TransitionGraphic extends NetElementGraphic implements NodeGraphic
 		rect.xProperty().bind(centerXProperty.add((rect.widthProperty().divide(-2))));
 		rect.yProperty().bind(centerYProperty.add((rect.heightProperty().divide(-2))));
 
-		modelNode.activated().addListener((e, oldV, newV) -> {
-			if(modelNode.contact().get() && modelNode.activated().get()) {
-				this.rect.setFill(CONTACT_COLOR);
-			}
-			else if(modelNode.activated().get()) {		
-				this.rect.setFill(ACT_COLOR);
-			}
-			else {
-				this.rect.setFill(STD_COLOR);
-			}
-		});
-
-		modelNode.contact().addListener((e, oldV, newV) -> {
-			if(modelNode.contact().get() && modelNode.activated().get()) {
-				this.rect.setFill(CONTACT_COLOR);
-			}
-			else if(modelNode.activated().get()) {		
-				this.rect.setFill(ACT_COLOR);
-			}
-			else {
-				this.rect.setFill(STD_COLOR);
-			}
-		});
+		modelNode.activated().addListener((e, oldV, newV) -> fillActivationColor());
+		modelNode.contact().addListener((e, oldV, newV) -> fillActivationColor());
 
 		getChildren().add(rect);
 		getChildren().add(nameTag);
@@ -145,6 +128,34 @@ public class TransitionGraphic extends NetElementGraphic implements NodeGraphic
 		rect.setStroke(SELECTION_COLOR);
 	}
 
+	/**
+	 * Färbt die Transition gemäß ihres Aktivierungsstatus ein, oder gemäß der Heatmap falls eine angezeigt wird.
+	 */
+	private void fillActivationColor() {
+		if (heat != null) {
+			this.rect.setFill(heat);
+		}
+		else if(modelNode.contact().get() && modelNode.activated().get()) {
+			this.rect.setFill(CONTACT_COLOR);
+		}
+		else if(modelNode.activated().get()) {		
+			this.rect.setFill(ACT_COLOR);
+		}
+		else {
+			this.rect.setFill(STD_COLOR);
+		}
+	}
+	/**
+	 * Färbt die Transition gemäß der Heatmap ein; solange eine angezeigt wird, ist der Aktivierungsstatus
+	 * nicht an der Farbe zu erkennen.
+	 * @param c
+	 * 		Farbe der Heatmap, null um zur Färbung nach Aktivierungsstatus zurückzukehren.
+	 */
+	public void setHeat(Color c) {
+		heat = c;
+		fillActivationColor();
+	}
+
 	//**** MODEL CORRESPONDENCE ****
 	/**
 	 * Setzt die im Modell registrierten Koordinaten der Transition auf die Koordinaten der graphischen Darstellung.<br>